@@ -0,0 +1,262 @@
+package com.coinblesk.customserialization;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.coinblesk.customserialization.crypto.MerkleTree;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class carries a {@link PaymentResponse} which has not been signed on
+ * its own, but as one leaf of a {@link MerkleTree} over the payloads of a
+ * whole batch of {@link PaymentResponse}s. The server signs only the root of
+ * the tree (see {@link #signBatch(List, PrivateKey)}), so one signature is
+ * shared by all {@link PaymentResponse}s of the batch.
+ * 
+ * The signed payload of this object is
+ * 
+ * <pre>
+ * version | pkiAlgorithm | keyNumber | nofLeaves (4 bytes) | root (32 bytes)
+ * </pre>
+ * 
+ * where the root is computed from the {@link PaymentResponse} and its
+ * inclusion proof. Hence, {@link #verify(java.security.PublicKey)} only
+ * succeeds if the proof is valid and the root has been signed by the server.
+ * The serialized form is
+ * 
+ * <pre>
+ * version | pkiAlgorithm | keyNumber | nofLeaves (4 bytes) | leafIndex (4 bytes) | length (2 bytes) | PaymentResponse payload | proof (32 bytes each) | signature
+ * </pre>
+ * 
+ * The number of hashes in the proof follows from the leaf index and the
+ * number of leaves (see {@link MerkleTree#getProofLength(int, int)}).
+ */
+public class BatchSignedPaymentResponse extends SignedSerializableObject {
+	private static final int HEADER_LENGTH = 3;
+	private static final int NOF_LEAVES_OFFSET = HEADER_LENGTH;
+	private static final int LEAF_INDEX_OFFSET = NOF_LEAVES_OFFSET+4;
+	private static final int RESPONSE_LENGTH_OFFSET = LEAF_INDEX_OFFSET+4;
+	private static final int RESPONSE_OFFSET = RESPONSE_LENGTH_OFFSET+2;
+	
+	private int nofLeaves;
+	private int leafIndex;
+	private PaymentResponse paymentResponse;
+	private byte[][] proof;
+	
+	//this constructor is needed for the DecoderFactory
+	protected BatchSignedPaymentResponse() {
+	}
+	
+	private BatchSignedPaymentResponse(int version, PaymentResponse paymentResponse, int nofLeaves, int leafIndex, byte[][] proof) throws IllegalArgumentException {
+		super(version, paymentResponse.getPKIAlgorithm(), paymentResponse.getKeyNumber());
+		
+		if (paymentResponse.getPayload().length > 0xFFFF)
+			throw new IllegalArgumentException("The payment response cannot be longer than 65535 bytes.");
+		
+		this.paymentResponse = paymentResponse;
+		this.nofLeaves = nofLeaves;
+		this.leafIndex = leafIndex;
+		this.proof = proof;
+		
+		setPayload(MerkleTree.computeRoot(paymentResponse.getPayload(), leafIndex, nofLeaves, proof));
+	}
+	
+	private void setPayload(byte[] root) {
+		payload = new byte[HEADER_LENGTH+4+MerkleTree.HASH_LENGTH];
+		int index = 0;
+		payload[index++] = (byte) getVersion();
+		payload[index++] = getPKIAlgorithm().getCode();
+		payload[index++] = (byte) getKeyNumber();
+		index = putInt(payload, index, nofLeaves);
+		System.arraycopy(root, 0, payload, index, root.length);
+	}
+	
+	/**
+	 * Builds a {@link MerkleTree} over the payloads of the given
+	 * {@link PaymentResponse}s and signs its root. The returned list contains
+	 * one {@link BatchSignedPaymentResponse} for every {@link PaymentResponse}
+	 * in the same order. All of them share the same signature.
+	 * 
+	 * @param paymentResponses
+	 *            the {@link PaymentResponse}s to be signed, which do not need
+	 *            to be signed on their own
+	 * @param privateKey
+	 *            the private key of the server
+	 * @throws IllegalArgumentException
+	 *             if the list is null, empty or contains null, or if the
+	 *             {@link PaymentResponse}s do not share the same
+	 *             {@link PKIAlgorithm} and key number
+	 * @throws NoSuchAlgorithmException
+	 *             if the {@link PKIAlgorithm} is not known
+	 * @throws InvalidKeyException
+	 *             if the private key does not belong to the
+	 *             {@link PKIAlgorithm}
+	 * @throws SignatureException
+	 *             if an error occured during the signing phase
+	 */
+	public static List<BatchSignedPaymentResponse> signBatch(List<PaymentResponse> paymentResponses, PrivateKey privateKey) throws IllegalArgumentException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		if (paymentResponses == null || paymentResponses.isEmpty())
+			throw new IllegalArgumentException("The payment responses cannot be null or empty.");
+		
+		PaymentResponse first = paymentResponses.get(0);
+		List<byte[]> leaves = new ArrayList<byte[]>(paymentResponses.size());
+		for (PaymentResponse paymentResponse : paymentResponses) {
+			if (paymentResponse == null)
+				throw new IllegalArgumentException("The payment responses cannot contain null.");
+			if (paymentResponse.getPKIAlgorithm() != first.getPKIAlgorithm() || paymentResponse.getKeyNumber() != first.getKeyNumber())
+				throw new IllegalArgumentException("The payment responses of a batch must share the same PKI algorithm and key number.");
+			leaves.add(paymentResponse.getPayload());
+		}
+		
+		MerkleTree tree = new MerkleTree(leaves);
+		List<BatchSignedPaymentResponse> result = new ArrayList<BatchSignedPaymentResponse>(paymentResponses.size());
+		for (int i=0; i<paymentResponses.size(); i++) {
+			result.add(new BatchSignedPaymentResponse(1, paymentResponses.get(i), tree.getNofLeaves(), i, tree.getProof(i)));
+		}
+		
+		// the signed payload is identical for all leaves
+		BatchSignedPaymentResponse signed = result.get(0);
+		signed.sign(privateKey);
+		for (BatchSignedPaymentResponse bspr : result) {
+			bspr.signature = signed.signature;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the {@link PaymentResponse}. It is not signed on its own, the
+	 * signature of this object covers it.
+	 */
+	public PaymentResponse getPaymentResponse() {
+		return paymentResponse;
+	}
+	
+	/**
+	 * Returns the number of {@link PaymentResponse}s in the batch.
+	 */
+	public int getNofLeaves() {
+		return nofLeaves;
+	}
+	
+	/**
+	 * Returns the index of the {@link PaymentResponse} in the batch.
+	 */
+	public int getLeafIndex() {
+		return leafIndex;
+	}
+	
+	/**
+	 * Returns the inclusion proof of the {@link PaymentResponse}.
+	 */
+	public byte[][] getProof() {
+		return proof;
+	}
+	
+	/**
+	 * Returns the root of the {@link MerkleTree} computed from the
+	 * {@link PaymentResponse} and its proof.
+	 */
+	public byte[] getRoot() {
+		return Arrays.copyOfRange(payload, HEADER_LENGTH+4, payload.length);
+	}
+	
+	@Override
+	public byte[] encode() throws NotSignedException {
+		if (signature == null)
+			throw new NotSignedException();
+		
+		byte[] response = paymentResponse.getPayload();
+		byte[] result = new byte[RESPONSE_OFFSET+response.length+proof.length*MerkleTree.HASH_LENGTH+signature.length];
+		System.arraycopy(payload, 0, result, 0, HEADER_LENGTH);
+		int index = putInt(result, NOF_LEAVES_OFFSET, nofLeaves);
+		index = putInt(result, index, leafIndex);
+		result[index++] = (byte) (response.length >>> 8);
+		result[index++] = (byte) response.length;
+		System.arraycopy(response, 0, result, index, response.length);
+		index += response.length;
+		for (byte[] hash : proof) {
+			System.arraycopy(hash, 0, result, index, hash.length);
+			index += hash.length;
+		}
+		System.arraycopy(signature, 0, result, index, signature.length);
+		
+		return result;
+	}
+	
+	private static int putInt(byte[] result, int index, int i) {
+		byte[] bytes = PrimitiveTypeSerializer.getIntAsBytes(i);
+		System.arraycopy(bytes, 0, result, index, bytes.length);
+		return index + bytes.length;
+	}
+	
+	@Override
+	public BatchSignedPaymentResponse decode(byte[] bytes) throws IllegalArgumentException, SerializationException {
+		if (bytes == null)
+			throw new IllegalArgumentException("The argument can't be null.");
+		
+		try {
+			int version = bytes[0] & 0xFF;
+			PKIAlgorithm pkiAlgorithm = PKIAlgorithm.getPKIAlgorithm(bytes[1]);
+			int nofLeaves = PrimitiveTypeSerializer.getBytesAsInt(bytes, NOF_LEAVES_OFFSET);
+			int leafIndex = PrimitiveTypeSerializer.getBytesAsInt(bytes, LEAF_INDEX_OFFSET);
+			int responseLength = ((bytes[RESPONSE_LENGTH_OFFSET] & 0xFF) << 8) | (bytes[RESPONSE_LENGTH_OFFSET+1] & 0xFF);
+			if (nofLeaves <= 0 || leafIndex < 0 || leafIndex >= nofLeaves)
+				throw new IllegalArgumentException("The given byte array is corrupt.");
+			
+			int proofOffset = RESPONSE_OFFSET+responseLength;
+			int signatureOffset = proofOffset+MerkleTree.getProofLength(leafIndex, nofLeaves)*MerkleTree.HASH_LENGTH;
+			byte[] signature = extractSignature(bytes, signatureOffset, pkiAlgorithm);
+			
+			byte[][] proof = new byte[MerkleTree.getProofLength(leafIndex, nofLeaves)][];
+			for (int i=0; i<proof.length; i++) {
+				int from = proofOffset+i*MerkleTree.HASH_LENGTH;
+				proof[i] = Arrays.copyOfRange(bytes, from, from+MerkleTree.HASH_LENGTH);
+			}
+			
+			/*
+			 * The PaymentResponse is decoded with the signature of the root
+			 * attached, since it cannot be decoded without a signature. The
+			 * signature is removed afterwards, as it does not belong to it.
+			 */
+			byte[] response = new byte[responseLength+signature.length];
+			System.arraycopy(bytes, RESPONSE_OFFSET, response, 0, responseLength);
+			System.arraycopy(signature, 0, response, responseLength, signature.length);
+			PaymentResponse paymentResponse = DecoderFactory.decode(PaymentResponse.class, response);
+			paymentResponse.signature = null;
+			
+			if (paymentResponse.getPKIAlgorithm() != pkiAlgorithm || paymentResponse.getKeyNumber() != (bytes[2] & 0xFF))
+				throw new IllegalArgumentException("The given byte array is corrupt (the header does not match the payment response).");
+			
+			BatchSignedPaymentResponse bspr = new BatchSignedPaymentResponse(version, paymentResponse, nofLeaves, leafIndex, proof);
+			bspr.signature = signature;
+			return bspr;
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+		}
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (o == null)
+			return false;
+		if (!(o instanceof BatchSignedPaymentResponse))
+			return false;
+		
+		BatchSignedPaymentResponse bspr = (BatchSignedPaymentResponse) o;
+		if (this.leafIndex != bspr.leafIndex)
+			return false;
+		if (!Arrays.equals(this.payload, bspr.payload))
+			return false;
+		
+		return this.paymentResponse.equals(bspr.paymentResponse);
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.coinblesk.customserialization;
+
+import java.security.SignatureException;
+
+/**
+ * This class converts ECDSA signatures between the DER encoding produced by
+ * the JCA (a SEQUENCE of the two INTEGERs r and s) and the IEEE P1363 encoding
+ * (r||s, both left-padded to the same length). The latter has a fixed size
+ * and therefore allows decoding a {@link SignedSerializableObject} without
+ * relying on the signature being "the rest" of the byte array.
+ */
+public class ECDSASignatureConverter {
+
+	private static final byte SEQUENCE_TAG = 0x30;
+	private static final byte INTEGER_TAG = 0x02;
+
+	/**
+	 * Converts a DER encoded ECDSA signature into the IEEE P1363 encoding.
+	 *
+	 * @param der
+	 *            the DER encoded signature
+	 * @param length
+	 *            the length of the resulting signature, i.e. two times the
+	 *            size of the curve order in bytes
+	 * @throws SignatureException
+	 *             if the signature is not a valid DER encoded ECDSA signature
+	 *             or if r or s do not fit into length/2 bytes
+	 */
+	public static byte[] toP1363(byte[] der, int length) throws SignatureException {
+		if (der == null || der.length < 8 || der[0] != SEQUENCE_TAG)
+			throw new SignatureException("The signature is not DER encoded.");
+
+		try {
+			int index = 1;
+			int sequenceLength = der[index++] & 0xFF;
+			if (sequenceLength == 0x81)
+				sequenceLength = der[index++] & 0xFF;
+			if (index + sequenceLength != der.length)
+				throw new SignatureException("The DER encoded signature has an invalid length.");
+
+			byte[] result = new byte[length];
+			index = copyInteger(der, index, result, 0, length / 2);
+			index = copyInteger(der, index, result, length / 2, length / 2);
+			if (index != der.length)
+				throw new SignatureException("The DER encoded signature has trailing bytes.");
+
+			return result;
+		} catch (IndexOutOfBoundsException e) {
+			throw new SignatureException("The DER encoded signature is corrupt (not long enough).");
+		}
+	}
+
+	private static int copyInteger(byte[] der, int index, byte[] result, int offset, int size) throws SignatureException {
+		if (der[index++] != INTEGER_TAG)
+			throw new SignatureException("The DER encoded signature is corrupt.");
+
+		int integerLength = der[index++] & 0xFF;
+		int end = index + integerLength;
+		if (integerLength == 0 || end > der.length)
+			throw new SignatureException("The DER encoded signature is corrupt.");
+
+		// skip the sign byte(s)
+		while (index < end && der[index] == 0) {
+			index++;
+		}
+
+		int valueLength = end - index;
+		if (valueLength > size)
+			throw new SignatureException("The signature value does not fit into "+size+" bytes.");
+
+		System.arraycopy(der, index, result, offset + size - valueLength, valueLength);
+		return end;
+	}
+
+	/**
+	 * Converts an IEEE P1363 encoded ECDSA signature into the DER encoding.
+	 *
+	 * @param p1363
+	 *            the signature r||s
+	 * @throws SignatureException
+	 *             if the signature is null, empty or of odd length
+	 */
+	public static byte[] toDER(byte[] p1363) throws SignatureException {
+		if (p1363 == null || p1363.length == 0 || p1363.length % 2 != 0)
+			throw new SignatureException("The P1363 encoded signature has an invalid length.");
+
+		int size = p1363.length / 2;
+		int rStart = skipZeros(p1363, 0, size);
+		int sStart = skipZeros(p1363, size, p1363.length);
+		int rLength = integerLength(p1363, rStart, size);
+		int sLength = integerLength(p1363, sStart, p1363.length);
+
+		int sequenceLength = 2+rLength+2+sLength;
+		int headerLength = sequenceLength > 127 ? 3 : 2;
+
+		byte[] result = new byte[headerLength+sequenceLength];
+		int index = 0;
+		result[index++] = SEQUENCE_TAG;
+		if (sequenceLength > 127)
+			result[index++] = (byte) 0x81;
+		result[index++] = (byte) sequenceLength;
+		index = putInteger(p1363, rStart, size, result, index, rLength);
+		putInteger(p1363, sStart, p1363.length, result, index, sLength);
+
+		return result;
+	}
+
+	private static int skipZeros(byte[] bytes, int start, int end) {
+		// keep at least one byte, since zero is encoded as 0x00
+		while (start < end - 1 && bytes[start] == 0) {
+			start++;
+		}
+		return start;
+	}
+
+	private static int integerLength(byte[] bytes, int start, int end) {
+		// a leading 0x00 is needed if the most significant bit is set
+		return (end - start) + ((bytes[start] & 0x80) != 0 ? 1 : 0);
+	}
+
+	private static int putInteger(byte[] src, int start, int end, byte[] result, int index, int integerLength) {
+		result[index++] = INTEGER_TAG;
+		result[index++] = (byte) integerLength;
+		if (integerLength > end - start)
+			result[index++] = 0;
+		System.arraycopy(src, start, result, index, end - start);
+		return index + (end - start);
+	}
+
+}
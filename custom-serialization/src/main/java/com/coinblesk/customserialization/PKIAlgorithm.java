@@ -1,5 +1,7 @@
 package com.coinblesk.customserialization;
 
+import java.security.Provider;
+import java.security.Security;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,18 +15,35 @@ import com.coinblesk.customserialization.exceptions.UnknownPKIAlgorithmException
  * 
  */
 public enum PKIAlgorithm {
-	DEFAULT((byte) 0x01, "ECDSA", "brainpoolp256r1", "SHA256withECDSA");
+	DEFAULT((byte) 0x01, "ECDSA", "brainpoolp256r1", "SHA256withECDSA", 0, false),
+	/*
+	 * Same keys and signature algorithm as DEFAULT, but the signature is
+	 * encoded as defined in IEEE P1363 (r||s, each 32 bytes) instead of DER.
+	 */
+	ECDSA_P1363((byte) 0x02, "ECDSA", "brainpoolp256r1", "SHA256withECDSA", 64, true),
+	/*
+	 * Ed25519 is provided by the JDK since Java 15. On older JDKs, it is
+	 * available if a provider supporting it (e.g. Bouncy Castle) is installed.
+	 * See isSupported().
+	 */
+	ED25519((byte) 0x03, "EdDSA", "Ed25519", "Ed25519", 64, false);
+	
+	private static final int MAX_DER_SIGNATURE_LENGTH = 72;
 	
 	private byte code;
 	private String keyPairAlgorithm;
 	private String keyPairSpecification;
 	private String signaturAlgorithm;
+	private int signatureLength;
+	private boolean p1363Encoded;
 	
-	private PKIAlgorithm(byte code, String keyPairAlgorithm, String keyPairSpecification, String signatureAlgorithm) {
+	private PKIAlgorithm(byte code, String keyPairAlgorithm, String keyPairSpecification, String signatureAlgorithm, int signatureLength, boolean p1363Encoded) {
 		this.code = code;
 		this.keyPairAlgorithm = keyPairAlgorithm;
 		this.keyPairSpecification = keyPairSpecification;
 		this.signaturAlgorithm = signatureAlgorithm;
+		this.signatureLength = signatureLength;
+		this.p1363Encoded = p1363Encoded;
 	}
 
 	/**
@@ -58,6 +77,50 @@ public enum PKIAlgorithm {
 		return signaturAlgorithm;
 	}
 	
+	/**
+	 * Returns the length in bytes of the signatures created with this
+	 * PKIAlgorithm, or 0 if the length is variable (e.g., DER encoded ECDSA
+	 * signatures).
+	 */
+	public int getSignatureLength() {
+		return signatureLength;
+	}
+	
+	/**
+	 * Returns the maximum length in bytes of the signatures created with this
+	 * PKIAlgorithm. For variable length signatures, this is the length of a
+	 * DER encoded ECDSA signature on a 256 bit curve with both r and s
+	 * requiring a leading zero byte.
+	 */
+	public int getMaxSignatureLength() {
+		return signatureLength > 0 ? signatureLength : MAX_DER_SIGNATURE_LENGTH;
+	}
+	
+	/**
+	 * Returns true if the signatures are encoded as defined in IEEE P1363
+	 * (r||s) instead of DER. The signature algorithm itself still produces DER
+	 * encoded signatures, which are converted by
+	 * {@link SignedSerializableObject}.
+	 */
+	public boolean isP1363Encoded() {
+		return p1363Encoded;
+	}
+	
+	/**
+	 * Returns true if any of the installed security providers supports the
+	 * signature algorithm of this PKIAlgorithm. If not,
+	 * {@link SignedSerializableObject#sign(java.security.PrivateKey)} and
+	 * {@link SignedSerializableObject#verify(java.security.PublicKey)} throw a
+	 * {@link java.security.NoSuchAlgorithmException}.
+	 */
+	public boolean isSupported() {
+		for (Provider provider : Security.getProviders()) {
+			if (provider.getService("Signature", signaturAlgorithm) != null)
+				return true;
+		}
+		return false;
+	}
+	
 	private static Map<Byte, PKIAlgorithm> codeAlgorithmMap = null;
 	
 	/**
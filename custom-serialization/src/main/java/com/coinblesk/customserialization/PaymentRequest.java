@@ -12,11 +12,38 @@ import com.coinblesk.customserialization.exceptions.UnknownPKIAlgorithmException
  * two clients. The byte array serialization allows keeping the payload and
  * signature as as small as possible, which is important especially for the NFC.
  * 
+ * Version 1 serializes the usernames first. Version
+ * {@link #VERSION_FIXED_OFFSET} places all fixed-width fields at constant
+ * offsets right after the header and appends the usernames at the end. This
+ * allows reading the amount or the timestamp of an encoded payment request
+ * without decoding it (see {@link #readAmount(byte[])} and
+ * {@link #readTimestamp(byte[])}).
+ * 
  * @author Jeton Memeti
  * 
  */
 public class PaymentRequest extends SignedSerializableObject {
 	
+	/**
+	 * The version of the layout with the fixed-width fields at constant
+	 * offsets.
+	 */
+	public static final int VERSION_FIXED_OFFSET = 2;
+	
+	/*
+	 * Offsets of the fixed-width fields in the layout of version
+	 * VERSION_FIXED_OFFSET. The input currency and the input amount are only
+	 * present if nofCurrencies is 2.
+	 */
+	public static final int CURRENCY_OFFSET = 3;
+	public static final int AMOUNT_OFFSET = 4;
+	public static final int TIMESTAMP_OFFSET = 12;
+	public static final int NOF_CURRENCIES_OFFSET = 20;
+	public static final int INPUT_CURRENCY_OFFSET = 21;
+	public static final int INPUT_AMOUNT_OFFSET = 22;
+	
+	private static final int FIXED_OFFSET_HEADER_LENGTH = NOF_CURRENCIES_OFFSET+1;
+	
 	private String usernamePayer;
 	private String usernamePayee;
 	
@@ -58,9 +85,23 @@ public class PaymentRequest extends SignedSerializableObject {
 		this(1, pkiAlgorithm, keyNumber, usernamePayer, usernamePayee, currency, amount, timestamp);
 	}
 	
-	private PaymentRequest(int version, PKIAlgorithm pkiAlgorithm, int keyNumber, String usernamePayer, String usernamePayee, Currency currency, long amount, long timestamp) throws IllegalArgumentException {
+	/**
+	 * This constructor instantiates a new object with the given serialization
+	 * version.
+	 * 
+	 * @param version
+	 *            1 for the default layout or {@link #VERSION_FIXED_OFFSET} for
+	 *            the layout with the fixed-width fields at constant offsets
+	 * @throws IllegalArgumentException
+	 *             if the version is not supported, or if any other argument is
+	 *             null or does not fit into the foreseen primitive type
+	 * @see #PaymentRequest(PKIAlgorithm, int, String, String, Currency, long,
+	 *      long)
+	 */
+	public PaymentRequest(int version, PKIAlgorithm pkiAlgorithm, int keyNumber, String usernamePayer, String usernamePayee, Currency currency, long amount, long timestamp) throws IllegalArgumentException {
 		super(version, pkiAlgorithm, keyNumber);
 		
+		checkVersion(version);
 		checkParameters(usernamePayer, usernamePayee, currency, amount, timestamp);
 		
 		this.usernamePayer = usernamePayer;
@@ -111,9 +152,23 @@ public class PaymentRequest extends SignedSerializableObject {
 		this(1, pkiAlgorithm, keyNumber, usernamePayer, usernamePayee, currency, amount, inputCurrency, inputAmount, timestamp);
 	}
 	
-	private PaymentRequest(int version, PKIAlgorithm pkiAlgorithm, int keyNumber, String usernamePayer, String usernamePayee, Currency currency, long amount, Currency inputCurrency, long inputAmount, long timestamp) throws IllegalArgumentException {
+	/**
+	 * This constructor instantiates a new object with an input currency and
+	 * the given serialization version.
+	 * 
+	 * @param version
+	 *            1 for the default layout or {@link #VERSION_FIXED_OFFSET} for
+	 *            the layout with the fixed-width fields at constant offsets
+	 * @throws IllegalArgumentException
+	 *             if the version is not supported, or if any other argument is
+	 *             null or does not fit into the foreseen primitive type
+	 * @see #PaymentRequest(PKIAlgorithm, int, String, String, Currency, long,
+	 *      Currency, long, long)
+	 */
+	public PaymentRequest(int version, PKIAlgorithm pkiAlgorithm, int keyNumber, String usernamePayer, String usernamePayee, Currency currency, long amount, Currency inputCurrency, long inputAmount, long timestamp) throws IllegalArgumentException {
 		super(version, pkiAlgorithm, keyNumber);
 		
+		checkVersion(version);
 		checkParameters(usernamePayer, usernamePayee, currency, amount, inputCurrency, inputAmount, timestamp);
 		
 		this.usernamePayer = usernamePayer;
@@ -127,6 +182,11 @@ public class PaymentRequest extends SignedSerializableObject {
 		setPayload(true);
 	}
 
+	private static void checkVersion(int version) throws IllegalArgumentException {
+		if (version != 1 && version != VERSION_FIXED_OFFSET)
+			throw new IllegalArgumentException("The version "+version+" is not supported.");
+	}
+	
 	private void checkParameters(String usernamePayer, String usernamePayee, Currency currency, long amount, Currency inputCurrency, long inputAmount, long timestamp) throws IllegalArgumentException {
 		checkParameters(usernamePayer, usernamePayee, currency, amount, timestamp);
 		
@@ -158,6 +218,11 @@ public class PaymentRequest extends SignedSerializableObject {
 	}
 	
 	private void setPayload(boolean hasInputCurrency) {
+		if (getVersion() == VERSION_FIXED_OFFSET) {
+			setFixedOffsetPayload(hasInputCurrency);
+			return;
+		}
+		
 		byte[] usernamePayerBytes = usernamePayer.getBytes(Charset.forName("UTF-8"));
 		byte[] usernamePayeeBytes = usernamePayee.getBytes(Charset.forName("UTF-8"));
 		byte[] amountBytes = PrimitiveTypeSerializer.getLongAsBytes(amount);
@@ -240,6 +305,74 @@ public class PaymentRequest extends SignedSerializableObject {
 		this.payload = payload;
 	}
 	
+	private void setFixedOffsetPayload(boolean hasInputCurrency) {
+		byte[] usernamePayerBytes = usernamePayer.getBytes(Charset.forName("UTF-8"));
+		byte[] usernamePayeeBytes = usernamePayee.getBytes(Charset.forName("UTF-8"));
+		
+		/*
+		 * version
+		 * + signatureAlgorithm.getCode()
+		 * + keyNumber
+		 * + currency.getCode()
+		 * + amount
+		 * + timestamp
+		 * + nofCurrencies
+		 * (+ inputCurrency.getCode()
+		 * + inputAmount)
+		 * + usernamePayer.length
+		 * + usernamePayer
+		 * + usernamePayee.length
+		 * + usernamePayee
+		 */
+		int length = FIXED_OFFSET_HEADER_LENGTH+1+usernamePayerBytes.length+1+usernamePayeeBytes.length;
+		if (hasInputCurrency)
+			length += 1+8;
+		
+		byte[] payload = new byte[length];
+		
+		int index = 0;
+		payload[index++] = (byte) getVersion();
+		payload[index++] = getPKIAlgorithm().getCode();
+		payload[index++] = (byte) getKeyNumber();
+		payload[index++] = currency.getCode();
+		index = putLong(payload, index, amount);
+		index = putLong(payload, index, timestamp);
+		
+		if (hasInputCurrency) {
+			payload[index++] = 2;
+			payload[index++] = inputCurrency.getCode();
+			index = putLong(payload, index, inputAmount);
+		} else {
+			payload[index++] = 1;
+		}
+		
+		payload[index++] = (byte) usernamePayerBytes.length;
+		System.arraycopy(usernamePayerBytes, 0, payload, index, usernamePayerBytes.length);
+		index += usernamePayerBytes.length;
+		payload[index++] = (byte) usernamePayeeBytes.length;
+		System.arraycopy(usernamePayeeBytes, 0, payload, index, usernamePayeeBytes.length);
+		
+		this.payload = payload;
+	}
+	
+	/**
+	 * Returns the index of the payer's username length in the payload. The
+	 * payee's username length and username follow directly after the payer's
+	 * username in all versions.
+	 */
+	int getUsernameOffset() {
+		if (getVersion() == VERSION_FIXED_OFFSET)
+			return FIXED_OFFSET_HEADER_LENGTH + (inputCurrency != null ? 1+8 : 0);
+		else
+			return 3;
+	}
+	
+	private static int putLong(byte[] payload, int index, long l) {
+		byte[] bytes = PrimitiveTypeSerializer.getLongAsBytes(l);
+		System.arraycopy(bytes, 0, payload, index, bytes.length);
+		return index + bytes.length;
+	}
+	
 	public String getUsernamePayer() {
 		return usernamePayer;
 	}
@@ -274,6 +407,9 @@ public class PaymentRequest extends SignedSerializableObject {
 			throw new IllegalArgumentException("The argument can't be null.");
 		
 		try {
+			if ((bytes[0] & 0xFF) == VERSION_FIXED_OFFSET)
+				return decodeFixedOffset(bytes);
+			
 			int index = 0;
 			
 			int version = bytes[index++] & 0xFF;
@@ -328,16 +464,7 @@ public class PaymentRequest extends SignedSerializableObject {
 				pr = new PaymentRequest(version, pkiAlgorithm, keyNumber, usernamePayer, usernamePayee, currency, amount, inputCurrency, inputAmount, timestamp);
 			}
 			
-			int signatureLength = bytes.length - index;
-			if (signatureLength == 0) {
-				throw new NotSignedException();
-			} else {
-				byte[] signature = new byte[signatureLength];
-				for (int i=0; i<signature.length; i++) {
-					signature[i] = bytes[index++];
-				}
-				pr.signature = signature;
-			}
+			pr.signature = extractSignature(bytes, index, pkiAlgorithm);
 			
 			return pr;
 		} catch (IndexOutOfBoundsException e) {
@@ -345,6 +472,99 @@ public class PaymentRequest extends SignedSerializableObject {
 		}
 	}
 	
+	private PaymentRequest decodeFixedOffset(byte[] bytes) throws IllegalArgumentException, UnknownPKIAlgorithmException, UnknownCurrencyException, NotSignedException {
+		int version = bytes[0] & 0xFF;
+		PKIAlgorithm pkiAlgorithm = PKIAlgorithm.getPKIAlgorithm(bytes[1]);
+		int keyNumber = bytes[2] & 0xFF;
+		
+		Currency currency = Currency.getCurrency(bytes[CURRENCY_OFFSET]);
+		long amount = PrimitiveTypeSerializer.getBytesAsLong(bytes, AMOUNT_OFFSET);
+		long timestamp = PrimitiveTypeSerializer.getBytesAsLong(bytes, TIMESTAMP_OFFSET);
+		byte nofCurrencies = bytes[NOF_CURRENCIES_OFFSET];
+		
+		Currency inputCurrency = null;
+		long inputAmount = 0;
+		int index = FIXED_OFFSET_HEADER_LENGTH;
+		if (nofCurrencies == 2) {
+			inputCurrency = Currency.getCurrency(bytes[INPUT_CURRENCY_OFFSET]);
+			inputAmount = PrimitiveTypeSerializer.getBytesAsLong(bytes, INPUT_AMOUNT_OFFSET);
+			index += 1+8;
+		} else if (nofCurrencies != 1) {
+			throw new IllegalArgumentException("The given byte array is corrupt.");
+		}
+		
+		int usernamePayerLength = bytes[index++] & 0xFF;
+		String usernamePayer = new String(bytes, index, usernamePayerLength, Charset.forName("UTF-8"));
+		index += usernamePayerLength;
+		
+		int usernamePayeeLength = bytes[index++] & 0xFF;
+		String usernamePayee = new String(bytes, index, usernamePayeeLength, Charset.forName("UTF-8"));
+		index += usernamePayeeLength;
+		
+		PaymentRequest pr;
+		if (nofCurrencies == 1) {
+			pr = new PaymentRequest(version, pkiAlgorithm, keyNumber, usernamePayer, usernamePayee, currency, amount, timestamp);
+		} else {
+			pr = new PaymentRequest(version, pkiAlgorithm, keyNumber, usernamePayer, usernamePayee, currency, amount, inputCurrency, inputAmount, timestamp);
+		}
+		
+		pr.signature = extractSignature(bytes, index, pkiAlgorithm);
+		
+		return pr;
+	}
+	
+	/**
+	 * Returns the amount of an encoded payment request of version
+	 * {@link #VERSION_FIXED_OFFSET} without decoding it.
+	 * 
+	 * @param bytes
+	 *            the encoded payment request (or only its payload)
+	 * @throws IllegalArgumentException
+	 *             if bytes is null, too short or not of version
+	 *             {@link #VERSION_FIXED_OFFSET}
+	 */
+	public static long readAmount(byte[] bytes) throws IllegalArgumentException {
+		checkFixedOffset(bytes);
+		return PrimitiveTypeSerializer.getBytesAsLong(bytes, AMOUNT_OFFSET);
+	}
+	
+	/**
+	 * Returns the timestamp of an encoded payment request of version
+	 * {@link #VERSION_FIXED_OFFSET} without decoding it.
+	 * 
+	 * @param bytes
+	 *            the encoded payment request (or only its payload)
+	 * @throws IllegalArgumentException
+	 *             if bytes is null, too short or not of version
+	 *             {@link #VERSION_FIXED_OFFSET}
+	 */
+	public static long readTimestamp(byte[] bytes) throws IllegalArgumentException {
+		checkFixedOffset(bytes);
+		return PrimitiveTypeSerializer.getBytesAsLong(bytes, TIMESTAMP_OFFSET);
+	}
+	
+	/**
+	 * Returns the {@link Currency} of an encoded payment request of version
+	 * {@link #VERSION_FIXED_OFFSET} without decoding it.
+	 * 
+	 * @param bytes
+	 *            the encoded payment request (or only its payload)
+	 * @throws IllegalArgumentException
+	 *             if bytes is null, too short or not of version
+	 *             {@link #VERSION_FIXED_OFFSET}
+	 * @throws UnknownCurrencyException
+	 *             if the currency code is not known
+	 */
+	public static Currency readCurrency(byte[] bytes) throws IllegalArgumentException, UnknownCurrencyException {
+		checkFixedOffset(bytes);
+		return Currency.getCurrency(bytes[CURRENCY_OFFSET]);
+	}
+	
+	private static void checkFixedOffset(byte[] bytes) throws IllegalArgumentException {
+		if (bytes == null || bytes.length < FIXED_OFFSET_HEADER_LENGTH || (bytes[0] & 0xFF) != VERSION_FIXED_OFFSET)
+			throw new IllegalArgumentException("The given byte array is not a payment request of version "+VERSION_FIXED_OFFSET+".");
+	}
+	
 	/**
 	 * This method checks that two payment requests are identic regarding a
 	 * payment. The username of payer and payee as well as the currency and the
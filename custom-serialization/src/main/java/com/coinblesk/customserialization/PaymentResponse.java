@@ -1,6 +1,8 @@
 package com.coinblesk.customserialization;
 
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
 import com.coinblesk.customserialization.exceptions.NotSignedException;
@@ -14,11 +16,46 @@ import com.coinblesk.customserialization.exceptions.UnknownServerResponseStatusE
  * and signature as as small as possible, which is important especially for the
  * NFC.
  * 
+ * Version 1 serializes the reason and the usernames first. Version
+ * {@link #VERSION_FIXED_OFFSET} places all fixed-width fields at constant
+ * offsets right after the header and appends the variable-length fields at
+ * the end (see {@link #readAmount(byte[])} and {@link #readTimestamp(byte[])}).
+ * 
+ * Version {@link #VERSION_BY_REFERENCE} does not repeat the usernames,
+ * currency, amount and timestamp of the {@link PaymentRequest} it answers.
+ * Instead, it contains the SHA-256 digest of the request's payload, which the
+ * payer can check with {@link #matchesRequest(PaymentRequest)}.
+ * 
  * @author Jeton Memeti
  * 
  */
 public class PaymentResponse extends SignedSerializableObject {
 	
+	/**
+	 * The version of the layout with the fixed-width fields at constant
+	 * offsets.
+	 */
+	public static final int VERSION_FIXED_OFFSET = 2;
+	
+	/**
+	 * The version of the layout which references the {@link PaymentRequest}
+	 * by its digest instead of repeating its fields.
+	 */
+	public static final int VERSION_BY_REFERENCE = 3;
+	
+	private static final int REQUEST_DIGEST_LENGTH = 32;
+	
+	/*
+	 * Offsets of the fixed-width fields in the layout of version
+	 * VERSION_FIXED_OFFSET.
+	 */
+	public static final int STATUS_OFFSET = 3;
+	public static final int CURRENCY_OFFSET = 4;
+	public static final int AMOUNT_OFFSET = 5;
+	public static final int TIMESTAMP_OFFSET = 13;
+	
+	private static final int FIXED_OFFSET_HEADER_LENGTH = TIMESTAMP_OFFSET+8;
+	
 	private ServerResponseStatus status;
 	private String reason;
 	
@@ -29,6 +66,8 @@ public class PaymentResponse extends SignedSerializableObject {
 	private long amount;
 	private long timestamp;
 	
+	private byte[] requestDigest;
+	
 	//this constructor is needed for the DecoderFactory
 	protected PaymentResponse() {
 	}
@@ -66,9 +105,25 @@ public class PaymentResponse extends SignedSerializableObject {
 		this(1, pkiAlgorithm, keyNumber, status, reason, usernamePayer, usernamePayee, currency, amount, timestamp);
 	}
 	
-	private PaymentResponse(int version, PKIAlgorithm pkiAlgorithm, int keyNumber, ServerResponseStatus status, String reason, String usernamePayer, String usernamePayee, Currency currency, long amount, long timestamp) throws IllegalArgumentException {
+	/**
+	 * This constructor generates a new object with the given serialization
+	 * version.
+	 * 
+	 * @param version
+	 *            1 for the default layout or {@link #VERSION_FIXED_OFFSET} for
+	 *            the layout with the fixed-width fields at constant offsets
+	 * @throws IllegalArgumentException
+	 *             if the version is not supported, or if any other argument is
+	 *             null or does not fit into the foreseen primitive type
+	 * @see #PaymentResponse(PKIAlgorithm, int, ServerResponseStatus, String,
+	 *      String, String, Currency, long, long)
+	 */
+	public PaymentResponse(int version, PKIAlgorithm pkiAlgorithm, int keyNumber, ServerResponseStatus status, String reason, String usernamePayer, String usernamePayee, Currency currency, long amount, long timestamp) throws IllegalArgumentException {
 		super(version, pkiAlgorithm, keyNumber);
 		
+		if (version != 1 && version != VERSION_FIXED_OFFSET)
+			throw new IllegalArgumentException("The version "+version+" is not supported.");
+		
 		checkParameters(status, reason, usernamePayer, usernamePayee, currency, amount, timestamp);
 		
 		this.status = status;
@@ -83,16 +138,59 @@ public class PaymentResponse extends SignedSerializableObject {
 		setPayload();
 	}
 	
-	private void checkParameters(ServerResponseStatus status, String reason, String usernamePayer, String usernamePayee, Currency currency, long amount, long timestamp) throws IllegalArgumentException {
-		if (status == null)
-			throw new IllegalArgumentException("The status cannot be null.");
+	/**
+	 * This constructor generates a new object of version
+	 * {@link #VERSION_BY_REFERENCE}, which contains the SHA-256 digest of the
+	 * given request's payload instead of its usernames, currency, amount and
+	 * timestamp.
+	 * 
+	 * @param pkiAlgorithm
+	 *            the server's {@link PKIAlgorithm} to be used for
+	 *            {@link SignedSerializableObject} super class
+	 * @param keyNumber
+	 *            the server's key number to be used for the
+	 *            {@link SignedSerializableObject} super class
+	 * @param status
+	 *            the {@link ServerResponseStatus} indicating if the transaction
+	 *            was granted or not
+	 * @param reason
+	 *            the reason if the transaction was not granted
+	 * @param paymentRequest
+	 *            the {@link PaymentRequest} this response answers
+	 * @throws IllegalArgumentException
+	 *             if any argument is null or does not fit into the foreseen
+	 *             primitive type
+	 */
+	public PaymentResponse(PKIAlgorithm pkiAlgorithm, int keyNumber, ServerResponseStatus status, String reason, PaymentRequest paymentRequest) throws IllegalArgumentException {
+		this(pkiAlgorithm, keyNumber, status, reason, digest(paymentRequest));
+	}
+	
+	private PaymentResponse(PKIAlgorithm pkiAlgorithm, int keyNumber, ServerResponseStatus status, String reason, byte[] requestDigest) throws IllegalArgumentException {
+		super(VERSION_BY_REFERENCE, pkiAlgorithm, keyNumber);
 		
-		if (status.getCode() == 2) {
-			if (reason == null)
-				throw new IllegalArgumentException("The reason cannot be null if the status is set to FAILURE.");
-			if (reason.length() > 255)
-				throw new IllegalArgumentException("The reason cannot be longer than 255 characters.");
+		checkStatus(status, reason);
+		
+		this.status = status;
+		this.reason = reason;
+		this.requestDigest = requestDigest;
+		
+		setByReferencePayload();
+	}
+	
+	private static byte[] digest(PaymentRequest paymentRequest) throws IllegalArgumentException {
+		if (paymentRequest == null || paymentRequest.getPayload() == null)
+			throw new IllegalArgumentException("The payment request cannot be null.");
+		
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(paymentRequest.getPayload());
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new RuntimeException(e);
 		}
+	}
+	
+	private void checkParameters(ServerResponseStatus status, String reason, String usernamePayer, String usernamePayee, Currency currency, long amount, long timestamp) throws IllegalArgumentException {
+		checkStatus(status, reason);
 		
 		if (usernamePayer == null || usernamePayer.length() == 0 || usernamePayer.length() > 255)
 			throw new IllegalArgumentException("The payers's username cannot be null, empty, or longer than 255 characters.");
@@ -113,7 +211,24 @@ public class PaymentResponse extends SignedSerializableObject {
 			throw new IllegalArgumentException("The timestamp must be greater than 0.");
 	}
 	
+	private static void checkStatus(ServerResponseStatus status, String reason) throws IllegalArgumentException {
+		if (status == null)
+			throw new IllegalArgumentException("The status cannot be null.");
+		
+		if (status.getCode() == 2) {
+			if (reason == null)
+				throw new IllegalArgumentException("The reason cannot be null if the status is set to FAILURE.");
+			if (reason.length() > 255)
+				throw new IllegalArgumentException("The reason cannot be longer than 255 characters.");
+		}
+	}
+	
 	private void setPayload() {
+		if (getVersion() == VERSION_FIXED_OFFSET) {
+			setFixedOffsetPayload();
+			return;
+		}
+		
 		byte[] reasonBytes = null;
 		byte[] usernamePayerBytes = usernamePayer.getBytes(Charset.forName("UTF-8"));
 		byte[] usernamePayeeBytes = usernamePayee.getBytes(Charset.forName("UTF-8"));
@@ -190,6 +305,95 @@ public class PaymentResponse extends SignedSerializableObject {
 		this.payload = payload;
 	}
 	
+	private void setFixedOffsetPayload() {
+		byte[] usernamePayerBytes = usernamePayer.getBytes(Charset.forName("UTF-8"));
+		byte[] usernamePayeeBytes = usernamePayee.getBytes(Charset.forName("UTF-8"));
+		byte[] reasonBytes = null;
+		
+		/*
+		 * version
+		 * + signatureAlgorithm.getCode()
+		 * + keyNumber
+		 * + status
+		 * + currency.getCode()
+		 * + amount
+		 * + timestamp
+		 * + usernamePayer.length
+		 * + usernamePayer
+		 * + usernamePayee.length
+		 * + usernamePayee
+		 * (+ reason.length
+		 * + reason)
+		 */
+		int length = FIXED_OFFSET_HEADER_LENGTH+1+usernamePayerBytes.length+1+usernamePayeeBytes.length;
+		if (status == ServerResponseStatus.FAILURE) {
+			reasonBytes = reason.getBytes(Charset.forName("UTF-8"));
+			length += 1+reasonBytes.length;
+		}
+		
+		byte[] payload = new byte[length];
+		
+		int index = 0;
+		payload[index++] = (byte) getVersion();
+		payload[index++] = getPKIAlgorithm().getCode();
+		payload[index++] = (byte) getKeyNumber();
+		payload[index++] = status.getCode();
+		payload[index++] = currency.getCode();
+		index = putLong(payload, index, amount);
+		index = putLong(payload, index, timestamp);
+		index = putString(payload, index, usernamePayerBytes);
+		index = putString(payload, index, usernamePayeeBytes);
+		if (reasonBytes != null)
+			putString(payload, index, reasonBytes);
+		
+		this.payload = payload;
+	}
+	
+	private void setByReferencePayload() {
+		byte[] reasonBytes = null;
+		
+		/*
+		 * version
+		 * + signatureAlgorithm.getCode()
+		 * + keyNumber
+		 * + status
+		 * + requestDigest
+		 * (+ reason.length
+		 * + reason)
+		 */
+		int length = 1+1+1+1+REQUEST_DIGEST_LENGTH;
+		if (status == ServerResponseStatus.FAILURE) {
+			reasonBytes = reason.getBytes(Charset.forName("UTF-8"));
+			length += 1+reasonBytes.length;
+		}
+		
+		byte[] payload = new byte[length];
+		
+		int index = 0;
+		payload[index++] = (byte) getVersion();
+		payload[index++] = getPKIAlgorithm().getCode();
+		payload[index++] = (byte) getKeyNumber();
+		payload[index++] = status.getCode();
+		System.arraycopy(requestDigest, 0, payload, index, REQUEST_DIGEST_LENGTH);
+		index += REQUEST_DIGEST_LENGTH;
+		if (reasonBytes != null)
+			putString(payload, index, reasonBytes);
+		
+		this.payload = payload;
+	}
+	
+	private static int putLong(byte[] payload, int index, long l) {
+		byte[] bytes = PrimitiveTypeSerializer.getLongAsBytes(l);
+		System.arraycopy(bytes, 0, payload, index, bytes.length);
+		return index + bytes.length;
+	}
+	
+	private static int putString(byte[] payload, int index, byte[] stringBytes) {
+		payload[index++] = (byte) stringBytes.length;
+		System.arraycopy(stringBytes, 0, payload, index, stringBytes.length);
+		return index + stringBytes.length;
+	}
+	
 	public ServerResponseStatus getStatus() {
 		return status;
 	}
@@ -217,6 +421,48 @@ public class PaymentResponse extends SignedSerializableObject {
 	public long getTimestamp() {
 		return timestamp;
 	}
+	
+	/**
+	 * Returns true if this response references its {@link PaymentRequest} by
+	 * digest (version {@link #VERSION_BY_REFERENCE}). In this case, the
+	 * usernames and the currency are null, and the amount and timestamp are
+	 * 0.
+	 */
+	public boolean isByReference() {
+		return getVersion() == VERSION_BY_REFERENCE;
+	}
+	
+	/**
+	 * Returns the SHA-256 digest of the referenced {@link PaymentRequest}'s
+	 * payload, or null if this response is not of version
+	 * {@link #VERSION_BY_REFERENCE}.
+	 */
+	public byte[] getRequestDigest() {
+		return requestDigest;
+	}
+	
+	/**
+	 * Returns true if this response answers the given {@link PaymentRequest}.
+	 * For version {@link #VERSION_BY_REFERENCE}, the digest of the request's
+	 * payload is compared. Otherwise, the usernames, currency, amount and
+	 * timestamp are compared.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the payment request is null
+	 */
+	public boolean matchesRequest(PaymentRequest paymentRequest) throws IllegalArgumentException {
+		if (isByReference())
+			return MessageDigest.isEqual(requestDigest, digest(paymentRequest));
+		
+		if (paymentRequest == null)
+			throw new IllegalArgumentException("The payment request cannot be null.");
+		
+		return usernamePayer.equals(paymentRequest.getUsernamePayer())
+				&& usernamePayee.equals(paymentRequest.getUsernamePayee())
+				&& currency == paymentRequest.getCurrency()
+				&& amount == paymentRequest.getAmount()
+				&& timestamp == paymentRequest.getTimestamp();
+	}
 
 	@Override
 	public PaymentResponse decode(byte[] bytes) throws IllegalArgumentException, UnknownPKIAlgorithmException, UnknownServerResponseStatusException, UnknownCurrencyException, NotSignedException {
@@ -224,6 +470,11 @@ public class PaymentResponse extends SignedSerializableObject {
 			throw new IllegalArgumentException("The argument can't be null.");
 		
 		try {
+			if ((bytes[0] & 0xFF) == VERSION_FIXED_OFFSET)
+				return decodeFixedOffset(bytes);
+			if ((bytes[0] & 0xFF) == VERSION_BY_REFERENCE)
+				return decodeByReference(bytes);
+			
 			int index = 0;
 			
 			int version = bytes[index++] & 0xFF;
@@ -273,16 +524,7 @@ public class PaymentResponse extends SignedSerializableObject {
 			
 			PaymentResponse pr = new PaymentResponse(version, pkiAlgorithm, keyNumber, status, reason, usernamePayer, usernamePayee, currency, amount, timestamp);
 			
-			int signatureLength = bytes.length - index;
-			if (signatureLength == 0) {
-				throw new NotSignedException();
-			} else {
-				byte[] signature = new byte[signatureLength];
-				for (int i=0; i<signature.length; i++) {
-					signature[i] = bytes[index++];
-				}
-				pr.signature = signature;
-			}
+			pr.signature = extractSignature(bytes, index, pkiAlgorithm);
 			
 			return pr;
 		} catch (IndexOutOfBoundsException e) {
@@ -290,6 +532,119 @@ public class PaymentResponse extends SignedSerializableObject {
 		}
 	}
 	
+	private PaymentResponse decodeFixedOffset(byte[] bytes) throws IllegalArgumentException, UnknownPKIAlgorithmException, UnknownServerResponseStatusException, UnknownCurrencyException, NotSignedException {
+		int version = bytes[0] & 0xFF;
+		PKIAlgorithm pkiAlgorithm = PKIAlgorithm.getPKIAlgorithm(bytes[1]);
+		int keyNumber = bytes[2] & 0xFF;
+		
+		ServerResponseStatus status = ServerResponseStatus.getStatus(bytes[STATUS_OFFSET]);
+		Currency currency = Currency.getCurrency(bytes[CURRENCY_OFFSET]);
+		long amount = PrimitiveTypeSerializer.getBytesAsLong(bytes, AMOUNT_OFFSET);
+		long timestamp = PrimitiveTypeSerializer.getBytesAsLong(bytes, TIMESTAMP_OFFSET);
+		
+		int index = FIXED_OFFSET_HEADER_LENGTH;
+		
+		int usernamePayerLength = bytes[index++] & 0xFF;
+		String usernamePayer = new String(bytes, index, usernamePayerLength, Charset.forName("UTF-8"));
+		index += usernamePayerLength;
+		
+		int usernamePayeeLength = bytes[index++] & 0xFF;
+		String usernamePayee = new String(bytes, index, usernamePayeeLength, Charset.forName("UTF-8"));
+		index += usernamePayeeLength;
+		
+		String reason = null;
+		if (status == ServerResponseStatus.FAILURE) {
+			int reasonLength = bytes[index++] & 0xFF;
+			reason = new String(bytes, index, reasonLength, Charset.forName("UTF-8"));
+			index += reasonLength;
+		}
+		
+		PaymentResponse pr = new PaymentResponse(version, pkiAlgorithm, keyNumber, status, reason, usernamePayer, usernamePayee, currency, amount, timestamp);
+		
+		pr.signature = extractSignature(bytes, index, pkiAlgorithm);
+		
+		return pr;
+	}
+	
+	private PaymentResponse decodeByReference(byte[] bytes) throws IllegalArgumentException, UnknownPKIAlgorithmException, UnknownServerResponseStatusException, NotSignedException {
+		int index = 1;
+		PKIAlgorithm pkiAlgorithm = PKIAlgorithm.getPKIAlgorithm(bytes[index++]);
+		int keyNumber = bytes[index++] & 0xFF;
+		ServerResponseStatus status = ServerResponseStatus.getStatus(bytes[index++]);
+		
+		if (bytes.length < index+REQUEST_DIGEST_LENGTH)
+			throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+		
+		byte[] requestDigest = new byte[REQUEST_DIGEST_LENGTH];
+		System.arraycopy(bytes, index, requestDigest, 0, REQUEST_DIGEST_LENGTH);
+		index += REQUEST_DIGEST_LENGTH;
+		
+		String reason = null;
+		if (status == ServerResponseStatus.FAILURE) {
+			int reasonLength = bytes[index++] & 0xFF;
+			reason = new String(bytes, index, reasonLength, Charset.forName("UTF-8"));
+			index += reasonLength;
+		}
+		
+		PaymentResponse pr = new PaymentResponse(pkiAlgorithm, keyNumber, status, reason, requestDigest);
+		
+		pr.signature = extractSignature(bytes, index, pkiAlgorithm);
+		
+		return pr;
+	}
+	
+	/**
+	 * Returns the amount of an encoded payment response of version
+	 * {@link #VERSION_FIXED_OFFSET} without decoding it.
+	 * 
+	 * @param bytes
+	 *            the encoded payment response (or only its payload)
+	 * @throws IllegalArgumentException
+	 *             if bytes is null, too short or not of version
+	 *             {@link #VERSION_FIXED_OFFSET}
+	 */
+	public static long readAmount(byte[] bytes) throws IllegalArgumentException {
+		checkFixedOffset(bytes);
+		return PrimitiveTypeSerializer.getBytesAsLong(bytes, AMOUNT_OFFSET);
+	}
+	
+	/**
+	 * Returns the timestamp of an encoded payment response of version
+	 * {@link #VERSION_FIXED_OFFSET} without decoding it.
+	 * 
+	 * @param bytes
+	 *            the encoded payment response (or only its payload)
+	 * @throws IllegalArgumentException
+	 *             if bytes is null, too short or not of version
+	 *             {@link #VERSION_FIXED_OFFSET}
+	 */
+	public static long readTimestamp(byte[] bytes) throws IllegalArgumentException {
+		checkFixedOffset(bytes);
+		return PrimitiveTypeSerializer.getBytesAsLong(bytes, TIMESTAMP_OFFSET);
+	}
+	
+	/**
+	 * Returns the {@link ServerResponseStatus} of an encoded payment response
+	 * of version {@link #VERSION_FIXED_OFFSET} without decoding it.
+	 * 
+	 * @param bytes
+	 *            the encoded payment response (or only its payload)
+	 * @throws IllegalArgumentException
+	 *             if bytes is null, too short or not of version
+	 *             {@link #VERSION_FIXED_OFFSET}
+	 * @throws UnknownServerResponseStatusException
+	 *             if the status code is not known
+	 */
+	public static ServerResponseStatus readStatus(byte[] bytes) throws IllegalArgumentException, UnknownServerResponseStatusException {
+		checkFixedOffset(bytes);
+		return ServerResponseStatus.getStatus(bytes[STATUS_OFFSET]);
+	}
+	
+	private static void checkFixedOffset(byte[] bytes) throws IllegalArgumentException {
+		if (bytes == null || bytes.length < FIXED_OFFSET_HEADER_LENGTH || (bytes[0] & 0xFF) != VERSION_FIXED_OFFSET)
+			throw new IllegalArgumentException("The given byte array is not a payment response of version "+VERSION_FIXED_OFFSET+".");
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		if (o == null)
@@ -304,6 +659,13 @@ public class PaymentResponse extends SignedSerializableObject {
 			return false;
 		if (getKeyNumber() != pr.getKeyNumber())
 			return false;
+		if (isByReference()) {
+			if (this.status != pr.status)
+				return false;
+			if (this.reason == null ? pr.reason != null : !this.reason.equals(pr.reason))
+				return false;
+			return MessageDigest.isEqual(this.requestDigest, pr.requestDigest);
+		}
 		if (!this.usernamePayer.equals(pr.usernamePayer))
 			return false;
 		if (!this.usernamePayee.equals(pr.usernamePayee))
@@ -39,6 +39,43 @@ public class PrimitiveTypeSerializer {
 				| ((long) (b[7] & 0xFF));
 	}
 	
+	/**
+	 * Returns a long from a given byte array, starting at the given offset.
+	 * This allows reading a long without copying it out of the array first.
+	 */
+	public static long getBytesAsLong(byte[] b, int offset) {
+		return ((long) (b[offset] & 0xff) << 56)
+				| ((long) (b[offset+1] & 0xFF) << 48)
+				| ((long) (b[offset+2] & 0xFF) << 40)
+				| ((long) (b[offset+3] & 0xFF) << 32)
+				| ((long) (b[offset+4] & 0xFF) << 24)
+				| ((long) (b[offset+5] & 0xFF) << 16)
+				| ((long) (b[offset+6] & 0xFF) << 8)
+				| ((long) (b[offset+7] & 0xFF));
+	}
+	
+	/**
+	 * Returns an int as a byte array.
+	 */
+	public static byte[] getIntAsBytes(int i) {
+		return new byte[] {
+				(byte) (i >>> 24),
+				(byte) (i >>> 16),
+				(byte) (i >>> 8),
+				(byte) i
+		};
+	}
+	
+	/**
+	 * Returns an int from a given byte array, starting at the given offset.
+	 */
+	public static int getBytesAsInt(byte[] b, int offset) {
+		return ((b[offset] & 0xFF) << 24)
+				| ((b[offset+1] & 0xFF) << 16)
+				| ((b[offset+2] & 0xFF) << 8)
+				| (b[offset+3] & 0xFF);
+	}
+	
 	/**
 	 * Returns a short as a byte array.
 	 */
@@ -53,7 +90,7 @@ public class PrimitiveTypeSerializer {
 	 * Returns a short from a given byte array.
 	 */
 	public static short getBytesAsShort(byte[] b) {
-		int i = (b[0] & 0xFF << 8)
+		int i = ((b[0] & 0xFF) << 8)
 				| (b[1] & 0xFF);
 		
 		return (short) i;
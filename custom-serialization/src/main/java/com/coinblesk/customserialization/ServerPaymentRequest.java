@@ -1,5 +1,9 @@
 package com.coinblesk.customserialization;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
 import com.coinblesk.customserialization.exceptions.NotSignedException;
 import com.coinblesk.customserialization.exceptions.SerializationException;
@@ -13,17 +17,33 @@ import com.coinblesk.customserialization.exceptions.SerializationException;
  * {@link PaymentRequest}, signed by each party respectively. The latter assures
  * that the payer does not pay less than the payee requested.
  * 
+ * Version {@link #VERSION_MULTI} contains any number of signed
+ * {@link PaymentRequest}s (e.g., for split payments to several merchants).
+ * Their lengths are stored in a table of 4 byte entries in front of them:
+ * 
+ * <pre>
+ * version | nofPaymentRequests (4 bytes) | length (4 bytes) * nofPaymentRequests | PaymentRequest * nofPaymentRequests
+ * </pre>
+ * 
  * @author Jeton Memeti
  * 
  */
 public class ServerPaymentRequest extends SerializableObject {
 	private static final int NOF_BYTES_FOR_PAYLOAD_LENGTH = 2; // 2 bytes for the payload length, up to 65536 bytes
 	
+	/**
+	 * The version carrying any number of {@link PaymentRequest}s behind a
+	 * table of 4 byte lengths.
+	 */
+	public static final int VERSION_MULTI = 2;
+	
 	private byte nofSignatures;
 	
 	private PaymentRequest paymentRequestPayer;
 	private PaymentRequest paymentRequestPayee;
 	
+	private List<PaymentRequest> paymentRequests;
+	
 	//this constructor is needed for the DecoderFactory
 	protected ServerPaymentRequest() {
 	}
@@ -76,6 +96,43 @@ public class ServerPaymentRequest extends SerializableObject {
 		this(1, paymentRequestPayer, paymentRequestPayee);
 	}
 	
+	/**
+	 * Returns a new object of version {@link #VERSION_MULTI}, which contains
+	 * any number of {@link PaymentRequest}s. The first {@link PaymentRequest}
+	 * is returned by {@link #getPaymentRequestPayer()} and the second (if any)
+	 * by {@link #getPaymentRequestPayee()}.
+	 * 
+	 * @param paymentRequests
+	 *            the signed {@link PaymentRequest}s
+	 * @throws IllegalArgumentException
+	 *             if the list is null or empty, or if any
+	 *             {@link PaymentRequest} is null or not signed
+	 */
+	public static ServerPaymentRequest ofPaymentRequests(List<PaymentRequest> paymentRequests) throws IllegalArgumentException {
+		return new ServerPaymentRequest(VERSION_MULTI, paymentRequests);
+	}
+	
+	private ServerPaymentRequest(int version, List<PaymentRequest> paymentRequests) throws IllegalArgumentException {
+		super(version);
+		
+		if (paymentRequests == null || paymentRequests.isEmpty())
+			throw new IllegalArgumentException("The Payment Requests can't be null or empty.");
+		
+		for (PaymentRequest paymentRequest : paymentRequests) {
+			if (paymentRequest == null)
+				throw new IllegalArgumentException("The Payment Requests can't contain null.");
+			if (paymentRequest.getPayload() == null || paymentRequest.getPayload().length == 0)
+				throw new IllegalArgumentException("The payload can't be null or empty.");
+			if (paymentRequest.getSignature() == null || paymentRequest.getSignature().length == 0)
+				throw new IllegalArgumentException("The Payment Requests must be signed.");
+		}
+		
+		this.paymentRequests = Collections.unmodifiableList(new ArrayList<PaymentRequest>(paymentRequests));
+		this.paymentRequestPayer = paymentRequests.get(0);
+		if (paymentRequests.size() > 1)
+			this.paymentRequestPayee = paymentRequests.get(1);
+	}
+	
 	private void checkParameters(byte nofSignatures, PaymentRequest paymentRequestPayer) throws IllegalArgumentException {
 		if (nofSignatures <= 0 || nofSignatures > 2)
 			throw new IllegalArgumentException("The Server Payment Request can only handle 1 or 2 signatures.");
@@ -110,12 +167,35 @@ public class ServerPaymentRequest extends SerializableObject {
 	
 	/**
 	 * Returns the number of signatures or {@link PaymentRequest} this object
-	 * contains.
+	 * contains. Returns 0 for objects of version {@link #VERSION_MULTI}, see
+	 * {@link #getNofPaymentRequests()}.
 	 */
 	public byte getNofSignatures() {
 		return nofSignatures;
 	}
 	
+	/**
+	 * Returns the number of {@link PaymentRequest}s this object contains.
+	 */
+	public int getNofPaymentRequests() {
+		return paymentRequests != null ? paymentRequests.size() : nofSignatures;
+	}
+	
+	/**
+	 * Returns all {@link PaymentRequest}s this object contains, starting with
+	 * the payer's {@link PaymentRequest}.
+	 */
+	public List<PaymentRequest> getPaymentRequests() {
+		if (paymentRequests != null)
+			return paymentRequests;
+		
+		List<PaymentRequest> result = new ArrayList<PaymentRequest>(2);
+		result.add(paymentRequestPayer);
+		if (nofSignatures == 2)
+			result.add(paymentRequestPayee);
+		return Collections.unmodifiableList(result);
+	}
+	
 	/**
 	 * Returns the payer's {@link PaymentRequest}. This object is always set.
 	 */
@@ -135,6 +215,9 @@ public class ServerPaymentRequest extends SerializableObject {
 
 	@Override
 	public byte[] encode() throws NotSignedException {
+		if (getVersion() == VERSION_MULTI)
+			return encodeMulti();
+		
 		int outputLength;
 		if (nofSignatures == 1) {
 			/*
@@ -186,12 +269,52 @@ public class ServerPaymentRequest extends SerializableObject {
 		return result;
 	}
 
+	private byte[] encodeMulti() throws NotSignedException {
+		int nofPaymentRequests = paymentRequests.size();
+		byte[][] encoded = new byte[nofPaymentRequests][];
+		
+		/*
+		 * version
+		 * + nofPaymentRequests
+		 * + length * nofPaymentRequests
+		 * + paymentRequest * nofPaymentRequests
+		 */
+		int outputLength = 1+4+4*nofPaymentRequests;
+		for (int i=0; i<nofPaymentRequests; i++) {
+			encoded[i] = paymentRequests.get(i).encode();
+			outputLength += encoded[i].length;
+		}
+		
+		byte[] result = new byte[outputLength];
+		int index = 0;
+		result[index++] = (byte) getVersion();
+		index = putInt(result, index, nofPaymentRequests);
+		for (byte[] paymentRequest : encoded) {
+			index = putInt(result, index, paymentRequest.length);
+		}
+		for (byte[] paymentRequest : encoded) {
+			System.arraycopy(paymentRequest, 0, result, index, paymentRequest.length);
+			index += paymentRequest.length;
+		}
+		
+		return result;
+	}
+	
+	private static int putInt(byte[] result, int index, int i) {
+		byte[] bytes = PrimitiveTypeSerializer.getIntAsBytes(i);
+		System.arraycopy(bytes, 0, result, index, bytes.length);
+		return index + bytes.length;
+	}
+	
 	@Override
 	public ServerPaymentRequest decode(byte[] bytes) throws IllegalArgumentException, SerializationException {
 		if (bytes == null)
 			throw new IllegalArgumentException("The argument can't be null.");
 		
 		try {
+			if ((bytes[0] & 0xFF) == VERSION_MULTI)
+				return decodeMulti(bytes);
+			
 			int index = 0;
 			
 			int version = (bytes[index++] & 0xFF);
@@ -202,7 +325,7 @@ public class ServerPaymentRequest extends SerializableObject {
 				indicatedLengthPayer[i] = bytes[index++];
 			}
 			
-			int paymentRequestPayerLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedLengthPayer) & 0xFF);
+			int paymentRequestPayerLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedLengthPayer) & 0xFFFF);
 			byte[] paymentRequestPayerBytes = new byte[paymentRequestPayerLength];
 			for (int i=0; i<paymentRequestPayerLength; i++) {
 				paymentRequestPayerBytes[i] = bytes[index++];
@@ -218,7 +341,7 @@ public class ServerPaymentRequest extends SerializableObject {
 					indicatedLengthPayee[i] = bytes[index++];
 				}
 				
-				int paymentRequestPayeeLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedLengthPayee) & 0xFF);
+				int paymentRequestPayeeLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedLengthPayee) & 0xFFFF);
 				byte[] paymentRequestPayeeBytes = new byte[paymentRequestPayeeLength];
 				for (int i=0; i<paymentRequestPayeeLength; i++) {
 					paymentRequestPayeeBytes[i] = bytes[index++];
@@ -234,6 +357,35 @@ public class ServerPaymentRequest extends SerializableObject {
 		}
 	}
 	
+	private ServerPaymentRequest decodeMulti(byte[] bytes) throws IllegalArgumentException, SerializationException {
+		int index = 1;
+		int nofPaymentRequests = PrimitiveTypeSerializer.getBytesAsInt(bytes, index);
+		index += 4;
+		if (nofPaymentRequests <= 0 || nofPaymentRequests > (bytes.length - index) / 4)
+			throw new IllegalArgumentException("The given byte array is corrupt.");
+		
+		int offset = index + 4*nofPaymentRequests;
+		List<PaymentRequest> paymentRequests = new ArrayList<PaymentRequest>(nofPaymentRequests);
+		for (int i=0; i<nofPaymentRequests; i++) {
+			int length = PrimitiveTypeSerializer.getBytesAsInt(bytes, index);
+			index += 4;
+			if (length <= 0 || length > bytes.length - offset)
+				throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+			
+			byte[] paymentRequestBytes = new byte[length];
+			System.arraycopy(bytes, offset, paymentRequestBytes, 0, length);
+			offset += length;
+			
+			PaymentRequest paymentRequest = DecoderFactory.decode(PaymentRequest.class, paymentRequestBytes);
+			paymentRequests.add(paymentRequest);
+		}
+		
+		if (offset != bytes.length)
+			throw new IllegalArgumentException("The given byte array is corrupt (trailing bytes).");
+		
+		return new ServerPaymentRequest(VERSION_MULTI, paymentRequests);
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		if (o == null)
@@ -246,6 +398,8 @@ public class ServerPaymentRequest extends SerializableObject {
 			return false;
 		if (this.nofSignatures != spr.nofSignatures)
 			return false;
+		if (getVersion() == VERSION_MULTI)
+			return paymentRequests.equals(spr.paymentRequests);
 		if (!getPaymentRequestPayer().equals(spr.getPaymentRequestPayer()))
 			return false;
 		if (nofSignatures == 2) {
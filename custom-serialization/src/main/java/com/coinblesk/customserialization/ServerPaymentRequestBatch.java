@@ -0,0 +1,249 @@
+package com.coinblesk.customserialization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class is a container for many {@link ServerPaymentRequest}s, e.g., for
+ * the traffic between servers. The usernames of all contained
+ * {@link PaymentRequest}s are stored once in a {@link UsernameTable} and
+ * replaced by 2 byte references. When decoding, the references are replaced
+ * by the usernames again, so that every {@link PaymentRequest} is
+ * byte-identical to its original encoding and its signature can be verified.
+ * 
+ * <pre>
+ * version | username table | nofServerPaymentRequests (4 bytes)
+ * per ServerPaymentRequest: nofSignatures | per PaymentRequest: entry
+ * entry: length (2 bytes) | usernameOffset | payerReference (2 bytes) | payeeReference (2 bytes) | PaymentRequest without usernames
+ * </pre>
+ */
+public class ServerPaymentRequestBatch extends SerializableObject {
+	private static final int ENTRY_HEADER_LENGTH = 2+1+2+2;
+	
+	private List<ServerPaymentRequest> serverPaymentRequests;
+	
+	//this constructor is needed for the DecoderFactory
+	protected ServerPaymentRequestBatch() {
+	}
+	
+	/**
+	 * This constructor instantiates a new object.
+	 * 
+	 * @param serverPaymentRequests
+	 *            the {@link ServerPaymentRequest}s of version 1 to be sent
+	 * @throws IllegalArgumentException
+	 *             if the list is null, empty or contains null or a
+	 *             {@link ServerPaymentRequest} of another version, or if the
+	 *             usernames do not fit into a {@link UsernameTable}, i.e.,
+	 *             there are more than {@link UsernameTable#MAX_SIZE} distinct
+	 *             ones
+	 */
+	public ServerPaymentRequestBatch(List<ServerPaymentRequest> serverPaymentRequests) throws IllegalArgumentException {
+		this(1, serverPaymentRequests);
+	}
+	
+	private ServerPaymentRequestBatch(int version, List<ServerPaymentRequest> serverPaymentRequests) throws IllegalArgumentException {
+		super(version);
+		
+		if (serverPaymentRequests == null || serverPaymentRequests.isEmpty())
+			throw new IllegalArgumentException("The server payment requests cannot be null or empty.");
+		
+		for (ServerPaymentRequest spr : serverPaymentRequests) {
+			if (spr == null)
+				throw new IllegalArgumentException("The server payment requests cannot contain null.");
+			if (spr.getVersion() != 1)
+				throw new IllegalArgumentException("Only server payment requests of version 1 can be batched.");
+		}
+		
+		// the same checks as in encode(), which therefore cannot fail
+		UsernameTable table = new UsernameTable();
+		for (ServerPaymentRequest spr : serverPaymentRequests) {
+			for (PaymentRequest pr : getPaymentRequests(spr)) {
+				try {
+					table.add(pr.getUsernamePayer());
+					table.add(pr.getUsernamePayee());
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("The server payment requests cannot be batched ("+e.getMessage()+").");
+				}
+			}
+		}
+		
+		this.serverPaymentRequests = Collections.unmodifiableList(new ArrayList<ServerPaymentRequest>(serverPaymentRequests));
+	}
+	
+	/**
+	 * Returns the contained {@link ServerPaymentRequest}s.
+	 */
+	public List<ServerPaymentRequest> getServerPaymentRequests() {
+		return serverPaymentRequests;
+	}
+	
+	@Override
+	public byte[] encode() throws NotSignedException {
+		UsernameTable table = new UsernameTable();
+		List<byte[]> encodedRequests = new ArrayList<byte[]>();
+		
+		int length = 1+4;
+		try {
+			for (ServerPaymentRequest spr : serverPaymentRequests) {
+				length += 1;
+				for (PaymentRequest pr : getPaymentRequests(spr)) {
+					table.add(pr.getUsernamePayer());
+					table.add(pr.getUsernamePayee());
+					byte[] encoded = pr.encode();
+					encodedRequests.add(encoded);
+					length += ENTRY_HEADER_LENGTH + encoded.length - getUsernamesLength(encoded, pr.getUsernameOffset());
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// not possible, the usernames have been checked by the constructor
+			throw new RuntimeException(e);
+		}
+		length += table.getEncodedLength();
+		
+		byte[] result = new byte[length];
+		int index = 0;
+		result[index++] = (byte) getVersion();
+		index = table.encode(result, index);
+		index = putInt(result, index, serverPaymentRequests.size());
+		
+		int i = 0;
+		for (ServerPaymentRequest spr : serverPaymentRequests) {
+			result[index++] = spr.getNofSignatures();
+			for (PaymentRequest pr : getPaymentRequests(spr)) {
+				byte[] encoded = encodedRequests.get(i++);
+				int usernameOffset = pr.getUsernameOffset();
+				int usernamesEnd = usernameOffset + getUsernamesLength(encoded, usernameOffset);
+				int entryLength = encoded.length - (usernamesEnd - usernameOffset);
+				
+				index = putShort(result, index, entryLength);
+				result[index++] = (byte) usernameOffset;
+				index = putShort(result, index, table.getReference(pr.getUsernamePayer()));
+				index = putShort(result, index, table.getReference(pr.getUsernamePayee()));
+				System.arraycopy(encoded, 0, result, index, usernameOffset);
+				index += usernameOffset;
+				System.arraycopy(encoded, usernamesEnd, result, index, encoded.length - usernamesEnd);
+				index += encoded.length - usernamesEnd;
+			}
+		}
+		
+		return result;
+	}
+	
+	private static List<PaymentRequest> getPaymentRequests(ServerPaymentRequest spr) {
+		List<PaymentRequest> paymentRequests = new ArrayList<PaymentRequest>(2);
+		paymentRequests.add(spr.getPaymentRequestPayer());
+		if (spr.getNofSignatures() == 2)
+			paymentRequests.add(spr.getPaymentRequestPayee());
+		return paymentRequests;
+	}
+	
+	/**
+	 * Returns the number of bytes of both usernames including their length
+	 * bytes.
+	 */
+	private static int getUsernamesLength(byte[] encoded, int usernameOffset) {
+		int payerLength = encoded[usernameOffset] & 0xFF;
+		int payeeLength = encoded[usernameOffset+1+payerLength] & 0xFF;
+		return 1+payerLength+1+payeeLength;
+	}
+	
+	private static int putShort(byte[] result, int index, int s) {
+		result[index++] = (byte) (s >>> 8);
+		result[index++] = (byte) s;
+		return index;
+	}
+	
+	private static int putInt(byte[] result, int index, int i) {
+		byte[] bytes = PrimitiveTypeSerializer.getIntAsBytes(i);
+		System.arraycopy(bytes, 0, result, index, bytes.length);
+		return index + bytes.length;
+	}
+	
+	private static int getShort(byte[] bytes, int index) {
+		return ((bytes[index] & 0xFF) << 8) | (bytes[index+1] & 0xFF);
+	}
+	
+	@Override
+	public ServerPaymentRequestBatch decode(byte[] bytes) throws IllegalArgumentException, SerializationException {
+		if (bytes == null)
+			throw new IllegalArgumentException("The argument can't be null.");
+		
+		try {
+			int index = 0;
+			int version = bytes[index++] & 0xFF;
+			UsernameTable table = UsernameTable.decode(bytes, index);
+			index += table.getEncodedLength();
+			
+			int nofServerPaymentRequests = PrimitiveTypeSerializer.getBytesAsInt(bytes, index);
+			index += 4;
+			if (nofServerPaymentRequests <= 0 || nofServerPaymentRequests > bytes.length)
+				throw new IllegalArgumentException("The given byte array is corrupt.");
+			
+			List<ServerPaymentRequest> serverPaymentRequests = new ArrayList<ServerPaymentRequest>(nofServerPaymentRequests);
+			for (int i=0; i<nofServerPaymentRequests; i++) {
+				byte nofSignatures = bytes[index++];
+				if (nofSignatures != 1 && nofSignatures != 2)
+					throw new IllegalArgumentException("The given byte array is corrupt.");
+				
+				PaymentRequest[] paymentRequests = new PaymentRequest[nofSignatures];
+				for (int j=0; j<nofSignatures; j++) {
+					int entryLength = getShort(bytes, index);
+					int usernameOffset = bytes[index+2] & 0xFF;
+					byte[] payer = table.getUsernameBytes(getShort(bytes, index+3));
+					byte[] payee = table.getUsernameBytes(getShort(bytes, index+5));
+					index += ENTRY_HEADER_LENGTH;
+					if (usernameOffset > entryLength || index + entryLength > bytes.length)
+						throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+					
+					byte[] expanded = new byte[entryLength+1+payer.length+1+payee.length];
+					int position = 0;
+					System.arraycopy(bytes, index, expanded, position, usernameOffset);
+					position += usernameOffset;
+					expanded[position++] = (byte) payer.length;
+					System.arraycopy(payer, 0, expanded, position, payer.length);
+					position += payer.length;
+					expanded[position++] = (byte) payee.length;
+					System.arraycopy(payee, 0, expanded, position, payee.length);
+					position += payee.length;
+					System.arraycopy(bytes, index+usernameOffset, expanded, position, entryLength-usernameOffset);
+					index += entryLength;
+					
+					paymentRequests[j] = DecoderFactory.decode(PaymentRequest.class, expanded);
+				}
+				
+				if (nofSignatures == 1)
+					serverPaymentRequests.add(new ServerPaymentRequest(paymentRequests[0]));
+				else
+					serverPaymentRequests.add(new ServerPaymentRequest(paymentRequests[0], paymentRequests[1]));
+			}
+			
+			if (index != bytes.length)
+				throw new IllegalArgumentException("The given byte array is corrupt (trailing bytes).");
+			
+			return new ServerPaymentRequestBatch(version, serverPaymentRequests);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+		}
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (o == null)
+			return false;
+		if (!(o instanceof ServerPaymentRequestBatch))
+			return false;
+		
+		ServerPaymentRequestBatch batch = (ServerPaymentRequestBatch) o;
+		if (getVersion() != batch.getVersion())
+			return false;
+		
+		return serverPaymentRequests.equals(batch.serverPaymentRequests);
+	}
+
+}
@@ -1,5 +1,9 @@
 package com.coinblesk.customserialization;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
 import com.coinblesk.customserialization.exceptions.NotSignedException;
 import com.coinblesk.customserialization.exceptions.SerializationException;
@@ -17,17 +21,33 @@ import com.coinblesk.customserialization.exceptions.SerializationException;
  * with its server's public key. The payee's {@link PaymentResponse} is then
  * signed with its server's public key.
  * 
+ * Version {@link #VERSION_MULTI} contains any number of signed
+ * {@link PaymentResponse}s (e.g., for aggregated settlements). Their lengths
+ * are stored in a table of 4 byte entries in front of them:
+ * 
+ * <pre>
+ * version | nofPaymentResponses (4 bytes) | length (4 bytes) * nofPaymentResponses | PaymentResponse * nofPaymentResponses
+ * </pre>
+ * 
  * @author Jeton Memeti
  * 
  */
 public class ServerPaymentResponse extends SerializableObject {
 	private static final int NOF_BYTES_FOR_PAYMENT_RESPONSE_LENGTH = 2; // 2 bytes for the payload length, up to 65536 bytes
 	
+	/**
+	 * The version carrying any number of {@link PaymentResponse}s behind a
+	 * table of 4 byte lengths.
+	 */
+	public static final int VERSION_MULTI = 2;
+	
 	private byte nofPaymentResponses;
 	
 	private PaymentResponse paymentResponsePayer;
 	private PaymentResponse paymentResponsePayee;
 	
+	private List<PaymentResponse> paymentResponses;
+	
 	//this constructor is needed for the DecoderFactory
 	protected ServerPaymentResponse() {
 	}
@@ -87,6 +107,43 @@ public class ServerPaymentResponse extends SerializableObject {
 		this.nofPaymentResponses = 2;
 	}
 	
+	/**
+	 * Returns a new object of version {@link #VERSION_MULTI}, which contains
+	 * any number of {@link PaymentResponse}s. The first {@link PaymentResponse}
+	 * is returned by {@link #getPaymentResponsePayer()} and the second (if any)
+	 * by {@link #getPaymentResponsePayee()}.
+	 * 
+	 * @param paymentResponses
+	 *            the signed {@link PaymentResponse}s
+	 * @throws IllegalArgumentException
+	 *             if the list is null or empty, or if any
+	 *             {@link PaymentResponse} is null or not signed
+	 */
+	public static ServerPaymentResponse ofPaymentResponses(List<PaymentResponse> paymentResponses) throws IllegalArgumentException {
+		return new ServerPaymentResponse(VERSION_MULTI, paymentResponses);
+	}
+	
+	private ServerPaymentResponse(int version, List<PaymentResponse> paymentResponses) throws IllegalArgumentException {
+		super(version);
+		
+		if (paymentResponses == null || paymentResponses.isEmpty())
+			throw new IllegalArgumentException("The payment responses can't be null or empty.");
+		
+		for (PaymentResponse paymentResponse : paymentResponses) {
+			if (paymentResponse == null)
+				throw new IllegalArgumentException("The payment responses can't contain null.");
+			if (paymentResponse.getPayload() == null || paymentResponse.getPayload().length == 0)
+				throw new IllegalArgumentException("The payment response payload can't be null or empty.");
+			if (paymentResponse.getSignature() == null || paymentResponse.getSignature().length == 0)
+				throw new IllegalArgumentException("The payment responses must be signed.");
+		}
+		
+		this.paymentResponses = Collections.unmodifiableList(new ArrayList<PaymentResponse>(paymentResponses));
+		this.paymentResponsePayer = paymentResponses.get(0);
+		if (paymentResponses.size() > 1)
+			this.paymentResponsePayee = paymentResponses.get(1);
+	}
+	
 	private static void checkParameters(PaymentResponse paymentResponse, String role) throws IllegalArgumentException {
 		if (paymentResponse == null)
 			throw new IllegalArgumentException("The payment response cannot be null.");
@@ -107,11 +164,28 @@ public class ServerPaymentResponse extends SerializableObject {
 	/**
 	 * Returns the number {@link PaymentResponse}s contained in this object
 	 * (i.e., how many servers have signed the {@link PaymentResponse}).
+	 * Returns 0 for objects of version {@link #VERSION_MULTI}, see
+	 * {@link #getPaymentResponses()}.
 	 */
 	public byte getNofPaymentResponses() {
 		return nofPaymentResponses;
 	}
 	
+	/**
+	 * Returns all {@link PaymentResponse}s this object contains, starting with
+	 * the payer's {@link PaymentResponse}.
+	 */
+	public List<PaymentResponse> getPaymentResponses() {
+		if (paymentResponses != null)
+			return paymentResponses;
+		
+		List<PaymentResponse> result = new ArrayList<PaymentResponse>(2);
+		result.add(paymentResponsePayer);
+		if (nofPaymentResponses == 2)
+			result.add(paymentResponsePayee);
+		return Collections.unmodifiableList(result);
+	}
+	
 	/**
 	 * Returns the payer's {@link PaymentResponse} signed with his server's
 	 * public key. This object is always set. If nogPaymentResponses is 1, this
@@ -133,6 +207,9 @@ public class ServerPaymentResponse extends SerializableObject {
 
 	@Override
 	public byte[] encode() throws NotSignedException {
+		if (getVersion() == VERSION_MULTI)
+			return encodeMulti();
+		
 		byte[] paymentResponsePayerRaw = null;
 		byte[] paymentResponsePayeeRaw = null;
 		
@@ -187,12 +264,52 @@ public class ServerPaymentResponse extends SerializableObject {
 		return result;
 	}
 	
+	private byte[] encodeMulti() throws NotSignedException {
+		int nofPaymentResponses = paymentResponses.size();
+		byte[][] encoded = new byte[nofPaymentResponses][];
+		
+		/*
+		 * version
+		 * + nofPaymentResponses
+		 * + length * nofPaymentResponses
+		 * + paymentResponse * nofPaymentResponses
+		 */
+		int length = 1+4+4*nofPaymentResponses;
+		for (int i=0; i<nofPaymentResponses; i++) {
+			encoded[i] = paymentResponses.get(i).encode();
+			length += encoded[i].length;
+		}
+		
+		byte[] result = new byte[length];
+		int index = 0;
+		result[index++] = (byte) getVersion();
+		index = putInt(result, index, nofPaymentResponses);
+		for (byte[] paymentResponse : encoded) {
+			index = putInt(result, index, paymentResponse.length);
+		}
+		for (byte[] paymentResponse : encoded) {
+			System.arraycopy(paymentResponse, 0, result, index, paymentResponse.length);
+			index += paymentResponse.length;
+		}
+		
+		return result;
+	}
+	
+	private static int putInt(byte[] result, int index, int i) {
+		byte[] bytes = PrimitiveTypeSerializer.getIntAsBytes(i);
+		System.arraycopy(bytes, 0, result, index, bytes.length);
+		return index + bytes.length;
+	}
+	
 	@Override
 	public ServerPaymentResponse decode(byte[] bytes) throws IllegalArgumentException, SerializationException {
 		if (bytes == null)
 			throw new IllegalArgumentException("The argument can't be null.");
 		
 		try {
+			if ((bytes[0] & 0xFF) == VERSION_MULTI)
+				return decodeMulti(bytes);
+			
 			int index = 0;
 			
 			int version = (bytes[index++] & 0xFF);
@@ -203,7 +320,7 @@ public class ServerPaymentResponse extends SerializableObject {
 				indicatedPaymentResponsePayerLengthBytes[i] = bytes[index++];
 			}
 			
-			int paymentResponsePayerLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedPaymentResponsePayerLengthBytes) & 0xFF);
+			int paymentResponsePayerLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedPaymentResponsePayerLengthBytes) & 0xFFFF);
 			byte[] paymentResponsePayerBytes = new byte[paymentResponsePayerLength];
 			for (int i=0; i<paymentResponsePayerLength; i++) {
 				paymentResponsePayerBytes[i] = bytes[index++];
@@ -218,7 +335,7 @@ public class ServerPaymentResponse extends SerializableObject {
 					indicatedPaymentResponsePayeeLengthBytes[i] = bytes[index++];
 				}
 				
-				int paymentResponsePayeeLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedPaymentResponsePayeeLengthBytes) & 0xFF);
+				int paymentResponsePayeeLength = (PrimitiveTypeSerializer.getBytesAsShort(indicatedPaymentResponsePayeeLengthBytes) & 0xFFFF);
 				byte[] paymentResponsePayeeBytes = new byte[paymentResponsePayeeLength];
 				for (int i=0; i<paymentResponsePayeeLength; i++) {
 					paymentResponsePayeeBytes[i] = bytes[index++];
@@ -234,6 +351,35 @@ public class ServerPaymentResponse extends SerializableObject {
 		}
 	}
 	
+	private ServerPaymentResponse decodeMulti(byte[] bytes) throws IllegalArgumentException, SerializationException {
+		int index = 1;
+		int nofPaymentResponses = PrimitiveTypeSerializer.getBytesAsInt(bytes, index);
+		index += 4;
+		if (nofPaymentResponses <= 0 || nofPaymentResponses > (bytes.length - index) / 4)
+			throw new IllegalArgumentException("The given byte array is corrupt.");
+		
+		int offset = index + 4*nofPaymentResponses;
+		List<PaymentResponse> paymentResponses = new ArrayList<PaymentResponse>(nofPaymentResponses);
+		for (int i=0; i<nofPaymentResponses; i++) {
+			int length = PrimitiveTypeSerializer.getBytesAsInt(bytes, index);
+			index += 4;
+			if (length <= 0 || length > bytes.length - offset)
+				throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+			
+			byte[] paymentResponseBytes = new byte[length];
+			System.arraycopy(bytes, offset, paymentResponseBytes, 0, length);
+			offset += length;
+			
+			PaymentResponse paymentResponse = DecoderFactory.decode(PaymentResponse.class, paymentResponseBytes);
+			paymentResponses.add(paymentResponse);
+		}
+		
+		if (offset != bytes.length)
+			throw new IllegalArgumentException("The given byte array is corrupt (trailing bytes).");
+		
+		return new ServerPaymentResponse(VERSION_MULTI, paymentResponses);
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		if (o == null)
@@ -246,6 +392,8 @@ public class ServerPaymentResponse extends SerializableObject {
 			return false;
 		if (this.nofPaymentResponses != spr.nofPaymentResponses)
 			return false;
+		if (getVersion() == VERSION_MULTI)
+			return paymentResponses.equals(spr.paymentResponses);
 		if (!getPaymentResponsePayer().equals(spr.getPaymentResponsePayer()))
 			return false;
 		if (nofPaymentResponses == 2) {
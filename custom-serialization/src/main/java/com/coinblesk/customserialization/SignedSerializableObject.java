@@ -4,9 +4,17 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
+import com.coinblesk.customserialization.concurrent.AsyncCallback;
+import com.coinblesk.customserialization.concurrent.CallbackFuture;
+import com.coinblesk.customserialization.concurrent.CryptoExecutor;
+import com.coinblesk.customserialization.crypto.PrecomputationCache;
 import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
 import com.coinblesk.customserialization.exceptions.NotSignedException;
 
@@ -105,10 +113,33 @@ public abstract class SignedSerializableObject extends SerializableObject {
 	 *             if an error occured during the signing phase
 	 */
 	public void sign(PrivateKey privateKey) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		sign(privateKey, null);
+	}
+	
+	/**
+	 * Signs this object with the given private key, taking the randomness of
+	 * the signature from the given source. A seeded source makes the
+	 * signatures reproducible, e.g., for generated test data.
+	 * 
+	 * @param privateKey
+	 *            the private key used to sign the object
+	 * @param random
+	 *            the source of randomness, or null for the default source
+	 * @see #sign(PrivateKey)
+	 */
+	public void sign(PrivateKey privateKey, SecureRandom random) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
 		Signature sig = Signature.getInstance(pkiAlgorithm.getSignatureAlgorithm());
-		sig.initSign(privateKey);
+		if (random == null)
+			sig.initSign(privateKey);
+		else
+			sig.initSign(privateKey, random);
 		sig.update(payload);
-		signature = sig.sign();
+		
+		byte[] signature = sig.sign();
+		if (pkiAlgorithm.isP1363Encoded())
+			signature = ECDSASignatureConverter.toP1363(signature, pkiAlgorithm.getSignatureLength());
+		
+		this.signature = signature;
 	}
 	
 	/**
@@ -136,7 +167,103 @@ public abstract class SignedSerializableObject extends SerializableObject {
 		Signature sig = Signature.getInstance(pkiAlgorithm.getSignatureAlgorithm());
 		sig.initVerify(publicKey);
 		sig.update(payload);
-		return sig.verify(signature);
+		
+		if (pkiAlgorithm.isP1363Encoded())
+			return sig.verify(ECDSASignatureConverter.toDER(signature));
+		else
+			return sig.verify(signature);
+	}
+	
+	/**
+	 * Verifies the signature contained in this object using the precomputed
+	 * table for the given public key in the cache. This is faster than
+	 * {@link #verify(PublicKey)} if the same public key is used to verify many
+	 * objects.
+	 * 
+	 * @param publicKey
+	 *            the public key to be used for the verification
+	 * @param cache
+	 *            the cache holding the precomputed tables
+	 * @return true if the signature is valid for the given payload, false
+	 *         otherwise
+	 * @see #verify(PublicKey)
+	 */
+	public boolean verify(PublicKey publicKey, PrecomputationCache cache) throws NotSignedException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		return cache.verify(this, publicKey);
+	}
+	
+	/**
+	 * Signs this object on the {@link CryptoExecutor#getDefault() default
+	 * executor}.
+	 * 
+	 * @see #signAsync(PrivateKey, Executor, AsyncCallback)
+	 */
+	public Future<Void> signAsync(PrivateKey privateKey) {
+		return signAsync(privateKey, CryptoExecutor.getDefault(), null);
+	}
+	
+	/**
+	 * Signs this object on the given executor, so that the calling thread
+	 * (e.g., an event loop) is not blocked. The object must not be encoded or
+	 * signed again before the returned future has completed.
+	 * 
+	 * @param privateKey
+	 *            the private key used to sign the object
+	 * @param executor
+	 *            the executor to run the signing on
+	 * @param callback
+	 *            the callback to be notified on completion, or null
+	 * @return the future which completes when the object has been signed,
+	 *         or fails with one of the exceptions of {@link #sign(PrivateKey)}
+	 * @throws java.util.concurrent.RejectedExecutionException
+	 *             if the executor does not accept the task
+	 */
+	public Future<Void> signAsync(final PrivateKey privateKey, Executor executor, AsyncCallback<Void> callback) {
+		CallbackFuture<Void> future = new CallbackFuture<Void>(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				sign(privateKey);
+				return null;
+			}
+		}, callback);
+		executor.execute(future);
+		return future;
+	}
+	
+	/**
+	 * Verifies the signature on the {@link CryptoExecutor#getDefault()
+	 * default executor}.
+	 * 
+	 * @see #verifyAsync(PublicKey, Executor, AsyncCallback)
+	 */
+	public Future<Boolean> verifyAsync(PublicKey publicKey) {
+		return verifyAsync(publicKey, CryptoExecutor.getDefault(), null);
+	}
+	
+	/**
+	 * Verifies the signature on the given executor, so that the calling
+	 * thread (e.g., an event loop) is not blocked.
+	 * 
+	 * @param publicKey
+	 *            the public key to be used for the verification
+	 * @param executor
+	 *            the executor to run the verification on
+	 * @param callback
+	 *            the callback to be notified on completion, or null
+	 * @return the future holding the result of {@link #verify(PublicKey)}, or
+	 *         failing with one of its exceptions
+	 * @throws java.util.concurrent.RejectedExecutionException
+	 *             if the executor does not accept the task
+	 */
+	public Future<Boolean> verifyAsync(final PublicKey publicKey, Executor executor, AsyncCallback<Boolean> callback) {
+		CallbackFuture<Boolean> future = new CallbackFuture<Boolean>(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return verify(publicKey);
+			}
+		}, callback);
+		executor.execute(future);
+		return future;
 	}
 	
 	/**
@@ -162,5 +289,30 @@ public abstract class SignedSerializableObject extends SerializableObject {
 		
 		return result;
 	}
+	
+	/**
+	 * Returns the signature starting at the given index of an encoded
+	 * {@link SignedSerializableObject}. If the {@link PKIAlgorithm} produces
+	 * signatures of a fixed length, the remaining bytes must match this
+	 * length.
+	 * 
+	 * @throws NotSignedException
+	 *             if there are no bytes left for the signature
+	 * @throws IllegalArgumentException
+	 *             if the number of remaining bytes does not match the
+	 *             signature length of the {@link PKIAlgorithm}
+	 */
+	protected static byte[] extractSignature(byte[] bytes, int index, PKIAlgorithm pkiAlgorithm) throws NotSignedException, IllegalArgumentException {
+		int signatureLength = bytes.length - index;
+		if (signatureLength <= 0)
+			throw new NotSignedException();
+		
+		if (pkiAlgorithm.getSignatureLength() > 0 && signatureLength != pkiAlgorithm.getSignatureLength())
+			throw new IllegalArgumentException("The given byte array is corrupt (the signature must be "+pkiAlgorithm.getSignatureLength()+" bytes long).");
+		
+		byte[] signature = new byte[signatureLength];
+		System.arraycopy(bytes, index, signature, 0, signatureLength);
+		return signature;
+	}
 
 }
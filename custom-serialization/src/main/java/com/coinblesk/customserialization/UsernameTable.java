@@ -0,0 +1,155 @@
+package com.coinblesk.customserialization;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class assigns a small integer reference to every distinct username,
+ * so that a container with many messages has to carry every username only
+ * once. The references are assigned in the order the usernames are added,
+ * starting at 0.
+ * 
+ * The table is serialized as the number of entries (2 bytes) followed by the
+ * length (1 byte) and the UTF-8 bytes of every username.
+ */
+public class UsernameTable {
+	
+	/**
+	 * The maximum number of usernames a table can hold.
+	 */
+	public static final int MAX_SIZE = 0xFFFF;
+	
+	private final List<String> usernames = new ArrayList<String>();
+	private final List<byte[]> usernameBytes = new ArrayList<byte[]>();
+	private final Map<String, Integer> references = new HashMap<String, Integer>();
+	private int encodedLength = 2;
+	
+	/**
+	 * Adds the given username if it is not yet contained in the table.
+	 * 
+	 * @return the reference of the username
+	 * @throws IllegalArgumentException
+	 *             if the username is null, empty, longer than 255 bytes, or if
+	 *             the table is full
+	 */
+	public int add(String username) throws IllegalArgumentException {
+		Integer reference = references.get(username);
+		if (reference != null)
+			return reference;
+		
+		if (username == null || username.length() == 0)
+			throw new IllegalArgumentException("The username cannot be null or empty.");
+		
+		byte[] bytes = username.getBytes(Charset.forName("UTF-8"));
+		if (bytes.length > 255)
+			throw new IllegalArgumentException("The username cannot be longer than 255 bytes.");
+		
+		if (usernames.size() == MAX_SIZE)
+			throw new IllegalArgumentException("The table cannot hold more than "+MAX_SIZE+" usernames.");
+		
+		reference = usernames.size();
+		usernames.add(username);
+		usernameBytes.add(bytes);
+		references.put(username, reference);
+		encodedLength += 1+bytes.length;
+		return reference;
+	}
+	
+	/**
+	 * Returns the reference of the given username, or -1 if the username is
+	 * not contained in the table.
+	 */
+	public int getReference(String username) {
+		Integer reference = references.get(username);
+		return reference == null ? -1 : reference;
+	}
+	
+	/**
+	 * Returns the username with the given reference.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no username with the given reference
+	 */
+	public String getUsername(int reference) throws IllegalArgumentException {
+		if (reference < 0 || reference >= usernames.size())
+			throw new IllegalArgumentException("There is no username with the reference "+reference+".");
+		
+		return usernames.get(reference);
+	}
+	
+	/**
+	 * Returns the UTF-8 bytes of the username with the given reference. The
+	 * returned array must not be modified.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no username with the given reference
+	 */
+	public byte[] getUsernameBytes(int reference) throws IllegalArgumentException {
+		if (reference < 0 || reference >= usernames.size())
+			throw new IllegalArgumentException("There is no username with the reference "+reference+".");
+		
+		return usernameBytes.get(reference);
+	}
+	
+	/**
+	 * Returns the number of usernames in the table.
+	 */
+	public int size() {
+		return usernames.size();
+	}
+	
+	/**
+	 * Returns the number of bytes needed to serialize this table.
+	 */
+	public int getEncodedLength() {
+		return encodedLength;
+	}
+	
+	/**
+	 * Serializes this table into the given array, starting at the given index.
+	 * 
+	 * @return the index after the last byte written
+	 */
+	public int encode(byte[] result, int index) {
+		result[index++] = (byte) (usernames.size() >>> 8);
+		result[index++] = (byte) usernames.size();
+		for (byte[] bytes : usernameBytes) {
+			result[index++] = (byte) bytes.length;
+			System.arraycopy(bytes, 0, result, index, bytes.length);
+			index += bytes.length;
+		}
+		return index;
+	}
+	
+	/**
+	 * Deserializes a table starting at the given index. The number of bytes
+	 * read is returned by {@link #getEncodedLength()} of the new table.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the byte array is corrupt
+	 */
+	public static UsernameTable decode(byte[] bytes, int index) throws IllegalArgumentException {
+		try {
+			int size = ((bytes[index] & 0xFF) << 8) | (bytes[index+1] & 0xFF);
+			index += 2;
+			
+			UsernameTable table = new UsernameTable();
+			for (int i=0; i<size; i++) {
+				int length = bytes[index++] & 0xFF;
+				String username = new String(bytes, index, length, Charset.forName("UTF-8"));
+				index += length;
+				if (table.add(username) != i)
+					throw new IllegalArgumentException("The given byte array is corrupt (duplicate username).");
+			}
+			return table;
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("The given byte array is corrupt (not long enough).");
+		}
+	}
+
+}
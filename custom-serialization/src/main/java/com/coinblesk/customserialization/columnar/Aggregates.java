@@ -0,0 +1,70 @@
+package com.coinblesk.customserialization.columnar;
+
+import java.util.Arrays;
+
+/**
+ * The count, sum, minimum and maximum of the amounts of a number of groups,
+ * which are identified by their index.
+ */
+public class Aggregates {
+	
+	private final long[] counts;
+	private final long[] sums;
+	private final long[] mins;
+	private final long[] maxs;
+	
+	Aggregates(long[] counts, long[] sums, long[] mins, long[] maxs) {
+		this.counts = counts;
+		this.sums = sums;
+		this.mins = mins;
+		this.maxs = maxs;
+	}
+	
+	/**
+	 * Returns the aggregates of the groups from (inclusive) to to (exclusive).
+	 */
+	Aggregates slice(int from, int to) {
+		return new Aggregates(Arrays.copyOfRange(counts, from, to), Arrays.copyOfRange(sums, from, to),
+				Arrays.copyOfRange(mins, from, to), Arrays.copyOfRange(maxs, from, to));
+	}
+	
+	public int getNofGroups() {
+		return counts.length;
+	}
+	
+	public long getCount(int group) {
+		return counts[group];
+	}
+	
+	public long getSum(int group) {
+		return sums[group];
+	}
+	
+	/**
+	 * Returns the minimum amount of the group, or {@link Long#MAX_VALUE} if
+	 * the group is empty.
+	 */
+	public long getMin(int group) {
+		return mins[group];
+	}
+	
+	/**
+	 * Returns the maximum amount of the group, or {@link Long#MIN_VALUE} if
+	 * the group is empty.
+	 */
+	public long getMax(int group) {
+		return maxs[group];
+	}
+	
+	/**
+	 * Returns the number of rows in all groups.
+	 */
+	public long getTotalCount() {
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.coinblesk.customserialization.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A fixed number of rows of a {@link PaymentColumns} store, with one
+ * off-heap buffer per column.
+ */
+class ColumnChunk {
+	
+	/**
+	 * The number of off-heap bytes per row.
+	 */
+	static final int ROW_LENGTH = 5 * 1 + 3 * 8 + 2 * 4;
+	
+	final ByteBuffer messageTypes;
+	final ByteBuffer keyNumbers;
+	final ByteBuffer currencies;
+	final ByteBuffer inputCurrencies;
+	final ByteBuffer statuses;
+	final LongBuffer amounts;
+	final LongBuffer inputAmounts;
+	final LongBuffer timestamps;
+	final IntBuffer payers;
+	final IntBuffer payees;
+	
+	ColumnChunk(int capacity) {
+		messageTypes = ByteBuffer.allocateDirect(capacity);
+		keyNumbers = ByteBuffer.allocateDirect(capacity);
+		currencies = ByteBuffer.allocateDirect(capacity);
+		inputCurrencies = ByteBuffer.allocateDirect(capacity);
+		statuses = ByteBuffer.allocateDirect(capacity);
+		amounts = allocate(capacity * 8).asLongBuffer();
+		inputAmounts = allocate(capacity * 8).asLongBuffer();
+		timestamps = allocate(capacity * 8).asLongBuffer();
+		payers = allocate(capacity * 4).asIntBuffer();
+		payees = allocate(capacity * 4).asIntBuffer();
+	}
+	
+	private static ByteBuffer allocate(int capacity) {
+		// the native order avoids swapping the bytes on every access
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+}
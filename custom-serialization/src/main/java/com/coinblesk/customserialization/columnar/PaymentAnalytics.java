@@ -0,0 +1,547 @@
+package com.coinblesk.customserialization.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class computes group-by aggregations of the amounts of a
+ * {@link PaymentColumns} store in parallel on a {@link ForkJoinPool}, e.g.,
+ * the volume per {@link Currency} and hour, or the number of responses per
+ * {@link ServerResponseStatus}.
+ * 
+ * Every task processes one chunk of the store. It copies the columns it
+ * needs from off-heap memory into primitive arrays with bulk reads, assigns
+ * every row to a group (or filters it out) in one loop and aggregates the
+ * amounts of the groups in a second loop. The tasks aggregate into arrays of
+ * their own, which are combined afterwards. If there are many groups, e.g.,
+ * one per payee, the tasks aggregate into hash maps of primitives instead,
+ * which only contain the groups of their chunks. Hence, the memory does not
+ * grow with the number of tasks times the number of groups, and the tasks
+ * do not contend on shared counters of popular groups.
+ * 
+ * The store must not be modified during a query.
+ */
+public class PaymentAnalytics {
+	
+	// above this number of groups, the tasks aggregate into hash maps
+	private static final int MAX_LOCAL_GROUPS = 1 << 16;
+	
+	private static class DefaultPoolHolder {
+		private static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+	
+	private final PaymentColumns columns;
+	private final ForkJoinPool pool;
+	
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+	
+	/**
+	 * Creates a new instance, which uses a shared pool with one thread per
+	 * core.
+	 */
+	public PaymentAnalytics(PaymentColumns columns) throws IllegalArgumentException {
+		this(columns, DefaultPoolHolder.POOL);
+	}
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the columns or the pool are null
+	 */
+	public PaymentAnalytics(PaymentColumns columns, ForkJoinPool pool) throws IllegalArgumentException {
+		if (columns == null || pool == null)
+			throw new IllegalArgumentException("The columns and the pool cannot be null.");
+		
+		this.columns = columns;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Aggregates the amounts of the rows of the given type per
+	 * {@link Currency} and time bucket.
+	 * 
+	 * @param messageType
+	 *            {@link MessageType#PAYMENT_REQUEST} or
+	 *            {@link MessageType#PAYMENT_RESPONSE}
+	 * @param fromTimestamp
+	 *            the start of the first bucket
+	 * @param bucketMillis
+	 *            the length of a bucket in milliseconds
+	 * @param nofBuckets
+	 *            the number of buckets, later rows are ignored
+	 * @return the aggregates of every currency, where the groups are the
+	 *         buckets
+	 * @throws IllegalArgumentException
+	 *             if the message type is null or the buckets are invalid
+	 */
+	public Map<Currency, Aggregates> aggregateByCurrencyAndTime(final MessageType messageType, final long fromTimestamp, final long bucketMillis, final int nofBuckets) throws IllegalArgumentException {
+		if (messageType == null)
+			throw new IllegalArgumentException("The message type cannot be null.");
+		if (bucketMillis <= 0 || nofBuckets <= 0 || (long) nofBuckets * Currency.values().length > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The bucket length and the number of buckets must be positive.");
+		
+		final int[] currencyIndex = getCurrencyIndex();
+		final byte type = messageType.getCode();
+		Aggregates aggregates = aggregate(new Grouping(nofBuckets * Currency.values().length) {
+			@Override
+			void computeGroups(ColumnChunk chunk, int length, Scratch s) {
+				get(chunk.messageTypes, length, s.bytes1);
+				get(chunk.currencies, length, s.bytes2);
+				get(chunk.timestamps, length, s.longs);
+				for (int i=0; i<length; i++) {
+					long bucket = s.longs[i] >= fromTimestamp ? (s.longs[i] - fromTimestamp) / bucketMillis : -1;
+					int currency = currencyIndex[s.bytes2[i] & 0xFF];
+					s.groups[i] = s.bytes1[i] == type && bucket >= 0 && bucket < nofBuckets && currency >= 0 ? currency * nofBuckets + (int) bucket : -1;
+				}
+			}
+		});
+		
+		Map<Currency, Aggregates> result = new EnumMap<Currency, Aggregates>(Currency.class);
+		for (Currency currency : Currency.values()) {
+			int from = currency.ordinal() * nofBuckets;
+			result.put(currency, aggregates.slice(from, from + nofBuckets));
+		}
+		return result;
+	}
+	
+	/**
+	 * Aggregates the amounts of the {@link PaymentResponse}s within the given
+	 * time range per {@link ServerResponseStatus}.
+	 * 
+	 * @param fromTimestamp
+	 *            the start of the range (inclusive)
+	 * @param toTimestamp
+	 *            the end of the range (exclusive)
+	 * @return the aggregates, where the groups are the ordinals of the
+	 *         {@link ServerResponseStatus}
+	 */
+	public Aggregates aggregateByStatus(final long fromTimestamp, final long toTimestamp) {
+		final int[] statusIndex = new int[256];
+		Arrays.fill(statusIndex, -1);
+		for (ServerResponseStatus status : ServerResponseStatus.values()) {
+			statusIndex[status.getCode() & 0xFF] = status.ordinal();
+		}
+		
+		final byte type = MessageType.PAYMENT_RESPONSE.getCode();
+		return aggregate(new Grouping(ServerResponseStatus.values().length) {
+			@Override
+			void computeGroups(ColumnChunk chunk, int length, Scratch s) {
+				get(chunk.messageTypes, length, s.bytes1);
+				get(chunk.statuses, length, s.bytes2);
+				get(chunk.timestamps, length, s.longs);
+				for (int i=0; i<length; i++) {
+					boolean selected = s.bytes1[i] == type && s.longs[i] >= fromTimestamp && s.longs[i] < toTimestamp;
+					s.groups[i] = selected ? statusIndex[s.bytes2[i] & 0xFF] : -1;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Returns the payees with the largest volume of successful payments in
+	 * the given currency and time range, i.e., the sum of the amounts of the
+	 * {@link PaymentResponse}s with the status
+	 * {@link ServerResponseStatus#SUCCESS}.
+	 * 
+	 * @param currency
+	 *            the currency of the payments
+	 * @param fromTimestamp
+	 *            the start of the range (inclusive)
+	 * @param toTimestamp
+	 *            the end of the range (exclusive)
+	 * @param n
+	 *            the maximum number of payees
+	 * @return the usernames of the payees and their volumes, in descending
+	 *         order of the volume
+	 * @throws IllegalArgumentException
+	 *             if the currency is null or n is not positive
+	 */
+	public Map<String, Long> getTopPayees(Currency currency, final long fromTimestamp, final long toTimestamp, int n) throws IllegalArgumentException {
+		if (currency == null)
+			throw new IllegalArgumentException("The currency cannot be null.");
+		if (n <= 0)
+			throw new IllegalArgumentException("The number of payees must be positive.");
+		
+		final byte type = MessageType.PAYMENT_RESPONSE.getCode();
+		final byte success = ServerResponseStatus.SUCCESS.getCode();
+		final byte currencyCode = currency.getCode();
+		final Aggregates aggregates = aggregate(new Grouping(Math.max(1, columns.getUsernames().size())) {
+			@Override
+			void computeGroups(ColumnChunk chunk, int length, Scratch s) {
+				get(chunk.messageTypes, length, s.bytes1);
+				get(chunk.statuses, length, s.bytes2);
+				get(chunk.currencies, length, s.bytes3);
+				get(chunk.timestamps, length, s.longs);
+				get(chunk.payees, length, s.ints);
+				for (int i=0; i<length; i++) {
+					boolean selected = s.bytes1[i] == type && s.bytes2[i] == success && s.bytes3[i] == currencyCode
+							&& s.longs[i] >= fromTimestamp && s.longs[i] < toTimestamp;
+					s.groups[i] = selected ? s.ints[i] : -1;
+				}
+			}
+		});
+		
+		// a min-heap of the n largest volumes
+		PriorityQueue<Integer> top = new PriorityQueue<Integer>(n + 1, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				long sumA = aggregates.getSum(a);
+				long sumB = aggregates.getSum(b);
+				return sumA < sumB ? -1 : (sumA == sumB ? b.compareTo(a) : 1);
+			}
+		});
+		for (int payee=0; payee<aggregates.getNofGroups(); payee++) {
+			if (aggregates.getCount(payee) == 0)
+				continue;
+			top.add(payee);
+			if (top.size() > n)
+				top.poll();
+		}
+		
+		Integer[] payees = top.toArray(new Integer[top.size()]);
+		Arrays.sort(payees, Collections.reverseOrder(top.comparator()));
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Integer payee : payees) {
+			try {
+				result.put(columns.getUsernames().getUsername(payee), aggregates.getSum(payee));
+			} catch (IllegalArgumentException e) {
+				// cannot happen, the ids have been taken from the store
+				throw new RuntimeException(e);
+			}
+		}
+		return result;
+	}
+	
+	private static int[] getCurrencyIndex() {
+		int[] currencyIndex = new int[256];
+		Arrays.fill(currencyIndex, -1);
+		for (Currency currency : Currency.values()) {
+			currencyIndex[currency.getCode() & 0xFF] = currency.ordinal();
+		}
+		return currencyIndex;
+	}
+	
+	private Aggregates aggregate(Grouping grouping) {
+		int nofGroups = grouping.nofGroups;
+		long[] counts;
+		long[] sums;
+		long[] mins;
+		long[] maxs;
+		if (nofGroups <= MAX_LOCAL_GROUPS) {
+			long[][] result = pool.invoke(new AggregationTask(grouping, 0, columns.getNofChunks()));
+			counts = result[0];
+			sums = result[1];
+			mins = result[2];
+			maxs = result[3];
+		} else {
+			GroupMap result = pool.invoke(new SparseAggregationTask(grouping, 0, columns.getNofChunks()));
+			counts = new long[nofGroups];
+			sums = new long[nofGroups];
+			mins = new long[nofGroups];
+			maxs = new long[nofGroups];
+			Arrays.fill(mins, Long.MAX_VALUE);
+			Arrays.fill(maxs, Long.MIN_VALUE);
+			for (int e=0; e<result.keys.length; e++) {
+				int g = result.keys[e];
+				if (g < 0)
+					continue;
+				counts[g] = result.counts[e];
+				sums[g] = result.sums[e];
+				mins[g] = result.mins[e];
+				maxs[g] = result.maxs[e];
+			}
+		}
+		return new Aggregates(counts, sums, mins, maxs);
+	}
+	
+	/**
+	 * Assigns the rows of a chunk to groups and copies their amounts into the
+	 * scratch arrays of the current thread.
+	 * 
+	 * @return the number of rows of the chunk
+	 */
+	private int prepare(Grouping grouping, int chunkIndex, Scratch s) {
+		ColumnChunk chunk = columns.getChunk(chunkIndex);
+		int length = columns.getChunkSize(chunkIndex);
+		s.ensureCapacity(length);
+		grouping.computeGroups(chunk, length, s);
+		Grouping.get(chunk.amounts, length, s.amounts);
+		return length;
+	}
+	
+	/**
+	 * Assigns the rows of a chunk to groups.
+	 */
+	private static abstract class Grouping {
+		private final int nofGroups;
+		
+		private Grouping(int nofGroups) {
+			this.nofGroups = nofGroups;
+		}
+		
+		/**
+		 * Writes the group of every row of the chunk into the groups of the
+		 * scratch arrays, or -1 if the row is filtered out.
+		 */
+		abstract void computeGroups(ColumnChunk chunk, int length, Scratch s);
+		
+		static void get(ByteBuffer column, int length, byte[] values) {
+			ByteBuffer view = column.duplicate();
+			view.position(0);
+			view.get(values, 0, length);
+		}
+		
+		static void get(LongBuffer column, int length, long[] values) {
+			LongBuffer view = column.duplicate();
+			view.position(0);
+			view.get(values, 0, length);
+		}
+		
+		static void get(IntBuffer column, int length, int[] values) {
+			IntBuffer view = column.duplicate();
+			view.position(0);
+			view.get(values, 0, length);
+		}
+	}
+	
+	/**
+	 * The arrays a thread copies the columns of a chunk into.
+	 */
+	private static class Scratch {
+		private byte[] bytes1 = new byte[0];
+		private byte[] bytes2 = new byte[0];
+		private byte[] bytes3 = new byte[0];
+		private long[] longs = new long[0];
+		private long[] amounts = new long[0];
+		private int[] ints = new int[0];
+		private int[] groups = new int[0];
+		
+		private void ensureCapacity(int length) {
+			if (groups.length >= length)
+				return;
+			
+			bytes1 = new byte[length];
+			bytes2 = new byte[length];
+			bytes3 = new byte[length];
+			longs = new long[length];
+			amounts = new long[length];
+			ints = new int[length];
+			groups = new int[length];
+		}
+	}
+	
+	/**
+	 * Aggregates a range of chunks. The result is the counts, sums, minimums
+	 * and maximums of the groups.
+	 */
+	private class AggregationTask extends RecursiveTask<long[][]> {
+		private static final long serialVersionUID = 1L;
+		
+		private final Grouping grouping;
+		private final int from;
+		private final int to;
+		
+		private AggregationTask(Grouping grouping, int from, int to) {
+			this.grouping = grouping;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected long[][] compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				AggregationTask right = new AggregationTask(grouping, middle, to);
+				right.fork();
+				long[][] left = new AggregationTask(grouping, from, middle).compute();
+				return combine(left, right.join());
+			}
+			
+			long[][] result = new long[4][grouping.nofGroups];
+			Arrays.fill(result[2], Long.MAX_VALUE);
+			Arrays.fill(result[3], Long.MIN_VALUE);
+			if (to == from)
+				return result;
+			
+			Scratch s = scratch.get();
+			int length = prepare(grouping, from, s);
+			int[] groups = s.groups;
+			long[] amounts = s.amounts;
+			long[] counts = result[0];
+			long[] sums = result[1];
+			long[] mins = result[2];
+			long[] maxs = result[3];
+			for (int i=0; i<length; i++) {
+				int g = groups[i];
+				if (g < 0)
+					continue;
+				long amount = amounts[i];
+				counts[g]++;
+				sums[g] += amount;
+				if (amount < mins[g])
+					mins[g] = amount;
+				if (amount > maxs[g])
+					maxs[g] = amount;
+			}
+			return result;
+		}
+		
+		private long[][] combine(long[][] left, long[][] right) {
+			for (int g=0; g<grouping.nofGroups; g++) {
+				left[0][g] += right[0][g];
+				left[1][g] += right[1][g];
+				left[2][g] = Math.min(left[2][g], right[2][g]);
+				left[3][g] = Math.max(left[3][g], right[3][g]);
+			}
+			return left;
+		}
+	}
+	
+	/**
+	 * Aggregates a range of chunks into a {@link GroupMap}, which only
+	 * contains the groups of these chunks.
+	 */
+	private class SparseAggregationTask extends RecursiveTask<GroupMap> {
+		private static final long serialVersionUID = 1L;
+		
+		private final Grouping grouping;
+		private final int from;
+		private final int to;
+		
+		private SparseAggregationTask(Grouping grouping, int from, int to) {
+			this.grouping = grouping;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected GroupMap compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				SparseAggregationTask right = new SparseAggregationTask(grouping, middle, to);
+				right.fork();
+				GroupMap left = new SparseAggregationTask(grouping, from, middle).compute();
+				GroupMap other = right.join();
+				// the smaller map is merged into the larger one
+				if (left.size < other.size)
+					return other.addAll(left);
+				return left.addAll(other);
+			}
+			
+			GroupMap result = new GroupMap();
+			if (to == from)
+				return result;
+			
+			Scratch s = scratch.get();
+			int length = prepare(grouping, from, s);
+			int[] groups = s.groups;
+			long[] amounts = s.amounts;
+			for (int i=0; i<length; i++) {
+				if (groups[i] >= 0)
+					result.add(groups[i], 1, amounts[i], amounts[i], amounts[i]);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * An open-addressed hash map with linear probing from the non-negative
+	 * group ids to their count, sum, minimum and maximum, which are stored in
+	 * parallel arrays.
+	 */
+	private static class GroupMap {
+		private int[] keys;
+		private long[] counts;
+		private long[] sums;
+		private long[] mins;
+		private long[] maxs;
+		private int shift;
+		private int size;
+		
+		private GroupMap() {
+			allocate(64);
+		}
+		
+		private void allocate(int capacity) {
+			keys = new int[capacity];
+			Arrays.fill(keys, -1);
+			counts = new long[capacity];
+			sums = new long[capacity];
+			mins = new long[capacity];
+			maxs = new long[capacity];
+			// the capacity is a power of two, so the top bits of the product are used
+			shift = Integer.numberOfLeadingZeros(capacity) + 1;
+		}
+		
+		private void add(int group, long count, long sum, long min, long max) {
+			int mask = keys.length - 1;
+			int e = (group * 0x9E3779B9) >>> shift;
+			while (keys[e] != group) {
+				if (keys[e] < 0) {
+					if (2 * (size + 1) > keys.length) {
+						grow();
+						add(group, count, sum, min, max);
+						return;
+					}
+					keys[e] = group;
+					mins[e] = Long.MAX_VALUE;
+					maxs[e] = Long.MIN_VALUE;
+					size++;
+					break;
+				}
+				e = (e + 1) & mask;
+			}
+			counts[e] += count;
+			sums[e] += sum;
+			if (min < mins[e])
+				mins[e] = min;
+			if (max > maxs[e])
+				maxs[e] = max;
+		}
+		
+		private void grow() {
+			int[] oldKeys = keys;
+			long[] oldCounts = counts;
+			long[] oldSums = sums;
+			long[] oldMins = mins;
+			long[] oldMaxs = maxs;
+			allocate(2 * oldKeys.length);
+			size = 0;
+			for (int e=0; e<oldKeys.length; e++) {
+				if (oldKeys[e] >= 0)
+					add(oldKeys[e], oldCounts[e], oldSums[e], oldMins[e], oldMaxs[e]);
+			}
+		}
+		
+		private GroupMap addAll(GroupMap other) {
+			for (int e=0; e<other.keys.length; e++) {
+				if (other.keys[e] >= 0)
+					add(other.keys[e], other.counts[e], other.sums[e], other.mins[e], other.maxs[e]);
+			}
+			return this;
+		}
+	}
+
+}
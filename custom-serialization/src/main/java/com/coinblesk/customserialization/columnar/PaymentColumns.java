@@ -0,0 +1,287 @@
+package com.coinblesk.customserialization.columnar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.corpus.CorpusReader;
+import com.coinblesk.customserialization.corpus.CorpusRecord;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class stores the fields of many decoded {@link PaymentRequest}s and
+ * {@link PaymentResponse}s in columns in off-heap memory, so that hundreds
+ * of millions of them can be kept without burdening the garbage collector,
+ * and so that a scan over a column touches nothing but the values of that
+ * column. A row takes 37 bytes, compared to several hundred bytes for a
+ * decoded message.
+ * 
+ * The columns are the {@link MessageType}, the key number, the codes of the
+ * currency, the input currency and the {@link ServerResponseStatus}, the
+ * amounts, the timestamps and the ids of the payer and the payee in a
+ * {@link UsernameDictionary}. Codes which do not apply to a row are 0. The
+ * signatures and the reasons of the responses are not stored. A response
+ * which references its request by digest (see
+ * {@link PaymentResponse#isByReference()}) only has a key number and a
+ * status, so its currency code, amount and timestamp are 0 and its payer and
+ * payee ids are {@link #NO_USERNAME}.
+ * 
+ * The rows are stored in chunks of a fixed size, so that the store can grow
+ * beyond the 2 GiB limit of a single buffer. Rows cannot be modified or
+ * removed. A store may be read by several threads once it has been filled,
+ * but it must not be read while rows are appended.
+ */
+public class PaymentColumns {
+	
+	/**
+	 * The default number of rows of a chunk (2^16).
+	 */
+	public static final int DEFAULT_CHUNK_SHIFT = 16;
+	
+	/**
+	 * The payer and payee id of the rows without usernames.
+	 */
+	public static final int NO_USERNAME = -1;
+	
+	private final int chunkShift;
+	private final int chunkMask;
+	private final List<ColumnChunk> chunks = new ArrayList<ColumnChunk>();
+	private final UsernameDictionary usernames = new UsernameDictionary();
+	private long size;
+	
+	/**
+	 * Creates a new store with chunks of 2^16 rows.
+	 */
+	public PaymentColumns() {
+		this.chunkShift = DEFAULT_CHUNK_SHIFT;
+		this.chunkMask = (1 << chunkShift) - 1;
+	}
+	
+	/**
+	 * Creates a new store with chunks of 2^chunkShift rows.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if chunkShift is not between 4 and 24
+	 */
+	public PaymentColumns(int chunkShift) throws IllegalArgumentException {
+		if (chunkShift < 4 || chunkShift > 24)
+			throw new IllegalArgumentException("The chunk shift must be between 4 and 24.");
+		
+		this.chunkShift = chunkShift;
+		this.chunkMask = (1 << chunkShift) - 1;
+	}
+	
+	/**
+	 * Appends the fields of a {@link PaymentRequest}.
+	 * 
+	 * @return the row
+	 * @throws IllegalArgumentException
+	 *             if the request is null
+	 */
+	public long append(PaymentRequest pr) throws IllegalArgumentException {
+		if (pr == null)
+			throw new IllegalArgumentException("The payment request cannot be null.");
+		
+		Currency inputCurrency = pr.getInputCurrency();
+		return append(MessageType.PAYMENT_REQUEST, pr.getKeyNumber(), getCode(pr.getCurrency()), pr.getAmount(),
+				inputCurrency == null ? 0 : inputCurrency.getCode(), inputCurrency == null ? 0 : pr.getInputAmount(),
+				(byte) 0, pr.getTimestamp(), pr.getUsernamePayer(), pr.getUsernamePayee());
+	}
+	
+	/**
+	 * Appends the fields of a {@link PaymentResponse}.
+	 * 
+	 * @return the row
+	 * @throws IllegalArgumentException
+	 *             if the response is null
+	 */
+	public long append(PaymentResponse response) throws IllegalArgumentException {
+		if (response == null)
+			throw new IllegalArgumentException("The payment response cannot be null.");
+		if (response.getStatus() == null)
+			throw new IllegalArgumentException("The status cannot be null.");
+		
+		if (response.isByReference())
+			return append(MessageType.PAYMENT_RESPONSE, response.getKeyNumber(), (byte) 0, 0, (byte) 0, 0, response.getStatus().getCode(), 0, null, null);
+		
+		return append(MessageType.PAYMENT_RESPONSE, response.getKeyNumber(), getCode(response.getCurrency()), response.getAmount(),
+				(byte) 0, 0, response.getStatus().getCode(), response.getTimestamp(), response.getUsernamePayer(), response.getUsernamePayee());
+	}
+	
+	private static byte getCode(Currency currency) throws IllegalArgumentException {
+		if (currency == null)
+			throw new IllegalArgumentException("The currency cannot be null.");
+		return currency.getCode();
+	}
+	
+	/**
+	 * Appends a row. All arguments are checked before the store is modified,
+	 * so a rejected message does not leave a partial row.
+	 */
+	private long append(MessageType messageType, int keyNumber, byte currency, long amount, byte inputCurrency, long inputAmount, byte status, long timestamp, String payer, String payee) throws IllegalArgumentException {
+		int payerId = payer == null ? NO_USERNAME : usernames.add(payer);
+		int payeeId = payee == null ? NO_USERNAME : usernames.add(payee);
+		
+		int index = (int) (size & chunkMask);
+		if (index == 0)
+			chunks.add(new ColumnChunk(1 << chunkShift));
+		ColumnChunk chunk = chunks.get(chunks.size() - 1);
+		
+		chunk.messageTypes.put(index, messageType.getCode());
+		chunk.keyNumbers.put(index, (byte) keyNumber);
+		chunk.currencies.put(index, currency);
+		chunk.inputCurrencies.put(index, inputCurrency);
+		chunk.statuses.put(index, status);
+		chunk.amounts.put(index, amount);
+		chunk.inputAmounts.put(index, inputAmount);
+		chunk.timestamps.put(index, timestamp);
+		chunk.payers.put(index, payerId);
+		chunk.payees.put(index, payeeId);
+		return size++;
+	}
+	
+	/**
+	 * Appends the {@link PaymentRequest}s and {@link PaymentResponse}s of a
+	 * corpus. Other messages are skipped.
+	 * 
+	 * @return the number of rows appended
+	 * @throws IOException
+	 *             if the corpus is corrupt or a message cannot be decoded
+	 */
+	public long load(CorpusReader reader) throws IOException {
+		long nofRows = 0;
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			try {
+				if (record.getMessageType() == MessageType.PAYMENT_REQUEST)
+					append(record.<PaymentRequest>decode());
+				else if (record.getMessageType() == MessageType.PAYMENT_RESPONSE)
+					append(record.<PaymentResponse>decode());
+				else
+					continue;
+			} catch (IllegalArgumentException e) {
+				throw new IOException("A message cannot be decoded ("+e.getMessage()+").");
+			} catch (SerializationException e) {
+				throw new IOException("A message cannot be decoded ("+e.getMessage()+").");
+			}
+			nofRows++;
+		}
+		return nofRows;
+	}
+	
+	/**
+	 * Returns the number of rows.
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the dictionary of the payer and payee ids.
+	 */
+	public UsernameDictionary getUsernames() {
+		return usernames;
+	}
+	
+	/**
+	 * Returns the number of off-heap bytes used by the columns.
+	 */
+	public long getMemoryUsage() {
+		return (long) chunks.size() * ColumnChunk.ROW_LENGTH << chunkShift;
+	}
+	
+	public MessageType getMessageType(long row) {
+		try {
+			return MessageType.getMessageType(chunk(row).messageTypes.get(index(row)));
+		} catch (IllegalArgumentException e) {
+			// cannot happen, only valid codes are stored
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public int getKeyNumber(long row) {
+		return chunk(row).keyNumbers.get(index(row)) & 0xFF;
+	}
+	
+	/**
+	 * Returns the code of the {@link Currency}.
+	 */
+	public byte getCurrencyCode(long row) {
+		return chunk(row).currencies.get(index(row));
+	}
+	
+	public long getAmount(long row) {
+		return chunk(row).amounts.get(index(row));
+	}
+	
+	/**
+	 * Returns the code of the input {@link Currency}, or 0 if there is none.
+	 */
+	public byte getInputCurrencyCode(long row) {
+		return chunk(row).inputCurrencies.get(index(row));
+	}
+	
+	public long getInputAmount(long row) {
+		return chunk(row).inputAmounts.get(index(row));
+	}
+	
+	/**
+	 * Returns the code of the {@link ServerResponseStatus}, or 0 if the row is
+	 * a {@link PaymentRequest}.
+	 */
+	public byte getStatusCode(long row) {
+		return chunk(row).statuses.get(index(row));
+	}
+	
+	public long getTimestamp(long row) {
+		return chunk(row).timestamps.get(index(row));
+	}
+	
+	/**
+	 * Returns the id of the payer in the {@link UsernameDictionary}, or
+	 * {@link #NO_USERNAME}.
+	 */
+	public int getPayerId(long row) {
+		return chunk(row).payers.get(index(row));
+	}
+	
+	/**
+	 * Returns the id of the payee in the {@link UsernameDictionary}, or
+	 * {@link #NO_USERNAME}.
+	 */
+	public int getPayeeId(long row) {
+		return chunk(row).payees.get(index(row));
+	}
+	
+	private ColumnChunk chunk(long row) {
+		if (row < 0 || row >= size)
+			throw new IndexOutOfBoundsException("There is no row "+row+".");
+		return chunks.get((int) (row >>> chunkShift));
+	}
+	
+	private int index(long row) {
+		return (int) (row & chunkMask);
+	}
+	
+	int getNofChunks() {
+		return chunks.size();
+	}
+	
+	ColumnChunk getChunk(int chunk) {
+		return chunks.get(chunk);
+	}
+	
+	/**
+	 * Returns the number of rows stored in the given chunk.
+	 */
+	int getChunkSize(int chunk) {
+		return (int) Math.min(1 << chunkShift, size - ((long) chunk << chunkShift));
+	}
+
+}
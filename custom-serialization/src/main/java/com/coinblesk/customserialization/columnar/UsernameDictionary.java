@@ -0,0 +1,71 @@
+package com.coinblesk.customserialization.columnar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.coinblesk.customserialization.UsernameTable;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class assigns an integer id to every distinct username of a
+ * {@link PaymentColumns} store, starting at 0. In contrast to the
+ * {@link UsernameTable} of a message, it is not limited in size.
+ */
+public class UsernameDictionary {
+	
+	private final List<String> usernames = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	
+	/**
+	 * Adds the given username if it is not yet contained in the dictionary.
+	 * 
+	 * @return the id of the username
+	 * @throws IllegalArgumentException
+	 *             if the username is null
+	 */
+	public int add(String username) throws IllegalArgumentException {
+		Integer id = ids.get(username);
+		if (id != null)
+			return id;
+		
+		if (username == null)
+			throw new IllegalArgumentException("The username cannot be null.");
+		
+		id = usernames.size();
+		usernames.add(username);
+		ids.put(username, id);
+		return id;
+	}
+	
+	/**
+	 * Returns the id of the given username, or -1 if the username is not
+	 * contained in the dictionary.
+	 */
+	public int getId(String username) {
+		Integer id = ids.get(username);
+		return id == null ? -1 : id;
+	}
+	
+	/**
+	 * Returns the username with the given id.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no username with the given id
+	 */
+	public String getUsername(int id) throws IllegalArgumentException {
+		if (id < 0 || id >= usernames.size())
+			throw new IllegalArgumentException("There is no username with the id "+id+".");
+		
+		return usernames.get(id);
+	}
+	
+	/**
+	 * Returns the number of usernames in the dictionary.
+	 */
+	public int size() {
+		return usernames.size();
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.coinblesk.customserialization.concurrent;
+
+/**
+ * This interface is notified when an asynchronous operation (e.g.,
+ * {@link com.coinblesk.customserialization.SignedSerializableObject#verifyAsync(java.security.PublicKey, java.util.concurrent.Executor, AsyncCallback)})
+ * has completed. The methods are called on the thread which executed the
+ * operation, so they should return quickly or hand the result over to
+ * another thread (e.g., an event loop).
+ */
+public interface AsyncCallback<V> {
+	
+	/**
+	 * Called with the result if the operation has completed normally.
+	 */
+	public void onSuccess(V result);
+	
+	/**
+	 * Called with the cause if the operation has thrown an exception.
+	 */
+	public void onFailure(Throwable t);
+
+}
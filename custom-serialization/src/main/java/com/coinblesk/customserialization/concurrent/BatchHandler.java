@@ -0,0 +1,24 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.util.List;
+
+/**
+ * This interface is implemented by back ends which process many items at
+ * once more efficiently than one by one, e.g., by sharing inversions or a
+ * single signature. It is called by the {@link MicroBatchScheduler}.
+ */
+public interface BatchHandler<I, O> {
+	
+	/**
+	 * Processes the given batch.
+	 * 
+	 * @param batch
+	 *            the items in the order they have been submitted
+	 * @return the results, one for every item and in the same order
+	 * @throws Exception
+	 *             if the batch could not be processed, in which case every
+	 *             item of the batch fails with this exception
+	 */
+	public List<O> process(List<I> batch) throws Exception;
+
+}
@@ -0,0 +1,51 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * This {@link FutureTask} notifies an {@link AsyncCallback} as soon as it has
+ * completed, so that the caller does not have to block on {@link #get()}.
+ */
+public class CallbackFuture<V> extends FutureTask<V> {
+	
+	private final AsyncCallback<V> callback;
+	
+	/**
+	 * Creates a new future.
+	 * 
+	 * @param callable
+	 *            the operation to be executed
+	 * @param callback
+	 *            the callback to be notified, or null
+	 */
+	public CallbackFuture(Callable<V> callable, AsyncCallback<V> callback) {
+		super(callable);
+		this.callback = callback;
+	}
+	
+	@Override
+	protected void done() {
+		if (callback == null)
+			return;
+		
+		V result;
+		try {
+			result = get();
+		} catch (ExecutionException e) {
+			callback.onFailure(e.getCause());
+			return;
+		} catch (CancellationException e) {
+			callback.onFailure(e);
+			return;
+		} catch (InterruptedException e) {
+			// not possible, the task has completed
+			callback.onFailure(e);
+			return;
+		}
+		callback.onSuccess(result);
+	}
+
+}
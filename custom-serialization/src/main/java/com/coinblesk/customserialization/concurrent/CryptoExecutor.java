@@ -0,0 +1,59 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class provides the default {@link Executor} for asynchronous signing
+ * and verification. It has one daemon thread per available processor and a
+ * bounded queue. If the queue is full, new tasks are rejected with a
+ * {@link java.util.concurrent.RejectedExecutionException} instead of being
+ * run on the calling thread, so that an event loop is never blocked by
+ * cryptographic work.
+ */
+public class CryptoExecutor {
+	
+	/**
+	 * The number of tasks which can be queued per thread of the default
+	 * executor.
+	 */
+	public static final int QUEUE_SIZE_PER_THREAD = 1024;
+	
+	private static class Holder {
+		private static final ThreadPoolExecutor DEFAULT = newExecutor(Runtime.getRuntime().availableProcessors());
+	}
+	
+	private CryptoExecutor() {
+	}
+	
+	/**
+	 * Returns the shared default executor, which is created on first use.
+	 */
+	public static Executor getDefault() {
+		return Holder.DEFAULT;
+	}
+	
+	/**
+	 * Creates a new executor with the given number of daemon threads and a
+	 * queue of {@link #QUEUE_SIZE_PER_THREAD} tasks per thread.
+	 */
+	public static ThreadPoolExecutor newExecutor(int nofThreads) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "crypto-"+threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		
+		return new ThreadPoolExecutor(nofThreads, nofThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(nofThreads*QUEUE_SIZE_PER_THREAD), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.security.PrivateKey;
+import java.util.List;
+
+import com.coinblesk.customserialization.BatchSignedPaymentResponse;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This {@link BatchHandler} signs a batch of {@link PaymentResponse}s with a
+ * single signature over the root of a Merkle tree (see
+ * {@link BatchSignedPaymentResponse#signBatch(List, PrivateKey)}). All
+ * submitted {@link PaymentResponse}s must use the {@link com.coinblesk.customserialization.PKIAlgorithm}
+ * and key number of the private key.
+ */
+public class MerkleSigningBatchHandler implements BatchHandler<PaymentResponse, BatchSignedPaymentResponse> {
+	
+	private final PrivateKey privateKey;
+	
+	/**
+	 * Creates a new handler.
+	 * 
+	 * @param privateKey
+	 *            the private key of the server
+	 * @throws IllegalArgumentException
+	 *             if the private key is null
+	 */
+	public MerkleSigningBatchHandler(PrivateKey privateKey) throws IllegalArgumentException {
+		if (privateKey == null)
+			throw new IllegalArgumentException("The private key cannot be null.");
+		
+		this.privateKey = privateKey;
+	}
+	
+	@Override
+	public List<BatchSignedPaymentResponse> process(List<PaymentResponse> batch) throws Exception {
+		return BatchSignedPaymentResponse.signBatch(batch, privateKey);
+	}
+
+}
@@ -0,0 +1,347 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class collects submitted items into micro-batches and passes them to
+ * a {@link BatchHandler} on a dedicated thread. A batch is dispatched as soon
+ * as it reaches the target size or when the first item of the batch has been
+ * waiting for the maximum delay.
+ * 
+ * The target size adapts to the load. After every batch, the arrival rate
+ * since the previous batch is measured and smoothed with an exponentially
+ * weighted moving average. The target size is the number of items expected
+ * to arrive within the maximum delay, between 1 and the maximum batch size.
+ * Hence, on a quiet system every item is dispatched immediately, while under
+ * load the scheduler waits a little for the batch to fill up. Items which are
+ * already queued are always taken into the batch without waiting.
+ */
+public class MicroBatchScheduler<I, O> {
+	
+	private static final double SMOOTHING_FACTOR = 0.25;
+	
+	private final BatchHandler<I, O> handler;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	
+	private final BlockingQueue<Job<I, O>> queue = new LinkedBlockingQueue<Job<I, O>>();
+	private final Job<I, O> shutdownMarker = new Job<I, O>(null);
+	private final Thread worker;
+	
+	private final AtomicLong nofSubmitted = new AtomicLong();
+	private final AtomicLong nofBatches = new AtomicLong();
+	private volatile boolean shutdown;
+	private volatile int targetBatchSize = 1;
+	private double arrivalRate;
+	
+	/**
+	 * Creates a new scheduler and starts its thread.
+	 * 
+	 * @param handler
+	 *            the back end processing the batches
+	 * @param maxBatchSize
+	 *            the maximum number of items in a batch
+	 * @param maxDelay
+	 *            the maximum time the first item of a batch waits for the
+	 *            batch to fill up
+	 * @param unit
+	 *            the unit of the maximum delay
+	 * @throws IllegalArgumentException
+	 *             if the handler or the unit is null, or if the maximum batch
+	 *             size or delay is not positive
+	 */
+	public MicroBatchScheduler(BatchHandler<I, O> handler, int maxBatchSize, long maxDelay, TimeUnit unit) throws IllegalArgumentException {
+		if (handler == null || unit == null)
+			throw new IllegalArgumentException("The handler and the time unit cannot be null.");
+		if (maxBatchSize <= 0 || maxDelay <= 0)
+			throw new IllegalArgumentException("The maximum batch size and delay must be positive.");
+		
+		this.handler = handler;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runWorker();
+			}
+		}, "MicroBatchScheduler");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+	
+	/**
+	 * Submits an item to be processed in one of the next batches.
+	 * 
+	 * @return the future result of the item
+	 * @throws IllegalArgumentException
+	 *             if the item is null
+	 * @throws RejectedExecutionException
+	 *             if the scheduler has been shut down
+	 */
+	public Future<O> submit(I item) throws IllegalArgumentException {
+		if (item == null)
+			throw new IllegalArgumentException("The item cannot be null.");
+		
+		Job<I, O> job = new Job<I, O>(item);
+		synchronized (queue) {
+			if (shutdown)
+				throw new RejectedExecutionException("The scheduler has been shut down.");
+			
+			nofSubmitted.incrementAndGet();
+			queue.add(job);
+		}
+		return job;
+	}
+	
+	/**
+	 * Stops accepting new items. The items submitted so far are still
+	 * processed.
+	 */
+	public void shutdown() {
+		synchronized (queue) {
+			if (!shutdown) {
+				shutdown = true;
+				queue.add(shutdownMarker);
+			}
+		}
+	}
+	
+	/**
+	 * Blocks until all submitted items have been processed after
+	 * {@link #shutdown()} has been called, or until the timeout expires.
+	 * 
+	 * @return true if the scheduler has terminated, false if the timeout
+	 *         expired
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		worker.join(Math.max(1, unit.toMillis(timeout)));
+		return !worker.isAlive();
+	}
+	
+	/**
+	 * Returns the current target size of a batch.
+	 */
+	public int getTargetBatchSize() {
+		return targetBatchSize;
+	}
+	
+	/**
+	 * Returns the number of batches dispatched so far.
+	 */
+	public long getNofBatches() {
+		return nofBatches.get();
+	}
+	
+	private void runWorker() {
+		List<Job<I, O>> batch = new ArrayList<Job<I, O>>(maxBatchSize);
+		long lastDispatch = System.nanoTime();
+		long lastSubmitted = 0;
+		boolean done = false;
+		
+		while (!done) {
+			try {
+				done = collect(batch);
+			} catch (InterruptedException e) {
+				// keep going until the shutdown marker arrives
+				continue;
+			}
+			
+			long now = System.nanoTime();
+			long submitted = nofSubmitted.get();
+			updateTargetBatchSize(submitted - lastSubmitted, now - lastDispatch);
+			lastDispatch = now;
+			lastSubmitted = submitted;
+			
+			dispatch(batch);
+			batch.clear();
+		}
+	}
+	
+	/**
+	 * Fills the given batch. Returns true if the shutdown marker has been
+	 * taken from the queue.
+	 */
+	private boolean collect(List<Job<I, O>> batch) throws InterruptedException {
+		Job<I, O> first = queue.take();
+		if (first == shutdownMarker)
+			return true;
+		batch.add(first);
+		
+		long deadline = System.nanoTime() + maxDelayNanos;
+		while (batch.size() < maxBatchSize) {
+			Job<I, O> job = queue.poll();
+			if (job == null) {
+				long remaining = deadline - System.nanoTime();
+				if (batch.size() >= targetBatchSize || remaining <= 0)
+					break;
+				job = queue.poll(remaining, TimeUnit.NANOSECONDS);
+				if (job == null)
+					break;
+			}
+			if (job == shutdownMarker)
+				return true;
+			batch.add(job);
+		}
+		return false;
+	}
+	
+	private void updateTargetBatchSize(long arrivals, long elapsedNanos) {
+		double rate = elapsedNanos > 0 ? (double) arrivals / elapsedNanos : 0;
+		arrivalRate = SMOOTHING_FACTOR * rate + (1 - SMOOTHING_FACTOR) * arrivalRate;
+		long expected = Math.round(arrivalRate * maxDelayNanos);
+		targetBatchSize = (int) Math.max(1, Math.min(maxBatchSize, expected));
+	}
+	
+	private void dispatch(List<Job<I, O>> batch) {
+		List<Job<I, O>> jobs = new ArrayList<Job<I, O>>(batch.size());
+		List<I> items = new ArrayList<I>(batch.size());
+		for (Job<I, O> job : batch) {
+			if (!job.isCancelled()) {
+				jobs.add(job);
+				items.add(job.item);
+			}
+		}
+		if (jobs.isEmpty())
+			return;
+		
+		nofBatches.incrementAndGet();
+		try {
+			List<O> results = handler.process(items);
+			if (results == null || results.size() != items.size())
+				throw new IllegalStateException("The handler returned "+(results == null ? "no" : results.size())+" results for "+items.size()+" items.");
+			
+			for (int i=0; i<jobs.size(); i++) {
+				jobs.get(i).set(results.get(i));
+			}
+		} catch (Throwable t) {
+			for (Job<I, O> job : jobs) {
+				job.setException(t);
+			}
+		}
+	}
+	
+	/**
+	 * A future whose result is set by the worker thread. The waiting threads
+	 * are parked on an {@link AbstractQueuedSynchronizer}, whose state tells
+	 * whether the job is pending, being completed, done or cancelled.
+	 */
+	private static class Job<I, O> implements Future<O> {
+		private final I item;
+		private final Sync sync = new Sync();
+		private O result;
+		private Throwable exception;
+		
+		private Job(I item) {
+			this.item = item;
+		}
+		
+		private void set(O result) {
+			if (sync.start()) {
+				this.result = result;
+				sync.finish(Sync.DONE);
+			}
+		}
+		
+		private void setException(Throwable t) {
+			if (sync.start()) {
+				this.exception = t;
+				sync.finish(Sync.DONE);
+			}
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!sync.start())
+				return false;
+			
+			sync.finish(Sync.CANCELLED);
+			return true;
+		}
+		
+		@Override
+		public boolean isCancelled() {
+			return sync.getJobState() == Sync.CANCELLED;
+		}
+		
+		@Override
+		public boolean isDone() {
+			return sync.getJobState() >= Sync.DONE;
+		}
+		
+		@Override
+		public O get() throws InterruptedException, ExecutionException {
+			sync.acquireSharedInterruptibly(0);
+			return report();
+		}
+		
+		@Override
+		public O get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if (!sync.tryAcquireSharedNanos(0, unit.toNanos(timeout)))
+				throw new TimeoutException();
+			return report();
+		}
+		
+		private O report() throws ExecutionException {
+			if (sync.getJobState() == Sync.CANCELLED)
+				throw new CancellationException();
+			if (exception != null)
+				throw new ExecutionException(exception);
+			return result;
+		}
+	}
+	
+	private static class Sync extends AbstractQueuedSynchronizer {
+		private static final long serialVersionUID = 1L;
+		
+		private static final int PENDING = 0;
+		private static final int COMPLETING = 1;
+		private static final int DONE = 2;
+		private static final int CANCELLED = 3;
+		
+		/**
+		 * Claims the right to complete the job. Returns false if it has
+		 * already been completed or cancelled.
+		 */
+		private boolean start() {
+			return compareAndSetState(PENDING, COMPLETING);
+		}
+		
+		/**
+		 * Publishes the outcome written since {@link #start()} and wakes up
+		 * the waiting threads.
+		 */
+		private void finish(int state) {
+			setState(state);
+			releaseShared(0);
+		}
+		
+		private int getJobState() {
+			return getState();
+		}
+		
+		@Override
+		protected int tryAcquireShared(int ignore) {
+			return getState() >= DONE ? 1 : -1;
+		}
+		
+		@Override
+		protected boolean tryReleaseShared(int ignore) {
+			return true;
+		}
+	}
+
+}
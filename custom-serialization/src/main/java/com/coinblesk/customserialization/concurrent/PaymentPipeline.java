@@ -0,0 +1,214 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class processes encoded {@link ServerPaymentRequest}s in three stages,
+ * each with its own threads and a bounded input queue:
+ * 
+ * <ol>
+ * <li>decode: decodes the frame, which also runs the structural checks of
+ * the {@link ServerPaymentRequest} (e.g., whether the payer's and the payee's
+ * {@link PaymentRequest}s are identical)</li>
+ * <li>verify: verifies the signature of every contained
+ * {@link PaymentRequest} with the key of a {@link PaymentRequestKeyResolver}</li>
+ * <li>respond: creates the {@link ServerPaymentResponse} with the given
+ * {@link StageFunction} and passes it to the {@link PipelineSink}</li>
+ * </ol>
+ * 
+ * If a stage cannot keep up, the queue in front of it fills up and the
+ * threads of the previous stage block. Eventually, {@link #submit(byte[], Object)}
+ * blocks and {@link #offer(byte[], Object, long, TimeUnit)} fails, so that a
+ * burst slows down the producer instead of piling up in memory. Failures of
+ * any stage are reported to {@link PipelineSink#onError(Object, Throwable)}.
+ */
+public class PaymentPipeline {
+	
+	/**
+	 * The default capacity of the queue in front of every stage.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 256;
+	
+	private final Stage<byte[], ServerPaymentRequest> decodeStage;
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private volatile boolean shutdown;
+	
+	/**
+	 * Creates a new pipeline with {@link #DEFAULT_QUEUE_CAPACITY} and one
+	 * thread for decoding, one thread per available processor for verifying
+	 * and one thread for responding.
+	 * 
+	 * @see #PaymentPipeline(PaymentRequestKeyResolver, StageFunction,
+	 *      PipelineSink, int, int, int, int)
+	 */
+	public PaymentPipeline(PaymentRequestKeyResolver keyResolver, StageFunction<ServerPaymentRequest, ServerPaymentResponse> responder, PipelineSink<ServerPaymentResponse> sink) throws IllegalArgumentException {
+		this(keyResolver, responder, sink, DEFAULT_QUEUE_CAPACITY, 1, Runtime.getRuntime().availableProcessors(), 1);
+	}
+	
+	/**
+	 * Creates a new pipeline and starts the threads of all stages.
+	 * 
+	 * @param keyResolver
+	 *            the resolver providing the public keys of the signers
+	 * @param responder
+	 *            creates the {@link ServerPaymentResponse} for a verified
+	 *            {@link ServerPaymentRequest}
+	 * @param sink
+	 *            receives the responses and errors
+	 * @param queueCapacity
+	 *            the capacity of the queue in front of every stage
+	 * @param decodeThreads
+	 *            the number of threads decoding frames
+	 * @param verifyThreads
+	 *            the number of threads verifying signatures
+	 * @param respondThreads
+	 *            the number of threads creating responses
+	 * @throws IllegalArgumentException
+	 *             if any object is null or any number is not positive
+	 */
+	public PaymentPipeline(final PaymentRequestKeyResolver keyResolver, StageFunction<ServerPaymentRequest, ServerPaymentResponse> responder, final PipelineSink<ServerPaymentResponse> sink, int queueCapacity, int decodeThreads, int verifyThreads, int respondThreads) throws IllegalArgumentException {
+		if (keyResolver == null || responder == null || sink == null)
+			throw new IllegalArgumentException("The key resolver, the responder and the sink cannot be null.");
+		if (queueCapacity <= 0 || decodeThreads <= 0 || verifyThreads <= 0 || respondThreads <= 0)
+			throw new IllegalArgumentException("The queue capacity and the number of threads must be positive.");
+		
+		Stage.Downstream<ServerPaymentResponse> end = new Stage.Downstream<ServerPaymentResponse>() {
+			@Override
+			public void put(Object attachment, ServerPaymentResponse value) {
+				sink.onResult(attachment, value);
+			}
+			
+			@Override
+			public void onError(Object attachment, Throwable t) {
+				sink.onError(attachment, t);
+			}
+			
+			@Override
+			public void close() {
+				terminated.countDown();
+			}
+		};
+		
+		Stage<ServerPaymentRequest, ServerPaymentResponse> respondStage = new Stage<ServerPaymentRequest, ServerPaymentResponse>("respond", responder, respondThreads, queueCapacity, end);
+		
+		Stage<ServerPaymentRequest, ServerPaymentRequest> verifyStage = new Stage<ServerPaymentRequest, ServerPaymentRequest>("verify", new StageFunction<ServerPaymentRequest, ServerPaymentRequest>() {
+			@Override
+			public ServerPaymentRequest apply(ServerPaymentRequest spr) throws Exception {
+				String reason = verify(spr, keyResolver);
+				if (reason != null)
+					throw new SignatureException(reason);
+				return spr;
+			}
+		}, verifyThreads, queueCapacity, respondStage.asDownstream());
+		
+		decodeStage = new Stage<byte[], ServerPaymentRequest>("decode", new StageFunction<byte[], ServerPaymentRequest>() {
+			@Override
+			public ServerPaymentRequest apply(byte[] frame) throws Exception {
+				return DecoderFactory.decode(ServerPaymentRequest.class, frame);
+			}
+		}, decodeThreads, queueCapacity, verifyStage.asDownstream());
+	}
+	
+	/**
+	 * Verifies the signature of every {@link PaymentRequest} contained in the
+	 * given {@link ServerPaymentRequest} with the key of the given
+	 * {@link PaymentRequestKeyResolver}.
+	 * 
+	 * @return null if all signatures are valid, otherwise the reason why the
+	 *         first invalid {@link PaymentRequest} has been rejected
+	 * @throws Exception
+	 *             if a signature cannot be verified at all
+	 */
+	public static String verify(ServerPaymentRequest spr, PaymentRequestKeyResolver keyResolver) throws Exception {
+		List<PaymentRequest> paymentRequests = spr.getPaymentRequests();
+		for (int i=0; i<paymentRequests.size(); i++) {
+			PaymentRequest paymentRequest = paymentRequests.get(i);
+			PublicKey publicKey = keyResolver.getPublicKey(paymentRequest, i);
+			if (publicKey == null)
+				return "No public key found for payment request "+i+".";
+			if (!paymentRequest.verify(publicKey))
+				return "The signature of payment request "+i+" is invalid.";
+		}
+		return null;
+	}
+	
+	/**
+	 * Submits an encoded {@link ServerPaymentRequest}. Blocks while the queue
+	 * of the first stage is full.
+	 * 
+	 * @param frame
+	 *            the encoded {@link ServerPaymentRequest}
+	 * @param attachment
+	 *            an object passed to the {@link PipelineSink} along with the
+	 *            result, or null
+	 * @throws IllegalArgumentException
+	 *             if the frame is null or the pipeline has been shut down
+	 */
+	public void submit(byte[] frame, Object attachment) throws IllegalArgumentException, InterruptedException {
+		checkSubmit(frame);
+		decodeStage.asDownstream().put(attachment, frame);
+	}
+	
+	/**
+	 * Submits an encoded {@link ServerPaymentRequest} if the queue of the
+	 * first stage has room within the given timeout.
+	 * 
+	 * @return true if the frame has been accepted, false if the pipeline is
+	 *         overloaded
+	 * @throws IllegalArgumentException
+	 *             if the frame is null or the pipeline has been shut down
+	 * @see #submit(byte[], Object)
+	 */
+	public boolean offer(byte[] frame, Object attachment, long timeout, TimeUnit unit) throws IllegalArgumentException, InterruptedException {
+		checkSubmit(frame);
+		return decodeStage.offer(attachment, frame, timeout, unit);
+	}
+	
+	private void checkSubmit(byte[] frame) throws IllegalArgumentException {
+		if (frame == null)
+			throw new IllegalArgumentException("The frame cannot be null.");
+		if (shutdown)
+			throw new IllegalArgumentException("The pipeline has been shut down.");
+	}
+	
+	/**
+	 * Returns the number of frames waiting to be decoded.
+	 */
+	public int getPendingFrames() {
+		return decodeStage.getQueueSize();
+	}
+	
+	/**
+	 * Stops accepting frames. The submitted frames still pass all stages,
+	 * afterwards the threads stop. Frames must not be submitted concurrently
+	 * with this call.
+	 */
+	public void shutdown() throws InterruptedException {
+		if (!shutdown) {
+			shutdown = true;
+			decodeStage.close();
+		}
+	}
+	
+	/**
+	 * Blocks until all stages have stopped after {@link #shutdown()}, or until
+	 * the timeout expires.
+	 * 
+	 * @return true if the pipeline has terminated, false if the timeout
+	 *         expired
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return terminated.await(timeout, unit);
+	}
+
+}
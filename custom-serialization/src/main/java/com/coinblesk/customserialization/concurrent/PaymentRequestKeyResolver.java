@@ -0,0 +1,27 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.security.PublicKey;
+
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+
+/**
+ * This interface is used by the {@link PaymentPipeline} to look up the public
+ * key a {@link PaymentRequest} contained in a {@link ServerPaymentRequest}
+ * has been signed with.
+ */
+public interface PaymentRequestKeyResolver {
+	
+	/**
+	 * Returns the public key of the signer, or null if it is not known.
+	 * 
+	 * @param paymentRequest
+	 *            the {@link PaymentRequest} to be verified
+	 * @param index
+	 *            the position of the {@link PaymentRequest} in the
+	 *            {@link ServerPaymentRequest}, i.e., 0 if it has been signed
+	 *            by the payer and 1 if it has been signed by the payee
+	 */
+	public PublicKey getPublicKey(PaymentRequest paymentRequest, int index);
+
+}
@@ -0,0 +1,21 @@
+package com.coinblesk.customserialization.concurrent;
+
+/**
+ * This interface receives the results of a {@link PaymentPipeline}. The
+ * attachment is the object passed along with the input (e.g., the connection
+ * the request has been received on). The methods are called concurrently by
+ * the threads of the last stage.
+ */
+public interface PipelineSink<O> {
+	
+	/**
+	 * Called with the result of an input which passed all stages.
+	 */
+	public void onResult(Object attachment, O result);
+	
+	/**
+	 * Called if any stage failed to process an input.
+	 */
+	public void onError(Object attachment, Throwable t);
+
+}
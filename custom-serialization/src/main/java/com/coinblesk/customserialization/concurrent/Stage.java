@@ -0,0 +1,140 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stage of a {@link PaymentPipeline}. It has a bounded input queue and a
+ * fixed number of threads, which apply the {@link StageFunction} and pass the
+ * output on to the next stage. If the queue of the next stage is full, the
+ * threads block, so that a slow stage slows down all stages before it and
+ * finally the producer.
+ */
+class Stage<I, O> {
+	
+	/**
+	 * The receiver of the output of a stage.
+	 */
+	interface Downstream<T> {
+		void put(Object attachment, T value) throws InterruptedException;
+		void onError(Object attachment, Throwable t);
+		void close() throws InterruptedException;
+	}
+	
+	private static final Object[] END = new Object[0];
+	
+	private final StageFunction<I, O> function;
+	private final Downstream<O> downstream;
+	private final BlockingQueue<Object[]> queue;
+	private final AtomicInteger running;
+	private final Thread[] threads;
+	
+	Stage(String name, StageFunction<I, O> function, int nofThreads, int queueCapacity, Downstream<O> downstream) {
+		this.function = function;
+		this.downstream = downstream;
+		this.queue = new ArrayBlockingQueue<Object[]>(queueCapacity);
+		this.running = new AtomicInteger(nofThreads);
+		this.threads = new Thread[nofThreads];
+		
+		for (int i=0; i<nofThreads; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runWorker();
+				}
+			}, name+"-"+(i+1));
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+	
+	/**
+	 * Returns a {@link Downstream} which feeds this stage.
+	 */
+	Downstream<I> asDownstream() {
+		return new Downstream<I>() {
+			@Override
+			public void put(Object attachment, I value) throws InterruptedException {
+				queue.put(new Object[] { attachment, value });
+			}
+			
+			@Override
+			public void onError(Object attachment, Throwable t) {
+				downstream.onError(attachment, t);
+			}
+			
+			@Override
+			public void close() throws InterruptedException {
+				Stage.this.close();
+			}
+		};
+	}
+	
+	boolean offer(Object attachment, I value, long timeout, TimeUnit unit) throws InterruptedException {
+		return queue.offer(new Object[] { attachment, value }, timeout, unit);
+	}
+	
+	/**
+	 * Lets the threads finish the queued inputs and stop. The next stage is
+	 * closed when the last thread has stopped.
+	 */
+	void close() throws InterruptedException {
+		for (int i=0; i<threads.length; i++) {
+			queue.put(END);
+		}
+	}
+	
+	int getQueueSize() {
+		return queue.size();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void runWorker() {
+		try {
+			while (true) {
+				Object[] element = queue.take();
+				if (element == END)
+					break;
+				
+				Object attachment = element[0];
+				O output;
+				try {
+					output = function.apply((I) element[1]);
+				} catch (Throwable t) {
+					reportError(attachment, t);
+					continue;
+				}
+				try {
+					downstream.put(attachment, output);
+				} catch (RuntimeException e) {
+					// e.g., the sink failed to handle the result
+					reportError(attachment, e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (running.decrementAndGet() == 0)
+				closeDownstream();
+		}
+	}
+	
+	private void reportError(Object attachment, Throwable t) {
+		try {
+			downstream.onError(attachment, t);
+		} catch (RuntimeException e) {
+			// the sink failed to handle the error, there is nobody left to tell
+		}
+	}
+	
+	private void closeDownstream() {
+		try {
+			downstream.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package com.coinblesk.customserialization.concurrent;
+
+/**
+ * This interface is implemented by the work of a stage of a
+ * {@link PaymentPipeline}.
+ */
+public interface StageFunction<I, O> {
+	
+	/**
+	 * Processes the given input. It may be called concurrently by all threads
+	 * of the stage.
+	 * 
+	 * @return the output to be passed to the next stage
+	 * @throws Exception
+	 *             if the input could not be processed, which is reported to
+	 *             the {@link PipelineSink}
+	 */
+	public O apply(I input) throws Exception;
+
+}
@@ -0,0 +1,64 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.crypto.BatchVerifier;
+import com.coinblesk.customserialization.crypto.PrecomputationCache;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This {@link BatchHandler} verifies a batch of signatures with a
+ * {@link BatchVerifier}, which shares the modular inversions of the batch and
+ * takes the tables of known public keys from a {@link PrecomputationCache}.
+ * To verify a {@link ServerPaymentRequest}, one {@link VerificationTask} is
+ * submitted for each of its {@link com.coinblesk.customserialization.PaymentRequest}s.
+ * 
+ * A missing or malformed signature or key only yields false for its own
+ * task, so the tasks of other clients in the same batch are not affected.
+ */
+public class VerificationBatchHandler implements BatchHandler<VerificationTask, Boolean> {
+	
+	private final PrecomputationCache cache;
+	
+	/**
+	 * Creates a new handler without a {@link PrecomputationCache}.
+	 */
+	public VerificationBatchHandler() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a new handler.
+	 * 
+	 * @param cache
+	 *            the cache to take the public key tables from, or null
+	 */
+	public VerificationBatchHandler(PrecomputationCache cache) {
+		this.cache = cache;
+	}
+	
+	@Override
+	public List<Boolean> process(List<VerificationTask> batch) throws Exception {
+		BatchVerifier batchVerifier = new BatchVerifier(cache);
+		// the tasks which are not in the batch verifier are null
+		Boolean[] rejected = new Boolean[batch.size()];
+		for (int i=0; i<batch.size(); i++) {
+			try {
+				batchVerifier.add(batch.get(i).getObject(), batch.get(i).getPublicKey());
+			} catch (NotSignedException e) {
+				rejected[i] = Boolean.FALSE;
+			}
+		}
+		
+		boolean[] verified = batchVerifier.verify();
+		List<Boolean> results = new ArrayList<Boolean>(batch.size());
+		int next = 0;
+		for (int i=0; i<batch.size(); i++) {
+			results.add(rejected[i] != null ? rejected[i] : Boolean.valueOf(verified[next++]));
+		}
+		return results;
+	}
+
+}
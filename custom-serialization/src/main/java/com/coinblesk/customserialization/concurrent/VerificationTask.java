@@ -0,0 +1,40 @@
+package com.coinblesk.customserialization.concurrent;
+
+import java.security.PublicKey;
+
+import com.coinblesk.customserialization.SignedSerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class pairs a {@link SignedSerializableObject} with the public key its
+ * signature has to be verified with. It is the item type of the
+ * {@link VerificationBatchHandler}.
+ */
+public class VerificationTask {
+	
+	private final SignedSerializableObject object;
+	private final PublicKey publicKey;
+	
+	/**
+	 * Creates a new task.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any parameter is null
+	 */
+	public VerificationTask(SignedSerializableObject object, PublicKey publicKey) throws IllegalArgumentException {
+		if (object == null || publicKey == null)
+			throw new IllegalArgumentException("The object and the public key cannot be null.");
+		
+		this.object = object;
+		this.publicKey = publicKey;
+	}
+	
+	public SignedSerializableObject getObject() {
+		return object;
+	}
+	
+	public PublicKey getPublicKey() {
+		return publicKey;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.coinblesk.customserialization.corpus;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class reads the records written by a {@link CorpusWriter}.
+ */
+public class CorpusReader implements Closeable {
+	
+	/**
+	 * The maximum length of a message, which protects the reader from
+	 * allocating huge buffers for corrupt records.
+	 */
+	public static final int MAX_MESSAGE_LENGTH = 1 << 24;
+	
+	private final DataInputStream in;
+	private final CRC32 crc = new CRC32();
+	
+	public CorpusReader(InputStream in) {
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+	}
+	
+	/**
+	 * Reads the next record.
+	 * 
+	 * @return the record, or null if the end of the corpus has been reached
+	 * @throws IOException
+	 *             if the record is truncated or its checksum does not match
+	 */
+	public CorpusRecord next() throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		
+		if (length < 0 || length > MAX_MESSAGE_LENGTH)
+			throw new IOException("The corpus is corrupt (invalid length "+length+").");
+		
+		MessageType messageType;
+		try {
+			messageType = MessageType.getMessageType(in.readByte());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("The corpus is corrupt ("+e.getMessage()+").");
+		}
+		int checksum = in.readInt();
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		
+		crc.reset();
+		crc.update(bytes, 0, bytes.length);
+		if ((int) crc.getValue() != checksum)
+			throw new IOException("The corpus is corrupt (checksum mismatch).");
+		
+		return new CorpusRecord(messageType, bytes);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
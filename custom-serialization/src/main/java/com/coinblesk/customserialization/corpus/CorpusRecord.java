@@ -0,0 +1,41 @@
+package com.coinblesk.customserialization.corpus;
+
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * A record of a corpus, i.e., an encoded message and its type.
+ */
+public class CorpusRecord {
+	
+	private final MessageType messageType;
+	private final byte[] bytes;
+	
+	public CorpusRecord(MessageType messageType, byte[] bytes) {
+		this.messageType = messageType;
+		this.bytes = bytes;
+	}
+	
+	public MessageType getMessageType() {
+		return messageType;
+	}
+	
+	/**
+	 * Returns the encoded message.
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * Decodes the message into the class of its {@link MessageType}.
+	 * 
+	 * @see DecoderFactory#decode(Class, byte[])
+	 */
+	public <T extends SerializableObject> T decode() throws IllegalArgumentException, SerializationException {
+		return DecoderFactory.decode(messageType.getMessageClass(), bytes);
+	}
+
+}
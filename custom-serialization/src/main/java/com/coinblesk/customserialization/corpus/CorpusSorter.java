@@ -0,0 +1,554 @@
+package com.coinblesk.customserialization.corpus;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class sorts corpus files (see {@link CorpusWriter}) which do not fit
+ * into memory, e.g., in order to merge the logs of several servers into one
+ * time-ordered corpus. The records are sorted by the timestamp, the payer or
+ * the payee of their {@link PaymentRequest} or {@link PaymentResponse}. For
+ * {@link ServerPaymentRequest}s and {@link ServerPaymentResponse}s, the first
+ * contained message is used. The sort is stable, i.e., records with equal
+ * keys keep the order of the inputs. Responses which reference their request
+ * by digest (see {@link PaymentResponse#isByReference()}) have no usernames
+ * and precede all other records when sorting by payer or payee.
+ * 
+ * The records are first collected in an off-heap buffer, whose size and the
+ * number of records are bounded by the memory limit. A full buffer is sorted
+ * and written to a temporary run file. The runs are then merged with a
+ * k-way merge, which reads every run sequentially through a small buffer, so
+ * the size of a run is not limited. If there are more runs than the merge
+ * factor, they are merged in several passes. The run files prefix every
+ * record with its sort key, so the merge compares the keys without decoding
+ * the records again. The key is only dropped when the output is written.
+ * 
+ * It can be started from the command line with the sort key, the output file
+ * and the input files as arguments.
+ */
+public class CorpusSorter {
+	
+	/**
+	 * The keys records can be sorted by. Records with the same payer or payee
+	 * are sorted by their timestamp.
+	 */
+	public enum SortKey {
+		TIMESTAMP, PAYER, PAYEE;
+	}
+	
+	/**
+	 * The default memory limit (64 MiB).
+	 */
+	public static final long DEFAULT_MEMORY_LIMIT = 1 << 26;
+	
+	/**
+	 * The default number of runs merged at once.
+	 */
+	public static final int DEFAULT_MERGE_FACTOR = 64;
+	
+	private static final long MIN_MEMORY_LIMIT = 1 << 12;
+	private static final long MAX_MEMORY_LIMIT = 1L << 31;
+	// the estimated heap usage of an entry in the sort buffer
+	private static final int ENTRY_OVERHEAD = 64;
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+	private static final int INPUT_BUFFER_SIZE = 1 << 16;
+	// the sort key in front of a record in a run: timestamp (8 bytes) | username length (2 bytes) | username
+	private static final int KEY_HEADER_LENGTH = 8 + 2;
+	private static final int NULL_USERNAME = 0xFFFF;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final SortKey sortKey;
+	private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+	private int mergeFactor = DEFAULT_MERGE_FACTOR;
+	private File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+	private int nofRuns;
+	
+	/**
+	 * Creates a new sorter with a memory limit of 64 MiB and a merge factor of
+	 * 64.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the sort key is null
+	 */
+	public CorpusSorter(SortKey sortKey) throws IllegalArgumentException {
+		if (sortKey == null)
+			throw new IllegalArgumentException("The sort key cannot be null.");
+		this.sortKey = sortKey;
+	}
+	
+	/**
+	 * Sets the number of bytes used for sorting. Half of it is used for the
+	 * off-heap buffer of the records, the other half for their keys.
+	 */
+	public void setMemoryLimit(long memoryLimit) throws IllegalArgumentException {
+		if (memoryLimit < MIN_MEMORY_LIMIT || memoryLimit > MAX_MEMORY_LIMIT)
+			throw new IllegalArgumentException("The memory limit must be between "+MIN_MEMORY_LIMIT+" and "+MAX_MEMORY_LIMIT+" bytes.");
+		this.memoryLimit = memoryLimit;
+	}
+	
+	/**
+	 * Sets the maximum number of runs which are merged at once.
+	 */
+	public void setMergeFactor(int mergeFactor) throws IllegalArgumentException {
+		if (mergeFactor < 2)
+			throw new IllegalArgumentException("The merge factor must be at least 2.");
+		this.mergeFactor = mergeFactor;
+	}
+	
+	/**
+	 * Sets the directory of the temporary run files.
+	 */
+	public void setTempDirectory(File tempDirectory) throws IllegalArgumentException {
+		if (tempDirectory == null)
+			throw new IllegalArgumentException("The directory cannot be null.");
+		this.tempDirectory = tempDirectory;
+	}
+	
+	/**
+	 * Returns the number of runs the last sort has created.
+	 */
+	public int getNofRuns() {
+		return nofRuns;
+	}
+	
+	/**
+	 * Sorts the records of the given corpus files into the output file.
+	 * 
+	 * @return the number of records
+	 * @throws IllegalArgumentException
+	 *             if the inputs or the output are null
+	 * @throws IOException
+	 *             if a file cannot be read or written, or if a record is
+	 *             corrupt or cannot be decoded
+	 */
+	public long sort(List<File> inputs, File output) throws IOException, IllegalArgumentException {
+		if (inputs == null || output == null)
+			throw new IllegalArgumentException("The inputs and the output cannot be null.");
+		
+		List<File> runs = new ArrayList<File>();
+		try {
+			long nofRecords = createRuns(inputs, runs);
+			nofRuns = runs.size();
+			
+			while (runs.size() > mergeFactor) {
+				List<File> merged = new ArrayList<File>();
+				try {
+					for (int i=0; i<runs.size(); i+=mergeFactor) {
+						List<File> group = runs.subList(i, Math.min(runs.size(), i + mergeFactor));
+						File run = createTempFile();
+						merged.add(run);
+						merge(group, run, true);
+						deleteAll(group);
+					}
+				} catch (IOException e) {
+					deleteAll(merged);
+					throw e;
+				}
+				runs = merged;
+			}
+			merge(runs, output, false);
+			
+			return nofRecords;
+		} finally {
+			deleteAll(runs);
+		}
+	}
+	
+	private long createRuns(List<File> inputs, List<File> runs) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) (memoryLimit / 2));
+		int maxEntries = (int) (memoryLimit / 2 / ENTRY_OVERHEAD);
+		List<Entry> entries = new ArrayList<Entry>();
+		CRC32 crc = new CRC32();
+		long nofRecords = 0;
+		
+		for (File input : inputs) {
+			CorpusReader reader = new CorpusReader(new FileInputStream(input));
+			try {
+				CorpusRecord record;
+				while ((record = reader.next()) != null) {
+					byte[] bytes = record.getBytes();
+					int length = CorpusWriter.RECORD_HEADER_LENGTH + bytes.length;
+					if (length > buffer.capacity())
+						throw new IOException("A record of "+length+" bytes exceeds the memory limit.");
+					
+					if (length > buffer.remaining() || entries.size() == maxEntries) {
+						runs.add(writeRun(buffer, entries));
+						buffer.clear();
+						entries.clear();
+					}
+					
+					crc.reset();
+					crc.update(bytes, 0, bytes.length);
+					entries.add(new Entry(getKey(record.getMessageType(), bytes), buffer.position()));
+					buffer.putInt(bytes.length);
+					buffer.put(record.getMessageType().getCode());
+					buffer.putInt((int) crc.getValue());
+					buffer.put(bytes);
+					nofRecords++;
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		
+		if (!entries.isEmpty())
+			runs.add(writeRun(buffer, entries));
+		return nofRecords;
+	}
+	
+	private File writeRun(ByteBuffer buffer, List<Entry> entries) throws IOException {
+		// the sort is stable, so equal keys keep the order of the inputs
+		Collections.sort(entries);
+		
+		File run = createTempFile();
+		RecordOutput out = new RecordOutput(run);
+		try {
+			for (Entry entry : entries) {
+				out.write(entry.key.encode());
+				ByteBuffer record = buffer.duplicate();
+				record.limit(entry.offset + CorpusWriter.RECORD_HEADER_LENGTH + buffer.getInt(entry.offset));
+				record.position(entry.offset);
+				out.write(record);
+			}
+		} finally {
+			out.close();
+		}
+		return run;
+	}
+	
+	/**
+	 * Merges the runs into the output, which is a run itself if the keys are
+	 * kept.
+	 */
+	private void merge(List<File> runs, File output, boolean keepKeys) throws IOException {
+		List<RunCursor> cursors = new ArrayList<RunCursor>();
+		try {
+			PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(Math.max(1, runs.size()));
+			for (int i=0; i<runs.size(); i++) {
+				RunCursor cursor = new RunCursor(i, runs.get(i));
+				cursors.add(cursor);
+				if (cursor.advance())
+					queue.add(cursor);
+			}
+			
+			RecordOutput out = new RecordOutput(output);
+			try {
+				while (!queue.isEmpty()) {
+					RunCursor cursor = queue.poll();
+					cursor.writeTo(out, keepKeys);
+					if (cursor.advance())
+						queue.add(cursor);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			for (RunCursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+	}
+	
+	private Key getKey(MessageType messageType, byte[] bytes) throws IOException {
+		SerializableObject object;
+		try {
+			object = DecoderFactory.decode(messageType.getMessageClass(), bytes);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("A record cannot be decoded ("+e.getMessage()+").");
+		} catch (SerializationException e) {
+			throw new IOException("A record cannot be decoded ("+e.getMessage()+").");
+		}
+		
+		if (object instanceof ServerPaymentRequest)
+			object = ((ServerPaymentRequest) object).getPaymentRequests().get(0);
+		else if (object instanceof ServerPaymentResponse)
+			object = ((ServerPaymentResponse) object).getPaymentResponses().get(0);
+		
+		long timestamp;
+		String payer;
+		String payee;
+		if (object instanceof PaymentRequest) {
+			PaymentRequest pr = (PaymentRequest) object;
+			timestamp = pr.getTimestamp();
+			payer = pr.getUsernamePayer();
+			payee = pr.getUsernamePayee();
+		} else {
+			PaymentResponse pr = (PaymentResponse) object;
+			timestamp = pr.getTimestamp();
+			payer = pr.getUsernamePayer();
+			payee = pr.getUsernamePayee();
+		}
+		
+		switch (sortKey) {
+		case PAYER:
+			return new Key(payer, timestamp);
+		case PAYEE:
+			return new Key(payee, timestamp);
+		default:
+			return new Key(null, timestamp);
+		}
+	}
+	
+	private File createTempFile() throws IOException {
+		return File.createTempFile("run", ".corpus", tempDirectory);
+	}
+	
+	private static void deleteAll(List<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+	
+	private static class Key implements Comparable<Key> {
+		private final String username;
+		private final long timestamp;
+		
+		private Key(String username, long timestamp) {
+			this.username = username;
+			this.timestamp = timestamp;
+		}
+		
+		/**
+		 * Compares the usernames and then the timestamps. A null username,
+		 * i.e., of a response which references its request, precedes all
+		 * others.
+		 */
+		@Override
+		public int compareTo(Key o) {
+			if (username != o.username) {
+				if (username == null)
+					return -1;
+				if (o.username == null)
+					return 1;
+				int c = username.compareTo(o.username);
+				if (c != 0)
+					return c;
+			}
+			return timestamp < o.timestamp ? -1 : (timestamp == o.timestamp ? 0 : 1);
+		}
+		
+		/**
+		 * Returns the key as it is written in front of a record in a run.
+		 */
+		private ByteBuffer encode() throws IOException {
+			byte[] usernameBytes = username != null ? username.getBytes(UTF_8) : new byte[0];
+			if (usernameBytes.length >= NULL_USERNAME)
+				throw new IOException("A username of "+usernameBytes.length+" bytes is too long.");
+			
+			ByteBuffer result = ByteBuffer.allocate(KEY_HEADER_LENGTH + usernameBytes.length);
+			result.putLong(timestamp);
+			result.putShort((short) (username != null ? usernameBytes.length : NULL_USERNAME));
+			result.put(usernameBytes);
+			result.flip();
+			return result;
+		}
+	}
+	
+	/**
+	 * A record in the sort buffer.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final Key key;
+		private final int offset;
+		
+		private Entry(Key key, int offset) {
+			this.key = key;
+			this.offset = offset;
+		}
+		
+		@Override
+		public int compareTo(Entry o) {
+			return key.compareTo(o.key);
+		}
+	}
+	
+	/**
+	 * Iterates the records of a run file, which are read sequentially through
+	 * an off-heap buffer. Only the key in front of a record is decoded.
+	 */
+	private class RunCursor implements Comparable<RunCursor> {
+		private final int index;
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(INPUT_BUFFER_SIZE);
+		private final ByteBuffer keyHeader = ByteBuffer.allocate(KEY_HEADER_LENGTH);
+		private final ByteBuffer header = ByteBuffer.allocate(CorpusWriter.RECORD_HEADER_LENGTH);
+		private byte[] usernameBytes;
+		private byte[] bytes;
+		private Key key;
+		
+		private RunCursor(int index, File run) throws IOException {
+			this.index = index;
+			this.file = new RandomAccessFile(run, "r");
+			this.channel = file.getChannel();
+			this.buffer.limit(0);
+		}
+		
+		/**
+		 * Moves to the next record. Returns false at the end of the run.
+		 */
+		private boolean advance() throws IOException {
+			keyHeader.clear();
+			if (!read(keyHeader)) {
+				if (keyHeader.position() == 0)
+					return false;
+				throw new IOException("A run is truncated.");
+			}
+			keyHeader.flip();
+			
+			int usernameLength = keyHeader.getShort(8) & 0xFFFF;
+			usernameBytes = new byte[usernameLength != NULL_USERNAME ? usernameLength : 0];
+			header.clear();
+			if (!read(ByteBuffer.wrap(usernameBytes)) || !read(header))
+				throw new IOException("A run is truncated.");
+			header.flip();
+			
+			bytes = new byte[header.getInt(0)];
+			if (!read(ByteBuffer.wrap(bytes)))
+				throw new IOException("A run is truncated.");
+			
+			String username = usernameLength != NULL_USERNAME ? new String(usernameBytes, UTF_8) : null;
+			key = new Key(username, keyHeader.getLong(0));
+			return true;
+		}
+		
+		/**
+		 * Fills the target from the run. Returns false if the run ends before.
+		 */
+		private boolean read(ByteBuffer target) throws IOException {
+			while (target.hasRemaining()) {
+				if (!buffer.hasRemaining()) {
+					// large records bypass the buffer
+					if (target.remaining() >= buffer.capacity())
+						return readFully(target);
+					
+					buffer.clear();
+					int n = channel.read(buffer);
+					buffer.flip();
+					if (n < 0)
+						return false;
+				}
+				
+				int n = Math.min(buffer.remaining(), target.remaining());
+				ByteBuffer chunk = buffer.duplicate();
+				chunk.limit(chunk.position() + n);
+				target.put(chunk);
+				buffer.position(buffer.position() + n);
+			}
+			return true;
+		}
+		
+		private boolean readFully(ByteBuffer target) throws IOException {
+			while (target.hasRemaining()) {
+				if (channel.read(target) < 0)
+					return false;
+			}
+			return true;
+		}
+		
+		private void writeTo(RecordOutput out, boolean keepKey) throws IOException {
+			if (keepKey) {
+				out.write(keyHeader.duplicate());
+				out.write(ByteBuffer.wrap(usernameBytes));
+			}
+			out.write(header.duplicate());
+			out.write(ByteBuffer.wrap(bytes));
+		}
+		
+		private void close() throws IOException {
+			file.close();
+		}
+		
+		@Override
+		public int compareTo(RunCursor o) {
+			int c = key.compareTo(o.key);
+			// ties are broken by the run, which keeps the sort stable
+			return c != 0 ? c : (index < o.index ? -1 : 1);
+		}
+	}
+	
+	/**
+	 * Writes records to a file through an off-heap buffer.
+	 */
+	private static class RecordOutput {
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+		
+		private RecordOutput(File output) throws IOException {
+			this.file = new RandomAccessFile(output, "rw");
+			this.file.setLength(0);
+			this.channel = file.getChannel();
+		}
+		
+		private void write(ByteBuffer record) throws IOException {
+			if (record.remaining() > buffer.remaining())
+				flush();
+			if (record.remaining() > buffer.capacity()) {
+				while (record.hasRemaining()) {
+					channel.write(record);
+				}
+			} else {
+				buffer.put(record);
+			}
+		}
+		
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		
+		private void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				file.close();
+			}
+		}
+	}
+	
+	/**
+	 * Sorts corpus files. The arguments are the sort key (timestamp, payer or
+	 * payee), the output file and the input files.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: CorpusSorter <timestamp|payer|payee> <output> <input>...");
+			System.exit(1);
+		}
+		
+		CorpusSorter sorter = new CorpusSorter(SortKey.valueOf(args[0].toUpperCase()));
+		List<File> inputs = new ArrayList<File>();
+		for (String input : Arrays.asList(args).subList(2, args.length)) {
+			inputs.add(new File(input));
+		}
+		
+		long begin = System.nanoTime();
+		long nofRecords = sorter.sort(inputs, new File(args[1]));
+		System.out.printf("%d records sorted in %d runs in %.1f s.%n", nofRecords, sorter.getNofRuns(), (System.nanoTime() - begin) / 1e9);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.coinblesk.customserialization.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This class writes encoded messages to a corpus file. Every message is
+ * stored as a record:
+ * 
+ * <pre>
+ * length (4 bytes) | type (1 byte) | CRC-32 of the message (4 bytes) | message
+ * </pre>
+ * 
+ * @see CorpusReader
+ */
+public class CorpusWriter implements Closeable {
+	
+	/**
+	 * The number of bytes in front of every message.
+	 */
+	public static final int RECORD_HEADER_LENGTH = 4+1+4;
+	
+	private final DataOutputStream out;
+	private final CRC32 crc = new CRC32();
+	private long nofRecords;
+	
+	public CorpusWriter(OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+	}
+	
+	/**
+	 * Encodes the given message and appends it as a record.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the message is of an unsupported class
+	 * @throws NotSignedException
+	 *             if the message has not been signed
+	 */
+	public void write(SerializableObject object) throws IllegalArgumentException, NotSignedException, IOException {
+		write(MessageType.getMessageType(object), object.encode());
+	}
+	
+	/**
+	 * Appends the given encoded message as a record.
+	 */
+	public void write(MessageType messageType, byte[] bytes) throws IOException {
+		crc.reset();
+		crc.update(bytes, 0, bytes.length);
+		
+		out.writeInt(bytes.length);
+		out.writeByte(messageType.getCode());
+		out.writeInt((int) crc.getValue());
+		out.write(bytes);
+		nofRecords++;
+	}
+	
+	/**
+	 * Returns the number of records written so far.
+	 */
+	public long getNofRecords() {
+		return nofRecords;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
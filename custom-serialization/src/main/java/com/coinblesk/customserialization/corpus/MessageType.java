@@ -0,0 +1,70 @@
+package com.coinblesk.customserialization.corpus;
+
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This enum contains the types of messages which can be stored in a corpus.
+ * The code is written in front of every record, so that it can be decoded
+ * into the right class.
+ */
+public enum MessageType {
+	PAYMENT_REQUEST((byte) 0x01, PaymentRequest.class),
+	PAYMENT_RESPONSE((byte) 0x02, PaymentResponse.class),
+	SERVER_PAYMENT_REQUEST((byte) 0x03, ServerPaymentRequest.class),
+	SERVER_PAYMENT_RESPONSE((byte) 0x04, ServerPaymentResponse.class);
+	
+	private byte code;
+	private Class<? extends SerializableObject> clazz;
+	
+	private MessageType(byte code, Class<? extends SerializableObject> clazz) {
+		this.code = code;
+		this.clazz = clazz;
+	}
+	
+	public byte getCode() {
+		return code;
+	}
+	
+	/**
+	 * Returns the class the messages of this type are decoded into.
+	 */
+	public Class<? extends SerializableObject> getMessageClass() {
+		return clazz;
+	}
+	
+	/**
+	 * Returns the {@link MessageType} with the given code.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the code is unknown
+	 */
+	public static MessageType getMessageType(byte code) throws IllegalArgumentException {
+		for (MessageType messageType : values()) {
+			if (messageType.code == code)
+				return messageType;
+		}
+		throw new IllegalArgumentException("Unknown message type "+code+".");
+	}
+	
+	/**
+	 * Returns the {@link MessageType} of the given object.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the object is null or of an unsupported class
+	 */
+	public static MessageType getMessageType(SerializableObject object) throws IllegalArgumentException {
+		if (object != null) {
+			for (MessageType messageType : values()) {
+				if (messageType.clazz == object.getClass())
+					return messageType;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported message "+object+".");
+	}
+
+}
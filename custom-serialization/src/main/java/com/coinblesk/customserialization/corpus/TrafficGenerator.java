@@ -0,0 +1,265 @@
+package com.coinblesk.customserialization.corpus;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This class generates a reproducible corpus of signed messages from a seed,
+ * e.g., for benchmarks and replays. Every transaction produces the payer's
+ * {@link PaymentRequest}, the {@link ServerPaymentRequest}, the
+ * {@link ServerPaymentResponse} and the payer's {@link PaymentResponse}.
+ * 
+ * The payers are drawn uniformly, the payees (merchants) from a Zipf
+ * distribution, so that a few merchants receive most of the payments. A
+ * configurable share of the transactions contains an input currency, fails
+ * with a reason, or is a retry of a recent {@link ServerPaymentRequest},
+ * which is answered with {@link ServerResponseStatus#DUPLICATE_REQUEST}.
+ * 
+ * Users share a pool of key pairs in order to keep the key generation cheap
+ * (see {@link #getPublicKey(String)}). The keys and the signatures are derived
+ * from the seed as well, so the same seed yields the same bytes on the same
+ * Java runtime.
+ */
+public class TrafficGenerator {
+	
+	private static final String[] FAILURE_REASONS = {
+		"Insufficient funds.",
+		"Unknown user.",
+		"Amount exceeds the daily limit.",
+		"Invalid signature."
+	};
+	
+	private static final int NOF_RECENT_REQUESTS = 64;
+	private static final double MEAN_AMOUNT_LOG = Math.log(50000);
+	private static final double MEAN_INTERARRIVAL_MILLIS = 10;
+	
+	private final long seed;
+	private int nofPayers = 10000;
+	private int nofMerchants = 1000;
+	private double zipfExponent = 1.0;
+	private double inputCurrencyRate = 0.2;
+	private double failureRate = 0.05;
+	private double duplicateRate = 0.01;
+	private int nofKeys = 16;
+	
+	private KeyPair[] keyPairs;
+	private KeyPair serverKeyPair;
+	
+	/**
+	 * Creates a new generator with the default profile: 10000 payers, 1000
+	 * merchants with a Zipf exponent of 1, 20% of the transactions with an
+	 * input currency, 5% failures, 1% retries and 16 key pairs.
+	 */
+	public TrafficGenerator(long seed) {
+		this.seed = seed;
+	}
+	
+	public void setNofPayers(int nofPayers) throws IllegalArgumentException {
+		checkPositive(nofPayers);
+		this.nofPayers = nofPayers;
+	}
+	
+	public void setNofMerchants(int nofMerchants) throws IllegalArgumentException {
+		checkPositive(nofMerchants);
+		this.nofMerchants = nofMerchants;
+	}
+	
+	/**
+	 * Sets the exponent of the Zipf distribution of the merchants. 0 results
+	 * in a uniform distribution, larger values in a more skewed one.
+	 */
+	public void setZipfExponent(double zipfExponent) throws IllegalArgumentException {
+		if (zipfExponent < 0)
+			throw new IllegalArgumentException("The exponent cannot be negative.");
+		this.zipfExponent = zipfExponent;
+	}
+	
+	public void setInputCurrencyRate(double inputCurrencyRate) throws IllegalArgumentException {
+		checkRate(inputCurrencyRate);
+		this.inputCurrencyRate = inputCurrencyRate;
+	}
+	
+	public void setFailureRate(double failureRate) throws IllegalArgumentException {
+		checkRate(failureRate);
+		this.failureRate = failureRate;
+	}
+	
+	public void setDuplicateRate(double duplicateRate) throws IllegalArgumentException {
+		checkRate(duplicateRate);
+		this.duplicateRate = duplicateRate;
+	}
+	
+	/**
+	 * Sets the number of key pairs shared by the users.
+	 */
+	public void setNofKeys(int nofKeys) throws IllegalArgumentException {
+		checkPositive(nofKeys);
+		this.nofKeys = nofKeys;
+		this.keyPairs = null;
+	}
+	
+	private static void checkPositive(int i) throws IllegalArgumentException {
+		if (i <= 0)
+			throw new IllegalArgumentException("The number must be positive.");
+	}
+	
+	private static void checkRate(double rate) throws IllegalArgumentException {
+		if (rate < 0 || rate > 1)
+			throw new IllegalArgumentException("The rate must be between 0 and 1.");
+	}
+	
+	/**
+	 * Returns the public key the messages of the given user are signed with.
+	 */
+	public PublicKey getPublicKey(String username) throws NoSuchAlgorithmException {
+		initKeys();
+		return keyPairs[(username.hashCode() & 0x7FFFFFFF) % nofKeys].getPublic();
+	}
+	
+	/**
+	 * Returns the public key the responses are signed with.
+	 */
+	public PublicKey getServerPublicKey() throws NoSuchAlgorithmException {
+		initKeys();
+		return serverKeyPair.getPublic();
+	}
+	
+	private void initKeys() throws NoSuchAlgorithmException {
+		if (keyPairs != null)
+			return;
+		
+		KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+		keyGen.initialize(256, newSecureRandom(seed));
+		serverKeyPair = keyGen.generateKeyPair();
+		keyPairs = new KeyPair[nofKeys];
+		for (int i=0; i<nofKeys; i++) {
+			keyPairs[i] = keyGen.generateKeyPair();
+		}
+	}
+	
+	private static SecureRandom newSecureRandom(long seed) throws NoSuchAlgorithmException {
+		SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+		random.setSeed(seed);
+		return random;
+	}
+	
+	/**
+	 * Generates the given number of transactions and writes their messages
+	 * to the given writer.
+	 * 
+	 * @return the number of records written
+	 */
+	public long generate(int nofTransactions, CorpusWriter writer) throws IOException, GeneralSecurityException, IllegalArgumentException, NotSignedException {
+		initKeys();
+		
+		Random random = new Random(seed);
+		SecureRandom signatureRandom = newSecureRandom(~seed);
+		ZipfDistribution merchants = new ZipfDistribution(nofMerchants, zipfExponent);
+		List<ServerPaymentRequest> recent = new ArrayList<ServerPaymentRequest>(NOF_RECENT_REQUESTS);
+		long timestamp = 1420070400000L; // 2015-01-01
+		long nofRecords = writer.getNofRecords();
+		
+		for (int i=0; i<nofTransactions; i++) {
+			timestamp += 1 + (long) (-Math.log(1 - random.nextDouble()) * MEAN_INTERARRIVAL_MILLIS);
+			
+			if (!recent.isEmpty() && random.nextDouble() < duplicateRate) {
+				ServerPaymentRequest retry = recent.get(random.nextInt(recent.size()));
+				writer.write(retry);
+				PaymentResponse response = createResponse(retry.getPaymentRequestPayer(), ServerResponseStatus.DUPLICATE_REQUEST, null, signatureRandom);
+				writer.write(new ServerPaymentResponse(response));
+				continue;
+			}
+			
+			String payer = "payer"+random.nextInt(nofPayers);
+			String payee = "merchant"+merchants.sample(random);
+			long amount = Math.max(1, (long) Math.exp(MEAN_AMOUNT_LOG + random.nextGaussian()));
+			boolean withInputCurrency = random.nextDouble() < inputCurrencyRate;
+			
+			PaymentRequest prPayer = createRequest(payer, payee, amount, withInputCurrency, timestamp);
+			prPayer.sign(getKeyPair(payer).getPrivate(), signatureRandom);
+			PaymentRequest prPayee = createRequest(payer, payee, amount, withInputCurrency, timestamp);
+			prPayee.sign(getKeyPair(payee).getPrivate(), signatureRandom);
+			ServerPaymentRequest spr = new ServerPaymentRequest(prPayer, prPayee);
+			
+			ServerResponseStatus status = ServerResponseStatus.SUCCESS;
+			String reason = null;
+			if (random.nextDouble() < failureRate) {
+				status = ServerResponseStatus.FAILURE;
+				reason = FAILURE_REASONS[random.nextInt(FAILURE_REASONS.length)];
+			}
+			PaymentResponse responsePayer = createResponse(prPayer, status, reason, signatureRandom);
+			PaymentResponse responsePayee = createResponse(prPayee, status, reason, signatureRandom);
+			
+			writer.write(prPayer);
+			writer.write(spr);
+			writer.write(new ServerPaymentResponse(responsePayer, responsePayee));
+			writer.write(responsePayer);
+			
+			if (recent.size() == NOF_RECENT_REQUESTS)
+				recent.set(random.nextInt(NOF_RECENT_REQUESTS), spr);
+			else
+				recent.add(spr);
+		}
+		
+		return writer.getNofRecords() - nofRecords;
+	}
+	
+	private KeyPair getKeyPair(String username) {
+		return keyPairs[(username.hashCode() & 0x7FFFFFFF) % nofKeys];
+	}
+	
+	private static PaymentRequest createRequest(String payer, String payee, long amount, boolean withInputCurrency, long timestamp) throws IllegalArgumentException {
+		if (withInputCurrency)
+			return new PaymentRequest(PKIAlgorithm.DEFAULT, 1, payer, payee, Currency.BTC, amount, Currency.CHF, amount / 250 + 1, timestamp);
+		else
+			return new PaymentRequest(PKIAlgorithm.DEFAULT, 1, payer, payee, Currency.BTC, amount, timestamp);
+	}
+	
+	private PaymentResponse createResponse(PaymentRequest pr, ServerResponseStatus status, String reason, SecureRandom signatureRandom) throws IllegalArgumentException, GeneralSecurityException {
+		PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, status, reason, pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp());
+		response.sign(serverKeyPair.getPrivate(), signatureRandom);
+		return response;
+	}
+	
+	/**
+	 * Writes a corpus to a file. The arguments are the file name, the number
+	 * of transactions (default: 100000) and the seed (default: 1).
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("Usage: TrafficGenerator <file> [transactions] [seed]");
+			System.exit(1);
+		}
+		
+		int nofTransactions = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		
+		CorpusWriter writer = new CorpusWriter(new FileOutputStream(args[0]));
+		try {
+			long nofRecords = new TrafficGenerator(seed).generate(nofTransactions, writer);
+			System.out.println(nofRecords+" records written to "+args[0]+".");
+		} finally {
+			writer.close();
+		}
+	}
+
+}
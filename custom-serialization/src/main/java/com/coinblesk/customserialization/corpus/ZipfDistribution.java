@@ -0,0 +1,33 @@
+package com.coinblesk.customserialization.corpus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks between 0 and n-1 where the probability of rank k is
+ * proportional to 1/(k+1)^s. The cumulative distribution is computed once,
+ * so every sample is a binary search.
+ */
+class ZipfDistribution {
+	
+	private final double[] cumulative;
+	
+	ZipfDistribution(int n, double exponent) {
+		cumulative = new double[n];
+		double sum = 0;
+		for (int k=0; k<n; k++) {
+			sum += 1 / Math.pow(k+1, exponent);
+			cumulative[k] = sum;
+		}
+		for (int k=0; k<n; k++) {
+			cumulative[k] /= sum;
+		}
+	}
+	
+	int sample(Random random) {
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		int rank = index >= 0 ? index : -index - 1;
+		return Math.min(rank, cumulative.length - 1);
+	}
+
+}
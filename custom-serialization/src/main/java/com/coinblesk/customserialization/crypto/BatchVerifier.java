@@ -0,0 +1,198 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.SignedSerializableObject;
+import com.coinblesk.customserialization.crypto.ECCurve.AffinePoint;
+import com.coinblesk.customserialization.crypto.PrecomputationCache.CacheEntry;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This class verifies the signatures of many {@link SignedSerializableObject}s
+ * at once. Every ECDSA verification needs the inverse of s modulo the curve
+ * order. Instead of computing one modular inversion per signature, the
+ * inverses of all signatures on the same curve are computed with a single
+ * inversion (Montgomery's trick) at the cost of three multiplications per
+ * signature. The result of every object is still reported individually.
+ * 
+ * Objects whose {@link PKIAlgorithm} or public key is not handled by
+ * {@link ECCurve} are verified with
+ * {@link SignedSerializableObject#verify(PublicKey)}. If a
+ * {@link PrecomputationCache} is provided, the tables of the cache are used
+ * for the public keys.
+ * 
+ * This class is not thread-safe.
+ */
+public class BatchVerifier {
+	
+	private final PrecomputationCache cache;
+	private final List<SignedSerializableObject> objects = new ArrayList<SignedSerializableObject>();
+	private final List<PublicKey> publicKeys = new ArrayList<PublicKey>();
+	
+	/**
+	 * Creates a new batch verifier without precomputed tables.
+	 */
+	public BatchVerifier() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a new batch verifier.
+	 * 
+	 * @param cache
+	 *            the cache to take the public key tables from, or null
+	 */
+	public BatchVerifier(PrecomputationCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Adds an object to be verified with the given public key.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the object or the public key is null
+	 * @throws NotSignedException
+	 *             if the object has not been signed
+	 */
+	public void add(SignedSerializableObject object, PublicKey publicKey) throws IllegalArgumentException, NotSignedException {
+		if (object == null || publicKey == null)
+			throw new IllegalArgumentException("The object and the public key cannot be null.");
+		
+		if (object.getSignature() == null)
+			throw new NotSignedException();
+		
+		objects.add(object);
+		publicKeys.add(publicKey);
+	}
+	
+	/**
+	 * Returns the number of objects added since the last call of
+	 * {@link #clear()}.
+	 */
+	public int size() {
+		return objects.size();
+	}
+	
+	/**
+	 * Removes all objects from this batch.
+	 */
+	public void clear() {
+		objects.clear();
+		publicKeys.clear();
+	}
+	
+	/**
+	 * Verifies the signatures of all objects added so far. An object whose
+	 * signature is not correctly encoded, whose public key does not belong to
+	 * its {@link PKIAlgorithm} or whose {@link PKIAlgorithm} is not known is
+	 * reported as invalid, without affecting the results of the others.
+	 * 
+	 * @return the result of every object, in the order they were added
+	 */
+	public boolean[] verify() {
+		int size = objects.size();
+		boolean[] results = new boolean[size];
+		BigInteger[][] signatures = new BigInteger[size][];
+		AffinePoint[] points = new AffinePoint[size];
+		CombTable[] tables = new CombTable[size];
+		Map<ECCurve, List<Integer>> curveIndexes = new IdentityHashMap<ECCurve, List<Integer>>();
+		
+		for (int i=0; i<size; i++) {
+			SignedSerializableObject object = objects.get(i);
+			PKIAlgorithm pkiAlgorithm = object.getPKIAlgorithm();
+			PublicKey publicKey = publicKeys.get(i);
+			ECCurve curve = PrecomputationCache.getCurve(pkiAlgorithm, publicKey);
+			try {
+				if (curve == null) {
+					results[i] = object.verify(publicKey);
+					continue;
+				}
+				
+				BigInteger[] rs = PrecomputationCache.toIntegers(object.getSignature(), pkiAlgorithm);
+				if (!curve.isValidScalar(rs[0]) || !curve.isValidScalar(rs[1]))
+					continue;
+				
+				CacheEntry cacheEntry = cache != null ? cache.getEntry(pkiAlgorithm, publicKey) : null;
+				if (cacheEntry != null) {
+					points[i] = cacheEntry.point;
+					tables[i] = cacheEntry.table;
+				} else {
+					points[i] = PrecomputationCache.toAffine(curve, (ECPublicKey) publicKey);
+				}
+				signatures[i] = rs;
+			} catch (GeneralSecurityException e) {
+				// a malformed signature or key, only this object is invalid
+				continue;
+			} catch (NotSignedException e) {
+				// not possible, checked in add()
+				continue;
+			}
+			
+			List<Integer> indexes = curveIndexes.get(curve);
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>();
+				curveIndexes.put(curve, indexes);
+			}
+			indexes.add(i);
+		}
+		
+		MessageDigest messageDigest = newDigest();
+		for (Map.Entry<ECCurve, List<Integer>> entry : curveIndexes.entrySet()) {
+			ECCurve curve = entry.getKey();
+			List<Integer> indexes = entry.getValue();
+			BigInteger[] inverses = invert(curve.getOrder(), signatures, indexes);
+			
+			for (int j=0; j<indexes.size(); j++) {
+				int i = indexes.get(j);
+				byte[] digest = messageDigest.digest(objects.get(i).getPayload());
+				results[i] = curve.verifyWithInverse(points[i], tables[i], digest, signatures[i][0], inverses[j]);
+			}
+		}
+		
+		return results;
+	}
+	
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Returns the inverses of the s values of the given signatures modulo the
+	 * order, computed with a single modular inversion. All s values must be
+	 * in the range [1, order).
+	 */
+	static BigInteger[] invert(BigInteger order, BigInteger[][] signatures, List<Integer> indexes) {
+		int n = indexes.size();
+		BigInteger[] products = new BigInteger[n];
+		products[0] = signatures[indexes.get(0)][1];
+		for (int j=1; j<n; j++) {
+			products[j] = products[j-1].multiply(signatures[indexes.get(j)][1]).mod(order);
+		}
+		
+		BigInteger[] inverses = new BigInteger[n];
+		BigInteger inverse = products[n-1].modInverse(order);
+		for (int j=n-1; j>0; j--) {
+			inverses[j] = inverse.multiply(products[j-1]).mod(order);
+			inverse = inverse.multiply(signatures[indexes.get(j)][1]).mod(order);
+		}
+		inverses[0] = inverse;
+		return inverses;
+	}
+
+}
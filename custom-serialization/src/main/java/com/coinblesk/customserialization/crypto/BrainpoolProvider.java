@@ -0,0 +1,56 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.security.Provider;
+import java.security.Security;
+
+/**
+ * This JCA provider offers a pure Java implementation of SHA256withECDSA and
+ * of the EC key pair generation for the curve brainpoolP256r1, which is used
+ * by {@link com.coinblesk.customserialization.PKIAlgorithm#DEFAULT}. Recent
+ * JDKs no longer support this curve in SunEC.
+ * 
+ * The provider only accepts keys of brainpoolP256r1 and rejects all others,
+ * so that the JCA falls back to the next provider for them. Since SunEC
+ * accepts brainpool keys during the initialization but fails when signing,
+ * the provider has to be inserted before SunEC (see {@link #install()}).
+ * Afterwards, {@link com.coinblesk.customserialization.SignedSerializableObject}
+ * uses it transparently.
+ * 
+ * The generator multiplications use a precomputed comb table, which speeds up
+ * signing considerably. Signing and key generation run in constant time with
+ * respect to the nonce and the private key (see {@link ECCurve}).
+ */
+public final class BrainpoolProvider extends Provider {
+	private static final long serialVersionUID = -6563410061659839082L;
+	
+	public static final String NAME = "CoinbleskBrainpool";
+	
+	public BrainpoolProvider() {
+		super(NAME, 1.0, "Pure Java SHA256withECDSA for brainpoolP256r1");
+		
+		put("Signature.SHA256withECDSA", ECDSASignatureSpi.class.getName());
+		put("Signature.SHA256withECDSA SupportedKeyClasses", "java.security.interfaces.ECPublicKey|java.security.interfaces.ECPrivateKey");
+		put("KeyPairGenerator.EC", ECKeyPairGeneratorSpi.class.getName());
+		put("Alg.Alias.KeyPairGenerator.ECDSA", "EC");
+	}
+	
+	/**
+	 * Inserts this provider with the highest preference, if it is not
+	 * installed yet.
+	 * 
+	 * @return true if the provider has been installed, false if it was
+	 *         installed already
+	 */
+	public static boolean install() {
+		if (Security.getProvider(NAME) != null)
+			return false;
+		
+		Security.insertProviderAt(new BrainpoolProvider(), 1);
+		return true;
+	}
+	
+	static boolean isSupported(ECCurve curve) {
+		return curve == ECCurve.BRAINPOOL_P256R1;
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+
+import com.coinblesk.customserialization.crypto.ECCurve.AffinePoint;
+import com.coinblesk.customserialization.crypto.ECCurve.JacobianPoint;
+import com.coinblesk.customserialization.crypto.ECCurve.ProjectivePoint;
+
+/**
+ * This class holds a precomputed comb table (Lim-Lee) for a fixed base point
+ * P. With t teeth and a spacing of d = ceil(256/t), the table contains the
+ * 2^t-1 points sum(b_j * 2^(j*d) * P) for all non-zero bit vectors b. A
+ * multiplication k*P then needs only d doublings and at most d additions.
+ * 
+ * {@link #multiply(BigInteger)} is meant for public scalars and skips the
+ * additions of zero columns. {@link #multiplySecret(BigInteger)} always
+ * performs the same operations and reads every entry of the table in every
+ * step, so that neither its timing nor its memory accesses depend on the
+ * scalar.
+ * 
+ * The table is immutable and can be shared between threads.
+ */
+final class CombTable {
+	
+	private final ECCurve curve;
+	private final int teeth;
+	private final int spacing;
+	private final AffinePoint[] points;
+	
+	/**
+	 * Builds the comb table for the given base point.
+	 * 
+	 * @param teeth
+	 *            the number of teeth; the table contains 2^teeth-1 points
+	 */
+	CombTable(ECCurve curve, AffinePoint base, int teeth) {
+		this.curve = curve;
+		this.teeth = teeth;
+		this.spacing = (256 + teeth - 1) / teeth;
+		
+		// the base points 2^(j*d) * P
+		JacobianPoint[] bases = new JacobianPoint[teeth];
+		bases[0] = new JacobianPoint(base, curve.getField().one());
+		for (int j=1; j<teeth; j++) {
+			bases[j] = new JacobianPoint();
+			bases[j].set(bases[j-1]);
+			for (int i=0; i<spacing; i++) {
+				curve.twice(bases[j], bases[j]);
+			}
+		}
+		AffinePoint[] affineBases = curve.toAffine(bases);
+		
+		JacobianPoint[] sums = new JacobianPoint[(1 << teeth) - 1];
+		for (int index=1; index<=sums.length; index++) {
+			int lowestBit = Integer.numberOfTrailingZeros(index);
+			int rest = index & (index - 1);
+			if (rest == 0) {
+				sums[index-1] = new JacobianPoint(affineBases[lowestBit], curve.getField().one());
+			} else {
+				sums[index-1] = new JacobianPoint();
+				curve.addMixed(sums[rest-1], affineBases[lowestBit], sums[index-1]);
+			}
+			if (sums[index-1].isInfinity())
+				throw new java.lang.IllegalArgumentException("The base point has a too small order.");
+		}
+		this.points = curve.toAffine(sums);
+	}
+	
+	int getTeeth() {
+		return teeth;
+	}
+	
+	/**
+	 * Returns the number of points held by this table.
+	 */
+	int size() {
+		return points.length;
+	}
+	
+	/**
+	 * Returns k*P for a scalar 0 <= k < 2^256.
+	 */
+	JacobianPoint multiply(BigInteger k) {
+		long[] scalar = MontgomeryField.toLimbs(k);
+		JacobianPoint result = new JacobianPoint();
+		for (int i=spacing-1; i>=0; i--) {
+			curve.twice(result, result);
+			
+			int index = 0;
+			for (int j=teeth-1; j>=0; j--) {
+				index = (index << 1) | bit(scalar, j*spacing + i);
+			}
+			if (index != 0)
+				curve.addMixed(result, points[index-1], result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns k*P for a secret scalar 0 <= k < 2^256 in constant time, using
+	 * the complete formulas of {@link ECCurve#addComplete}.
+	 */
+	ProjectivePoint multiplySecret(BigInteger k) {
+		long[] scalar = MontgomeryField.toLimbs(k);
+		long[] one = curve.getField().one();
+		ProjectivePoint result = new ProjectivePoint();
+		System.arraycopy(one, 0, result.y, 0, MontgomeryField.LIMBS);
+		ProjectivePoint selected = new ProjectivePoint();
+		for (int i=spacing-1; i>=0; i--) {
+			curve.addComplete(result, result, result);
+			
+			int index = 0;
+			for (int j=teeth-1; j>=0; j--) {
+				index = (index << 1) | bit(scalar, j*spacing + i);
+			}
+			select(index, one, selected);
+			curve.addComplete(result, selected, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Writes the point with the given index into r, or the point at infinity
+	 * if the index is 0, by scanning the whole table with masks.
+	 */
+	private void select(int index, long[] one, ProjectivePoint r) {
+		for (int l=0; l<MontgomeryField.LIMBS; l++) {
+			r.x[l] = 0;
+			r.y[l] = one[l];
+			r.z[l] = 0;
+		}
+		for (int j=1; j<=points.length; j++) {
+			// -1 if j == index, 0 otherwise
+			long mask = ((long) (j ^ index) - 1) >> 63;
+			AffinePoint point = points[j-1];
+			for (int l=0; l<MontgomeryField.LIMBS; l++) {
+				r.x[l] ^= (r.x[l] ^ point.x[l]) & mask;
+				r.y[l] ^= (r.y[l] ^ point.y[l]) & mask;
+				r.z[l] ^= (r.z[l] ^ one[l]) & mask;
+			}
+		}
+	}
+	
+	private static int bit(long[] scalar, int position) {
+		if (position >= 256)
+			return 0;
+		return (int) (scalar[position >>> 5] >>> (position & 31)) & 1;
+	}
+
+}
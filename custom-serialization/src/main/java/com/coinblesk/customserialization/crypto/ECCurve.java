@@ -0,0 +1,771 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+
+/**
+ * This class implements the arithmetic of an elliptic curve y^2 = x^3 + ax + b
+ * over a 256 bit prime field with a cofactor of 1, as well as ECDSA on top of
+ * it. Points are handled in Jacobian coordinates (x = X/Z^2, y = Y/Z^3) with
+ * the coordinates in Montgomery form (see {@link MontgomeryField}).
+ * 
+ * Multiples of the generator are computed with a precomputed comb table,
+ * which is built on first use. Multiples of other points use a fixed window
+ * of 4 bits, unless a {@link CombTable} for the point is provided.
+ * 
+ * Multiplications with secret scalars (the nonce when signing and the private
+ * key when generating a key pair) run in constant time: they use the complete
+ * addition formulas of Renes, Costello and Batina in homogeneous projective
+ * coordinates, which have no exceptional cases, and read the comb table with
+ * a masked scan over all entries. The inversion of the nonce is blinded with
+ * a random factor. Verification only handles public values and uses the
+ * faster, variable time Jacobian formulas.
+ */
+final class ECCurve {
+	
+	static final ECCurve BRAINPOOL_P256R1 = new ECCurve(
+			"brainpoolP256r1",
+			new byte[] { 0x2B, 0x24, 0x03, 0x03, 0x02, 0x08, 0x01, 0x01, 0x07 },
+			"A9FB57DBA1EEA9BC3E660A909D838D726E3BF623D52620282013481D1F6E5377",
+			"7D5A0975FC2C3057EEF67530417AFFE7FB8055C126DC5C6CE94A4B44F330B5D9",
+			"26DC5C6CE94A4B44F330B5D9BBD77CBF958416295CF7E1CE6BCCDC18FF8C07B6",
+			"8BD2AEB9CB7E57CB2C4B482FFC81B7AFB9DE27E1E3BD23C23A4453BD9ACE3262",
+			"547EF835C3DAC4FD97F8461A14611DC9C27745132DED8E545C1D54C72F046997",
+			"A9FB57DBA1EEA9BC3E660A909D838D718C397AA3B561A6F7901E0E82974856A7");
+	
+	static final ECCurve SECP256R1 = new ECCurve(
+			"secp256r1",
+			new byte[] { 0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x03, 0x01, 0x07 },
+			"FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFF",
+			"FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFC",
+			"5AC635D8AA3A93E7B3EBBD55769886BC651D06B0CC53B0F63BCE3C3E27D2604B",
+			"6B17D1F2E12C4247F8BCE6E563A440F277037D812DEB33A0F4A13945D898C296",
+			"4FE342E2FE1A7F9B8EE7EB4A7C0F9E162BCE33576B315ECECBB6406837BF51F5",
+			"FFFFFFFF00000000FFFFFFFFFFFFFFFFBCE6FAADA7179E84F3B9CAC2FC632551");
+	
+	private static final ECCurve[] CURVES = { BRAINPOOL_P256R1, SECP256R1 };
+	
+	static final int GENERATOR_COMB_TEETH = 8;
+	private static final int WINDOW_SIZE = 4;
+	
+	private final String name;
+	private final byte[] oid;
+	private final MontgomeryField field;
+	private final long[] a;
+	private final long[] b;
+	private final long[] b3;
+	private final BigInteger order;
+	private final AffinePoint generator;
+	private final ECParameterSpec parameterSpec;
+	
+	private volatile CombTable generatorTable;
+	
+	private ECCurve(String name, byte[] oid, String p, String a, String b, String gx, String gy, String n) {
+		this.name = name;
+		this.oid = oid;
+		
+		BigInteger prime = new BigInteger(p, 16);
+		BigInteger aValue = new BigInteger(a, 16);
+		BigInteger bValue = new BigInteger(b, 16);
+		BigInteger gxValue = new BigInteger(gx, 16);
+		BigInteger gyValue = new BigInteger(gy, 16);
+		
+		this.field = new MontgomeryField(prime);
+		this.a = field.toMontgomery(aValue);
+		this.b = field.toMontgomery(bValue);
+		this.b3 = field.toMontgomery(bValue.multiply(BigInteger.valueOf(3)).mod(prime));
+		this.order = new BigInteger(n, 16);
+		this.generator = new AffinePoint(field.toMontgomery(gxValue), field.toMontgomery(gyValue));
+		
+		EllipticCurve curve = new EllipticCurve(new ECFieldFp(prime), aValue, bValue);
+		this.parameterSpec = new ECParameterSpec(curve, new ECPoint(gxValue, gyValue), order, 1);
+	}
+	
+	/**
+	 * Returns the curve matching the given parameters, or null if the
+	 * parameters do not belong to a supported curve.
+	 */
+	static ECCurve forParameters(ECParameterSpec params) {
+		if (params == null)
+			return null;
+		
+		for (ECCurve curve : CURVES) {
+			if (curve.matches(params))
+				return curve;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the curve with the given (case insensitive) name, or null if
+	 * the curve is not supported.
+	 */
+	static ECCurve forName(String name) {
+		for (ECCurve curve : CURVES) {
+			if (curve.name.equalsIgnoreCase(name))
+				return curve;
+		}
+		return null;
+	}
+	
+	boolean matches(ECParameterSpec params) {
+		if (!(params.getCurve().getField() instanceof ECFieldFp))
+			return false;
+		
+		ECParameterSpec own = parameterSpec;
+		return ((ECFieldFp) params.getCurve().getField()).getP().equals(field.getModulus())
+				&& params.getCurve().getA().equals(own.getCurve().getA())
+				&& params.getCurve().getB().equals(own.getCurve().getB())
+				&& params.getGenerator().equals(own.getGenerator())
+				&& params.getOrder().equals(order)
+				&& params.getCofactor() == 1;
+	}
+	
+	String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the content octets of the DER encoded object identifier of
+	 * this curve.
+	 */
+	byte[] getOid() {
+		return oid.clone();
+	}
+	
+	BigInteger getOrder() {
+		return order;
+	}
+	
+	ECParameterSpec getParameterSpec() {
+		return parameterSpec;
+	}
+	
+	MontgomeryField getField() {
+		return field;
+	}
+	
+	/*
+	 * ECDSA
+	 */
+	
+	/**
+	 * Creates an ECDSA signature of the given message digest.
+	 * 
+	 * @return the signature values r and s
+	 */
+	BigInteger[] sign(BigInteger privateKey, byte[] digest, SecureRandom random) {
+		BigInteger e = toInteger(digest);
+		while (true) {
+			BigInteger k = randomScalar(random);
+			AffinePoint point = multiplyGeneratorSecret(k);
+			BigInteger r = field.fromMontgomery(point.x).mod(order);
+			if (r.signum() == 0)
+				continue;
+			
+			// k^-1 = (k*b)^-1 * b, so that the inversion never sees k itself
+			BigInteger blinding = randomScalar(random);
+			BigInteger kInverse = k.multiply(blinding).mod(order).modInverse(order).multiply(blinding).mod(order);
+			BigInteger s = kInverse.multiply(e.add(r.multiply(privateKey))).mod(order);
+			if (s.signum() == 0)
+				continue;
+			
+			return new BigInteger[] { r, s };
+		}
+	}
+	
+	/**
+	 * Verifies an ECDSA signature of the given message digest.
+	 * 
+	 * @param publicKey
+	 *            the signer's public key
+	 * @param publicKeyTable
+	 *            a comb table of the public key, or null to use a window
+	 *            table computed on the fly
+	 */
+	boolean verify(AffinePoint publicKey, CombTable publicKeyTable, byte[] digest, BigInteger r, BigInteger s) {
+		if (!isValidScalar(r) || !isValidScalar(s))
+			return false;
+		
+		return verifyWithInverse(publicKey, publicKeyTable, digest, r, s.modInverse(order));
+	}
+	
+	/**
+	 * Verifies an ECDSA signature of the given message digest, where the
+	 * inverse of s has already been computed (e.g., with a batch inversion).
+	 */
+	boolean verifyWithInverse(AffinePoint publicKey, CombTable publicKeyTable, byte[] digest, BigInteger r, BigInteger sInverse) {
+		BigInteger e = toInteger(digest);
+		BigInteger u1 = e.multiply(sInverse).mod(order);
+		BigInteger u2 = r.multiply(sInverse).mod(order);
+		
+		JacobianPoint point = multiplyGenerator(u1);
+		JacobianPoint q = publicKeyTable != null ? publicKeyTable.multiply(u2) : multiply(publicKey, u2);
+		add(point, q, point);
+		if (point.isInfinity())
+			return false;
+		
+		/*
+		 * Instead of converting the point to affine coordinates, check
+		 * whether X == x*Z^2 for the candidates x = r and x = r+n (if r+n <
+		 * p), which avoids the inversion of Z.
+		 */
+		long[] zz = new long[MontgomeryField.LIMBS];
+		field.square(point.z, zz);
+		
+		BigInteger candidate = r;
+		long[] t = new long[MontgomeryField.LIMBS];
+		while (candidate.compareTo(field.getModulus()) < 0) {
+			field.multiply(field.toMontgomery(candidate), zz, t);
+			if (field.equals(t, point.x))
+				return true;
+			candidate = candidate.add(order);
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns r and s of an ECDSA signature in the IEEE P1363 encoding.
+	 */
+	static BigInteger[] toIntegers(byte[] p1363) {
+		int size = p1363.length / 2;
+		byte[] r = new byte[size];
+		byte[] s = new byte[size];
+		System.arraycopy(p1363, 0, r, 0, size);
+		System.arraycopy(p1363, size, s, 0, size);
+		return new BigInteger[] { new BigInteger(1, r), new BigInteger(1, s) };
+	}
+	
+	boolean isValidScalar(BigInteger k) {
+		return k.signum() > 0 && k.compareTo(order) < 0;
+	}
+	
+	/**
+	 * Returns the leftmost bits of the digest as integer, as defined for
+	 * ECDSA.
+	 */
+	BigInteger toInteger(byte[] digest) {
+		BigInteger e = new BigInteger(1, digest);
+		int excess = digest.length * 8 - order.bitLength();
+		if (excess > 0)
+			e = e.shiftRight(excess);
+		return e;
+	}
+	
+	BigInteger randomScalar(SecureRandom random) {
+		BigInteger k;
+		do {
+			k = new BigInteger(order.bitLength(), random);
+		} while (!isValidScalar(k));
+		return k;
+	}
+	
+	/*
+	 * conversions
+	 */
+	
+	/**
+	 * Converts a point in affine coordinates into the internal representation.
+	 * 
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the point is not on the curve
+	 */
+	AffinePoint toAffine(ECPoint point) {
+		if (point == null || ECPoint.POINT_INFINITY.equals(point))
+			throw new java.lang.IllegalArgumentException("The point at infinity is not a valid public key.");
+		
+		BigInteger x = point.getAffineX();
+		BigInteger y = point.getAffineY();
+		if (x.signum() < 0 || x.compareTo(field.getModulus()) >= 0 || y.signum() < 0 || y.compareTo(field.getModulus()) >= 0)
+			throw new java.lang.IllegalArgumentException("The point coordinates are out of range.");
+		
+		AffinePoint result = new AffinePoint(field.toMontgomery(x), field.toMontgomery(y));
+		if (!isOnCurve(result))
+			throw new java.lang.IllegalArgumentException("The point is not on the curve "+name+".");
+		return result;
+	}
+	
+	ECPoint toECPoint(AffinePoint point) {
+		return new ECPoint(field.fromMontgomery(point.x), field.fromMontgomery(point.y));
+	}
+	
+	AffinePoint toAffine(JacobianPoint point) {
+		long[] zInverse = new long[MontgomeryField.LIMBS];
+		field.invert(point.z, zInverse);
+		return toAffine(point, zInverse);
+	}
+	
+	private AffinePoint toAffine(JacobianPoint point, long[] zInverse) {
+		long[] zz = new long[MontgomeryField.LIMBS];
+		field.square(zInverse, zz);
+		long[] x = new long[MontgomeryField.LIMBS];
+		field.multiply(point.x, zz, x);
+		field.multiply(zz, zInverse, zz);
+		long[] y = new long[MontgomeryField.LIMBS];
+		field.multiply(point.y, zz, y);
+		return new AffinePoint(x, y);
+	}
+	
+	/**
+	 * Converts the given points into affine coordinates with a single field
+	 * inversion (Montgomery's trick). None of the points may be the point at
+	 * infinity.
+	 */
+	AffinePoint[] toAffine(JacobianPoint[] points) {
+		int n = points.length;
+		AffinePoint[] result = new AffinePoint[n];
+		if (n == 0)
+			return result;
+		
+		long[][] prefix = new long[n][];
+		prefix[0] = points[0].z.clone();
+		for (int i=1; i<n; i++) {
+			prefix[i] = new long[MontgomeryField.LIMBS];
+			field.multiply(prefix[i-1], points[i].z, prefix[i]);
+		}
+		
+		long[] inverse = new long[MontgomeryField.LIMBS];
+		field.invert(prefix[n-1], inverse);
+		
+		long[] zInverse = new long[MontgomeryField.LIMBS];
+		for (int i=n-1; i>0; i--) {
+			field.multiply(inverse, prefix[i-1], zInverse);
+			field.multiply(inverse, points[i].z, inverse);
+			result[i] = toAffine(points[i], zInverse);
+		}
+		result[0] = toAffine(points[0], inverse);
+		return result;
+	}
+	
+	boolean isOnCurve(AffinePoint point) {
+		long[] lhs = new long[MontgomeryField.LIMBS];
+		field.square(point.y, lhs);
+		
+		long[] rhs = new long[MontgomeryField.LIMBS];
+		field.square(point.x, rhs);
+		field.add(rhs, a, rhs);
+		field.multiply(rhs, point.x, rhs);
+		field.add(rhs, b, rhs);
+		
+		return field.equals(lhs, rhs);
+	}
+	
+	/*
+	 * scalar multiplication
+	 */
+	
+	/**
+	 * Returns k*G, where G is the generator of this curve.
+	 */
+	JacobianPoint multiplyGenerator(BigInteger k) {
+		return getGeneratorTable().multiply(k);
+	}
+	
+	/**
+	 * Returns k*G in affine coordinates for a secret scalar 0 < k < n, in
+	 * constant time (see {@link CombTable#multiplySecret(BigInteger)}).
+	 */
+	AffinePoint multiplyGeneratorSecret(BigInteger k) {
+		ProjectivePoint point = getGeneratorTable().multiplySecret(k);
+		long[] zInverse = new long[MontgomeryField.LIMBS];
+		field.invert(point.z, zInverse);
+		long[] x = new long[MontgomeryField.LIMBS];
+		long[] y = new long[MontgomeryField.LIMBS];
+		field.multiply(point.x, zInverse, x);
+		field.multiply(point.y, zInverse, y);
+		return new AffinePoint(x, y);
+	}
+	
+	private CombTable getGeneratorTable() {
+		CombTable table = generatorTable;
+		if (table == null) {
+			synchronized (this) {
+				table = generatorTable;
+				if (table == null) {
+					table = new CombTable(this, generator, GENERATOR_COMB_TEETH);
+					generatorTable = table;
+				}
+			}
+		}
+		return table;
+	}
+	
+	/**
+	 * Returns k*P with a fixed window of 4 bits.
+	 */
+	JacobianPoint multiply(AffinePoint point, BigInteger k) {
+		JacobianPoint[] multiples = new JacobianPoint[(1 << WINDOW_SIZE) - 1];
+		multiples[0] = new JacobianPoint(point, field.one());
+		for (int i=1; i<multiples.length; i++) {
+			multiples[i] = new JacobianPoint();
+			addMixed(multiples[i-1], point, multiples[i]);
+		}
+		AffinePoint[] table = toAffine(multiples);
+		
+		long[] scalar = MontgomeryField.toLimbs(k);
+		JacobianPoint result = new JacobianPoint();
+		for (int i=256/WINDOW_SIZE-1; i>=0; i--) {
+			for (int j=0; j<WINDOW_SIZE; j++) {
+				twice(result, result);
+			}
+			int digit = (int) (scalar[i / 8] >>> ((i % 8) * WINDOW_SIZE)) & ((1 << WINDOW_SIZE) - 1);
+			if (digit != 0)
+				addMixed(result, table[digit-1], result);
+		}
+		return result;
+	}
+	
+	/*
+	 * point arithmetic
+	 */
+	
+	/**
+	 * r = 2*p ("dbl-2007-bl" formulas for arbitrary a)
+	 */
+	void twice(JacobianPoint p, JacobianPoint r) {
+		if (p.isInfinity()) {
+			r.setInfinity();
+			return;
+		}
+		
+		MontgomeryField f = field;
+		long[] xx = new long[MontgomeryField.LIMBS];
+		long[] yy = new long[MontgomeryField.LIMBS];
+		long[] yyyy = new long[MontgomeryField.LIMBS];
+		long[] zz = new long[MontgomeryField.LIMBS];
+		long[] s = new long[MontgomeryField.LIMBS];
+		long[] m = new long[MontgomeryField.LIMBS];
+		long[] t = new long[MontgomeryField.LIMBS];
+		
+		f.square(p.x, xx);
+		f.square(p.y, yy);
+		f.square(yy, yyyy);
+		f.square(p.z, zz);
+		
+		// S = 2*((X+YY)^2-XX-YYYY)
+		f.add(p.x, yy, s);
+		f.square(s, s);
+		f.subtract(s, xx, s);
+		f.subtract(s, yyyy, s);
+		f.twice(s, s);
+		
+		// M = 3*XX+a*ZZ^2
+		f.square(zz, m);
+		f.multiply(m, a, m);
+		f.add(m, xx, m);
+		f.twice(xx, t);
+		f.add(m, t, m);
+		
+		// Z3 = (Y+Z)^2-YY-ZZ
+		f.add(p.y, p.z, r.z);
+		f.square(r.z, r.z);
+		f.subtract(r.z, yy, r.z);
+		f.subtract(r.z, zz, r.z);
+		
+		// X3 = M^2-2*S
+		f.square(m, t);
+		f.subtract(t, s, t);
+		f.subtract(t, s, r.x);
+		
+		// Y3 = M*(S-X3)-8*YYYY
+		f.subtract(s, r.x, s);
+		f.multiply(m, s, s);
+		f.twice(yyyy, yyyy);
+		f.twice(yyyy, yyyy);
+		f.twice(yyyy, yyyy);
+		f.subtract(s, yyyy, r.y);
+	}
+	
+	/**
+	 * r = p + q for a point q in affine coordinates ("madd-2007-bl")
+	 */
+	void addMixed(JacobianPoint p, AffinePoint q, JacobianPoint r) {
+		if (p.isInfinity()) {
+			r.set(q, field.one());
+			return;
+		}
+		
+		MontgomeryField f = field;
+		long[] z1z1 = new long[MontgomeryField.LIMBS];
+		long[] u2 = new long[MontgomeryField.LIMBS];
+		long[] s2 = new long[MontgomeryField.LIMBS];
+		long[] h = new long[MontgomeryField.LIMBS];
+		long[] rr = new long[MontgomeryField.LIMBS];
+		
+		f.square(p.z, z1z1);
+		f.multiply(q.x, z1z1, u2);
+		f.multiply(q.y, p.z, s2);
+		f.multiply(s2, z1z1, s2);
+		f.subtract(u2, p.x, h);
+		f.subtract(s2, p.y, rr);
+		
+		if (f.isZero(h)) {
+			if (f.isZero(rr))
+				twice(p, r);
+			else
+				r.setInfinity();
+			return;
+		}
+		f.twice(rr, rr);
+		
+		long[] hh = new long[MontgomeryField.LIMBS];
+		long[] i = new long[MontgomeryField.LIMBS];
+		long[] j = new long[MontgomeryField.LIMBS];
+		long[] v = new long[MontgomeryField.LIMBS];
+		
+		f.square(h, hh);
+		f.twice(hh, i);
+		f.twice(i, i);
+		f.multiply(h, i, j);
+		f.multiply(p.x, i, v);
+		
+		// Y1*J is needed after X3 is written
+		long[] y1j = new long[MontgomeryField.LIMBS];
+		f.multiply(p.y, j, y1j);
+		
+		// Z3 = (Z1+H)^2-Z1Z1-HH
+		f.add(p.z, h, r.z);
+		f.square(r.z, r.z);
+		f.subtract(r.z, z1z1, r.z);
+		f.subtract(r.z, hh, r.z);
+		
+		// X3 = r^2-J-2*V
+		long[] x3 = new long[MontgomeryField.LIMBS];
+		f.square(rr, x3);
+		f.subtract(x3, j, x3);
+		f.subtract(x3, v, x3);
+		f.subtract(x3, v, x3);
+		
+		// Y3 = r*(V-X3)-2*Y1*J
+		f.subtract(v, x3, v);
+		f.multiply(rr, v, v);
+		f.twice(y1j, y1j);
+		f.subtract(v, y1j, r.y);
+		System.arraycopy(x3, 0, r.x, 0, MontgomeryField.LIMBS);
+	}
+	
+	/**
+	 * r = p + q ("add-2007-bl")
+	 */
+	void add(JacobianPoint p, JacobianPoint q, JacobianPoint r) {
+		if (p.isInfinity()) {
+			r.set(q);
+			return;
+		}
+		if (q.isInfinity()) {
+			r.set(p);
+			return;
+		}
+		
+		MontgomeryField f = field;
+		long[] z1z1 = new long[MontgomeryField.LIMBS];
+		long[] z2z2 = new long[MontgomeryField.LIMBS];
+		long[] u1 = new long[MontgomeryField.LIMBS];
+		long[] u2 = new long[MontgomeryField.LIMBS];
+		long[] s1 = new long[MontgomeryField.LIMBS];
+		long[] s2 = new long[MontgomeryField.LIMBS];
+		long[] h = new long[MontgomeryField.LIMBS];
+		long[] rr = new long[MontgomeryField.LIMBS];
+		
+		f.square(p.z, z1z1);
+		f.square(q.z, z2z2);
+		f.multiply(p.x, z2z2, u1);
+		f.multiply(q.x, z1z1, u2);
+		f.multiply(p.y, q.z, s1);
+		f.multiply(s1, z2z2, s1);
+		f.multiply(q.y, p.z, s2);
+		f.multiply(s2, z1z1, s2);
+		f.subtract(u2, u1, h);
+		f.subtract(s2, s1, rr);
+		
+		if (f.isZero(h)) {
+			if (f.isZero(rr))
+				twice(p, r);
+			else
+				r.setInfinity();
+			return;
+		}
+		f.twice(rr, rr);
+		
+		long[] i = new long[MontgomeryField.LIMBS];
+		long[] j = new long[MontgomeryField.LIMBS];
+		long[] v = new long[MontgomeryField.LIMBS];
+		
+		f.twice(h, i);
+		f.square(i, i);
+		f.multiply(h, i, j);
+		f.multiply(u1, i, v);
+		
+		// Z3 = ((Z1+Z2)^2-Z1Z1-Z2Z2)*H
+		long[] z3 = new long[MontgomeryField.LIMBS];
+		f.add(p.z, q.z, z3);
+		f.square(z3, z3);
+		f.subtract(z3, z1z1, z3);
+		f.subtract(z3, z2z2, z3);
+		f.multiply(z3, h, z3);
+		
+		// X3 = r^2-J-2*V
+		long[] x3 = new long[MontgomeryField.LIMBS];
+		f.square(rr, x3);
+		f.subtract(x3, j, x3);
+		f.subtract(x3, v, x3);
+		f.subtract(x3, v, x3);
+		
+		// Y3 = r*(V-X3)-2*S1*J
+		f.subtract(v, x3, v);
+		f.multiply(rr, v, v);
+		f.multiply(s1, j, s1);
+		f.twice(s1, s1);
+		f.subtract(v, s1, r.y);
+		System.arraycopy(x3, 0, r.x, 0, MontgomeryField.LIMBS);
+		System.arraycopy(z3, 0, r.z, 0, MontgomeryField.LIMBS);
+	}
+	
+	/**
+	 * r = p + q with the complete formulas for arbitrary a (Renes, Costello
+	 * and Batina, "Complete addition formulas for prime order elliptic
+	 * curves", algorithm 1). The formulas are valid for all inputs, including
+	 * p = q and the point at infinity, so they do not branch.
+	 */
+	void addComplete(ProjectivePoint p, ProjectivePoint q, ProjectivePoint r) {
+		MontgomeryField f = field;
+		long[] t0 = new long[MontgomeryField.LIMBS];
+		long[] t1 = new long[MontgomeryField.LIMBS];
+		long[] t2 = new long[MontgomeryField.LIMBS];
+		long[] t3 = new long[MontgomeryField.LIMBS];
+		long[] t4 = new long[MontgomeryField.LIMBS];
+		long[] t5 = new long[MontgomeryField.LIMBS];
+		long[] x3 = new long[MontgomeryField.LIMBS];
+		long[] y3 = new long[MontgomeryField.LIMBS];
+		long[] z3 = new long[MontgomeryField.LIMBS];
+		
+		f.multiply(p.x, q.x, t0);
+		f.multiply(p.y, q.y, t1);
+		f.multiply(p.z, q.z, t2);
+		f.add(p.x, p.y, t3);
+		f.add(q.x, q.y, t4);
+		f.multiply(t3, t4, t3);
+		f.add(t0, t1, t4);
+		f.subtract(t3, t4, t3);
+		f.add(p.x, p.z, t4);
+		f.add(q.x, q.z, t5);
+		f.multiply(t4, t5, t4);
+		f.add(t0, t2, t5);
+		f.subtract(t4, t5, t4);
+		f.add(p.y, p.z, t5);
+		f.add(q.y, q.z, x3);
+		f.multiply(t5, x3, t5);
+		f.add(t1, t2, x3);
+		f.subtract(t5, x3, t5);
+		f.multiply(a, t4, z3);
+		f.multiply(b3, t2, x3);
+		f.add(x3, z3, z3);
+		f.subtract(t1, z3, x3);
+		f.add(t1, z3, z3);
+		f.multiply(x3, z3, y3);
+		f.add(t0, t0, t1);
+		f.add(t1, t0, t1);
+		f.multiply(a, t2, t2);
+		f.multiply(b3, t4, t4);
+		f.add(t1, t2, t1);
+		f.subtract(t0, t2, t2);
+		f.multiply(a, t2, t2);
+		f.add(t4, t2, t4);
+		f.multiply(t1, t4, t0);
+		f.add(y3, t0, y3);
+		f.multiply(t5, t4, t0);
+		f.multiply(t3, x3, x3);
+		f.subtract(x3, t0, x3);
+		f.multiply(t3, t1, t0);
+		f.multiply(t5, z3, z3);
+		f.add(z3, t0, z3);
+		
+		System.arraycopy(x3, 0, r.x, 0, MontgomeryField.LIMBS);
+		System.arraycopy(y3, 0, r.y, 0, MontgomeryField.LIMBS);
+		System.arraycopy(z3, 0, r.z, 0, MontgomeryField.LIMBS);
+	}
+	
+	/**
+	 * A point in affine coordinates (in Montgomery form). Instances are not
+	 * modified after construction.
+	 */
+	static final class AffinePoint {
+		final long[] x;
+		final long[] y;
+		
+		AffinePoint(long[] x, long[] y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+	
+	/**
+	 * A mutable point in Jacobian coordinates (in Montgomery form). Z = 0
+	 * denotes the point at infinity.
+	 */
+	static final class JacobianPoint {
+		final long[] x = new long[MontgomeryField.LIMBS];
+		final long[] y = new long[MontgomeryField.LIMBS];
+		final long[] z = new long[MontgomeryField.LIMBS];
+		
+		JacobianPoint() {
+		}
+		
+		JacobianPoint(AffinePoint point, long[] one) {
+			set(point, one);
+		}
+		
+		boolean isInfinity() {
+			for (int i=0; i<MontgomeryField.LIMBS; i++) {
+				if (z[i] != 0)
+					return false;
+			}
+			return true;
+		}
+		
+		void setInfinity() {
+			for (int i=0; i<MontgomeryField.LIMBS; i++) {
+				x[i] = 0;
+				y[i] = 0;
+				z[i] = 0;
+			}
+		}
+		
+		void set(AffinePoint point, long[] one) {
+			System.arraycopy(point.x, 0, x, 0, MontgomeryField.LIMBS);
+			System.arraycopy(point.y, 0, y, 0, MontgomeryField.LIMBS);
+			System.arraycopy(one, 0, z, 0, MontgomeryField.LIMBS);
+		}
+		
+		void set(JacobianPoint point) {
+			System.arraycopy(point.x, 0, x, 0, MontgomeryField.LIMBS);
+			System.arraycopy(point.y, 0, y, 0, MontgomeryField.LIMBS);
+			System.arraycopy(point.z, 0, z, 0, MontgomeryField.LIMBS);
+		}
+	}
+	
+	/**
+	 * A mutable point in homogeneous projective coordinates (x = X/Z, y =
+	 * Y/Z, in Montgomery form), as used by the complete formulas. The point
+	 * at infinity is (0:1:0).
+	 */
+	static final class ProjectivePoint {
+		final long[] x = new long[MontgomeryField.LIMBS];
+		final long[] y = new long[MontgomeryField.LIMBS];
+		final long[] z = new long[MontgomeryField.LIMBS];
+		
+		ProjectivePoint() {
+		}
+		
+		ProjectivePoint(AffinePoint point, long[] one) {
+			System.arraycopy(point.x, 0, x, 0, MontgomeryField.LIMBS);
+			System.arraycopy(point.y, 0, y, 0, MontgomeryField.LIMBS);
+			System.arraycopy(one, 0, z, 0, MontgomeryField.LIMBS);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.SignatureException;
+import java.security.SignatureSpi;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+
+import com.coinblesk.customserialization.ECDSASignatureConverter;
+
+/**
+ * This class implements SHA256withECDSA (DER encoded signatures) on the
+ * curves offered by {@link BrainpoolProvider}. Keys of other curves are
+ * rejected during the initialization, so that the JCA falls back to the next
+ * provider.
+ */
+public final class ECDSASignatureSpi extends SignatureSpi {
+	
+	private final MessageDigest messageDigest;
+	
+	private ECCurve curve;
+	private BigInteger privateKey;
+	private ECCurve.AffinePoint publicKey;
+	
+	public ECDSASignatureSpi() throws NoSuchAlgorithmException {
+		messageDigest = MessageDigest.getInstance("SHA-256");
+	}
+	
+	@Override
+	protected void engineInitVerify(PublicKey publicKey) throws InvalidKeyException {
+		if (!(publicKey instanceof ECPublicKey))
+			throw new InvalidKeyException("The key is not an EC public key.");
+		
+		ECPublicKey key = (ECPublicKey) publicKey;
+		ECCurve curve = getCurve(key.getParams());
+		try {
+			this.publicKey = curve.toAffine(key.getW());
+		} catch (java.lang.IllegalArgumentException e) {
+			throw new InvalidKeyException(e.getMessage());
+		}
+		this.curve = curve;
+		this.privateKey = null;
+		messageDigest.reset();
+	}
+	
+	@Override
+	protected void engineInitSign(PrivateKey privateKey) throws InvalidKeyException {
+		if (!(privateKey instanceof ECPrivateKey))
+			throw new InvalidKeyException("The key is not an EC private key.");
+		
+		ECPrivateKey key = (ECPrivateKey) privateKey;
+		ECCurve curve = getCurve(key.getParams());
+		if (!curve.isValidScalar(key.getS()))
+			throw new InvalidKeyException("The private key is out of range.");
+		
+		this.curve = curve;
+		this.privateKey = key.getS();
+		this.publicKey = null;
+		messageDigest.reset();
+	}
+	
+	private static ECCurve getCurve(java.security.spec.ECParameterSpec params) throws InvalidKeyException {
+		ECCurve curve = ECCurve.forParameters(params);
+		if (curve == null || !BrainpoolProvider.isSupported(curve))
+			throw new InvalidKeyException("The curve of the key is not supported.");
+		return curve;
+	}
+	
+	@Override
+	protected void engineUpdate(byte b) throws SignatureException {
+		messageDigest.update(b);
+	}
+	
+	@Override
+	protected void engineUpdate(byte[] b, int off, int len) throws SignatureException {
+		messageDigest.update(b, off, len);
+	}
+	
+	@Override
+	protected byte[] engineSign() throws SignatureException {
+		if (privateKey == null)
+			throw new SignatureException("The signature has not been initialized for signing.");
+		
+		SecureRandom random = appRandom != null ? appRandom : new SecureRandom();
+		BigInteger[] rs = curve.sign(privateKey, messageDigest.digest(), random);
+		
+		byte[] p1363 = new byte[64];
+		putInteger(rs[0], p1363, 0);
+		putInteger(rs[1], p1363, 32);
+		return ECDSASignatureConverter.toDER(p1363);
+	}
+	
+	private static void putInteger(BigInteger value, byte[] result, int offset) {
+		byte[] bytes = value.toByteArray();
+		int length = Math.min(bytes.length, 32);
+		System.arraycopy(bytes, bytes.length - length, result, offset + 32 - length, length);
+	}
+	
+	@Override
+	protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
+		if (publicKey == null)
+			throw new SignatureException("The signature has not been initialized for verification.");
+		
+		BigInteger[] rs = ECCurve.toIntegers(ECDSASignatureConverter.toP1363(sigBytes, 64));
+		return curve.verify(publicKey, null, messageDigest.digest(), rs[0], rs[1]);
+	}
+	
+	@Override
+	@Deprecated
+	protected void engineSetParameter(String param, Object value) throws InvalidParameterException {
+		throw new InvalidParameterException("No parameters supported.");
+	}
+	
+	@Override
+	@Deprecated
+	protected Object engineGetParameter(String param) throws InvalidParameterException {
+		throw new InvalidParameterException("No parameters supported.");
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGeneratorSpi;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+
+/**
+ * This class generates key pairs on the curves offered by
+ * {@link BrainpoolProvider}. It must be initialized with an
+ * {@link ECGenParameterSpec} or an {@link ECParameterSpec} of such a curve.
+ * Other parameters are rejected, so that the JCA falls back to the next
+ * provider.
+ */
+public final class ECKeyPairGeneratorSpi extends KeyPairGeneratorSpi {
+	
+	private ECCurve curve;
+	private SecureRandom random;
+	
+	public ECKeyPairGeneratorSpi() {
+	}
+	
+	@Override
+	public void initialize(int keysize, SecureRandom random) {
+		throw new InvalidParameterException("Only named curves are supported, use an ECGenParameterSpec.");
+	}
+	
+	@Override
+	public void initialize(AlgorithmParameterSpec params, SecureRandom random) throws InvalidAlgorithmParameterException {
+		ECCurve curve = null;
+		if (params instanceof ECGenParameterSpec)
+			curve = ECCurve.forName(((ECGenParameterSpec) params).getName());
+		else if (params instanceof ECParameterSpec)
+			curve = ECCurve.forParameters((ECParameterSpec) params);
+		
+		if (curve == null || !BrainpoolProvider.isSupported(curve))
+			throw new InvalidAlgorithmParameterException("The given curve is not supported.");
+		
+		this.curve = curve;
+		this.random = random != null ? random : new SecureRandom();
+	}
+	
+	@Override
+	public KeyPair generateKeyPair() {
+		if (curve == null)
+			throw new IllegalStateException("The key pair generator has not been initialized.");
+		
+		BigInteger s = curve.randomScalar(random);
+		ECCurve.AffinePoint w = curve.multiplyGeneratorSecret(s);
+		return new KeyPair(new ECPublicKeyImpl(curve, curve.toECPoint(w)), new ECPrivateKeyImpl(curve, s));
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECParameterSpec;
+
+/**
+ * This class represents a private key on one of the curves supported by
+ * {@link ECCurve}. The key cannot be encoded; keys which need to be stored
+ * should be converted with a {@link java.security.KeyFactory} of another
+ * provider.
+ */
+final class ECPrivateKeyImpl implements ECPrivateKey {
+	private static final long serialVersionUID = 6208924396711386548L;
+	
+	private final BigInteger s;
+	private final ECParameterSpec params;
+	
+	ECPrivateKeyImpl(ECCurve curve, BigInteger s) {
+		this.s = s;
+		this.params = curve.getParameterSpec();
+	}
+	
+	@Override
+	public String getAlgorithm() {
+		return "EC";
+	}
+	
+	@Override
+	public String getFormat() {
+		return null;
+	}
+	
+	@Override
+	public byte[] getEncoded() {
+		return null;
+	}
+	
+	@Override
+	public ECParameterSpec getParams() {
+		return params;
+	}
+	
+	@Override
+	public BigInteger getS() {
+		return s;
+	}
+
+}
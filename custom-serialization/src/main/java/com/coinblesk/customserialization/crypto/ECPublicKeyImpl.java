@@ -0,0 +1,97 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+
+/**
+ * This class represents a public key on one of the curves supported by
+ * {@link ECCurve}. It is encoded as X.509 SubjectPublicKeyInfo with a named
+ * curve and an uncompressed point.
+ */
+final class ECPublicKeyImpl implements ECPublicKey {
+	private static final long serialVersionUID = -3193829361480164226L;
+	
+	// 1.2.840.10045.2.1 (ecPublicKey)
+	private static final byte[] EC_PUBLIC_KEY_OID = { 0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x02, 0x01 };
+	
+	private final ECPoint w;
+	private final ECParameterSpec params;
+	private final byte[] encoded;
+	
+	ECPublicKeyImpl(ECCurve curve, ECPoint w) {
+		this.w = w;
+		this.params = curve.getParameterSpec();
+		this.encoded = encode(curve, w);
+	}
+	
+	private static byte[] encode(ECCurve curve, ECPoint w) {
+		byte[] curveOid = curve.getOid();
+		
+		/*
+		 * SEQUENCE {
+		 *   SEQUENCE { OID ecPublicKey, OID namedCurve }
+		 *   BIT STRING { 0x00, 0x04, x, y }
+		 * }
+		 */
+		int algorithmLength = 2+EC_PUBLIC_KEY_OID.length+2+curveOid.length;
+		int bitStringLength = 1+1+32+32;
+		int length = 2+algorithmLength+2+bitStringLength;
+		
+		byte[] result = new byte[2+length];
+		int index = 0;
+		result[index++] = 0x30;
+		result[index++] = (byte) length;
+		result[index++] = 0x30;
+		result[index++] = (byte) algorithmLength;
+		result[index++] = 0x06;
+		result[index++] = (byte) EC_PUBLIC_KEY_OID.length;
+		System.arraycopy(EC_PUBLIC_KEY_OID, 0, result, index, EC_PUBLIC_KEY_OID.length);
+		index += EC_PUBLIC_KEY_OID.length;
+		result[index++] = 0x06;
+		result[index++] = (byte) curveOid.length;
+		System.arraycopy(curveOid, 0, result, index, curveOid.length);
+		index += curveOid.length;
+		result[index++] = 0x03;
+		result[index++] = (byte) bitStringLength;
+		result[index++] = 0x00;
+		result[index++] = 0x04;
+		index = putCoordinate(result, index, w.getAffineX().toByteArray());
+		putCoordinate(result, index, w.getAffineY().toByteArray());
+		
+		return result;
+	}
+	
+	private static int putCoordinate(byte[] result, int index, byte[] coordinate) {
+		// toByteArray() may contain a leading sign byte or be shorter than 32 bytes
+		int length = Math.min(coordinate.length, 32);
+		System.arraycopy(coordinate, coordinate.length - length, result, index + 32 - length, length);
+		return index + 32;
+	}
+	
+	@Override
+	public String getAlgorithm() {
+		return "EC";
+	}
+	
+	@Override
+	public String getFormat() {
+		return "X.509";
+	}
+	
+	@Override
+	public byte[] getEncoded() {
+		return encoded.clone();
+	}
+	
+	@Override
+	public ECParameterSpec getParams() {
+		return params;
+	}
+	
+	@Override
+	public ECPoint getW() {
+		return w;
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class builds a binary SHA-256 Merkle tree over a list of byte arrays
+ * (e.g., the payloads of many messages), so that a single signature of the
+ * root covers all of them. Every leaf can prove its membership with
+ * {@link #getProof(int)}, which contains one hash per level of the tree.
+ * 
+ * Leaves and inner nodes are hashed with different prefixes (0x00 and 0x01),
+ * so that an inner node can never be passed off as a leaf. If a level has an
+ * odd number of nodes, the last node is promoted to the next level unchanged
+ * instead of being paired with a copy of itself.
+ */
+public class MerkleTree {
+	
+	/**
+	 * The length of a hash in bytes.
+	 */
+	public static final int HASH_LENGTH = 32;
+	
+	private static final byte LEAF_PREFIX = 0x00;
+	private static final byte NODE_PREFIX = 0x01;
+	
+	private final List<byte[][]> levels;
+	
+	/**
+	 * Builds the tree over the given leaves.
+	 * 
+	 * @param leaves
+	 *            the data of the leaves, in the order of their indices
+	 * @throws IllegalArgumentException
+	 *             if the list is null, empty or contains null
+	 */
+	public MerkleTree(List<byte[]> leaves) throws IllegalArgumentException {
+		if (leaves == null || leaves.isEmpty())
+			throw new IllegalArgumentException("The leaves cannot be null or empty.");
+		
+		MessageDigest digest = newDigest();
+		byte[][] level = new byte[leaves.size()][];
+		for (int i=0; i<level.length; i++) {
+			if (leaves.get(i) == null)
+				throw new IllegalArgumentException("The leaves cannot contain null.");
+			level[i] = hashLeaf(digest, leaves.get(i));
+		}
+		
+		levels = new ArrayList<byte[][]>();
+		levels.add(level);
+		while (level.length > 1) {
+			byte[][] parent = new byte[(level.length + 1) / 2][];
+			for (int i=0; i<parent.length; i++) {
+				if (2*i+1 < level.length)
+					parent[i] = hashNode(digest, level[2*i], level[2*i+1]);
+				else
+					parent[i] = level[2*i];
+			}
+			levels.add(parent);
+			level = parent;
+		}
+	}
+	
+	/**
+	 * Returns the number of leaves.
+	 */
+	public int getNofLeaves() {
+		return levels.get(0).length;
+	}
+	
+	/**
+	 * Returns the root hash of the tree. The returned array must not be
+	 * modified.
+	 */
+	public byte[] getRoot() {
+		return levels.get(levels.size()-1)[0];
+	}
+	
+	/**
+	 * Returns the inclusion proof of the leaf with the given index, i.e., the
+	 * sibling hashes from the leaf up to the root. Levels where the node has
+	 * been promoted do not contribute a hash.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no leaf with the given index
+	 */
+	public byte[][] getProof(int index) throws IllegalArgumentException {
+		if (index < 0 || index >= getNofLeaves())
+			throw new IllegalArgumentException("There is no leaf with the index "+index+".");
+		
+		List<byte[]> proof = new ArrayList<byte[]>();
+		for (int i=0; i<levels.size()-1; i++) {
+			byte[][] level = levels.get(i);
+			int sibling = index ^ 1;
+			if (sibling < level.length)
+				proof.add(level[sibling]);
+			index >>>= 1;
+		}
+		return proof.toArray(new byte[proof.size()][]);
+	}
+	
+	/**
+	 * Computes the root hash from the data of a leaf and its inclusion proof.
+	 * The leaf belongs to the tree if the result equals the root of the tree.
+	 * 
+	 * @param leaf
+	 *            the data of the leaf
+	 * @param index
+	 *            the index of the leaf
+	 * @param nofLeaves
+	 *            the number of leaves of the tree
+	 * @param proof
+	 *            the proof returned by {@link #getProof(int)}
+	 * @throws IllegalArgumentException
+	 *             if the index is out of range, or if the proof does not
+	 *             match the shape of the tree
+	 */
+	public static byte[] computeRoot(byte[] leaf, int index, int nofLeaves, byte[][] proof) throws IllegalArgumentException {
+		if (leaf == null || proof == null)
+			throw new IllegalArgumentException("The leaf and the proof cannot be null.");
+		if (index < 0 || index >= nofLeaves)
+			throw new IllegalArgumentException("There is no leaf with the index "+index+".");
+		
+		MessageDigest digest = newDigest();
+		byte[] hash = hashLeaf(digest, leaf);
+		int next = 0;
+		for (int size=nofLeaves; size>1; size=(size+1)/2) {
+			if ((index & 1) == 1 || index+1 < size) {
+				if (next == proof.length || proof[next] == null || proof[next].length != HASH_LENGTH)
+					throw new IllegalArgumentException("The proof does not match the tree.");
+				
+				if ((index & 1) == 1)
+					hash = hashNode(digest, proof[next++], hash);
+				else
+					hash = hashNode(digest, hash, proof[next++]);
+			}
+			index >>>= 1;
+		}
+		
+		if (next != proof.length)
+			throw new IllegalArgumentException("The proof does not match the tree.");
+		
+		return hash;
+	}
+	
+	/**
+	 * Returns the number of hashes in the proof of the leaf with the given
+	 * index in a tree with the given number of leaves.
+	 */
+	public static int getProofLength(int index, int nofLeaves) {
+		int length = 0;
+		for (int size=nofLeaves; size>1; size=(size+1)/2) {
+			if ((index & 1) == 1 || index+1 < size)
+				length++;
+			index >>>= 1;
+		}
+		return length;
+	}
+	
+	private static byte[] hashLeaf(MessageDigest digest, byte[] leaf) {
+		digest.update(LEAF_PREFIX);
+		return digest.digest(leaf);
+	}
+	
+	private static byte[] hashNode(MessageDigest digest, byte[] left, byte[] right) {
+		digest.update(NODE_PREFIX);
+		digest.update(left);
+		return digest.digest(right);
+	}
+	
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+}
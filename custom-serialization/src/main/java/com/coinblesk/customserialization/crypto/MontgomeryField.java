@@ -0,0 +1,230 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+
+/**
+ * This class implements the arithmetic in the prime field GF(p) for 256 bit
+ * primes. An element is stored in Montgomery form (a*R mod p with R = 2^256)
+ * as 8 limbs of 32 bits, least significant limb first. The limbs are kept in
+ * longs so that the product of two limbs plus two carries fits into 64
+ * (unsigned) bits.
+ * 
+ * The methods write their result into the last argument, which may be the
+ * same array as any of the inputs. The arithmetic does not branch on the
+ * values of the elements, i.e., the final reductions are done with masks,
+ * so that it can be used with secret values.
+ */
+final class MontgomeryField {
+	static final int LIMBS = 8;
+	private static final long MASK = 0xFFFFFFFFL;
+	
+	private final BigInteger modulus;
+	private final long[] p;
+	private final long n0;
+	private final long[] r2;
+	private final long[] one;
+	private final BigInteger inversionExponent;
+	
+	MontgomeryField(BigInteger modulus) {
+		if (modulus.bitLength() > 256 || !modulus.testBit(0))
+			throw new java.lang.IllegalArgumentException("The modulus must be an odd number of at most 256 bits.");
+		
+		this.modulus = modulus;
+		this.p = toLimbs(modulus);
+		// -p^-1 mod 2^32
+		this.n0 = BigInteger.ONE.shiftLeft(32).subtract(modulus.modInverse(BigInteger.ONE.shiftLeft(32))).longValue() & MASK;
+		this.r2 = toLimbs(BigInteger.ONE.shiftLeft(512).mod(modulus));
+		this.one = toLimbs(BigInteger.ONE.shiftLeft(256).mod(modulus));
+		this.inversionExponent = modulus.subtract(BigInteger.valueOf(2));
+	}
+	
+	BigInteger getModulus() {
+		return modulus;
+	}
+	
+	/**
+	 * Returns a new element holding 1 in Montgomery form.
+	 */
+	long[] one() {
+		return one.clone();
+	}
+	
+	/**
+	 * Returns the Montgomery form of the given value, which must be in the
+	 * range [0, p).
+	 */
+	long[] toMontgomery(BigInteger value) {
+		long[] r = toLimbs(value);
+		multiply(r, r2, r);
+		return r;
+	}
+	
+	/**
+	 * Returns the value of the given element in Montgomery form.
+	 */
+	BigInteger fromMontgomery(long[] a) {
+		long[] unit = new long[LIMBS];
+		unit[0] = 1;
+		long[] r = new long[LIMBS];
+		multiply(a, unit, r);
+		return toBigInteger(r);
+	}
+	
+	/**
+	 * r = a * b * R^-1 mod p (coarsely integrated operand scanning).
+	 */
+	void multiply(long[] a, long[] b, long[] r) {
+		long[] t = new long[LIMBS];
+		long t8 = 0;
+		long t9 = 0;
+		
+		for (int i=0; i<LIMBS; i++) {
+			long bi = b[i];
+			long c = 0;
+			for (int j=0; j<LIMBS; j++) {
+				long s = t[j] + a[j] * bi + c;
+				// the sum is below 2^64, but may not fit into a signed long
+				t[j] = s & MASK;
+				c = s >>> 32;
+			}
+			long s = t8 + c;
+			t8 = s & MASK;
+			t9 = s >>> 32;
+			
+			long m = (t[0] * n0) & MASK;
+			s = t[0] + m * p[0];
+			c = s >>> 32;
+			for (int j=1; j<LIMBS; j++) {
+				s = t[j] + m * p[j] + c;
+				t[j-1] = s & MASK;
+				c = s >>> 32;
+			}
+			s = t8 + c;
+			t[LIMBS-1] = s & MASK;
+			t8 = t9 + (s >>> 32);
+		}
+		
+		// t < 2p, subtract p if t8 is set or t >= p
+		long[] d = new long[LIMBS];
+		long borrow = subtractLimbs(t, p, d);
+		select(t8 | (borrow ^ 1), d, t, r);
+	}
+	
+	/**
+	 * r = a^2 * R^-1 mod p
+	 */
+	void square(long[] a, long[] r) {
+		multiply(a, a, r);
+	}
+	
+	/**
+	 * r = a + b mod p
+	 */
+	void add(long[] a, long[] b, long[] r) {
+		long c = 0;
+		for (int i=0; i<LIMBS; i++) {
+			long s = a[i] + b[i] + c;
+			r[i] = s & MASK;
+			c = s >>> 32;
+		}
+		long[] d = new long[LIMBS];
+		long borrow = subtractLimbs(r, p, d);
+		select(c | (borrow ^ 1), d, r, r);
+	}
+	
+	/**
+	 * r = a - b mod p
+	 */
+	void subtract(long[] a, long[] b, long[] r) {
+		long mask = -subtractLimbs(a, b, r);
+		long c = 0;
+		for (int i=0; i<LIMBS; i++) {
+			long s = r[i] + (p[i] & mask) + c;
+			r[i] = s & MASK;
+			c = s >>> 32;
+		}
+	}
+	
+	/**
+	 * r = 2 * a mod p
+	 */
+	void twice(long[] a, long[] r) {
+		add(a, a, r);
+	}
+	
+	/**
+	 * r = a^-1 mod p (in Montgomery form), computed as a^(p-2). The inverse
+	 * of 0 is 0.
+	 */
+	void invert(long[] a, long[] r) {
+		long[] result = one();
+		long[] base = a.clone();
+		for (int i=inversionExponent.bitLength()-1; i>=0; i--) {
+			square(result, result);
+			if (inversionExponent.testBit(i))
+				multiply(result, base, result);
+		}
+		System.arraycopy(result, 0, r, 0, LIMBS);
+	}
+	
+	boolean isZero(long[] a) {
+		long acc = 0;
+		for (int i=0; i<LIMBS; i++) {
+			acc |= a[i];
+		}
+		return acc == 0;
+	}
+	
+	boolean equals(long[] a, long[] b) {
+		long acc = 0;
+		for (int i=0; i<LIMBS; i++) {
+			acc |= a[i] ^ b[i];
+		}
+		return acc == 0;
+	}
+	
+	private static long subtractLimbs(long[] a, long[] b, long[] r) {
+		long borrow = 0;
+		for (int i=0; i<LIMBS; i++) {
+			long d = a[i] - b[i] - borrow;
+			r[i] = d & MASK;
+			borrow = (d >>> 63);
+		}
+		return borrow;
+	}
+	
+	/**
+	 * r = condition == 1 ? a : b, without branching on the condition (0 or
+	 * 1).
+	 */
+	static void select(long condition, long[] a, long[] b, long[] r) {
+		long mask = -condition;
+		for (int i=0; i<LIMBS; i++) {
+			r[i] = (a[i] & mask) | (b[i] & ~mask);
+		}
+	}
+	
+	static long[] toLimbs(BigInteger value) {
+		long[] r = new long[LIMBS];
+		byte[] bytes = value.toByteArray();
+		for (int i=0; i<bytes.length && i<LIMBS*4; i++) {
+			int limb = i / 4;
+			int shift = (i % 4) * 8;
+			r[limb] |= (long) (bytes[bytes.length-1-i] & 0xFF) << shift;
+		}
+		return r;
+	}
+	
+	static BigInteger toBigInteger(long[] a) {
+		byte[] bytes = new byte[LIMBS*4];
+		for (int i=0; i<LIMBS; i++) {
+			int offset = bytes.length - 4*(i+1);
+			bytes[offset] = (byte) (a[i] >>> 24);
+			bytes[offset+1] = (byte) (a[i] >>> 16);
+			bytes[offset+2] = (byte) (a[i] >>> 8);
+			bytes[offset+3] = (byte) a[i];
+		}
+		return new BigInteger(1, bytes);
+	}
+
+}
@@ -0,0 +1,236 @@
+package com.coinblesk.customserialization.crypto;
+
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.coinblesk.customserialization.ECDSASignatureConverter;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.SignedSerializableObject;
+import com.coinblesk.customserialization.crypto.ECCurve.AffinePoint;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This class verifies the signatures of {@link SignedSerializableObject}s and
+ * keeps a precomputed {@link CombTable} for the most recently used public
+ * keys. Verifying another signature of the same key then needs only a few
+ * point additions for the public key part instead of a full variable-base
+ * scalar multiplication.
+ * 
+ * The cache holds at most the number of entries given in the constructor
+ * (each table takes about 8 KB) and evicts the least recently used entry.
+ * Keys on curves not known to {@link ECCurve} and signature algorithms other
+ * than ECDSA with SHA-256 are verified with
+ * {@link SignedSerializableObject#verify(PublicKey)}.
+ * 
+ * This class is thread-safe.
+ */
+public class PrecomputationCache {
+	
+	static final int TABLE_TEETH = 6;
+	private static final String ECDSA_SHA256 = "SHA256withECDSA";
+	
+	private final int maxEntries;
+	private final Map<CacheKey, CacheEntry> entries;
+	
+	private long hits = 0;
+	private long misses = 0;
+	
+	/**
+	 * Creates a new cache.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of public keys to keep precomputed tables
+	 *            for
+	 * @throws IllegalArgumentException
+	 *             if maxEntries is not positive
+	 */
+	public PrecomputationCache(final int maxEntries) throws IllegalArgumentException {
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("The cache must hold at least one entry.");
+		
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Verifies the signature of the given object. Returns the same result as
+	 * {@link SignedSerializableObject#verify(PublicKey)}.
+	 * 
+	 * @throws NotSignedException
+	 *             if the object has not been signed
+	 * @throws NoSuchAlgorithmException
+	 *             if the {@link PKIAlgorithm} of the object is not known
+	 * @throws InvalidKeyException
+	 *             if the public key does not belong to the {@link PKIAlgorithm}
+	 *             of the object
+	 * @throws SignatureException
+	 *             if the signature is not correctly encoded
+	 */
+	public boolean verify(SignedSerializableObject object, PublicKey publicKey) throws NotSignedException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		if (object.getSignature() == null)
+			throw new NotSignedException();
+		
+		PKIAlgorithm pkiAlgorithm = object.getPKIAlgorithm();
+		CacheEntry entry = getEntry(pkiAlgorithm, publicKey);
+		if (entry == null)
+			return object.verify(publicKey);
+		
+		BigInteger[] rs = toIntegers(object.getSignature(), pkiAlgorithm);
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(object.getPayload());
+		return entry.curve.verify(entry.point, entry.table, digest, rs[0], rs[1]);
+	}
+	
+	/**
+	 * Returns the number of verifications which used a cached table.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns the number of verifications which had to build a new table.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Returns the number of public keys currently in the cache.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the maximum number of public keys kept in the cache.
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	/**
+	 * Returns the cache entry for the given key, building it if necessary, or
+	 * null if the key and algorithm are not handled by {@link ECCurve}.
+	 */
+	CacheEntry getEntry(PKIAlgorithm pkiAlgorithm, PublicKey publicKey) throws InvalidKeyException {
+		ECCurve curve = getCurve(pkiAlgorithm, publicKey);
+		if (curve == null)
+			return null;
+		
+		byte[] encoded = publicKey.getEncoded();
+		if (encoded == null)
+			return null;
+		
+		CacheKey key = new CacheKey(pkiAlgorithm, encoded);
+		synchronized (this) {
+			CacheEntry entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+				return entry;
+			}
+		}
+		
+		AffinePoint point = toAffine(curve, (ECPublicKey) publicKey);
+		// the table is built outside the lock, since this takes a while
+		CacheEntry entry = new CacheEntry(curve, point, new CombTable(curve, point, TABLE_TEETH));
+		synchronized (this) {
+			misses++;
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+	
+	/**
+	 * Returns the curve of the given key if signatures of the given
+	 * {@link PKIAlgorithm} can be verified by {@link ECCurve}, or null
+	 * otherwise.
+	 */
+	static ECCurve getCurve(PKIAlgorithm pkiAlgorithm, PublicKey publicKey) {
+		if (!ECDSA_SHA256.equals(pkiAlgorithm.getSignatureAlgorithm()) || !(publicKey instanceof ECPublicKey))
+			return null;
+		
+		return ECCurve.forParameters(((ECPublicKey) publicKey).getParams());
+	}
+	
+	static AffinePoint toAffine(ECCurve curve, ECPublicKey publicKey) throws InvalidKeyException {
+		try {
+			return curve.toAffine(publicKey.getW());
+		} catch (java.lang.IllegalArgumentException e) {
+			throw new InvalidKeyException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns r and s of the given signature.
+	 */
+	static BigInteger[] toIntegers(byte[] signature, PKIAlgorithm pkiAlgorithm) throws SignatureException {
+		if (pkiAlgorithm.isP1363Encoded())
+			return ECCurve.toIntegers(signature);
+		else
+			return ECCurve.toIntegers(ECDSASignatureConverter.toP1363(signature, 64));
+	}
+	
+	private static class CacheKey {
+		private final byte code;
+		private final byte[] encoded;
+		private final int hashCode;
+		
+		private CacheKey(PKIAlgorithm pkiAlgorithm, byte[] encoded) {
+			this.code = pkiAlgorithm.getCode();
+			this.encoded = encoded;
+			this.hashCode = 31 * Arrays.hashCode(encoded) + code;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == this)
+				return true;
+			if (!(o instanceof CacheKey))
+				return false;
+			
+			CacheKey other = (CacheKey) o;
+			return code == other.code && Arrays.equals(encoded, other.encoded);
+		}
+	}
+	
+	static class CacheEntry {
+		final ECCurve curve;
+		final AffinePoint point;
+		final CombTable table;
+		
+		private CacheEntry(ECCurve curve, AffinePoint point, CombTable table) {
+			this.curve = curve;
+			this.point = point;
+			this.table = table;
+		}
+	}
+
+}
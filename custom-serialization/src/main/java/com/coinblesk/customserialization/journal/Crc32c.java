@@ -0,0 +1,80 @@
+package com.coinblesk.customserialization.journal;
+
+import java.util.zip.Checksum;
+
+/**
+ * This class computes the CRC-32C (Castagnoli) checksum, which detects more
+ * error patterns of short records than CRC-32. It is implemented in Java
+ * since {@code java.util.zip.CRC32C} is only available from Java 9 on. Eight
+ * tables are used, so that eight bytes are processed per step.
+ */
+public class Crc32c implements Checksum {
+	
+	private static final int POLYNOMIAL = 0x82F63B78; // reversed 0x1EDC6F41
+	private static final int[][] TABLES = new int[8][256];
+	
+	static {
+		for (int i=0; i<256; i++) {
+			int crc = i;
+			for (int j=0; j<8; j++) {
+				crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+			}
+			TABLES[0][i] = crc;
+		}
+		for (int i=0; i<256; i++) {
+			for (int t=1; t<8; t++) {
+				TABLES[t][i] = (TABLES[t-1][i] >>> 8) ^ TABLES[0][TABLES[t-1][i] & 0xFF];
+			}
+		}
+	}
+	
+	private int crc = 0xFFFFFFFF;
+	
+	@Override
+	public void update(int b) {
+		crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+	}
+	
+	@Override
+	public void update(byte[] bytes, int offset, int length) {
+		int c = crc;
+		int end = offset + length;
+		while (end - offset >= 8) {
+			c ^= (bytes[offset] & 0xFF) | (bytes[offset+1] & 0xFF) << 8 | (bytes[offset+2] & 0xFF) << 16 | (bytes[offset+3] & 0xFF) << 24;
+			c = TABLES[7][c & 0xFF] ^ TABLES[6][(c >>> 8) & 0xFF] ^ TABLES[5][(c >>> 16) & 0xFF] ^ TABLES[4][c >>> 24]
+					^ TABLES[3][bytes[offset+4] & 0xFF] ^ TABLES[2][bytes[offset+5] & 0xFF] ^ TABLES[1][bytes[offset+6] & 0xFF] ^ TABLES[0][bytes[offset+7] & 0xFF];
+			offset += 8;
+		}
+		while (offset < end) {
+			c = (c >>> 8) ^ TABLES[0][(c ^ bytes[offset++]) & 0xFF];
+		}
+		crc = c;
+	}
+	
+	/**
+	 * Updates the checksum with all bytes of the given array.
+	 */
+	public void update(byte[] bytes) {
+		update(bytes, 0, bytes.length);
+	}
+	
+	@Override
+	public long getValue() {
+		return ~crc & 0xFFFFFFFFL;
+	}
+	
+	@Override
+	public void reset() {
+		crc = 0xFFFFFFFF;
+	}
+	
+	/**
+	 * Returns the checksum of the given range of bytes.
+	 */
+	public static int compute(byte[] bytes, int offset, int length) {
+		Crc32c crc32c = new Crc32c();
+		crc32c.update(bytes, offset, length);
+		return (int) crc32c.getValue();
+	}
+
+}
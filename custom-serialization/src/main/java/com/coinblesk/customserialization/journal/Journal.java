@@ -0,0 +1,403 @@
+package com.coinblesk.customserialization.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This class is an append-only journal of encoded messages, e.g., of every
+ * signed message a server accepts. The journal is stored in a directory of
+ * memory-mapped segment files of a fixed size. Every record contains the
+ * length, the {@link MessageType} and the CRC-32C of the message (see
+ * {@link JournalRecord}).
+ * 
+ * Concurrent writers reserve the space of their records with a
+ * compare-and-set of the write position and copy their messages in parallel.
+ * If a record does not fit into the current segment anymore, the segment is
+ * sealed and the writers continue in a new one.
+ * 
+ * An appended record is durable after {@link #sync(long)} has returned. The
+ * syncs use group commit: only one thread at a time forces the segments to
+ * disk, while the others wait. The next force covers all records which have
+ * been completed in the meantime, so under load a single force makes many
+ * records durable. Records which have not been synced may be lost on a
+ * crash. When a journal is opened, it is truncated after the last complete
+ * record, so it never contains a gap.
+ */
+public class Journal implements Closeable {
+	
+	/**
+	 * The default size of a segment (64 MiB).
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+	
+	private static final int MIN_SEGMENT_SIZE = 64;
+	private static final int MAX_SEGMENT_SIZE = 1 << 30;
+	
+	private final File directory;
+	private final int segmentSize;
+	
+	// the segments which have not been forced completely, guarded by this
+	private final TreeMap<Long, JournalSegment> segments = new TreeMap<Long, JournalSegment>();
+	private volatile JournalSegment current;
+	private volatile boolean closed;
+	
+	private final Object lock = new Object();
+	// the following fields are guarded by lock
+	private final Map<Long, Long> completions = new HashMap<Long, Long>();
+	private long completedPosition;
+	private long durablePosition;
+	private boolean forcing;
+	private long nofForces;
+	
+	/**
+	 * Opens the journal in the given directory with the default segment size.
+	 * 
+	 * @see #Journal(File, int)
+	 */
+	public Journal(File directory) throws IOException, IllegalArgumentException {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * Opens the journal in the given directory, which is created if it does
+	 * not exist. An existing journal is truncated after its last complete
+	 * record.
+	 * 
+	 * @param directory
+	 *            the directory of the segment files
+	 * @param segmentSize
+	 *            the size of a segment file in bytes, which must be the same
+	 *            as the one the journal has been created with
+	 * @throws IllegalArgumentException
+	 *             if the directory is null or the segment size is smaller
+	 *             than 64 bytes or larger than 1 GiB
+	 * @throws IOException
+	 *             if the directory cannot be created or a segment has
+	 *             another size
+	 */
+	public Journal(File directory, int segmentSize) throws IOException, IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException("The directory cannot be null.");
+		if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE)
+			throw new IllegalArgumentException("The segment size must be between "+MIN_SEGMENT_SIZE+" and "+MAX_SEGMENT_SIZE+" bytes.");
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("The directory "+directory+" cannot be created.");
+		
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		recover();
+	}
+	
+	private void recover() throws IOException {
+		List<Long> indices = JournalSegment.listIndices(directory);
+		long end = -1;
+		JournalSegment last = null;
+		
+		for (int i=0; i<indices.size(); i++) {
+			long index = indices.get(i);
+			if (end >= 0 || (last != null && index != last.getIndex() + 1)) {
+				// the records after the end or a missing segment are discarded
+				if (!new File(directory, JournalSegment.getFileName(index)).delete())
+					throw new IOException("The segment "+JournalSegment.getFileName(index)+" cannot be deleted.");
+				continue;
+			}
+			
+			last = JournalSegment.open(directory, index, segmentSize, false);
+			segments.put(index, last);
+			ByteBuffer view = last.newView();
+			int offset = 0;
+			int length;
+			while ((length = JournalSegment.check(view, offset)) > 0) {
+				offset += length;
+			}
+			
+			if (length == JournalSegment.SEALED) {
+				last.setReserved(segmentSize);
+			} else {
+				last.clear(offset);
+				last.setReserved(offset);
+				end = getPosition(last, offset);
+			}
+		}
+		
+		if (end < 0) {
+			long index = last == null ? 0 : last.getIndex() + 1;
+			last = JournalSegment.open(directory, index, segmentSize, false);
+			segments.put(index, last);
+			end = getPosition(last, 0);
+		}
+		
+		current = last;
+		completedPosition = end;
+		durablePosition = end;
+		release(last.getIndex());
+	}
+	
+	/**
+	 * Appends an encoded message to the journal.
+	 * 
+	 * @return the position after the record, which can be passed to
+	 *         {@link #sync(long)}
+	 * @throws IllegalArgumentException
+	 *             if the object is null or not one of the supported
+	 *             {@link MessageType}s, or if the record does not fit into a
+	 *             segment
+	 * @throws NotSignedException
+	 *             if the object has not been signed
+	 * @throws IOException
+	 *             if a new segment cannot be created or the journal has been
+	 *             closed
+	 */
+	public long append(SerializableObject object) throws IOException, IllegalArgumentException, NotSignedException {
+		if (object == null)
+			throw new IllegalArgumentException("The object cannot be null.");
+		
+		return append(MessageType.getMessageType(object), object.encode());
+	}
+	
+	/**
+	 * Appends an encoded message of the given type to the journal.
+	 * 
+	 * @see #append(SerializableObject)
+	 */
+	public long append(MessageType messageType, byte[] bytes) throws IOException, IllegalArgumentException {
+		if (messageType == null || bytes == null || bytes.length == 0)
+			throw new IllegalArgumentException("The message type and the message cannot be null or empty.");
+		if (bytes.length > segmentSize - JournalSegment.RECORD_HEADER_LENGTH)
+			throw new IllegalArgumentException("The message does not fit into a segment.");
+		
+		int length = JournalSegment.RECORD_HEADER_LENGTH + bytes.length;
+		int[] sealOffset = new int[1];
+		while (true) {
+			if (closed)
+				throw new IOException("The journal has been closed.");
+			
+			JournalSegment segment = current;
+			int offset = segment.reserve(length, sealOffset);
+			if (offset >= 0) {
+				long position = getPosition(segment, offset);
+				try {
+					segment.write(offset, messageType, bytes);
+				} finally {
+					complete(position, position + length);
+				}
+				return position + length;
+			}
+			
+			if (sealOffset[0] >= 0) {
+				segment.seal(sealOffset[0]);
+				complete(getPosition(segment, sealOffset[0]), getPosition(segment, segmentSize));
+			}
+			roll(segment);
+		}
+	}
+	
+	/**
+	 * Appends an encoded message and waits until it is durable.
+	 * 
+	 * @see #append(SerializableObject)
+	 * @see #sync(long)
+	 */
+	public long appendAndSync(SerializableObject object) throws IOException, IllegalArgumentException, NotSignedException {
+		long position = append(object);
+		sync(position);
+		return position;
+	}
+	
+	private synchronized void roll(JournalSegment full) throws IOException {
+		if (current != full || closed)
+			return;
+		
+		JournalSegment next = JournalSegment.open(directory, full.getIndex() + 1, segmentSize, false);
+		segments.put(next.getIndex(), next);
+		current = next;
+	}
+	
+	/**
+	 * Marks the bytes between the given positions as written and advances the
+	 * completed position as far as all preceding bytes have been written.
+	 */
+	private void complete(long start, long end) {
+		synchronized (lock) {
+			if (start != completedPosition) {
+				completions.put(start, end);
+				return;
+			}
+			
+			completedPosition = end;
+			Long next;
+			while ((next = completions.remove(completedPosition)) != null) {
+				completedPosition = next;
+			}
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Blocks until all records up to the given position are durable. If no
+	 * other thread is forcing the segments to disk, the calling thread forces
+	 * all records completed so far on behalf of every waiting thread.
+	 * 
+	 * @param position
+	 *            the position returned by {@link #append(SerializableObject)}
+	 * @throws IllegalArgumentException
+	 *             if the position is beyond the end of the journal
+	 * @throws InterruptedIOException
+	 *             if the thread has been interrupted while waiting
+	 * @throws IOException
+	 *             if the journal has been closed
+	 */
+	public void sync(long position) throws IOException, IllegalArgumentException {
+		if (position > getPosition())
+			throw new IllegalArgumentException("The position "+position+" is beyond the end of the journal.");
+		
+		long from;
+		long to;
+		synchronized (lock) {
+			while (durablePosition < position && (forcing || completedPosition < position)) {
+				if (closed)
+					throw new IOException("The journal has been closed.");
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the journal to be synced.");
+				}
+			}
+			if (durablePosition >= position)
+				return;
+			
+			forcing = true;
+			from = durablePosition;
+			to = completedPosition;
+		}
+		
+		boolean forced = false;
+		try {
+			force(from, to);
+			forced = true;
+		} finally {
+			synchronized (lock) {
+				if (forced) {
+					durablePosition = to;
+					nofForces++;
+				}
+				forcing = false;
+				lock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Blocks until all records appended so far are durable.
+	 * 
+	 * @see #sync(long)
+	 */
+	public void sync() throws IOException {
+		try {
+			sync(getPosition());
+		} catch (IllegalArgumentException e) {
+			// cannot happen, the position is the end of the journal
+			throw new IOException(e.getMessage());
+		}
+	}
+	
+	private void force(long from, long to) throws IOException {
+		long first = from / segmentSize;
+		long last = (to - 1) / segmentSize;
+		for (long index=first; index<=last; index++) {
+			JournalSegment segment;
+			synchronized (this) {
+				segment = segments.get(index);
+			}
+			if (segment == null)
+				throw new IOException("The segment "+JournalSegment.getFileName(index)+" is not mapped.");
+			segment.force();
+		}
+		release(to / segmentSize);
+	}
+	
+	/**
+	 * Removes the segments before the given index, which have been forced
+	 * completely, so that their mappings can be released.
+	 */
+	private synchronized void release(long index) {
+		Iterator<Long> it = segments.headMap(Math.min(index, current.getIndex())).keySet().iterator();
+		while (it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+	
+	private long getPosition(JournalSegment segment, int offset) {
+		return segment.getIndex() * segmentSize + offset;
+	}
+	
+	/**
+	 * Returns the position after the last reserved record.
+	 */
+	public long getPosition() {
+		JournalSegment segment = current;
+		return getPosition(segment, segment.getReserved());
+	}
+	
+	/**
+	 * Returns the position up to which the journal is durable.
+	 */
+	public long getDurablePosition() {
+		synchronized (lock) {
+			return durablePosition;
+		}
+	}
+	
+	/**
+	 * Returns the number of times the segments have been forced to disk, which
+	 * is usually much smaller than the number of synced records.
+	 */
+	public long getNofForces() {
+		synchronized (lock) {
+			return nofForces;
+		}
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+	
+	/**
+	 * Syncs all records and closes the journal. It must not be called while
+	 * records are being appended.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		
+		sync();
+		closed = true;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+		synchronized (this) {
+			segments.clear();
+		}
+	}
+
+}
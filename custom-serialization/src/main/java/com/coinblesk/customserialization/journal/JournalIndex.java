@@ -0,0 +1,486 @@
+package com.coinblesk.customserialization.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class maintains two memory-mapped sidecar indexes of the
+ * {@link PaymentRequest}s and {@link ServerPaymentRequest}s of a
+ * {@link Journal}, so that the transactions of a user within a time range can
+ * be found without scanning the journal.
+ * 
+ * The sparse timestamp index stores an entry for every block of (by default)
+ * 64 indexed records, which contains the position of the first record and
+ * the minimum and maximum timestamp of the block. A time range query only
+ * reads the blocks overlapping the range, which works well because the
+ * timestamps of a journal are nearly sorted.
+ * 
+ * The username index is an open-addressed hash table with linear probing,
+ * which has one slot for every distinct 64-bit hash of a payer's or payee's
+ * username. It is doubled when it is half full. A slot points to the last
+ * entry of the postings list of the hash, an append-only file in which every
+ * entry contains the position of a record and points to the previous entry
+ * of the same hash. Hence, a lookup only probes the slots of the distinct
+ * hashes and then follows the chain of the records of the user, no matter
+ * how many records other users have. Since different usernames may have the
+ * same hash, the records are decoded and filtered before they are returned.
+ * 
+ * The indexes are built incrementally with {@link #update(long)}, which
+ * indexes the records appended since the last update. The files are
+ * stored in the directory of the journal. They are not crash-safe, but they
+ * can be rebuilt from the journal after deleting them.
+ */
+public class JournalIndex implements Closeable {
+	
+	/**
+	 * The default number of records per entry of the timestamp index.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64;
+	
+	static final String TIMESTAMP_FILE_NAME = "timestamp.index";
+	static final String USERNAME_FILE_NAME = "username.index";
+	static final String POSTINGS_FILE_NAME = "username.postings";
+	
+	// indexed position (8) | number of blocks (4) | records in the last block (4) | block size (4)
+	private static final int TIMESTAMP_HEADER_LENGTH = 32;
+	// position (8) | minimum timestamp (8) | maximum timestamp (8)
+	private static final int BLOCK_LENGTH = 24;
+	// number of slots (4) | number of hashes (4)
+	private static final int USERNAME_HEADER_LENGTH = 16;
+	// hash (8) | offset of the last posting + 1, 0 if the slot is empty (8)
+	private static final int SLOT_LENGTH = 16;
+	private static final int MIN_NOF_SLOTS = 1024;
+	// length of the postings (8)
+	private static final int POSTINGS_HEADER_LENGTH = 16;
+	// position (8) | offset of the previous posting + 1, 0 if it is the first one (8)
+	private static final int POSTING_LENGTH = 16;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final File directory;
+	private final int blockSize;
+	private final JournalReader reader;
+	
+	private MappedByteBuffer timestamps;
+	private MappedByteBuffer usernames;
+	private MappedByteBuffer postings;
+	private long indexedPosition;
+	private int nofBlocks;
+	private int nofInLastBlock;
+	private int nofSlots;
+	private int nofHashes;
+	private int postingsLength;
+	
+	/**
+	 * Opens the index of the journal in the given directory with the default
+	 * block size.
+	 * 
+	 * @see #JournalIndex(File, int)
+	 */
+	public JournalIndex(File directory) throws IOException, IllegalArgumentException {
+		this(directory, DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * Opens the index of the journal in the given directory, or creates an
+	 * empty one.
+	 * 
+	 * @param directory
+	 *            the directory of the journal
+	 * @param blockSize
+	 *            the number of records per entry of the timestamp index,
+	 *            which must be the same as the one the index has been created
+	 *            with
+	 * @throws IllegalArgumentException
+	 *             if the directory is null or the block size is not positive
+	 * @throws IOException
+	 *             if the files cannot be mapped or have been created with
+	 *             another block size
+	 */
+	public JournalIndex(File directory, int blockSize) throws IOException, IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException("The directory cannot be null.");
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("The block size must be positive.");
+		
+		this.directory = directory;
+		this.blockSize = blockSize;
+		this.reader = new JournalReader(directory);
+		
+		File timestampFile = new File(directory, TIMESTAMP_FILE_NAME);
+		if (timestampFile.length() == 0) {
+			timestamps = map(timestampFile, TIMESTAMP_HEADER_LENGTH + 1024 * BLOCK_LENGTH);
+			timestamps.putInt(16, blockSize);
+		} else {
+			timestamps = map(timestampFile, timestampFile.length());
+			if (timestamps.getInt(16) != blockSize)
+				throw new IOException("The index has been created with a block size of "+timestamps.getInt(16)+".");
+			indexedPosition = timestamps.getLong(0);
+			nofBlocks = timestamps.getInt(8);
+			nofInLastBlock = timestamps.getInt(12);
+		}
+		
+		File usernameFile = new File(directory, USERNAME_FILE_NAME);
+		if (usernameFile.length() == 0) {
+			nofSlots = MIN_NOF_SLOTS;
+			usernames = map(usernameFile, USERNAME_HEADER_LENGTH + (long) nofSlots * SLOT_LENGTH);
+			usernames.putInt(0, nofSlots);
+		} else {
+			usernames = map(usernameFile, usernameFile.length());
+			nofSlots = usernames.getInt(0);
+			nofHashes = usernames.getInt(4);
+		}
+		
+		File postingsFile = new File(directory, POSTINGS_FILE_NAME);
+		if (postingsFile.length() == 0) {
+			postings = map(postingsFile, POSTINGS_HEADER_LENGTH + 1024 * POSTING_LENGTH);
+			postingsLength = POSTINGS_HEADER_LENGTH;
+			postings.putLong(0, postingsLength);
+		} else {
+			postings = map(postingsFile, postingsFile.length());
+			postingsLength = (int) postings.getLong(0);
+		}
+	}
+	
+	private static MappedByteBuffer map(File file, long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (raf.length() < size)
+				raf.setLength(size);
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Indexes all records of the journal after the last indexed one.
+	 * 
+	 * @see #update(long)
+	 */
+	public synchronized void update() throws IOException {
+		update(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Indexes the records of the journal after the last indexed one and
+	 * before the given position. The position should not be larger than the
+	 * {@link Journal#getDurablePosition()} of a journal which is in use.
+	 * Records which cannot be decoded are skipped.
+	 * 
+	 * @throws IOException
+	 *             if a record is corrupt or the index cannot be grown
+	 */
+	public synchronized void update(long toPosition) throws IOException {
+		reader.seek(indexedPosition);
+		JournalRecord record;
+		while ((record = reader.next()) != null && record.getPosition() < toPosition) {
+			index(record);
+			indexedPosition = record.getPosition() + JournalSegment.RECORD_HEADER_LENGTH + record.getBytes().length;
+		}
+		
+		timestamps.putInt(8, nofBlocks);
+		timestamps.putInt(12, nofInLastBlock);
+		timestamps.putLong(0, indexedPosition);
+	}
+	
+	private void index(JournalRecord record) throws IOException {
+		List<PaymentRequest> paymentRequests = decode(record);
+		if (paymentRequests.isEmpty())
+			return;
+		
+		if (nofBlocks == 0 || nofInLastBlock == blockSize) {
+			ensureTimestampCapacity(nofBlocks + 1);
+			int offset = TIMESTAMP_HEADER_LENGTH + nofBlocks * BLOCK_LENGTH;
+			timestamps.putLong(offset, record.getPosition());
+			timestamps.putLong(offset + 8, Long.MAX_VALUE);
+			timestamps.putLong(offset + 16, Long.MIN_VALUE);
+			nofBlocks++;
+			nofInLastBlock = 0;
+		}
+		
+		int offset = TIMESTAMP_HEADER_LENGTH + (nofBlocks - 1) * BLOCK_LENGTH;
+		for (PaymentRequest pr : paymentRequests) {
+			timestamps.putLong(offset + 8, Math.min(timestamps.getLong(offset + 8), pr.getTimestamp()));
+			timestamps.putLong(offset + 16, Math.max(timestamps.getLong(offset + 16), pr.getTimestamp()));
+			
+			insert(hash(pr.getUsernamePayer()), record.getPosition());
+			if (!pr.getUsernamePayee().equals(pr.getUsernamePayer()))
+				insert(hash(pr.getUsernamePayee()), record.getPosition());
+		}
+		nofInLastBlock++;
+	}
+	
+	/**
+	 * Returns the {@link PaymentRequest}s of a record, or an empty list if it
+	 * has another type or cannot be decoded.
+	 */
+	private static List<PaymentRequest> decode(JournalRecord record) {
+		try {
+			if (record.getMessageType() == MessageType.PAYMENT_REQUEST)
+				return Collections.singletonList(record.<PaymentRequest>decode());
+			if (record.getMessageType() == MessageType.SERVER_PAYMENT_REQUEST)
+				return record.<ServerPaymentRequest>decode().getPaymentRequests();
+		} catch (IllegalArgumentException e) {
+			// not indexed
+		} catch (SerializationException e) {
+			// not indexed
+		}
+		return Collections.emptyList();
+	}
+	
+	private void ensureTimestampCapacity(int blocks) throws IOException {
+		long size = TIMESTAMP_HEADER_LENGTH + (long) blocks * BLOCK_LENGTH;
+		if (size > timestamps.capacity())
+			timestamps = map(new File(directory, TIMESTAMP_FILE_NAME), Math.max(size, 2L * timestamps.capacity()));
+	}
+	
+	/**
+	 * Appends the position to the postings list of the hash, unless it is
+	 * already the last one, and adds a slot for the hash if it is new.
+	 */
+	private void insert(long hash, long position) throws IOException {
+		int slot = findSlot(usernames, nofSlots, hash);
+		long last = usernames.getLong(getSlotOffset(slot) + 8);
+		if (last != 0 && postings.getLong((int) last - 1) == position)
+			return;
+		
+		ensurePostingsCapacity((long) postingsLength + POSTING_LENGTH);
+		postings.putLong(postingsLength, position);
+		postings.putLong(postingsLength + 8, last);
+		long posting = postingsLength + 1;
+		postingsLength += POSTING_LENGTH;
+		postings.putLong(0, postingsLength);
+		
+		if (last != 0) {
+			usernames.putLong(getSlotOffset(slot) + 8, posting);
+			return;
+		}
+		
+		if (2 * (nofHashes + 1) > nofSlots) {
+			growUsernames();
+			slot = findSlot(usernames, nofSlots, hash);
+		}
+		usernames.putLong(getSlotOffset(slot), hash);
+		usernames.putLong(getSlotOffset(slot) + 8, posting);
+		nofHashes++;
+		usernames.putInt(4, nofHashes);
+	}
+	
+	/**
+	 * Returns the slot of the hash, or the empty slot at which it has to be
+	 * inserted.
+	 */
+	private static int findSlot(MappedByteBuffer table, int nofSlots, long hash) {
+		int slot = getSlot(hash, nofSlots);
+		while (table.getLong(getSlotOffset(slot) + 8) != 0 && table.getLong(getSlotOffset(slot)) != hash) {
+			slot = (slot + 1) & (nofSlots - 1);
+		}
+		return slot;
+	}
+	
+	private void ensurePostingsCapacity(long size) throws IOException {
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("The postings of the username index cannot exceed 2 GiB.");
+		if (size > postings.capacity())
+			postings = map(new File(directory, POSTINGS_FILE_NAME), Math.min(Integer.MAX_VALUE, Math.max(size, 2L * postings.capacity())));
+	}
+	
+	/**
+	 * Rehashes the username index into a table with twice as many slots,
+	 * which replaces the old file. The postings are not touched.
+	 */
+	private void growUsernames() throws IOException {
+		int newNofSlots = nofSlots * 2;
+		File file = new File(directory, USERNAME_FILE_NAME);
+		File tmp = new File(directory, USERNAME_FILE_NAME + ".tmp");
+		if (tmp.exists() && !tmp.delete())
+			throw new IOException("The file "+tmp+" cannot be deleted.");
+		
+		MappedByteBuffer table = map(tmp, USERNAME_HEADER_LENGTH + (long) newNofSlots * SLOT_LENGTH);
+		for (int slot=0; slot<nofSlots; slot++) {
+			long posting = usernames.getLong(getSlotOffset(slot) + 8);
+			if (posting == 0)
+				continue;
+			
+			long hash = usernames.getLong(getSlotOffset(slot));
+			int newSlot = findSlot(table, newNofSlots, hash);
+			table.putLong(getSlotOffset(newSlot), hash);
+			table.putLong(getSlotOffset(newSlot) + 8, posting);
+		}
+		table.putInt(0, newNofSlots);
+		table.putInt(4, nofHashes);
+		table.force();
+		
+		if (!tmp.renameTo(file))
+			throw new IOException("The file "+tmp+" cannot be renamed.");
+		usernames = table;
+		nofSlots = newNofSlots;
+	}
+	
+	private static int getSlot(long hash, int nofSlots) {
+		return (int) (hash ^ (hash >>> 32)) & (nofSlots - 1);
+	}
+	
+	private static int getSlotOffset(int slot) {
+		return USERNAME_HEADER_LENGTH + slot * SLOT_LENGTH;
+	}
+	
+	/**
+	 * Returns the 64-bit FNV-1a hash of the UTF-8 bytes of a username.
+	 */
+	static long hash(String username) {
+		long hash = 0xCBF29CE484222325L;
+		for (byte b : username.getBytes(UTF8)) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the records which contain a {@link PaymentRequest} of the given
+	 * user as payer or payee with a timestamp within the given range.
+	 * 
+	 * @param username
+	 *            the username of the payer or payee
+	 * @param fromTimestamp
+	 *            the first timestamp of the range (inclusive)
+	 * @param toTimestamp
+	 *            the last timestamp of the range (inclusive)
+	 * @return the records in the order of their positions
+	 * @throws IllegalArgumentException
+	 *             if the username is null
+	 * @throws IOException
+	 *             if an indexed record cannot be read
+	 */
+	public synchronized List<JournalRecord> find(String username, long fromTimestamp, long toTimestamp) throws IOException, IllegalArgumentException {
+		if (username == null)
+			throw new IllegalArgumentException("The username cannot be null.");
+		
+		// the postings are appended in the order of the positions, so the
+		// chain yields them in descending order without duplicates
+		long[] positions = new long[16];
+		int nofPositions = 0;
+		int slot = findSlot(usernames, nofSlots, hash(username));
+		for (long posting=usernames.getLong(getSlotOffset(slot) + 8); posting != 0; posting=postings.getLong((int) posting - 1 + 8)) {
+			if (nofPositions == positions.length)
+				positions = Arrays.copyOf(positions, positions.length * 2);
+			positions[nofPositions++] = postings.getLong((int) posting - 1);
+		}
+		
+		List<JournalRecord> result = new ArrayList<JournalRecord>();
+		for (int i=nofPositions-1; i>=0; i--) {
+			// skip the records whose block does not overlap the range
+			int block = findBlock(positions[i]);
+			if (block >= 0 && !overlaps(block, fromTimestamp, toTimestamp))
+				continue;
+			
+			JournalRecord record = reader.read(positions[i]);
+			if (matches(record, username, fromTimestamp, toTimestamp))
+				result.add(record);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the indexed records which contain a {@link PaymentRequest} with
+	 * a timestamp within the given range.
+	 * 
+	 * @return the records in the order of their positions
+	 * @throws IOException
+	 *             if an indexed record cannot be read
+	 */
+	public synchronized List<JournalRecord> find(long fromTimestamp, long toTimestamp) throws IOException {
+		List<JournalRecord> result = new ArrayList<JournalRecord>();
+		for (int block=0; block<nofBlocks; block++) {
+			if (!overlaps(block, fromTimestamp, toTimestamp))
+				continue;
+			
+			long end = block + 1 < nofBlocks ? getBlockPosition(block + 1) : indexedPosition;
+			reader.seek(getBlockPosition(block));
+			JournalRecord record;
+			while ((record = reader.next()) != null && record.getPosition() < end) {
+				if (matches(record, null, fromTimestamp, toTimestamp))
+					result.add(record);
+			}
+		}
+		return result;
+	}
+	
+	private static boolean matches(JournalRecord record, String username, long fromTimestamp, long toTimestamp) {
+		for (PaymentRequest pr : decode(record)) {
+			if (pr.getTimestamp() < fromTimestamp || pr.getTimestamp() > toTimestamp)
+				continue;
+			if (username == null || username.equals(pr.getUsernamePayer()) || username.equals(pr.getUsernamePayee()))
+				return true;
+		}
+		return false;
+	}
+	
+	private long getBlockPosition(int block) {
+		return timestamps.getLong(TIMESTAMP_HEADER_LENGTH + block * BLOCK_LENGTH);
+	}
+	
+	private boolean overlaps(int block, long fromTimestamp, long toTimestamp) {
+		int offset = TIMESTAMP_HEADER_LENGTH + block * BLOCK_LENGTH;
+		return timestamps.getLong(offset + 8) <= toTimestamp && timestamps.getLong(offset + 16) >= fromTimestamp;
+	}
+	
+	/**
+	 * Returns the block containing the given position with a binary search, or
+	 * -1 if the position precedes the first block.
+	 */
+	private int findBlock(long position) {
+		int low = 0;
+		int high = nofBlocks - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (getBlockPosition(middle) <= position) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return block;
+	}
+	
+	/**
+	 * Returns the position up to which the journal has been indexed.
+	 */
+	public synchronized long getIndexedPosition() {
+		return indexedPosition;
+	}
+	
+	/**
+	 * Writes the indexes to disk.
+	 */
+	public synchronized void flush() {
+		timestamps.force();
+		usernames.force();
+		postings.force();
+	}
+	
+	@Override
+	public synchronized void close() {
+		flush();
+	}
+
+}
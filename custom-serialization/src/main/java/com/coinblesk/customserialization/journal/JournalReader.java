@@ -0,0 +1,150 @@
+package com.coinblesk.customserialization.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class reads the records of a {@link Journal} in the order of their
+ * positions. Records which are appended while reading may or may not be
+ * returned, so a journal which is in use should only be read up to its
+ * {@link Journal#getDurablePosition()}. Records can also be read at a given
+ * position with {@link #read(long)}, e.g., with the positions of a
+ * {@link JournalIndex}.
+ */
+public class JournalReader {
+	
+	private final File directory;
+	private List<Long> indices;
+	private int nextSegment;
+	private JournalSegment segment;
+	// the last mapped segment, which is reused by seek
+	private JournalSegment mapped;
+	private ByteBuffer view;
+	private int offset;
+	private boolean end;
+	
+	/**
+	 * Creates a new reader of the journal in the given directory.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the directory is null
+	 * @throws IOException
+	 *             if the directory cannot be read
+	 */
+	public JournalReader(File directory) throws IOException, IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException("The directory cannot be null.");
+		
+		this.directory = directory;
+		this.indices = JournalSegment.listIndices(directory);
+	}
+	
+	/**
+	 * Reads the next record.
+	 * 
+	 * @return the record, or null if the end of the journal has been reached
+	 * @throws IOException
+	 *             if a segment cannot be mapped or a record is corrupt
+	 */
+	public JournalRecord next() throws IOException {
+		while (!end) {
+			if (segment == null && !openNextSegment())
+				return null;
+			
+			int length = JournalSegment.check(view, offset);
+			if (length > 0) {
+				long position = segment.getIndex() * segment.getSize() + offset;
+				byte[] bytes = JournalSegment.readMessage(view, offset);
+				MessageType messageType;
+				try {
+					messageType = MessageType.getMessageType(view.get(offset + 4));
+				} catch (IllegalArgumentException e) {
+					// cannot happen, the record has been checked
+					throw new IOException(e.getMessage());
+				}
+				offset += length;
+				return new JournalRecord(position, messageType, bytes);
+			}
+			
+			if (length == JournalSegment.CORRUPT)
+				throw new IOException("The segment "+segment.getFile()+" is corrupt at offset "+offset+".");
+			if (length == JournalSegment.END)
+				end = true;
+			segment = null;
+		}
+		return null;
+	}
+	
+	/**
+	 * Moves the reader to the given position, so that {@link #next()} returns
+	 * the record at this position or the first one after it.
+	 * 
+	 * @throws IOException
+	 *             if the segment of the position cannot be mapped
+	 */
+	public void seek(long position) throws IOException {
+		end = false;
+		segment = null;
+		if (indices.isEmpty())
+			indices = JournalSegment.listIndices(directory);
+		nextSegment = indices.size();
+		if (position < 0 || indices.isEmpty())
+			return;
+		
+		long segmentSize = new File(directory, JournalSegment.getFileName(indices.get(0))).length();
+		long index = position / Math.max(1, segmentSize);
+		int i = indices.indexOf(index);
+		if (i < 0) {
+			// the segment may have been created after the reader
+			indices = JournalSegment.listIndices(directory);
+			i = indices.indexOf(index);
+			if (i < 0) {
+				end = true;
+				return;
+			}
+		}
+		
+		nextSegment = i;
+		openNextSegment();
+		offset = (int) (position - index * segmentSize);
+	}
+	
+	/**
+	 * Reads the record at the given position.
+	 * 
+	 * @throws IOException
+	 *             if there is no record at the position or it is corrupt
+	 */
+	public JournalRecord read(long position) throws IOException {
+		seek(position);
+		JournalRecord record = next();
+		if (record == null || record.getPosition() != position)
+			throw new IOException("There is no record at the position "+position+".");
+		return record;
+	}
+	
+	private boolean openNextSegment() throws IOException {
+		if (nextSegment == indices.size()) {
+			// the journal may have been extended since the segments were listed
+			indices = JournalSegment.listIndices(directory);
+			if (nextSegment >= indices.size())
+				return false;
+		}
+		
+		long index = indices.get(nextSegment++);
+		if (mapped == null || mapped.getIndex() != index) {
+			File file = new File(directory, JournalSegment.getFileName(index));
+			mapped = JournalSegment.open(directory, index, (int) file.length(), true);
+			view = mapped.newView();
+		}
+		segment = mapped;
+		offset = 0;
+		return true;
+	}
+
+}
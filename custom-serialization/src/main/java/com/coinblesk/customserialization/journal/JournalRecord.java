@@ -0,0 +1,27 @@
+package com.coinblesk.customserialization.journal;
+
+import com.coinblesk.customserialization.corpus.CorpusRecord;
+import com.coinblesk.customserialization.corpus.MessageType;
+
+/**
+ * A record of a {@link Journal}, i.e., an encoded message, its type and its
+ * position in the journal.
+ */
+public class JournalRecord extends CorpusRecord {
+	
+	private final long position;
+	
+	public JournalRecord(long position, MessageType messageType, byte[] bytes) {
+		super(messageType, bytes);
+		this.position = position;
+	}
+	
+	/**
+	 * Returns the position of the record, i.e., the number of bytes preceding
+	 * it in the journal, including the unused ends of sealed segments.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+}
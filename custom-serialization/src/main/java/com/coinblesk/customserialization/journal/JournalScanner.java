@@ -0,0 +1,216 @@
+package com.coinblesk.customserialization.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class scans the records of a {@link Journal} in parallel on a
+ * {@link ForkJoinPool}, e.g., in order to decode all
+ * {@link MessageType#SERVER_PAYMENT_REQUEST}s of a day. It is meant for
+ * journals which are not written anymore.
+ * 
+ * The segments are memory-mapped and scanned independently. The record
+ * boundaries of a segment are found by following the lengths of the records,
+ * which only touches their headers. The records are then split into ranges,
+ * which are verified, copied and passed to a {@link RecordCollector} on all
+ * cores. Hence, every split falls on a record boundary.
+ */
+public class JournalScanner {
+	
+	/**
+	 * The default number of records which are processed by one task without
+	 * being split further.
+	 */
+	public static final int DEFAULT_SPLIT_SIZE = 1024;
+	
+	private static class DefaultPoolHolder {
+		private static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+	
+	private final File directory;
+	private final ForkJoinPool pool;
+	private int splitSize = DEFAULT_SPLIT_SIZE;
+	
+	/**
+	 * Creates a new scanner of the journal in the given directory, which uses
+	 * a shared pool with one thread per core.
+	 */
+	public JournalScanner(File directory) throws IllegalArgumentException {
+		this(directory, DefaultPoolHolder.POOL);
+	}
+	
+	/**
+	 * Creates a new scanner of the journal in the given directory.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the directory or the pool is null
+	 */
+	public JournalScanner(File directory, ForkJoinPool pool) throws IllegalArgumentException {
+		if (directory == null || pool == null)
+			throw new IllegalArgumentException("The directory and the pool cannot be null.");
+		
+		this.directory = directory;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Sets the number of records which are processed by one task without
+	 * being split further.
+	 */
+	public void setSplitSize(int splitSize) throws IllegalArgumentException {
+		if (splitSize <= 0)
+			throw new IllegalArgumentException("The split size must be positive.");
+		this.splitSize = splitSize;
+	}
+	
+	/**
+	 * Scans all records of the journal.
+	 * 
+	 * @return the combined container of the collector
+	 * @throws IOException
+	 *             if a segment cannot be mapped or a record is corrupt
+	 * @throws ExecutionException
+	 *             if the collector has thrown an exception
+	 */
+	public <A> A scan(RecordCollector<A> collector) throws IOException, ExecutionException, IllegalArgumentException {
+		if (collector == null)
+			throw new IllegalArgumentException("The collector cannot be null.");
+		
+		List<Long> indices = JournalSegment.listIndices(directory);
+		List<JournalSegment> segments = new ArrayList<JournalSegment>(indices.size());
+		for (long index : indices) {
+			File file = new File(directory, JournalSegment.getFileName(index));
+			segments.add(JournalSegment.open(directory, index, (int) file.length(), true));
+		}
+		
+		try {
+			return pool.invoke(new SegmentsTask<A>(collector, segments, 0, segments.size()));
+		} catch (ScanException e) {
+			// the pool may have wrapped the exception of another thread
+			Throwable cause = e.getCause();
+			while (cause instanceof ScanException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new ExecutionException(cause);
+		}
+	}
+	
+	/**
+	 * Wraps the checked exceptions of the tasks.
+	 */
+	private static class ScanException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		private ScanException(Throwable cause) {
+			super(cause);
+		}
+	}
+	
+	private class SegmentsTask<A> extends RecursiveTask<A> {
+		private static final long serialVersionUID = 1L;
+		
+		private final RecordCollector<A> collector;
+		private final List<JournalSegment> segments;
+		private final int from;
+		private final int to;
+		
+		private SegmentsTask(RecordCollector<A> collector, List<JournalSegment> segments, int from, int to) {
+			this.collector = collector;
+			this.segments = segments;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected A compute() {
+			if (to - from == 0)
+				return collector.supply();
+			if (to - from == 1)
+				return scanSegment(segments.get(from));
+			
+			int middle = (from + to) >>> 1;
+			SegmentsTask<A> right = new SegmentsTask<A>(collector, segments, middle, to);
+			right.fork();
+			A left = new SegmentsTask<A>(collector, segments, from, middle).compute();
+			return collector.combine(left, right.join());
+		}
+		
+		private A scanSegment(JournalSegment segment) {
+			ByteBuffer view = segment.newView();
+			int[] offsets = new int[64];
+			int nofRecords = 0;
+			int offset = 0;
+			int length;
+			while ((length = JournalSegment.skip(view, offset)) > 0) {
+				if (nofRecords == offsets.length)
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				offsets[nofRecords++] = offset;
+				offset += length;
+			}
+			if (length == JournalSegment.CORRUPT)
+				throw new ScanException(new IOException("The segment "+segment.getFile()+" is corrupt at offset "+offset+"."));
+			
+			return new RecordsTask<A>(collector, segment, view, offsets, 0, nofRecords).compute();
+		}
+	}
+	
+	private class RecordsTask<A> extends RecursiveTask<A> {
+		private static final long serialVersionUID = 1L;
+		
+		private final RecordCollector<A> collector;
+		private final JournalSegment segment;
+		private final ByteBuffer view;
+		private final int[] offsets;
+		private final int from;
+		private final int to;
+		
+		private RecordsTask(RecordCollector<A> collector, JournalSegment segment, ByteBuffer view, int[] offsets, int from, int to) {
+			this.collector = collector;
+			this.segment = segment;
+			this.view = view;
+			this.offsets = offsets;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected A compute() {
+			if (to - from > splitSize) {
+				int middle = (from + to) >>> 1;
+				RecordsTask<A> right = new RecordsTask<A>(collector, segment, view, offsets, middle, to);
+				right.fork();
+				A left = new RecordsTask<A>(collector, segment, view, offsets, from, middle).compute();
+				return collector.combine(left, right.join());
+			}
+			
+			A container = collector.supply();
+			long base = segment.getIndex() * segment.getSize();
+			for (int i=from; i<to; i++) {
+				int offset = offsets[i];
+				if (JournalSegment.check(view, offset) == JournalSegment.CORRUPT)
+					throw new ScanException(new IOException("The segment "+segment.getFile()+" is corrupt at offset "+offset+"."));
+				
+				try {
+					MessageType messageType = MessageType.getMessageType(view.get(offset + 4));
+					collector.accumulate(container, new JournalRecord(base + offset, messageType, JournalSegment.readMessage(view, offset)));
+				} catch (Exception e) {
+					throw new ScanException(e);
+				}
+			}
+			return container;
+		}
+	}
+
+}
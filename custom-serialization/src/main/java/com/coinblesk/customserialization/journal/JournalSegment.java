@@ -0,0 +1,275 @@
+package com.coinblesk.customserialization.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * A memory-mapped segment file of a {@link Journal}. Every record consists of
+ * its length (4 bytes), the code of its {@link MessageType} (1 byte), the
+ * CRC-32C of the type and the message (4 bytes) and the encoded message. A
+ * length of 0 marks the end of the journal, a length of -1 marks a segment
+ * which has been sealed because the next record did not fit.
+ */
+class JournalSegment {
+	
+	static final int RECORD_HEADER_LENGTH = 9;
+	
+	static final int END = 0;
+	static final int SEALED = -1;
+	static final int CORRUPT = -2;
+	
+	private static final String SUFFIX = ".journal";
+	
+	private final long index;
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final AtomicInteger reserved = new AtomicInteger();
+	
+	private JournalSegment(long index, File file, MappedByteBuffer buffer) {
+		this.index = index;
+		this.file = file;
+		this.buffer = buffer;
+	}
+	
+	/**
+	 * Maps the segment with the given index, creating the file if it does not
+	 * exist yet.
+	 */
+	static JournalSegment open(File directory, long index, int size, boolean readOnly) throws IOException {
+		File file = new File(directory, getFileName(index));
+		RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+		try {
+			if (raf.length() == 0 && !readOnly)
+				raf.setLength(size);
+			else if (raf.length() != size)
+				throw new IOException("The segment "+file+" has a length of "+raf.length()+" instead of "+size+" bytes.");
+			
+			// the mapping stays valid after the channel has been closed
+			MappedByteBuffer buffer = raf.getChannel().map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, size);
+			return new JournalSegment(index, file, buffer);
+		} finally {
+			raf.close();
+		}
+	}
+	
+	static String getFileName(long index) {
+		return String.format("%016x%s", index, SUFFIX);
+	}
+	
+	/**
+	 * Returns the index encoded in the name of a segment file, or -1 if the
+	 * file is not a segment.
+	 */
+	static long getIndex(String fileName) {
+		if (fileName.length() != 16 + SUFFIX.length() || !fileName.endsWith(SUFFIX))
+			return -1;
+		
+		try {
+			return Long.parseLong(fileName.substring(0, 16), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Returns the indices of the segment files in the given directory in
+	 * ascending order.
+	 */
+	static List<Long> listIndices(File directory) throws IOException {
+		String[] names = directory.list();
+		if (names == null)
+			throw new IOException("The directory "+directory+" cannot be read.");
+		
+		List<Long> indices = new ArrayList<Long>();
+		for (String name : names) {
+			long index = getIndex(name);
+			if (index >= 0)
+				indices.add(index);
+		}
+		Collections.sort(indices);
+		return indices;
+	}
+	
+	long getIndex() {
+		return index;
+	}
+	
+	File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Returns the offset up to which the segment has been reserved.
+	 */
+	int getReserved() {
+		return reserved.get();
+	}
+	
+	int getSize() {
+		return buffer.capacity();
+	}
+	
+	/**
+	 * Returns a view of the mapped file, which has its own position and limit.
+	 */
+	ByteBuffer newView() {
+		return buffer.duplicate();
+	}
+	
+	/**
+	 * Reserves the given number of bytes with a compare-and-set of the write
+	 * position, so that concurrent writers never block each other.
+	 * 
+	 * @return the offset of the reserved bytes, or -1 if they do not fit. In
+	 *         this case, the segment is sealed and the first element of
+	 *         sealOffset is set to the offset of the seal marker if this
+	 *         thread sealed the segment, or to -1 otherwise.
+	 */
+	int reserve(int length, int[] sealOffset) {
+		while (true) {
+			int offset = reserved.get();
+			if (offset == buffer.capacity()) {
+				sealOffset[0] = -1;
+				return -1;
+			}
+			
+			boolean fits = length <= buffer.capacity() - offset;
+			if (reserved.compareAndSet(offset, fits ? offset + length : buffer.capacity())) {
+				if (fits)
+					return offset;
+				sealOffset[0] = offset;
+				return -1;
+			}
+		}
+	}
+	
+	/**
+	 * Sets the write position after recovery.
+	 */
+	void setReserved(int offset) {
+		reserved.set(offset);
+	}
+	
+	/**
+	 * Writes a record at the given reserved offset. The length is written last,
+	 * so that the record only becomes visible once it is complete.
+	 */
+	void write(int offset, MessageType messageType, byte[] bytes) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset + RECORD_HEADER_LENGTH);
+		view.put(bytes);
+		
+		Crc32c crc = new Crc32c();
+		crc.update(messageType.getCode());
+		crc.update(bytes);
+		view.put(offset + 4, messageType.getCode());
+		view.putInt(offset + 5, (int) crc.getValue());
+		view.putInt(offset, bytes.length);
+	}
+	
+	/**
+	 * Writes the seal marker at the given offset if there is room for it.
+	 */
+	void seal(int offset) {
+		if (offset + 4 <= buffer.capacity())
+			buffer.duplicate().putInt(offset, SEALED);
+	}
+	
+	/**
+	 * Zeroes the segment from the given offset on, in order to discard the
+	 * remains of incomplete records.
+	 */
+	void clear(int offset) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		byte[] zeros = new byte[Math.min(1 << 16, Math.max(1, view.remaining()))];
+		while (view.hasRemaining()) {
+			view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+		}
+	}
+	
+	void force() {
+		buffer.force();
+	}
+	
+	/**
+	 * Checks the record at the given offset of a segment.
+	 * 
+	 * @return the total length of the record including its header, or
+	 *         {@link #END}, {@link #SEALED} or {@link #CORRUPT}
+	 */
+	static int check(ByteBuffer segment, int offset) {
+		if (offset + 4 > segment.capacity())
+			return SEALED;
+		
+		int length = segment.getInt(offset);
+		if (length == 0 || length == SEALED)
+			return length;
+		if (length < 0 || length > segment.capacity() - offset - RECORD_HEADER_LENGTH)
+			return CORRUPT;
+		
+		byte code = segment.get(offset + 4);
+		try {
+			MessageType.getMessageType(code);
+		} catch (IllegalArgumentException e) {
+			return CORRUPT;
+		}
+		
+		Crc32c crc = new Crc32c();
+		crc.update(code);
+		byte[] chunk = new byte[Math.min(length, 1 << 12)];
+		ByteBuffer view = segment.duplicate();
+		view.position(offset + RECORD_HEADER_LENGTH);
+		for (int remaining=length; remaining>0; remaining-=chunk.length) {
+			int n = Math.min(remaining, chunk.length);
+			view.get(chunk, 0, n);
+			crc.update(chunk, 0, n);
+		}
+		if ((int) crc.getValue() != segment.getInt(offset + 5))
+			return CORRUPT;
+		
+		return RECORD_HEADER_LENGTH + length;
+	}
+	
+	/**
+	 * Returns the total length of the record at the given offset of a segment
+	 * like {@link #check(ByteBuffer, int)}, but without verifying its type and
+	 * checksum, so that the records of a segment can be enumerated quickly.
+	 */
+	static int skip(ByteBuffer segment, int offset) {
+		if (offset + 4 > segment.capacity())
+			return SEALED;
+		
+		int length = segment.getInt(offset);
+		if (length == 0 || length == SEALED)
+			return length;
+		if (length < 0 || length > segment.capacity() - offset - RECORD_HEADER_LENGTH)
+			return CORRUPT;
+		
+		return RECORD_HEADER_LENGTH + length;
+	}
+	
+	/**
+	 * Reads the message of a record which has been checked with
+	 * {@link #check(ByteBuffer, int)}.
+	 */
+	static byte[] readMessage(ByteBuffer segment, int offset) {
+		byte[] bytes = new byte[segment.getInt(offset)];
+		ByteBuffer view = segment.duplicate();
+		view.position(offset + RECORD_HEADER_LENGTH);
+		view.get(bytes);
+		return bytes;
+	}
+
+}
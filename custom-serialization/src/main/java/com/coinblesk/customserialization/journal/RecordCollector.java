@@ -0,0 +1,30 @@
+package com.coinblesk.customserialization.journal;
+
+/**
+ * A mutable reduction of {@link JournalRecord}s, which is used by the
+ * {@link JournalScanner} to process disjoint ranges of a journal in parallel.
+ * Every range is accumulated into its own container, and the containers are
+ * combined in the order of the ranges.
+ */
+public interface RecordCollector<A> {
+	
+	/**
+	 * Returns a new, empty container.
+	 */
+	A supply();
+	
+	/**
+	 * Adds a record to the given container. The records of a container are
+	 * passed in the order of their positions.
+	 */
+	void accumulate(A container, JournalRecord record) throws Exception;
+	
+	/**
+	 * Combines two containers, where the records of the left container
+	 * precede those of the right one.
+	 * 
+	 * @return the combined container, which may be one of the arguments
+	 */
+	A combine(A left, A right);
+
+}
@@ -0,0 +1,189 @@
+package com.coinblesk.customserialization.reconciliation;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressed hash table with primitive 64-bit keys, which maps every
+ * key to a list of values in the order they have been added. The values are
+ * stored in pooled entries, which are addressed by their index, so that no
+ * object is allocated per entry.
+ */
+class DigestTable<V> {
+	
+	private static final int EMPTY = -2;
+	private static final int NO_ENTRY = -1;
+	
+	// the slots, a slot whose key has no entries left has a head of NO_ENTRY
+	private long[] keys;
+	private int[] heads;
+	private int[] tails;
+	private int nofKeys;
+	
+	// the entries, free entries are chained through next
+	private Object[] values;
+	private long[] digests;
+	private int[] next;
+	private int nofEntries;
+	private int usedEntries;
+	private int free = NO_ENTRY;
+	
+	DigestTable() {
+		initSlots(64);
+		values = new Object[64];
+		digests = new long[64];
+		next = new int[64];
+	}
+	
+	private void initSlots(int capacity) {
+		keys = new long[capacity];
+		heads = new int[capacity];
+		tails = new int[capacity];
+		Arrays.fill(heads, EMPTY);
+		nofKeys = 0;
+	}
+	
+	/**
+	 * Appends a value to the list of the given digest.
+	 */
+	void add(long digest, V value) {
+		int entry;
+		if (free != NO_ENTRY) {
+			entry = free;
+			free = next[entry];
+		} else {
+			if (usedEntries == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+				digests = Arrays.copyOf(digests, digests.length * 2);
+				next = Arrays.copyOf(next, next.length * 2);
+			}
+			entry = usedEntries++;
+		}
+		values[entry] = value;
+		digests[entry] = digest;
+		next[entry] = NO_ENTRY;
+		nofEntries++;
+		
+		int slot = findSlot(digest);
+		if (heads[slot] == EMPTY) {
+			if (2 * (nofKeys + 1) > keys.length) {
+				rehash();
+				slot = findSlot(digest);
+			}
+			keys[slot] = digest;
+			nofKeys++;
+		}
+		if (heads[slot] < 0) {
+			heads[slot] = entry;
+		} else {
+			next[tails[slot]] = entry;
+		}
+		tails[slot] = entry;
+	}
+	
+	/**
+	 * Returns the first entry of the given digest, or -1 if there is none.
+	 */
+	int first(long digest) {
+		int head = heads[findSlot(digest)];
+		return head < 0 ? NO_ENTRY : head;
+	}
+	
+	/**
+	 * Returns the entry following the given one with the same digest, or -1.
+	 */
+	int next(int entry) {
+		return next[entry];
+	}
+	
+	@SuppressWarnings("unchecked")
+	V get(int entry) {
+		return (V) values[entry];
+	}
+	
+	/**
+	 * Removes an entry of the given digest.
+	 */
+	void remove(long digest, int entry) {
+		int slot = findSlot(digest);
+		int previous = NO_ENTRY;
+		for (int e=heads[slot]; e!=entry; e=next[e]) {
+			previous = e;
+		}
+		
+		if (previous == NO_ENTRY)
+			heads[slot] = next[entry];
+		else
+			next[previous] = next[entry];
+		if (tails[slot] == entry)
+			tails[slot] = previous;
+		
+		values[entry] = null;
+		next[entry] = free;
+		free = entry;
+		nofEntries--;
+	}
+	
+	/**
+	 * Returns the number of values in the table.
+	 */
+	int size() {
+		return nofEntries;
+	}
+	
+	/**
+	 * Returns an upper bound of the entry indices, for iterating all entries
+	 * with {@link #get(int)}, which returns null for unused entries.
+	 */
+	int getEntryBound() {
+		return usedEntries;
+	}
+	
+	long getDigest(int entry) {
+		return digests[entry];
+	}
+	
+	private int findSlot(long digest) {
+		int mask = keys.length - 1;
+		int slot = (int) (digest ^ (digest >>> 32)) & mask;
+		while (heads[slot] != EMPTY && keys[slot] != digest) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Rebuilds the slots without the keys which have no entries left, and
+	 * doubles them if they would still be more than a quarter full.
+	 */
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldHeads = heads;
+		int[] oldTails = tails;
+		
+		int live = 0;
+		for (int head : oldHeads) {
+			if (head >= 0)
+				live++;
+		}
+		initSlots(4 * (live + 1) > oldKeys.length ? oldKeys.length * 2 : oldKeys.length);
+		
+		for (int i=0; i<oldKeys.length; i++) {
+			if (oldHeads[i] < 0)
+				continue;
+			int slot = findSlot(oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			heads[slot] = oldHeads[i];
+			tails[slot] = oldTails[i];
+			nofKeys++;
+		}
+	}
+	
+	void clear() {
+		initSlots(64);
+		Arrays.fill(values, 0, usedEntries, null);
+		nofEntries = 0;
+		usedEntries = 0;
+		free = NO_ENTRY;
+	}
+
+}
@@ -0,0 +1,480 @@
+package com.coinblesk.customserialization.reconciliation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.corpus.CorpusReader;
+import com.coinblesk.customserialization.corpus.CorpusRecord;
+import com.coinblesk.customserialization.corpus.CorpusWriter;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class matches every {@link PaymentResponse} to the
+ * {@link PaymentRequest} it answers, i.e., the one with the same payer,
+ * payee, currency, amount and timestamp (see
+ * {@link PaymentRequest#requestsIdentic(PaymentRequest)}). The requests and
+ * responses may be added in any order. If several requests have the same
+ * fields, the responses are matched to them in the order they have been
+ * added.
+ * 
+ * The join is a symmetric hash join on a 64-bit digest of the fields: an
+ * added message is matched against the unmatched messages of the other kind
+ * with the same digest, or stored until its counterpart arrives. The fields
+ * are compared on a match, so a collision of the digests does not produce a
+ * wrong match. The results are passed to a {@link ReconciliationListener};
+ * the orphans are reported by {@link #finish()}.
+ * 
+ * If the stored messages exceed the memory limit, all messages are spilled
+ * into partition files by their digest, and every partition is joined on its
+ * own by {@link #finish()} (Grace hash join). A partition which does not fit
+ * into memory either is partitioned again with other bits of the digest.
+ * 
+ * A response which references its request by digest (see
+ * {@link PaymentResponse#isByReference()}) does not contain the fields.
+ * Such responses are joined separately on the SHA-256 digest of the
+ * request's payload with the requests which remain unmatched after the join
+ * on the fields. Hence, they are matched and reported by {@link #finish()}.
+ */
+public class Reconciler {
+	
+	/**
+	 * The default memory limit (256 MiB).
+	 */
+	public static final long DEFAULT_MEMORY_LIMIT = 1 << 28;
+	
+	/**
+	 * The default number of partitions a join is spilled into.
+	 */
+	public static final int DEFAULT_NOF_PARTITIONS = 16;
+	
+	// the estimated heap usage of a stored message besides its encoding
+	private static final int ENTRY_OVERHEAD = 256;
+	private static final int MAX_LEVEL = 3;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final ReconciliationListener listener;
+	private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+	private int nofPartitions = DEFAULT_NOF_PARTITIONS;
+	private File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+	
+	private Join join;
+	private Join referenceJoin;
+	private long nofMatches;
+	private long nofOrphanedRequests;
+	private long nofOrphanedResponses;
+	
+	/**
+	 * Creates a new reconciler with a memory limit of 256 MiB.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the listener is null
+	 */
+	public Reconciler(ReconciliationListener listener) throws IllegalArgumentException {
+		if (listener == null)
+			throw new IllegalArgumentException("The listener cannot be null.");
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets the estimated number of bytes the stored messages may use before
+	 * they are spilled to disk.
+	 */
+	public void setMemoryLimit(long memoryLimit) throws IllegalArgumentException {
+		if (memoryLimit <= 0)
+			throw new IllegalArgumentException("The memory limit must be positive.");
+		this.memoryLimit = memoryLimit;
+	}
+	
+	/**
+	 * Sets the number of partitions a join is spilled into.
+	 */
+	public void setNofPartitions(int nofPartitions) throws IllegalArgumentException {
+		if (nofPartitions < 2 || nofPartitions > 256)
+			throw new IllegalArgumentException("The number of partitions must be between 2 and 256.");
+		this.nofPartitions = nofPartitions;
+	}
+	
+	/**
+	 * Sets the directory of the partition files.
+	 */
+	public void setTempDirectory(File tempDirectory) throws IllegalArgumentException {
+		if (tempDirectory == null)
+			throw new IllegalArgumentException("The directory cannot be null.");
+		this.tempDirectory = tempDirectory;
+	}
+	
+	/**
+	 * Adds a {@link PaymentRequest}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the request is null
+	 * @throws NotSignedException
+	 *             if the request is spilled to disk and has not been signed
+	 * @throws IOException
+	 *             if the request cannot be spilled to disk
+	 */
+	public void add(PaymentRequest paymentRequest) throws IOException, IllegalArgumentException, NotSignedException {
+		if (paymentRequest == null)
+			throw new IllegalArgumentException("The payment request cannot be null.");
+		
+		add(getJoin(), paymentRequest);
+	}
+	
+	/**
+	 * Adds a {@link PaymentResponse}.
+	 * 
+	 * @see #add(PaymentRequest)
+	 */
+	public void add(PaymentResponse paymentResponse) throws IOException, IllegalArgumentException, NotSignedException {
+		if (paymentResponse == null)
+			throw new IllegalArgumentException("The payment response cannot be null.");
+		
+		add(paymentResponse.isByReference() ? getReferenceJoin() : getJoin(), paymentResponse);
+	}
+	
+	private Join getJoin() {
+		if (join == null)
+			join = new Join(0, false, null);
+		return join;
+	}
+	
+	private Join getReferenceJoin() {
+		if (referenceJoin == null)
+			referenceJoin = new Join(0, true, null);
+		return referenceJoin;
+	}
+	
+	/**
+	 * Joins the spilled partitions and reports all messages which have not
+	 * been matched as orphans. Afterwards, the reconciler can be used for
+	 * the next reconciliation.
+	 * 
+	 * @throws IOException
+	 *             if a partition cannot be read
+	 */
+	public void finish() throws IOException {
+		try {
+			// the requests answered by reference remain after the join on the fields
+			if (join != null && referenceJoin != null)
+				join.next = referenceJoin;
+			if (join != null)
+				join.finish();
+			if (referenceJoin != null)
+				referenceJoin.finish();
+		} finally {
+			if (join != null)
+				join.delete();
+			if (referenceJoin != null)
+				referenceJoin.delete();
+			join = null;
+			referenceJoin = null;
+		}
+	}
+	
+	public long getNofMatches() {
+		return nofMatches;
+	}
+	
+	public long getNofOrphanedRequests() {
+		return nofOrphanedRequests;
+	}
+	
+	public long getNofOrphanedResponses() {
+		return nofOrphanedResponses;
+	}
+	
+	/**
+	 * Returns the 64-bit FNV-1a hash of the fields, mixed with the finalizer
+	 * of MurmurHash3, so that all bits can be used for partitioning.
+	 */
+	static long digest(String payer, String payee, Currency currency, long amount, long timestamp) {
+		long hash = 0xCBF29CE484222325L;
+		hash = fnv(hash, payer.getBytes(UTF8));
+		hash = fnv(hash, payee.getBytes(UTF8));
+		hash = fnv(hash, currency.getCode());
+		hash = fnv(hash, amount);
+		hash = fnv(hash, timestamp);
+		
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	private static long fnv(long hash, byte[] bytes) {
+		for (byte b : bytes) {
+			hash = fnv(hash, b);
+		}
+		// separates the usernames
+		return fnv(hash, 0xFF);
+	}
+	
+	private static long fnv(long hash, long value) {
+		for (int i=0; i<8; i++) {
+			hash = fnv(hash, (int) (value >>> (i * 8)));
+		}
+		return hash;
+	}
+	
+	private static long fnv(long hash, int b) {
+		return (hash ^ (b & 0xFF)) * 0x100000001B3L;
+	}
+	
+	/**
+	 * Returns the first 64 bits of the SHA-256 digest of a request's payload
+	 * (see {@link PaymentResponse#getRequestDigest()}), which are already
+	 * uniformly distributed.
+	 */
+	static long referenceDigest(byte[] requestDigest) {
+		long hash = 0;
+		for (int i=0; i<8; i++) {
+			hash = (hash << 8) | (requestDigest[i] & 0xFF);
+		}
+		return hash;
+	}
+	
+	private static byte[] sha256(byte[] payload) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(payload);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static boolean matches(PaymentRequest pr, PaymentResponse response) {
+		try {
+			return response.matchesRequest(pr);
+		} catch (IllegalArgumentException e) {
+			// the stored requests are not null
+			return false;
+		}
+	}
+	
+	/**
+	 * A join of all messages or of one partition, either on the fields or on
+	 * the digest of the requests.
+	 */
+	private class Join {
+		private final int level;
+		private final boolean byReference;
+		private final DigestTable<PaymentRequest> requests = new DigestTable<PaymentRequest>();
+		private final DigestTable<PaymentResponse> responses = new DigestTable<PaymentResponse>();
+		private long memory;
+		// the join the orphaned requests are passed to, or null to report them
+		private Join next;
+		
+		private File[] partitionFiles;
+		private CorpusWriter[] partitions;
+		
+		private Join(int level, boolean byReference, Join next) {
+			this.level = level;
+			this.byReference = byReference;
+			this.next = next;
+		}
+		
+		private void add(PaymentRequest pr, long digest) throws IOException, NotSignedException {
+			if (partitions != null) {
+				spill(MessageType.PAYMENT_REQUEST, pr, digest);
+				return;
+			}
+			
+			for (int e=responses.first(digest); e>=0; e=responses.next(e)) {
+				PaymentResponse response = responses.get(e);
+				if (matches(pr, response)) {
+					responses.remove(digest, e);
+					memory -= getSize(response);
+					nofMatches++;
+					listener.onMatch(pr, response);
+					return;
+				}
+			}
+			
+			requests.add(digest, pr);
+			memory += getSize(pr);
+			if (memory > memoryLimit)
+				spillAll();
+		}
+		
+		private void add(PaymentResponse response, long digest) throws IOException, NotSignedException {
+			if (partitions != null) {
+				spill(MessageType.PAYMENT_RESPONSE, response, digest);
+				return;
+			}
+			
+			for (int e=requests.first(digest); e>=0; e=requests.next(e)) {
+				PaymentRequest pr = requests.get(e);
+				if (matches(pr, response)) {
+					requests.remove(digest, e);
+					memory -= getSize(pr);
+					nofMatches++;
+					listener.onMatch(pr, response);
+					return;
+				}
+			}
+			
+			responses.add(digest, response);
+			memory += getSize(response);
+			if (memory > memoryLimit)
+				spillAll();
+		}
+		
+		private long getSize(SerializableObject object) {
+			// the usernames dominate the size of a message
+			long size = ENTRY_OVERHEAD;
+			if (object instanceof PaymentRequest)
+				size += 2 * (((PaymentRequest) object).getUsernamePayer().length() + ((PaymentRequest) object).getUsernamePayee().length());
+			else if (!((PaymentResponse) object).isByReference())
+				size += 2 * (((PaymentResponse) object).getUsernamePayer().length() + ((PaymentResponse) object).getUsernamePayee().length());
+			return size;
+		}
+		
+		/**
+		 * Moves all stored messages into partition files. A join at the
+		 * maximum level keeps its messages in memory instead.
+		 */
+		private void spillAll() throws IOException, NotSignedException {
+			if (level == MAX_LEVEL)
+				return;
+			
+			partitionFiles = new File[nofPartitions];
+			partitions = new CorpusWriter[nofPartitions];
+			for (int i=0; i<nofPartitions; i++) {
+				partitionFiles[i] = File.createTempFile("partition", ".corpus", tempDirectory);
+				partitions[i] = new CorpusWriter(new FileOutputStream(partitionFiles[i]));
+			}
+			
+			spill(MessageType.PAYMENT_REQUEST, requests);
+			spill(MessageType.PAYMENT_RESPONSE, responses);
+			requests.clear();
+			responses.clear();
+			memory = 0;
+		}
+		
+		/**
+		 * Spills the messages of a table digest by digest, so that messages
+		 * with the same digest keep their order.
+		 */
+		private void spill(MessageType messageType, DigestTable<? extends SerializableObject> table) throws IOException, NotSignedException {
+			for (int head=0; head<table.getEntryBound(); head++) {
+				if (table.get(head) == null || table.first(table.getDigest(head)) != head)
+					continue;
+				for (int e=head; e>=0; e=table.next(e)) {
+					spill(messageType, table.get(e), table.getDigest(e));
+				}
+			}
+		}
+		
+		private void spill(MessageType messageType, SerializableObject object, long digest) throws IOException, NotSignedException {
+			// every level partitions by other bits of the digest
+			int partition = (int) ((Long.rotateLeft(digest, 8 * level) >>> 32) % nofPartitions);
+			partitions[partition].write(messageType, object.encode());
+		}
+		
+		private void finish() throws IOException {
+			if (partitions == null) {
+				for (int e=0; e<requests.getEntryBound(); e++) {
+					if (requests.get(e) == null)
+						continue;
+					
+					if (next != null) {
+						addToNext(requests.get(e));
+					} else {
+						nofOrphanedRequests++;
+						listener.onOrphanedRequest(requests.get(e));
+					}
+				}
+				for (int e=0; e<responses.getEntryBound(); e++) {
+					if (responses.get(e) != null) {
+						nofOrphanedResponses++;
+						listener.onOrphanedResponse(responses.get(e));
+					}
+				}
+				return;
+			}
+			
+			for (CorpusWriter partition : partitions) {
+				partition.close();
+			}
+			for (File file : partitionFiles) {
+				Join child = new Join(level + 1, byReference, next);
+				try {
+					CorpusReader reader = new CorpusReader(new FileInputStream(file));
+					try {
+						CorpusRecord record;
+						while ((record = reader.next()) != null) {
+							if (record.getMessageType() == MessageType.PAYMENT_REQUEST)
+								Reconciler.this.add(child, record.<PaymentRequest>decode());
+							else
+								Reconciler.this.add(child, record.<PaymentResponse>decode());
+						}
+					} finally {
+						reader.close();
+					}
+					file.delete();
+					child.finish();
+				} catch (IllegalArgumentException e) {
+					throw new IOException("A partition is corrupt ("+e.getMessage()+").");
+				} catch (SerializationException e) {
+					throw new IOException("A partition is corrupt ("+e.getMessage()+").");
+				} finally {
+					child.delete();
+				}
+			}
+		}
+		
+		private void addToNext(PaymentRequest pr) throws IOException {
+			try {
+				Reconciler.this.add(next, pr);
+			} catch (NotSignedException e) {
+				throw new IOException("An unsigned request cannot be spilled ("+e.getMessage()+").");
+			}
+		}
+		
+		/**
+		 * Deletes the partition files.
+		 */
+		private void delete() {
+			if (partitions == null)
+				return;
+			
+			for (int i=0; i<partitions.length; i++) {
+				try {
+					partitions[i].close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+				partitionFiles[i].delete();
+			}
+		}
+	}
+	
+	private void add(Join join, PaymentRequest pr) throws IOException, NotSignedException {
+		if (join.byReference)
+			join.add(pr, referenceDigest(sha256(pr.getPayload())));
+		else
+			join.add(pr, digest(pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp()));
+	}
+	
+	private void add(Join join, PaymentResponse response) throws IOException, NotSignedException {
+		if (join.byReference)
+			join.add(response, referenceDigest(response.getRequestDigest()));
+		else
+			join.add(response, digest(response.getUsernamePayer(), response.getUsernamePayee(), response.getCurrency(), response.getAmount(), response.getTimestamp()));
+	}
+
+}
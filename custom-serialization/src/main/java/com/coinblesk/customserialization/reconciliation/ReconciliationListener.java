@@ -0,0 +1,27 @@
+package com.coinblesk.customserialization.reconciliation;
+
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+
+/**
+ * Receives the results of a {@link Reconciler}.
+ */
+public interface ReconciliationListener {
+	
+	/**
+	 * Called for a {@link PaymentResponse} and the {@link PaymentRequest} it
+	 * answers.
+	 */
+	void onMatch(PaymentRequest paymentRequest, PaymentResponse paymentResponse);
+	
+	/**
+	 * Called for a {@link PaymentRequest} without a {@link PaymentResponse}.
+	 */
+	void onOrphanedRequest(PaymentRequest paymentRequest);
+	
+	/**
+	 * Called for a {@link PaymentResponse} without a {@link PaymentRequest}.
+	 */
+	void onOrphanedResponse(PaymentResponse paymentResponse);
+
+}
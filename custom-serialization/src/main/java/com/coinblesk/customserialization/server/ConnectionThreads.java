@@ -0,0 +1,63 @@
+package com.coinblesk.customserialization.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads serving one connection each. On a Java runtime with
+ * virtual threads (Java 21 and later), a virtual thread is created per
+ * connection, which makes thousands of concurrent connections cheap. Since
+ * this library is built for older runtimes as well, the virtual thread
+ * factory is looked up by reflection. Otherwise, platform daemon threads are
+ * used.
+ */
+class ConnectionThreads {
+	
+	/**
+	 * The stack size of platform threads, which is kept small so that
+	 * thousands of connections fit into memory.
+	 */
+	private static final long STACK_SIZE = 256 * 1024;
+	
+	private ConnectionThreads() {
+	}
+	
+	/**
+	 * Returns a factory for virtual threads if available, otherwise for
+	 * platform daemon threads.
+	 */
+	static ThreadFactory newThreadFactory(String name) {
+		ThreadFactory virtual = newVirtualThreadFactory(name);
+		return virtual != null ? virtual : newPlatformThreadFactory(name);
+	}
+	
+	/**
+	 * Returns a factory for virtual threads, or null if the runtime does not
+	 * support them.
+	 */
+	static ThreadFactory newVirtualThreadFactory(String name) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name+"-", 1L);
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	private static ThreadFactory newPlatformThreadFactory(final String name) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(null, r, name+"-"+threadNumber.incrementAndGet(), STACK_SIZE);
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.coinblesk.customserialization.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Reads and writes length-prefixed frames: the length of the encoded message
+ * (4 bytes) followed by the message.
+ */
+class Frames {
+	
+	/**
+	 * The maximum length of a frame, which protects the server from
+	 * allocating huge buffers for corrupt length prefixes.
+	 */
+	static final int MAX_FRAME_LENGTH = 1 << 20;
+	
+	private Frames() {
+	}
+	
+	/**
+	 * Reads the next frame.
+	 * 
+	 * @return the frame, or null if the stream has been closed before a new
+	 *         frame started
+	 * @throws IOException
+	 *             if the stream ends within a frame or the length is invalid
+	 */
+	static byte[] read(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		
+		if (length <= 0 || length > MAX_FRAME_LENGTH)
+			throw new IOException("Invalid frame length "+length+".");
+		
+		byte[] frame = new byte[length];
+		in.readFully(frame);
+		return frame;
+	}
+	
+	static void write(DataOutputStream out, byte[] frame) throws IOException {
+		out.writeInt(frame.length);
+		out.write(frame);
+		out.flush();
+	}
+
+}
@@ -0,0 +1,247 @@
+package com.coinblesk.customserialization.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.concurrent.PaymentRequestKeyResolver;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class drives a {@link PaymentServer} over loopback with many
+ * concurrent connections. Every connection sends its requests one after the
+ * other and waits for each response, so the latency of every request is
+ * measured from sending the frame until the response has been received. The
+ * requests are signed up front, so that the clients do not compete with the
+ * server for the CPU.
+ * 
+ * It can be started from the command line with the number of connections
+ * and the number of requests per connection as arguments. In this case, a
+ * {@link PaymentServer} is started in the same process.
+ */
+public class LoadGenerator {
+	
+	/**
+	 * The results of a run.
+	 */
+	public static class Result {
+		private final long nofSuccesses;
+		private final long nofFailures;
+		private final long elapsedNanos;
+		private final long[] latencyNanos;
+		
+		private Result(long nofSuccesses, long nofFailures, long elapsedNanos, long[] latencyNanos) {
+			this.nofSuccesses = nofSuccesses;
+			this.nofFailures = nofFailures;
+			this.elapsedNanos = elapsedNanos;
+			this.latencyNanos = latencyNanos;
+			Arrays.sort(this.latencyNanos);
+		}
+		
+		/**
+		 * Returns the number of responses with status
+		 * {@link ServerResponseStatus#SUCCESS}.
+		 */
+		public long getNofSuccesses() {
+			return nofSuccesses;
+		}
+		
+		/**
+		 * Returns the number of requests which failed, i.e., which were
+		 * answered with another status or not answered at all.
+		 */
+		public long getNofFailures() {
+			return nofFailures;
+		}
+		
+		/**
+		 * Returns the number of answered requests per second.
+		 */
+		public double getThroughput() {
+			return latencyNanos.length * 1e9 / Math.max(1, elapsedNanos);
+		}
+		
+		/**
+		 * Returns the latency in nanoseconds below which the given fraction
+		 * (between 0 and 1) of the answered requests lies, or -1 if no
+		 * request has been answered.
+		 */
+		public long getLatencyPercentile(double fraction) {
+			if (latencyNanos.length == 0)
+				return -1;
+			
+			int index = (int) Math.ceil(fraction * latencyNanos.length) - 1;
+			return latencyNanos[Math.max(0, Math.min(latencyNanos.length - 1, index))];
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%d ok, %d failed, %.0f requests/s, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+					nofSuccesses, nofFailures, getThroughput(),
+					getLatencyPercentile(0.5) / 1e6, getLatencyPercentile(0.99) / 1e6, getLatencyPercentile(1) / 1e6);
+		}
+	}
+	
+	private final int port;
+	private final List<byte[]> frames;
+	
+	/**
+	 * Creates a new load generator.
+	 * 
+	 * @param port
+	 *            the port of the {@link PaymentServer} on the loopback address
+	 * @param frames
+	 *            the encoded {@link ServerPaymentRequest}s, which are sent in
+	 *            turns
+	 * @throws IllegalArgumentException
+	 *             if the list of frames is null or empty
+	 */
+	public LoadGenerator(int port, List<byte[]> frames) throws IllegalArgumentException {
+		if (frames == null || frames.isEmpty())
+			throw new IllegalArgumentException("The frames cannot be null or empty.");
+		
+		this.port = port;
+		this.frames = frames;
+	}
+	
+	/**
+	 * Opens the given number of connections, waits until all of them are
+	 * established and then sends the given number of requests over every
+	 * connection.
+	 */
+	public Result run(int nofConnections, final int requestsPerConnection) throws InterruptedException {
+		final CountDownLatch connected = new CountDownLatch(nofConnections);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(nofConnections);
+		final AtomicLong nofSuccesses = new AtomicLong();
+		final AtomicLong nofFailures = new AtomicLong();
+		final long[][] latencies = new long[nofConnections][];
+		
+		ThreadFactory threadFactory = ConnectionThreads.newThreadFactory("load-connection");
+		for (int i=0; i<nofConnections; i++) {
+			final int connection = i;
+			threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					long[] latency = new long[requestsPerConnection];
+					int answered = 0;
+					boolean isConnected = false;
+					Socket socket = null;
+					try {
+						socket = new Socket(InetAddress.getLoopbackAddress(), port);
+						socket.setTcpNoDelay(true);
+						DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+						DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+						connected.countDown();
+						isConnected = true;
+						start.await();
+						
+						for (; answered<requestsPerConnection; answered++) {
+							long begin = System.nanoTime();
+							Frames.write(out, frames.get((connection + answered) % frames.size()));
+							byte[] frame = Frames.read(in);
+							latency[answered] = System.nanoTime() - begin;
+							
+							ServerPaymentResponse response = frame == null ? null : DecoderFactory.<ServerPaymentResponse>decode(ServerPaymentResponse.class, frame);
+							if (response != null && response.getPaymentResponsePayer().getStatus() == ServerResponseStatus.SUCCESS)
+								nofSuccesses.incrementAndGet();
+							else
+								nofFailures.incrementAndGet();
+						}
+					} catch (Exception e) {
+						nofFailures.addAndGet(requestsPerConnection - answered);
+					} finally {
+						if (!isConnected)
+							connected.countDown();
+						latencies[connection] = Arrays.copyOf(latency, answered);
+						try {
+							if (socket != null)
+								socket.close();
+						} catch (Exception e) {
+							// nothing to do
+						}
+						finished.countDown();
+					}
+				}
+			}).start();
+		}
+		
+		connected.await();
+		long begin = System.nanoTime();
+		start.countDown();
+		finished.await();
+		long elapsed = System.nanoTime() - begin;
+		
+		int total = 0;
+		for (long[] latency : latencies) {
+			total += latency.length;
+		}
+		long[] merged = new long[total];
+		int index = 0;
+		for (long[] latency : latencies) {
+			System.arraycopy(latency, 0, merged, index, latency.length);
+			index += latency.length;
+		}
+		
+		return new Result(nofSuccesses.get(), nofFailures.get(), elapsed, merged);
+	}
+	
+	/**
+	 * Starts a {@link PaymentServer} and drives it with the number of
+	 * connections and requests per connection given as arguments (default:
+	 * 1000 connections with 10 requests each).
+	 */
+	public static void main(String[] args) throws Exception {
+		int nofConnections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int requestsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		
+		KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+		keyGen.initialize(256, new SecureRandom());
+		final KeyPair client = keyGen.generateKeyPair();
+		KeyPair server = keyGen.generateKeyPair();
+		
+		PaymentServer paymentServer = new PaymentServer(new PaymentRequestKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PaymentRequest paymentRequest, int index) {
+				return client.getPublic();
+			}
+		}, server.getPrivate(), PKIAlgorithm.DEFAULT, 1);
+		int port = paymentServer.start(0);
+		
+		List<byte[]> frames = new ArrayList<byte[]>();
+		for (int i=0; i<100; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(client.getPrivate());
+			frames.add(new ServerPaymentRequest(pr).encode());
+		}
+		
+		System.out.println("virtual threads: "+PaymentServer.isUsingVirtualThreads());
+		LoadGenerator loadGenerator = new LoadGenerator(port, frames);
+		// warm up
+		loadGenerator.run(Math.min(nofConnections, 50), requestsPerConnection);
+		System.out.println(loadGenerator.run(nofConnections, requestsPerConnection));
+		
+		paymentServer.close();
+	}
+
+}
@@ -0,0 +1,216 @@
+package com.coinblesk.customserialization.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.PrivateKey;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.concurrent.PaymentPipeline;
+import com.coinblesk.customserialization.concurrent.PaymentRequestKeyResolver;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class is a reference server which accepts encoded
+ * {@link ServerPaymentRequest}s over TCP, verifies them and answers with a
+ * signed {@link ServerPaymentResponse}. It serves as an end-to-end baseline
+ * for the throughput and latency of the library (see {@link LoadGenerator}).
+ * 
+ * Every message is sent as a frame consisting of its length (4 bytes)
+ * followed by the encoded message. Every connection is served by its own
+ * thread, which is a virtual thread on runtimes supporting them. A
+ * connection is closed if a frame cannot be decoded.
+ * 
+ * The response contains one {@link PaymentResponse} for the payer's
+ * {@link PaymentRequest}. Its status is {@link ServerResponseStatus#FAILURE}
+ * if the signature of any contained {@link PaymentRequest} is invalid or its
+ * public key is unknown.
+ */
+public class PaymentServer implements Closeable {
+	
+	private static final int BACKLOG = 4096;
+	private static final int BUFFER_SIZE = 1024;
+	
+	private final PaymentRequestKeyResolver keyResolver;
+	private final PrivateKey privateKey;
+	private final PKIAlgorithm pkiAlgorithm;
+	private final int keyNumber;
+	
+	private final ThreadFactory threadFactory = ConnectionThreads.newThreadFactory("payment-connection");
+	private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+	private final AtomicLong nofRequests = new AtomicLong();
+	
+	private ServerSocket serverSocket;
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a new server. Call {@link #start(int)} to accept connections.
+	 * 
+	 * @param keyResolver
+	 *            the resolver providing the public keys of the clients
+	 * @param privateKey
+	 *            the private key of the server
+	 * @param pkiAlgorithm
+	 *            the {@link PKIAlgorithm} of the server's key
+	 * @param keyNumber
+	 *            the key number of the server's key
+	 * @throws IllegalArgumentException
+	 *             if any parameter is null or the key number is invalid
+	 */
+	public PaymentServer(PaymentRequestKeyResolver keyResolver, PrivateKey privateKey, PKIAlgorithm pkiAlgorithm, int keyNumber) throws IllegalArgumentException {
+		if (keyResolver == null || privateKey == null || pkiAlgorithm == null)
+			throw new IllegalArgumentException("The key resolver, the private key and the PKI algorithm cannot be null.");
+		if (keyNumber <= 0 || keyNumber > 255)
+			throw new IllegalArgumentException("The key number must be between 1 and 255.");
+		
+		this.keyResolver = keyResolver;
+		this.privateKey = privateKey;
+		this.pkiAlgorithm = pkiAlgorithm;
+		this.keyNumber = keyNumber;
+	}
+	
+	/**
+	 * Binds the server to the given port on the loopback address and starts
+	 * accepting connections.
+	 * 
+	 * @param port
+	 *            the port, or 0 for any free port
+	 * @return the port the server is listening on
+	 */
+	public synchronized int start(int port) throws IOException {
+		if (serverSocket != null)
+			throw new IOException("The server has already been started.");
+		
+		serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "payment-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		
+		return serverSocket.getLocalPort();
+	}
+	
+	/**
+	 * Returns true if connections are served by virtual threads.
+	 */
+	public static boolean isUsingVirtualThreads() {
+		return ConnectionThreads.newVirtualThreadFactory("probe") != null;
+	}
+	
+	/**
+	 * Returns the number of requests answered so far.
+	 */
+	public long getNofRequests() {
+		return nofRequests.get();
+	}
+	
+	private void accept() {
+		while (!closed) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				// the server socket has been closed
+				return;
+			}
+			
+			connections.add(socket);
+			if (closed) {
+				// close() has run after accept(), so it may have missed this socket
+				connections.remove(socket);
+				closeQuietly(socket);
+				return;
+			}
+			
+			threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					serve(socket);
+				}
+			}).start();
+		}
+	}
+	
+	private void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+			
+			byte[] frame;
+			while ((frame = Frames.read(in)) != null) {
+				byte[] response = handle(frame);
+				nofRequests.incrementAndGet();
+				Frames.write(out, response);
+			}
+		} catch (Exception e) {
+			// a corrupt frame or a broken connection, the connection is closed
+		} finally {
+			connections.remove(socket);
+			closeQuietly(socket);
+		}
+	}
+	
+	/**
+	 * Decodes and verifies the given {@link ServerPaymentRequest} and returns
+	 * the encoded {@link ServerPaymentResponse}.
+	 */
+	byte[] handle(byte[] frame) throws Exception {
+		ServerPaymentRequest spr = DecoderFactory.decode(ServerPaymentRequest.class, frame);
+		
+		String reason = PaymentPipeline.verify(spr, keyResolver);
+		PaymentRequest pr = spr.getPaymentRequestPayer();
+		ServerResponseStatus status = reason == null ? ServerResponseStatus.SUCCESS : ServerResponseStatus.FAILURE;
+		PaymentResponse response = new PaymentResponse(pkiAlgorithm, keyNumber, status, reason, pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp());
+		response.sign(privateKey);
+		return new ServerPaymentResponse(response).encode();
+	}
+	
+	/**
+	 * Stops accepting connections and closes all open connections.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		closeQuietly(serverSocket);
+		for (Socket socket : connections) {
+			closeQuietly(socket);
+		}
+	}
+	
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable == null)
+			return;
+		
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// nothing to do
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.coinblesk.customserialization.stats;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * This class keeps live statistics of the processed {@link PaymentRequest}s
+ * and {@link PaymentResponse}s over the sliding {@link Window}s of the last
+ * second, minute and hour: the number and the volume of the requests per
+ * {@link Currency}, the distribution of their amounts and the number of
+ * responses per {@link ServerResponseStatus}.
+ * 
+ * Recording takes no locks. Every window is a ring of buckets (see
+ * {@link RollingWindow}), and the counters and histograms of a bucket are
+ * striped by thread, so that concurrent threads rarely contend for the same
+ * cache line. The amounts are counted in logarithmic histograms, which
+ * answer percentiles with a relative error of at most 1/16.
+ * 
+ * The messages are counted at the time they are recorded, not at their
+ * timestamps. A snapshot may miss the updates which are being recorded while
+ * it is taken.
+ */
+public class LiveStatistics {
+	
+	private static final int MAX_STRIPES = 64;
+	
+	static final int NOF_CURRENCIES = Currency.values().length;
+	static final int NOF_STATUSES = ServerResponseStatus.values().length;
+	
+	// the layout of the counters of a bucket
+	static final int REQUESTS = 0;
+	static final int VOLUMES = REQUESTS + NOF_CURRENCIES;
+	static final int RESPONSES = VOLUMES + NOF_CURRENCIES;
+	static final int NOF_COUNTERS = RESPONSES + NOF_STATUSES;
+	
+	private final int nofStripes;
+	private final RollingWindow[] windows;
+	
+	/**
+	 * Creates a new instance with one stripe per core.
+	 */
+	public LiveStatistics() {
+		int nofStripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+		this.nofStripes = Math.min(MAX_STRIPES, nofStripes);
+		this.windows = new RollingWindow[Window.values().length];
+		for (Window window : Window.values()) {
+			windows[window.ordinal()] = new RollingWindow(window, this.nofStripes, NOF_COUNTERS, NOF_CURRENCIES);
+		}
+	}
+	
+	/**
+	 * Records a processed {@link PaymentRequest}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the request is null
+	 */
+	public void record(PaymentRequest paymentRequest) throws IllegalArgumentException {
+		record(paymentRequest, System.currentTimeMillis());
+	}
+	
+	void record(PaymentRequest paymentRequest, long nowMillis) throws IllegalArgumentException {
+		if (paymentRequest == null)
+			throw new IllegalArgumentException("The payment request cannot be null.");
+		
+		int currency = paymentRequest.getCurrency().ordinal();
+		long amount = paymentRequest.getAmount();
+		int stripe = getStripe();
+		for (RollingWindow window : windows) {
+			StatisticsBucket bucket = window.getBucket(nowMillis);
+			if (bucket == null)
+				continue;
+			
+			bucket.add(stripe, REQUESTS + currency, 1);
+			bucket.add(stripe, VOLUMES + currency, amount);
+			bucket.addToHistogram(stripe, currency, amount);
+		}
+	}
+	
+	/**
+	 * Records a processed {@link PaymentResponse}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the response is null
+	 */
+	public void record(PaymentResponse paymentResponse) throws IllegalArgumentException {
+		record(paymentResponse, System.currentTimeMillis());
+	}
+	
+	void record(PaymentResponse paymentResponse, long nowMillis) throws IllegalArgumentException {
+		if (paymentResponse == null)
+			throw new IllegalArgumentException("The payment response cannot be null.");
+		
+		int status = paymentResponse.getStatus().ordinal();
+		int stripe = getStripe();
+		for (RollingWindow window : windows) {
+			StatisticsBucket bucket = window.getBucket(nowMillis);
+			if (bucket != null)
+				bucket.add(stripe, RESPONSES + status, 1);
+		}
+	}
+	
+	/**
+	 * Returns the statistics of the given window ending now.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the window is null
+	 */
+	public StatisticsSnapshot getSnapshot(Window window) throws IllegalArgumentException {
+		return getSnapshot(window, System.currentTimeMillis());
+	}
+	
+	StatisticsSnapshot getSnapshot(Window window, long nowMillis) throws IllegalArgumentException {
+		if (window == null)
+			throw new IllegalArgumentException("The window cannot be null.");
+		
+		long[] counters = new long[NOF_COUNTERS];
+		long[] histograms = new long[NOF_CURRENCIES * LogHistogram.NOF_BINS];
+		windows[window.ordinal()].sumTo(nowMillis, counters, histograms);
+		return new StatisticsSnapshot(window, counters, histograms);
+	}
+	
+	private int getStripe() {
+		// spreads the sequential thread ids over the stripes
+		long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) (id >>> 32) & (nofStripes - 1);
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.coinblesk.customserialization.stats;
+
+/**
+ * This class maps positive amounts to the bins of a logarithmic histogram.
+ * Every power of two is divided into 8 bins of equal width, so the bins of
+ * the amounts below 8 are exact and all others are at most 1/8 of their
+ * lower bound wide.
+ */
+class LogHistogram {
+	
+	private static final int SUB_BIN_BITS = 3;
+	private static final int NOF_SUB_BINS = 1 << SUB_BIN_BITS;
+	
+	/**
+	 * The number of bins, which covers all positive longs.
+	 */
+	static final int NOF_BINS = (63 - SUB_BIN_BITS + 1) * NOF_SUB_BINS;
+	
+	private LogHistogram() {
+	}
+	
+	/**
+	 * Returns the bin of the given amount. Amounts below 1 are put into the
+	 * first bin.
+	 */
+	static int getBin(long amount) {
+		if (amount < NOF_SUB_BINS)
+			return (int) Math.max(0, amount);
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(amount);
+		int subBin = (int) (amount >>> (exponent - SUB_BIN_BITS)) & (NOF_SUB_BINS - 1);
+		return (exponent - SUB_BIN_BITS + 1) * NOF_SUB_BINS + subBin;
+	}
+	
+	/**
+	 * Returns the smallest amount of the given bin.
+	 */
+	static long getLowerBound(int bin) {
+		if (bin < NOF_SUB_BINS)
+			return bin;
+		
+		int exponent = bin / NOF_SUB_BINS + SUB_BIN_BITS - 1;
+		long subBin = bin % NOF_SUB_BINS;
+		return (NOF_SUB_BINS + subBin) << (exponent - SUB_BIN_BITS);
+	}
+	
+	/**
+	 * Returns the largest amount of the given bin.
+	 */
+	static long getUpperBound(int bin) {
+		if (bin == NOF_BINS - 1)
+			return Long.MAX_VALUE;
+		
+		return getLowerBound(bin + 1) - 1;
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.coinblesk.customserialization.stats;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A ring of {@link StatisticsBucket}s which covers a {@link Window}. The
+ * bucket of a given time is at the slot given by its epoch modulo the number
+ * of buckets. If the slot still holds the bucket of an earlier lap, the first
+ * thread to notice replaces it with a fresh bucket by compare-and-set. Hence,
+ * neither updates nor rotations take a lock.
+ */
+class RollingWindow {
+	
+	private final Window window;
+	private final int nofStripes;
+	private final int nofCounters;
+	private final int nofHistograms;
+	private final AtomicReferenceArray<StatisticsBucket> buckets;
+	
+	RollingWindow(Window window, int nofStripes, int nofCounters, int nofHistograms) {
+		this.window = window;
+		this.nofStripes = nofStripes;
+		this.nofCounters = nofCounters;
+		this.nofHistograms = nofHistograms;
+		this.buckets = new AtomicReferenceArray<StatisticsBucket>(window.getNofBuckets());
+	}
+	
+	/**
+	 * Returns the bucket of the given time, or null if the time is too far
+	 * in the past to be covered by the window.
+	 */
+	StatisticsBucket getBucket(long timeMillis) {
+		long epoch = timeMillis / window.getBucketMillis();
+		int slot = (int) (epoch % buckets.length());
+		StatisticsBucket fresh = null;
+		while (true) {
+			StatisticsBucket bucket = buckets.get(slot);
+			if (bucket != null && bucket.getEpoch() >= epoch)
+				return bucket.getEpoch() == epoch ? bucket : null;
+			
+			if (fresh == null)
+				fresh = new StatisticsBucket(epoch, nofStripes, nofCounters, nofHistograms);
+			if (buckets.compareAndSet(slot, bucket, fresh))
+				return fresh;
+		}
+	}
+	
+	/**
+	 * Adds the counters and histograms of the buckets covered by the window
+	 * ending at the given time to the given arrays.
+	 */
+	void sumTo(long timeMillis, long[] counterSums, long[] histogramSums) {
+		long epoch = timeMillis / window.getBucketMillis();
+		for (int slot=0; slot<buckets.length(); slot++) {
+			StatisticsBucket bucket = buckets.get(slot);
+			if (bucket != null && bucket.getEpoch() <= epoch && bucket.getEpoch() > epoch - buckets.length())
+				bucket.sumTo(counterSums, histogramSums);
+		}
+	}
+
+}
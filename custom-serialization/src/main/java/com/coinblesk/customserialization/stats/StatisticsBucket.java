@@ -0,0 +1,75 @@
+package com.coinblesk.customserialization.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The counters and histograms of one bucket of a {@link RollingWindow}. They
+ * are striped, i.e., every stripe has a copy of all counters and histograms,
+ * so that threads updating the same counter or bin mostly hit different
+ * cache lines. This matters for the histograms as well, since most amounts
+ * fall into a few bins. A counter or bin is read by summing up its copies.
+ */
+class StatisticsBucket {
+	
+	// the longs of a cache line, which separate the stripes
+	private static final int PADDING = 8;
+	
+	private final long epoch;
+	private final int nofStripes;
+	private final int stride;
+	private final int histogramStride;
+	private final AtomicLongArray counters;
+	private final AtomicLongArray histograms;
+	
+	/**
+	 * Creates a new bucket.
+	 * 
+	 * @param epoch
+	 *            the number of the bucket since 1970, i.e., the time divided
+	 *            by the length of a bucket
+	 * @param nofStripes
+	 *            the number of copies of every counter and histogram
+	 * @param nofCounters
+	 *            the number of counters
+	 * @param nofHistograms
+	 *            the number of histograms with {@link LogHistogram#NOF_BINS}
+	 *            bins each
+	 */
+	StatisticsBucket(long epoch, int nofStripes, int nofCounters, int nofHistograms) {
+		this.epoch = epoch;
+		this.nofStripes = nofStripes;
+		this.stride = nofCounters + PADDING;
+		this.counters = new AtomicLongArray(nofStripes * stride);
+		this.histogramStride = nofHistograms * LogHistogram.NOF_BINS + PADDING;
+		this.histograms = new AtomicLongArray(nofStripes * histogramStride);
+	}
+	
+	long getEpoch() {
+		return epoch;
+	}
+	
+	void add(int stripe, int counter, long delta) {
+		counters.addAndGet(stripe * stride + counter, delta);
+	}
+	
+	void addToHistogram(int stripe, int histogram, long amount) {
+		histograms.incrementAndGet(stripe * histogramStride + histogram * LogHistogram.NOF_BINS + LogHistogram.getBin(amount));
+	}
+	
+	/**
+	 * Adds the sums of the counters and the histograms to the given arrays.
+	 */
+	void sumTo(long[] counterSums, long[] histogramSums) {
+		for (int s=0; s<nofStripes; s++) {
+			for (int c=0; c<counterSums.length; c++) {
+				counterSums[c] += counters.get(s * stride + c);
+			}
+		}
+		for (int s=0; s<nofStripes; s++) {
+			for (int b=0; b<histogramSums.length; b++) {
+				histogramSums[b] += histograms.get(s * histogramStride + b);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.coinblesk.customserialization.stats;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+/**
+ * The statistics of a {@link Window} at the time the snapshot was taken (see
+ * {@link LiveStatistics#getSnapshot(Window)}).
+ */
+public class StatisticsSnapshot {
+	
+	private final Window window;
+	private final long[] counters;
+	private final long[] histograms;
+	
+	StatisticsSnapshot(Window window, long[] counters, long[] histograms) {
+		this.window = window;
+		this.counters = counters;
+		this.histograms = histograms;
+	}
+	
+	public Window getWindow() {
+		return window;
+	}
+	
+	/**
+	 * Returns the number of {@link PaymentRequest}s in the given currency.
+	 */
+	public long getNofRequests(Currency currency) {
+		return counters[LiveStatistics.REQUESTS + currency.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of {@link PaymentRequest}s in all currencies.
+	 */
+	public long getNofRequests() {
+		long sum = 0;
+		for (Currency currency : Currency.values()) {
+			sum += getNofRequests(currency);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns the sum of the amounts of the {@link PaymentRequest}s in the
+	 * given currency.
+	 */
+	public long getVolume(Currency currency) {
+		return counters[LiveStatistics.VOLUMES + currency.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of {@link PaymentResponse}s with the given status.
+	 */
+	public long getNofResponses(ServerResponseStatus status) {
+		return counters[LiveStatistics.RESPONSES + status.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of {@link PaymentResponse}s with any status.
+	 */
+	public long getNofResponses() {
+		long sum = 0;
+		for (ServerResponseStatus status : ServerResponseStatus.values()) {
+			sum += getNofResponses(status);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns the share of the {@link PaymentResponse}s whose status is not
+	 * {@link ServerResponseStatus#SUCCESS}, or 0 if there are no responses.
+	 */
+	public double getFailureRate() {
+		long total = getNofResponses();
+		if (total == 0)
+			return 0;
+		
+		return (double) (total - getNofResponses(ServerResponseStatus.SUCCESS)) / total;
+	}
+	
+	/**
+	 * Returns the number of {@link PaymentRequest}s per second, averaged over
+	 * the length of the window.
+	 */
+	public double getRequestsPerSecond() {
+		return getNofRequests() * 1000.0 / window.getLengthMillis();
+	}
+	
+	/**
+	 * Returns the amount below which the given fraction of the amounts of the
+	 * {@link PaymentRequest}s in the given currency lies. The amount is the
+	 * middle of its histogram bin, so it is off by at most 1/16.
+	 * 
+	 * @param fraction
+	 *            the fraction between 0 and 1, e.g., 0.99 for the 99th
+	 *            percentile
+	 * @return the amount, or -1 if there are no requests in the currency
+	 * @throws IllegalArgumentException
+	 *             if the currency is null or the fraction is out of range
+	 */
+	public long getAmountPercentile(Currency currency, double fraction) throws IllegalArgumentException {
+		if (currency == null)
+			throw new IllegalArgumentException("The currency cannot be null.");
+		if (fraction < 0 || fraction > 1)
+			throw new IllegalArgumentException("The fraction must be between 0 and 1.");
+		
+		long total = getNofRequests(currency);
+		if (total == 0)
+			return -1;
+		
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		int offset = currency.ordinal() * LogHistogram.NOF_BINS;
+		long count = 0;
+		for (int bin=0; bin<LogHistogram.NOF_BINS; bin++) {
+			count += histograms[offset + bin];
+			if (count >= rank)
+				return getMiddle(bin);
+		}
+		
+		// the counters and the histogram have been read at slightly different
+		// times, return the largest amount seen
+		for (int bin=LogHistogram.NOF_BINS-1; bin>=0; bin--) {
+			if (histograms[offset + bin] > 0)
+				return getMiddle(bin);
+		}
+		return -1;
+	}
+	
+	private static long getMiddle(int bin) {
+		long lower = LogHistogram.getLowerBound(bin);
+		return lower + (LogHistogram.getUpperBound(bin) - lower) / 2;
+	}
+
+}
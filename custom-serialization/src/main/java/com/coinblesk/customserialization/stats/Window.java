@@ -0,0 +1,38 @@
+package com.coinblesk.customserialization.stats;
+
+/**
+ * The sliding windows of the {@link LiveStatistics}. Every window is a ring
+ * of buckets, so it slides forward one bucket at a time.
+ */
+public enum Window {
+	SECOND(100, 10),
+	MINUTE(1000, 60),
+	HOUR(60000, 60);
+	
+	private final long bucketMillis;
+	private final int nofBuckets;
+	
+	private Window(long bucketMillis, int nofBuckets) {
+		this.bucketMillis = bucketMillis;
+		this.nofBuckets = nofBuckets;
+	}
+	
+	/**
+	 * Returns the length of a bucket in milliseconds.
+	 */
+	public long getBucketMillis() {
+		return bucketMillis;
+	}
+	
+	public int getNofBuckets() {
+		return nofBuckets;
+	}
+	
+	/**
+	 * Returns the length of the window in milliseconds.
+	 */
+	public long getLengthMillis() {
+		return bucketMillis * nofBuckets;
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.coinblesk.customserialization.transport;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.ECDSASignatureConverter;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.SignedSerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class verifies the signature of a {@link SignedSerializableObject}
+ * while its bytes are still arriving (e.g., as NFC fragments or from a
+ * socket). As soon as the header is available, the {@link PKIAlgorithm} and
+ * the key number are read and the public key is looked up with the given
+ * {@link PublicKeyResolver}. From then on, every received byte is fed into the
+ * {@link Signature} engine, except for the last
+ * {@link PKIAlgorithm#getMaxSignatureLength()} bytes, which might belong to
+ * the signature. Only these bytes are left for {@link #verify()}.
+ * 
+ * The bytes are either appended with {@link #update(byte[], int, int)} or
+ * taken from the buffer of a {@link MessageReassembler} with
+ * {@link #update(MessageReassembler)}, which avoids copying them.
+ */
+public class IncrementalVerifier<T extends SignedSerializableObject> {
+	
+	private static final int HEADER_LENGTH = 3;
+	private static final int INITIAL_BUFFER_SIZE = 256;
+	
+	private final Class<T> clazz;
+	private final PublicKeyResolver publicKeyResolver;
+	
+	private MessageReassembler reassembler;
+	private byte[] buffer;
+	private int available;
+	private int processed;
+	
+	private PKIAlgorithm pkiAlgorithm;
+	private Signature signature;
+	private T object;
+	
+	/**
+	 * Creates a new incremental verifier.
+	 * 
+	 * @param clazz
+	 *            the type of the message
+	 * @param publicKeyResolver
+	 *            the resolver providing the public key of the signer
+	 * @throws IllegalArgumentException
+	 *             if any parameter is null
+	 */
+	public IncrementalVerifier(Class<T> clazz, PublicKeyResolver publicKeyResolver) throws IllegalArgumentException {
+		if (clazz == null || publicKeyResolver == null)
+			throw new IllegalArgumentException("The class and the public key resolver cannot be null.");
+		
+		this.clazz = clazz;
+		this.publicKeyResolver = publicKeyResolver;
+	}
+	
+	/**
+	 * Appends the given range of bytes of the message.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the range is invalid or if this verifier reads from a
+	 *             {@link MessageReassembler}
+	 * @throws SerializationException
+	 *             if the header contains an unknown {@link PKIAlgorithm}
+	 * @throws NoSuchAlgorithmException
+	 *             if the signature algorithm is not supported
+	 * @throws InvalidKeyException
+	 *             if no public key is found for the key number or if it does
+	 *             not belong to the {@link PKIAlgorithm}
+	 * @throws SignatureException
+	 *             if the signature engine fails
+	 */
+	public void update(byte[] bytes, int offset, int length) throws IllegalArgumentException, SerializationException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		if (bytes == null || offset < 0 || length < 0 || offset + length > bytes.length)
+			throw new IllegalArgumentException("The given range is invalid.");
+		
+		if (reassembler != null)
+			throw new IllegalArgumentException("This verifier reads from a MessageReassembler.");
+		
+		if (buffer == null) {
+			buffer = new byte[Math.max(INITIAL_BUFFER_SIZE, length)];
+		} else if (available + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(2*buffer.length, available + length));
+		}
+		
+		System.arraycopy(bytes, offset, buffer, available, length);
+		available += length;
+		process();
+	}
+	
+	/**
+	 * Processes the bytes appended to the given reassembler since the last
+	 * call. The reassembler must not be reset before {@link #verify()} has
+	 * been called.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if bytes have been appended to this verifier with
+	 *             {@link #update(byte[], int, int)} or from another
+	 *             reassembler
+	 * @see #update(byte[], int, int)
+	 */
+	public void update(MessageReassembler reassembler) throws IllegalArgumentException, SerializationException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		if (this.reassembler == null && buffer != null || this.reassembler != null && this.reassembler != reassembler)
+			throw new IllegalArgumentException("This verifier reads from another source.");
+		
+		if (reassembler.getBuffer() == null)
+			return;
+		
+		this.reassembler = reassembler;
+		this.buffer = reassembler.getBuffer();
+		this.available = reassembler.getBytesReceived();
+		process();
+	}
+	
+	private void process() throws SerializationException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+		if (signature == null) {
+			if (available < HEADER_LENGTH)
+				return;
+			
+			pkiAlgorithm = PKIAlgorithm.getPKIAlgorithm(buffer[1]);
+			int keyNumber = buffer[2] & 0xFF;
+			PublicKey publicKey = publicKeyResolver.getPublicKey(pkiAlgorithm, keyNumber);
+			if (publicKey == null)
+				throw new InvalidKeyException("No public key found for key number "+keyNumber+".");
+			
+			signature = Signature.getInstance(pkiAlgorithm.getSignatureAlgorithm());
+			signature.initVerify(publicKey);
+		}
+		
+		int end = available - pkiAlgorithm.getMaxSignatureLength();
+		if (end > processed) {
+			signature.update(buffer, processed, end - processed);
+			processed = end;
+		}
+	}
+	
+	/**
+	 * Decodes the complete message and verifies its signature. Only the bytes
+	 * which have been held back are fed into the signature engine.
+	 * 
+	 * @return true if the signature is valid, false otherwise
+	 * @throws IllegalArgumentException
+	 *             if the message is not complete or corrupt
+	 * @throws SerializationException
+	 *             any sub class of {@link SerializationException}
+	 * @throws SignatureException
+	 *             if the signature is not correctly encoded
+	 */
+	public boolean verify() throws IllegalArgumentException, SerializationException, SignatureException {
+		if (signature == null || reassembler != null && !reassembler.isComplete())
+			throw new IllegalArgumentException("The message is not complete.");
+		
+		byte[] message = available == buffer.length ? buffer : Arrays.copyOf(buffer, available);
+		object = DecoderFactory.decode(clazz, message);
+		
+		int payloadLength = object.getPayload().length;
+		if (payloadLength < processed)
+			throw new IllegalArgumentException("The given byte array is corrupt (the signature is too long).");
+		
+		signature.update(buffer, processed, payloadLength - processed);
+		processed = payloadLength;
+		
+		if (pkiAlgorithm.isP1363Encoded())
+			return signature.verify(ECDSASignatureConverter.toDER(object.getSignature()));
+		else
+			return signature.verify(object.getSignature());
+	}
+	
+	/**
+	 * Returns the {@link PKIAlgorithm} read from the header, or null if the
+	 * header has not arrived yet.
+	 */
+	public PKIAlgorithm getPKIAlgorithm() {
+		return pkiAlgorithm;
+	}
+	
+	/**
+	 * Returns the number of bytes which have already been fed into the
+	 * signature engine.
+	 */
+	public int getBytesProcessed() {
+		return processed;
+	}
+	
+	/**
+	 * Returns the object decoded in {@link #verify()}, or null if
+	 * {@link #verify()} has not been called yet.
+	 */
+	public T getObject() {
+		return object;
+	}
+	
+	/**
+	 * Resets this verifier in order to verify the next message.
+	 */
+	public void reset() {
+		reassembler = null;
+		buffer = null;
+		available = 0;
+		processed = 0;
+		pkiAlgorithm = null;
+		signature = null;
+		object = null;
+	}
+
+}
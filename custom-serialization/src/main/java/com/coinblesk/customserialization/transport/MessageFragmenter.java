@@ -0,0 +1,133 @@
+package com.coinblesk.customserialization.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+
+/**
+ * This class splits an encoded {@link SerializableObject} into fragments
+ * which fit into the data field of an APDU, so that it can be sent over NFC.
+ * Every fragment starts with a sequence number (1 byte). The first fragment
+ * additionally contains the length of the whole message (2 bytes), which
+ * allows the {@link MessageReassembler} to allocate the buffer for the message
+ * up front.
+ * 
+ * <pre>
+ * first fragment:  | 0x00 | length (2 bytes) | data |
+ * other fragments: | sequence number | data |
+ * </pre>
+ */
+public class MessageFragmenter {
+	
+	/**
+	 * The maximum number of bytes in the data field of a short APDU.
+	 */
+	public static final int DEFAULT_FRAGMENT_SIZE = 255;
+	
+	public static final int MAX_MESSAGE_LENGTH = 0xFFFF;
+	
+	static final int HEADER_LENGTH = 1;
+	static final int FIRST_HEADER_LENGTH = HEADER_LENGTH + 2;
+	static final int MAX_FRAGMENTS = 256;
+	
+	private final int fragmentSize;
+	
+	/**
+	 * Creates a new fragmenter producing fragments of at most
+	 * {@link #DEFAULT_FRAGMENT_SIZE} bytes.
+	 */
+	public MessageFragmenter() {
+		this.fragmentSize = DEFAULT_FRAGMENT_SIZE;
+	}
+	
+	/**
+	 * Creates a new fragmenter.
+	 * 
+	 * @param fragmentSize
+	 *            the maximum size of a fragment including its header, e.g.,
+	 *            the maximum length of the data field of an APDU
+	 * @throws IllegalArgumentException
+	 *             if the fragment size leaves no room for any data
+	 */
+	public MessageFragmenter(int fragmentSize) throws IllegalArgumentException {
+		if (fragmentSize <= FIRST_HEADER_LENGTH)
+			throw new IllegalArgumentException("The fragment size must be greater than "+FIRST_HEADER_LENGTH+".");
+		
+		this.fragmentSize = fragmentSize;
+	}
+	
+	/**
+	 * Returns the maximum size of a fragment including its header.
+	 */
+	public int getFragmentSize() {
+		return fragmentSize;
+	}
+	
+	/**
+	 * Encodes the given object and splits it into fragments.
+	 * 
+	 * @throws NotSignedException
+	 *             if the object is a signed object and has not been signed
+	 * @throws IllegalArgumentException
+	 *             if the object is null or its encoding is too long
+	 */
+	public List<byte[]> fragment(SerializableObject object) throws NotSignedException, IllegalArgumentException {
+		if (object == null)
+			throw new IllegalArgumentException("The object cannot be null.");
+		
+		return fragment(object.encode());
+	}
+	
+	/**
+	 * Splits the given encoded message into fragments.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the message is null, empty or too long to be sent in at
+	 *             most 256 fragments of the configured size
+	 */
+	public List<byte[]> fragment(byte[] message) throws IllegalArgumentException {
+		if (message == null || message.length == 0)
+			throw new IllegalArgumentException("The message cannot be null or empty.");
+		
+		int nofFragments = getNofFragments(message.length);
+		if (message.length > MAX_MESSAGE_LENGTH || nofFragments > MAX_FRAGMENTS)
+			throw new IllegalArgumentException("The message is too long to be fragmented.");
+		
+		List<byte[]> fragments = new ArrayList<byte[]>(nofFragments);
+		int offset = Math.min(message.length, fragmentSize - FIRST_HEADER_LENGTH);
+		byte[] first = new byte[FIRST_HEADER_LENGTH + offset];
+		first[0] = 0;
+		first[1] = (byte) (message.length >> 8);
+		first[2] = (byte) message.length;
+		System.arraycopy(message, 0, first, FIRST_HEADER_LENGTH, offset);
+		fragments.add(first);
+		
+		for (int sequenceNumber=1; offset<message.length; sequenceNumber++) {
+			int length = Math.min(message.length - offset, fragmentSize - HEADER_LENGTH);
+			byte[] fragment = new byte[HEADER_LENGTH + length];
+			fragment[0] = (byte) sequenceNumber;
+			System.arraycopy(message, offset, fragment, HEADER_LENGTH, length);
+			fragments.add(fragment);
+			offset += length;
+		}
+		
+		return fragments;
+	}
+	
+	/**
+	 * Returns the number of fragments needed to send a message of the given
+	 * length.
+	 */
+	public int getNofFragments(int messageLength) {
+		int rest = messageLength - (fragmentSize - FIRST_HEADER_LENGTH);
+		if (rest <= 0)
+			return 1;
+		
+		int dataSize = fragmentSize - HEADER_LENGTH;
+		return 1 + (rest + dataSize - 1) / dataSize;
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.coinblesk.customserialization.transport;
+
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.SerializationException;
+
+/**
+ * This class reassembles a message from the fragments created by a
+ * {@link MessageFragmenter}. The buffer for the message is allocated when the
+ * first fragment arrives, based on the length contained in it. The data of
+ * every fragment is copied directly into this buffer.
+ * 
+ * The fragments must be appended in the order they were created. A
+ * reassembler can be reused for the next message after calling
+ * {@link #reset()}.
+ */
+public class MessageReassembler {
+	
+	private byte[] message;
+	private int position;
+	private int nextSequenceNumber;
+	
+	/**
+	 * Appends the given fragment.
+	 * 
+	 * @return true if the message is complete, false if more fragments are
+	 *         expected
+	 * @throws IllegalArgumentException
+	 *             if the fragment is corrupt, out of order, or if the message
+	 *             is already complete
+	 */
+	public boolean append(byte[] fragment) throws IllegalArgumentException {
+		if (fragment == null)
+			throw new IllegalArgumentException("The fragment cannot be null.");
+		
+		return append(fragment, 0, fragment.length);
+	}
+	
+	/**
+	 * Appends the fragment contained in the given range of the byte array,
+	 * e.g., the data field of an APDU.
+	 * 
+	 * @return true if the message is complete, false if more fragments are
+	 *         expected
+	 * @throws IllegalArgumentException
+	 *             if the fragment is corrupt, out of order, or if the message
+	 *             is already complete
+	 */
+	public boolean append(byte[] bytes, int offset, int length) throws IllegalArgumentException {
+		if (bytes == null || offset < 0 || length < MessageFragmenter.HEADER_LENGTH || offset + length > bytes.length)
+			throw new IllegalArgumentException("The fragment is corrupt (not long enough).");
+		
+		if (isComplete())
+			throw new IllegalArgumentException("The message is already complete.");
+		
+		int sequenceNumber = bytes[offset] & 0xFF;
+		if (sequenceNumber != nextSequenceNumber)
+			throw new IllegalArgumentException("Expected fragment "+nextSequenceNumber+" but got fragment "+sequenceNumber+".");
+		
+		int headerLength = MessageFragmenter.HEADER_LENGTH;
+		if (message == null) {
+			if (length < MessageFragmenter.FIRST_HEADER_LENGTH)
+				throw new IllegalArgumentException("The fragment is corrupt (not long enough).");
+			
+			int messageLength = ((bytes[offset+1] & 0xFF) << 8) | (bytes[offset+2] & 0xFF);
+			if (messageLength == 0)
+				throw new IllegalArgumentException("The fragment is corrupt (the message is empty).");
+			
+			message = new byte[messageLength];
+			headerLength = MessageFragmenter.FIRST_HEADER_LENGTH;
+		}
+		
+		int dataLength = length - headerLength;
+		if (position + dataLength > message.length)
+			throw new IllegalArgumentException("The fragment is corrupt (exceeds the length of the message).");
+		
+		System.arraycopy(bytes, offset + headerLength, message, position, dataLength);
+		position += dataLength;
+		nextSequenceNumber++;
+		return isComplete();
+	}
+	
+	/**
+	 * Returns true if all fragments of the message have been appended.
+	 */
+	public boolean isComplete() {
+		return message != null && position == message.length;
+	}
+	
+	/**
+	 * Returns the length of the message, or -1 if the first fragment has not
+	 * been appended yet.
+	 */
+	public int getMessageLength() {
+		return message == null ? -1 : message.length;
+	}
+	
+	/**
+	 * Returns the number of message bytes received so far.
+	 */
+	public int getBytesReceived() {
+		return position;
+	}
+	
+	/**
+	 * Returns the reassembled message. The returned array is not copied, so
+	 * it must not be modified before calling {@link #reset()}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the message is not complete
+	 */
+	public byte[] getMessage() throws IllegalArgumentException {
+		if (!isComplete())
+			throw new IllegalArgumentException("The message is not complete.");
+		
+		return message;
+	}
+	
+	/**
+	 * Returns the buffer the message is reassembled in (without copying it),
+	 * or null if the first fragment has not been appended yet.
+	 */
+	byte[] getBuffer() {
+		return message;
+	}
+	
+	/**
+	 * Decodes the reassembled message.
+	 * 
+	 * @see DecoderFactory#decode(Class, byte[])
+	 * @throws IllegalArgumentException
+	 *             if the message is not complete or does not match the given
+	 *             type
+	 * @throws SerializationException
+	 *             any sub class of {@link SerializationException}
+	 */
+	public <T extends SerializableObject> T decode(Class<T> clazz) throws IllegalArgumentException, SerializationException {
+		return DecoderFactory.decode(clazz, getMessage());
+	}
+	
+	/**
+	 * Resets this reassembler in order to receive the next message.
+	 */
+	public void reset() {
+		message = null;
+		position = 0;
+		nextSequenceNumber = 0;
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.coinblesk.customserialization.transport;
+
+import java.security.PublicKey;
+
+import com.coinblesk.customserialization.PKIAlgorithm;
+
+/**
+ * This interface is used by the {@link IncrementalVerifier} to look up the
+ * public key of the signer as soon as the header of a message has arrived.
+ */
+public interface PublicKeyResolver {
+	
+	/**
+	 * Returns the public key with the given key number, or null if there is
+	 * no such key.
+	 * 
+	 * @param pkiAlgorithm
+	 *            the {@link PKIAlgorithm} the message has been signed with
+	 * @param keyNumber
+	 *            the key number contained in the message
+	 */
+	public PublicKey getPublicKey(PKIAlgorithm pkiAlgorithm, int keyNumber);
+	
+}
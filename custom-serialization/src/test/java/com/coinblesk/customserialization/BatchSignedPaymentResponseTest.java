@@ -0,0 +1,102 @@
+package com.coinblesk.customserialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.crypto.BatchVerifier;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class BatchSignedPaymentResponseTest {
+	
+	@Test
+	public void testSignBatch() throws Exception {
+		for (PKIAlgorithm pkiAlgorithm : new PKIAlgorithm[] { PKIAlgorithm.DEFAULT, PKIAlgorithm.ECDSA_P1363 }) {
+			KeyPair keyPair = TestUtils.generateKeyPair();
+			List<PaymentResponse> paymentResponses = createPaymentResponses(pkiAlgorithm, 7);
+			List<BatchSignedPaymentResponse> batch = BatchSignedPaymentResponse.signBatch(paymentResponses, keyPair.getPrivate());
+			assertEquals(7, batch.size());
+			
+			for (int i=0; i<batch.size(); i++) {
+				byte[] encoded = batch.get(i).encode();
+				BatchSignedPaymentResponse decoded = DecoderFactory.decode(BatchSignedPaymentResponse.class, encoded);
+				
+				assertTrue(batch.get(i).equals(decoded));
+				assertEquals(paymentResponses.get(i), decoded.getPaymentResponse());
+				assertEquals(i, decoded.getLeafIndex());
+				assertEquals(7, decoded.getNofLeaves());
+				assertArrayEquals(batch.get(0).getRoot(), decoded.getRoot());
+				assertTrue(decoded.verify(keyPair.getPublic()));
+			}
+		}
+	}
+	
+	@Test
+	public void testVerify_tampered() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		List<BatchSignedPaymentResponse> batch = BatchSignedPaymentResponse.signBatch(createPaymentResponses(PKIAlgorithm.DEFAULT, 4), keyPair.getPrivate());
+		byte[] encoded = batch.get(1).encode();
+		
+		// the last byte of the amount of the payment response, which starts at offset 13
+		encoded[13+PaymentResponse.AMOUNT_OFFSET+7] ^= 0x01;
+		BatchSignedPaymentResponse decoded = DecoderFactory.decode(BatchSignedPaymentResponse.class, encoded);
+		assertFalse(decoded.verify(keyPair.getPublic()));
+		
+		assertFalse(batch.get(1).verify(TestUtils.generateKeyPair().getPublic()));
+	}
+	
+	@Test
+	public void testVerify_batchVerifier() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		List<BatchSignedPaymentResponse> batch = BatchSignedPaymentResponse.signBatch(createPaymentResponses(PKIAlgorithm.DEFAULT, 5), keyPair.getPrivate());
+		
+		BatchVerifier batchVerifier = new BatchVerifier();
+		for (BatchSignedPaymentResponse bspr : batch) {
+			batchVerifier.add(DecoderFactory.<BatchSignedPaymentResponse>decode(BatchSignedPaymentResponse.class, bspr.encode()), keyPair.getPublic());
+		}
+		for (boolean valid : batchVerifier.verify()) {
+			assertTrue(valid);
+		}
+	}
+	
+	@Test
+	public void testSignBatch_IllegalArgumentException() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		List<PaymentResponse> paymentResponses = createPaymentResponses(PKIAlgorithm.DEFAULT, 2);
+		paymentResponses.add(new PaymentResponse(PKIAlgorithm.DEFAULT, 2, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 1, System.currentTimeMillis()));
+		
+		boolean exceptionThrown = false;
+		try {
+			BatchSignedPaymentResponse.signBatch(paymentResponses, keyPair.getPrivate());
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		exceptionThrown = false;
+		
+		try {
+			BatchSignedPaymentResponse.signBatch(new ArrayList<PaymentResponse>(), keyPair.getPrivate());
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+	
+	private static List<PaymentResponse> createPaymentResponses(PKIAlgorithm pkiAlgorithm, int n) throws IllegalArgumentException {
+		long timestamp = System.currentTimeMillis();
+		List<PaymentResponse> paymentResponses = new ArrayList<PaymentResponse>();
+		for (int i=0; i<n; i++) {
+			paymentResponses.add(new PaymentResponse(PaymentResponse.VERSION_FIXED_OFFSET, pkiAlgorithm, 1, ServerResponseStatus.SUCCESS, null, "buyer"+i, "seller", Currency.BTC, 100+i, timestamp));
+		}
+		return paymentResponses;
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.coinblesk.customserialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.SignatureException;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class ECDSASignatureConverterTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		byte[] data = "payload".getBytes("UTF-8");
+		
+		for (int i=0; i<20; i++) {
+			Signature sig = Signature.getInstance("SHA256withECDSA");
+			sig.initSign(keyPair.getPrivate());
+			sig.update(data);
+			byte[] der = sig.sign();
+			
+			byte[] p1363 = ECDSASignatureConverter.toP1363(der, 64);
+			assertEquals(64, p1363.length);
+			assertArrayEquals(der, ECDSASignatureConverter.toDER(p1363));
+			
+			sig.initVerify(keyPair.getPublic());
+			sig.update(data);
+			assertTrue(sig.verify(ECDSASignatureConverter.toDER(p1363)));
+		}
+	}
+	
+	@Test
+	public void testToDER_leadingZerosAndSignBit() throws Exception {
+		byte[] p1363 = new byte[64];
+		p1363[31] = 0x05;
+		p1363[32] = (byte) 0x80;
+		
+		byte[] der = ECDSASignatureConverter.toDER(p1363);
+		byte[] expected = new byte[2+3+2+33];
+		expected[0] = 0x30;
+		expected[1] = (byte) (expected.length - 2);
+		expected[2] = 0x02;
+		expected[3] = 0x01;
+		expected[4] = 0x05;
+		expected[5] = 0x02;
+		expected[6] = 33;
+		expected[7] = 0x00;
+		expected[8] = (byte) 0x80;
+		assertArrayEquals(expected, der);
+		assertArrayEquals(p1363, ECDSASignatureConverter.toP1363(der, 64));
+	}
+	
+	@Test(expected = SignatureException.class)
+	public void testToP1363_corrupt() throws Exception {
+		ECDSASignatureConverter.toP1363(new byte[] { 0x30, 0x06, 0x02, 0x01, 0x01, 0x02, 0x02, 0x01 }, 64);
+	}
+
+}
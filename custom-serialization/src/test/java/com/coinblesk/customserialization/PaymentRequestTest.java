@@ -218,4 +218,79 @@ public class PaymentRequestTest {
 		assertTrue(pr.equals(decoded));
 	}
 
+	@Test
+	public void testEncodeDecode_fixedOffset() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		PaymentRequest pr = new PaymentRequest(PaymentRequest.VERSION_FIXED_OFFSET, PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, timestamp);
+		pr.sign(keyPair.getPrivate());
+		
+		byte[] encode = pr.encode();
+		assertEquals(PaymentRequest.VERSION_FIXED_OFFSET, encode[0]);
+		assertEquals(12, PaymentRequest.readAmount(encode));
+		assertEquals(timestamp, PaymentRequest.readTimestamp(encode));
+		assertEquals(Currency.BTC, PaymentRequest.readCurrency(encode));
+		assertEquals(1, encode[PaymentRequest.NOF_CURRENCIES_OFFSET]);
+		
+		PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, encode);
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+	}
+	
+	@Test
+	public void testEncodeDecode_fixedOffsetWithInputCurrency() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		PaymentRequest pr = new PaymentRequest(PaymentRequest.VERSION_FIXED_OFFSET, PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, Currency.CHF, 540, timestamp);
+		pr.sign(keyPair.getPrivate());
+		
+		byte[] encode = pr.encode();
+		assertEquals(12, PaymentRequest.readAmount(encode));
+		assertEquals(timestamp, PaymentRequest.readTimestamp(encode));
+		assertEquals(540, PrimitiveTypeSerializer.getBytesAsLong(encode, PaymentRequest.INPUT_AMOUNT_OFFSET));
+		
+		PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, encode);
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+		assertEquals("buyer", decoded.getUsernamePayer());
+		assertEquals("seller", decoded.getUsernamePayee());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testReadAmount_wrongVersion() throws Exception {
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		PaymentRequest.readAmount(pr.getPayload());
+	}
+
+	@Test
+	public void testEncodeDecode_p1363() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.ECDSA_P1363, 1, "buyer", "seller", Currency.BTC, 12, timestamp);
+		pr.sign(keyPair.getPrivate());
+		assertEquals(64, pr.getSignature().length);
+		
+		byte[] encode = pr.encode();
+		assertEquals(pr.getPayload().length + 64, encode.length);
+		assertEquals(PKIAlgorithm.ECDSA_P1363.getCode(), encode[1]);
+		
+		PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, encode);
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecode_p1363WrongSignatureLength() throws Exception {
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.ECDSA_P1363, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(TestUtils.generateKeyPair().getPrivate());
+		
+		byte[] encode = pr.encode();
+		byte[] truncated = new byte[encode.length - 1];
+		System.arraycopy(encode, 0, truncated, 0, truncated.length);
+		DecoderFactory.decode(PaymentRequest.class, truncated);
+	}
+
 }
@@ -7,17 +7,21 @@ import com.coinblesk.customserialization.PaymentResponse;
 import com.coinblesk.customserialization.PKIAlgorithm;
 import com.coinblesk.customserialization.PrimitiveTypeSerializer;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.charset.Charset;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SignatureException;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -255,4 +259,92 @@ public class PaymentResponseTest {
 		assertTrue(pr.equals(decoded));
 	}
 
+	@Test
+	public void testEncodeDecode_fixedOffset() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		PaymentResponse pr = new PaymentResponse(PaymentResponse.VERSION_FIXED_OFFSET, PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.FAILURE, "some error message", "buyer", "seller", Currency.CHF, 12, timestamp);
+		pr.sign(keyPair.getPrivate());
+		
+		byte[] encode = pr.encode();
+		assertEquals(12, PaymentResponse.readAmount(encode));
+		assertEquals(timestamp, PaymentResponse.readTimestamp(encode));
+		assertEquals(ServerResponseStatus.FAILURE, PaymentResponse.readStatus(encode));
+		
+		PaymentResponse decoded = DecoderFactory.decode(PaymentResponse.class, encode);
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+		assertEquals("some error message", decoded.getReason());
+	}
+
+	@Test
+	public void testEncodeDecode_ed25519() throws Exception {
+		Assume.assumeTrue(PKIAlgorithm.ED25519.isSupported());
+		
+		KeyPair keyPair = KeyPairGenerator.getInstance(PKIAlgorithm.ED25519.getKeyPairSpecification()).generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		PaymentResponse pr = new PaymentResponse(PKIAlgorithm.ED25519, 1, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 12, timestamp);
+		pr.sign(keyPair.getPrivate());
+		assertEquals(64, pr.getSignature().length);
+		
+		PaymentResponse decoded = DecoderFactory.decode(PaymentResponse.class, pr.encode());
+		assertEquals(PKIAlgorithm.ED25519, decoded.getPKIAlgorithm());
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+	}
+
+	@Test
+	public void testEncodeDecode_byReference() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		PaymentRequest request = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "alice@coinblesk.ch", "coffee-shop@coinblesk.ch", Currency.BTC, 12, timestamp);
+		PaymentResponse full = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "alice@coinblesk.ch", "coffee-shop@coinblesk.ch", Currency.BTC, 12, timestamp);
+		PaymentResponse pr = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, request);
+		assertEquals(PaymentResponse.VERSION_BY_REFERENCE, pr.getVersion());
+		assertEquals(1+1+1+1+32, pr.getPayload().length);
+		assertTrue(pr.getPayload().length < full.getPayload().length);
+		pr.sign(keyPair.getPrivate());
+		
+		PaymentResponse decoded = DecoderFactory.decode(PaymentResponse.class, pr.encode());
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+		assertTrue(decoded.isByReference());
+		assertNull(decoded.getUsernamePayer());
+		assertTrue(decoded.matchesRequest(request));
+		assertTrue(full.matchesRequest(request));
+		
+		PaymentRequest other = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "alice@coinblesk.ch", "coffee-shop@coinblesk.ch", Currency.BTC, 13, timestamp);
+		assertFalse(decoded.matchesRequest(other));
+		assertFalse(full.matchesRequest(other));
+	}
+	
+	@Test
+	public void testEncodeDecode_byReferenceFailure() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest request = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		
+		PaymentResponse pr = new PaymentResponse(PKIAlgorithm.ECDSA_P1363, 2, ServerResponseStatus.FAILURE, "insufficient funds", request);
+		pr.sign(keyPair.getPrivate());
+		
+		PaymentResponse decoded = DecoderFactory.decode(PaymentResponse.class, pr.encode());
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertTrue(pr.equals(decoded));
+		assertEquals("insufficient funds", decoded.getReason());
+		assertEquals(ServerResponseStatus.FAILURE, decoded.getStatus());
+		assertTrue(decoded.matchesRequest(request));
+		
+		// the reference form works as well inside a ServerPaymentResponse
+		ServerPaymentResponse spr = new ServerPaymentResponse(pr);
+		ServerPaymentResponse sprDecoded = DecoderFactory.decode(ServerPaymentResponse.class, spr.encode());
+		assertTrue(sprDecoded.getPaymentResponsePayer().matchesRequest(request));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testConstructor_byReferenceWithoutRequest() throws Exception {
+		new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, (PaymentRequest) null);
+	}
+
 }
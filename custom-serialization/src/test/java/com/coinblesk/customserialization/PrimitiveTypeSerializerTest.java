@@ -50,6 +50,24 @@ public class PrimitiveTypeSerializerTest {
 		assertEquals(2, shortAsBytes2.length);
 		short convertedShort2 = PrimitiveTypeSerializer.getBytesAsShort(shortAsBytes2);
 		assertEquals(s2, convertedShort2);
+		
+		short s3 = 300;
+		byte[] shortAsBytes3 = PrimitiveTypeSerializer.getShortAsBytes(s3);
+		assertEquals(2, shortAsBytes3.length);
+		short convertedShort3 = PrimitiveTypeSerializer.getBytesAsShort(shortAsBytes3);
+		assertEquals(s3, convertedShort3);
+	}
+	
+	@Test
+	public void testInts() {
+		int i = 0x12345678;
+		byte[] intAsBytes = PrimitiveTypeSerializer.getIntAsBytes(i);
+		assertEquals(4, intAsBytes.length);
+		assertEquals(i, PrimitiveTypeSerializer.getBytesAsInt(intAsBytes, 0));
+		
+		byte[] bytes = new byte[6];
+		System.arraycopy(PrimitiveTypeSerializer.getIntAsBytes(-2), 0, bytes, 2, 4);
+		assertEquals(-2, PrimitiveTypeSerializer.getBytesAsInt(bytes, 2));
 	}
 
 }
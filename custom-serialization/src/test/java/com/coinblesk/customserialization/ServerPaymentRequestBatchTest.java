@@ -0,0 +1,115 @@
+package com.coinblesk.customserialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class ServerPaymentRequestBatchTest {
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testConstructor_empty() throws Exception {
+		new ServerPaymentRequestBatch(new ArrayList<ServerPaymentRequest>());
+	}
+	
+	@Test
+	public void testEncodeDecode() throws Exception {
+		KeyPair keyPairPayer = TestUtils.generateKeyPair();
+		KeyPair keyPairPayee = TestUtils.generateKeyPair();
+		long timestamp = System.currentTimeMillis();
+		
+		List<ServerPaymentRequest> serverPaymentRequests = new ArrayList<ServerPaymentRequest>();
+		int unbatchedLength = 0;
+		for (int i=0; i<20; i++) {
+			String usernamePayer = "buyer"+(i % 5);
+			PaymentRequest payer;
+			if (i % 3 == 0) {
+				payer = new PaymentRequest(PaymentRequest.VERSION_FIXED_OFFSET, PKIAlgorithm.DEFAULT, 1, usernamePayer, "coffee-shop", Currency.BTC, 100+i, Currency.CHF, 50+i, timestamp);
+			} else {
+				payer = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, usernamePayer, "coffee-shop", Currency.BTC, 100+i, timestamp);
+			}
+			payer.sign(keyPairPayer.getPrivate());
+			
+			ServerPaymentRequest spr;
+			if (i % 2 == 0) {
+				spr = new ServerPaymentRequest(payer);
+			} else {
+				PaymentRequest payee = new PaymentRequest(PKIAlgorithm.ECDSA_P1363, 2, usernamePayer, "coffee-shop", Currency.BTC, 100+i, timestamp);
+				payee.sign(keyPairPayee.getPrivate());
+				spr = new ServerPaymentRequest(payer, payee);
+			}
+			serverPaymentRequests.add(spr);
+			unbatchedLength += spr.encode().length;
+		}
+		
+		ServerPaymentRequestBatch batch = new ServerPaymentRequestBatch(serverPaymentRequests);
+		byte[] encoded = batch.encode();
+		assertTrue(encoded.length < unbatchedLength);
+		
+		ServerPaymentRequestBatch decoded = DecoderFactory.decode(ServerPaymentRequestBatch.class, encoded);
+		assertTrue(batch.equals(decoded));
+		assertEquals(serverPaymentRequests.size(), decoded.getServerPaymentRequests().size());
+		
+		for (int i=0; i<serverPaymentRequests.size(); i++) {
+			ServerPaymentRequest original = serverPaymentRequests.get(i);
+			ServerPaymentRequest expanded = decoded.getServerPaymentRequests().get(i);
+			assertArrayEquals(original.encode(), expanded.encode());
+			assertTrue(expanded.getPaymentRequestPayer().verify(keyPairPayer.getPublic()));
+			if (expanded.getNofSignatures() == 2)
+				assertTrue(expanded.getPaymentRequestPayee().verify(keyPairPayee.getPublic()));
+		}
+	}
+	
+	@Test
+	public void testConstructor_maxUsernames() throws Exception {
+		PaymentRequest signed = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 1, 1000);
+		signed.sign(TestUtils.generateKeyPair().getPrivate());
+		
+		// pairs of the UsernameTable.MAX_SIZE distinct usernames, the last one with the first one
+		List<ServerPaymentRequest> serverPaymentRequests = new ArrayList<ServerPaymentRequest>();
+		for (int i=0; i<UsernameTable.MAX_SIZE; i+=2) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "user"+i, "user"+((i + 1) % UsernameTable.MAX_SIZE), Currency.BTC, 1, 1000);
+			// encode() does not verify the signature, so the requests are not signed one by one
+			pr.signature = signed.getSignature();
+			serverPaymentRequests.add(new ServerPaymentRequest(pr));
+		}
+		
+		ServerPaymentRequestBatch batch = new ServerPaymentRequestBatch(serverPaymentRequests);
+		ServerPaymentRequestBatch decoded = DecoderFactory.decode(ServerPaymentRequestBatch.class, batch.encode());
+		assertEquals(serverPaymentRequests.size(), decoded.getServerPaymentRequests().size());
+		assertEquals("user"+(UsernameTable.MAX_SIZE - 1), decoded.getServerPaymentRequests().get(serverPaymentRequests.size() - 1).getPaymentRequestPayer().getUsernamePayer());
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "user0", "one-too-many", Currency.BTC, 1, 1000);
+		pr.signature = signed.getSignature();
+		serverPaymentRequests.add(new ServerPaymentRequest(pr));
+		try {
+			new ServerPaymentRequestBatch(serverPaymentRequests);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(String.valueOf(UsernameTable.MAX_SIZE)));
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testDecode_corrupt() throws Exception {
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(TestUtils.generateKeyPair().getPrivate());
+		List<ServerPaymentRequest> serverPaymentRequests = new ArrayList<ServerPaymentRequest>();
+		serverPaymentRequests.add(new ServerPaymentRequest(pr));
+		
+		byte[] encoded = new ServerPaymentRequestBatch(serverPaymentRequests).encode();
+		byte[] truncated = new byte[encoded.length-10];
+		System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+		DecoderFactory.decode(ServerPaymentRequestBatch.class, truncated);
+	}
+
+}
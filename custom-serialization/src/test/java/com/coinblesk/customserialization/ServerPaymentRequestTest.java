@@ -5,6 +5,7 @@ import com.coinblesk.customserialization.PaymentRequest;
 import com.coinblesk.customserialization.DecoderFactory;
 import com.coinblesk.customserialization.ServerPaymentRequest;
 import com.coinblesk.customserialization.PKIAlgorithm;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.security.InvalidAlgorithmParameterException;
@@ -13,6 +14,9 @@ import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -144,4 +148,96 @@ public class ServerPaymentRequestTest {
 		assertTrue(decodedSpr.getPaymentRequestPayee().verify(keyPairPayee.getPublic()));
 	}
 
+	@Test
+	public void testEncodeDecode_longPaymentRequests() throws IllegalArgumentException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, NoSuchProviderException, InvalidAlgorithmParameterException, SerializationException {
+		long timestamp = System.currentTimeMillis();
+		
+		KeyPair keyPairPayer = TestUtils.generateKeyPair();
+		KeyPair keyPairPayee = TestUtils.generateKeyPair();
+		
+		String payer = createUsername('a', 200);
+		String payee = createUsername('b', 200);
+		
+		PaymentRequest prPayer = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, payer, payee, Currency.BTC, 12, timestamp);
+		prPayer.sign(keyPairPayer.getPrivate());
+		PaymentRequest prPayee = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, payer, payee, Currency.BTC, 12, timestamp);
+		prPayee.sign(keyPairPayee.getPrivate());
+		assertTrue(prPayer.encode().length > 255);
+		
+		ServerPaymentRequest spr = new ServerPaymentRequest(prPayer, prPayee);
+		ServerPaymentRequest decodedSpr = DecoderFactory.decode(ServerPaymentRequest.class, spr.encode());
+		
+		assertTrue(spr.equals(decodedSpr));
+		assertTrue(decodedSpr.getPaymentRequestPayer().verify(keyPairPayer.getPublic()));
+		assertTrue(decodedSpr.getPaymentRequestPayee().verify(keyPairPayee.getPublic()));
+	}
+	
+	@Test
+	public void testEncodeDecode_multi() throws IllegalArgumentException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, NoSuchProviderException, InvalidAlgorithmParameterException, SerializationException {
+		long timestamp = System.currentTimeMillis();
+		
+		List<KeyPair> keyPairs = new ArrayList<KeyPair>();
+		List<PaymentRequest> paymentRequests = new ArrayList<PaymentRequest>();
+		for (int i=0; i<4; i++) {
+			KeyPair keyPair = TestUtils.generateKeyPair();
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, createUsername('s', 150), Currency.BTC, 12+i, timestamp);
+			pr.sign(keyPair.getPrivate());
+			keyPairs.add(keyPair);
+			paymentRequests.add(pr);
+		}
+		
+		ServerPaymentRequest spr = ServerPaymentRequest.ofPaymentRequests(paymentRequests);
+		assertEquals(ServerPaymentRequest.VERSION_MULTI, spr.getVersion());
+		
+		byte[] encoded = spr.encode();
+		ServerPaymentRequest decodedSpr = DecoderFactory.decode(ServerPaymentRequest.class, encoded);
+		
+		assertTrue(spr.equals(decodedSpr));
+		assertEquals(4, decodedSpr.getNofPaymentRequests());
+		assertEquals(paymentRequests.get(0), decodedSpr.getPaymentRequestPayer());
+		assertEquals(paymentRequests.get(1), decodedSpr.getPaymentRequestPayee());
+		for (int i=0; i<4; i++) {
+			assertTrue(decodedSpr.getPaymentRequests().get(i).verify(keyPairs.get(i).getPublic()));
+		}
+	}
+	
+	@Test
+	public void testDecode_multiCorrupt() throws IllegalArgumentException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, NoSuchProviderException, InvalidAlgorithmParameterException, SerializationException {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		byte[] encoded = ServerPaymentRequest.ofPaymentRequests(Arrays.asList(pr, pr, pr)).encode();
+		
+		boolean exceptionThrown = false;
+		try {
+			DecoderFactory.decode(ServerPaymentRequest.class, Arrays.copyOf(encoded, encoded.length-1));
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		exceptionThrown = false;
+		
+		try {
+			DecoderFactory.decode(ServerPaymentRequest.class, Arrays.copyOf(encoded, encoded.length+1));
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		exceptionThrown = false;
+		
+		encoded[1] = 0x7F;
+		try {
+			DecoderFactory.decode(ServerPaymentRequest.class, encoded);
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+	
+	private static String createUsername(char c, int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
 }
@@ -7,6 +7,7 @@ import com.coinblesk.customserialization.ServerPaymentRequest;
 import com.coinblesk.customserialization.PaymentResponse;
 import com.coinblesk.customserialization.PKIAlgorithm;
 import com.coinblesk.customserialization.ServerPaymentResponse;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.security.InvalidAlgorithmParameterException;
@@ -15,6 +16,8 @@ import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -104,4 +107,29 @@ public class ServerPaymentResponseTest {
 		assertTrue(sr.equals(decode));
 	}
 
+	@Test
+	public void testEncodeDecode_multi() throws IllegalArgumentException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, NoSuchProviderException, InvalidAlgorithmParameterException, SerializationException {
+		long timestamp = System.currentTimeMillis();
+		
+		List<KeyPair> keyPairs = new ArrayList<KeyPair>();
+		List<PaymentResponse> paymentResponses = new ArrayList<PaymentResponse>();
+		for (int i=0; i<3; i++) {
+			KeyPair keyPair = TestUtils.generateKeyPair();
+			PaymentResponse pr = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "buyer"+i, "seller", Currency.BTC, 12+i, timestamp);
+			pr.sign(keyPair.getPrivate());
+			keyPairs.add(keyPair);
+			paymentResponses.add(pr);
+		}
+		
+		ServerPaymentResponse sr = ServerPaymentResponse.ofPaymentResponses(paymentResponses);
+		ServerPaymentResponse decode = DecoderFactory.decode(ServerPaymentResponse.class, sr.encode());
+		
+		assertTrue(sr.equals(decode));
+		assertEquals(ServerPaymentResponse.VERSION_MULTI, decode.getVersion());
+		assertEquals(3, decode.getPaymentResponses().size());
+		for (int i=0; i<3; i++) {
+			assertTrue(decode.getPaymentResponses().get(i).verify(keyPairs.get(i).getPublic()));
+		}
+	}
+
 }
@@ -0,0 +1,49 @@
+package com.coinblesk.customserialization;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+public class UsernameTableTest {
+	
+	@Test
+	public void testAdd() throws Exception {
+		UsernameTable table = new UsernameTable();
+		assertEquals(0, table.add("buyer"));
+		assertEquals(1, table.add("seller"));
+		assertEquals(0, table.add("buyer"));
+		assertEquals(2, table.size());
+		assertEquals(1, table.getReference("seller"));
+		assertEquals(-1, table.getReference("other"));
+		assertEquals("seller", table.getUsername(1));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testAdd_empty() throws Exception {
+		new UsernameTable().add("");
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testGetUsername_unknown() throws Exception {
+		new UsernameTable().getUsername(0);
+	}
+	
+	@Test
+	public void testEncodeDecode() throws Exception {
+		UsernameTable table = new UsernameTable();
+		table.add("buyer");
+		table.add("s\u00e4ller");
+		
+		byte[] bytes = new byte[1+table.getEncodedLength()];
+		assertEquals(bytes.length, table.encode(bytes, 1));
+		
+		UsernameTable decoded = UsernameTable.decode(bytes, 1);
+		assertEquals(table.getEncodedLength(), decoded.getEncodedLength());
+		assertEquals(2, decoded.size());
+		assertEquals("buyer", decoded.getUsername(0));
+		assertEquals("s\u00e4ller", decoded.getUsername(1));
+	}
+
+}
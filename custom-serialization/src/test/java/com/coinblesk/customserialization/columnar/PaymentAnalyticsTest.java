@@ -0,0 +1,146 @@
+package com.coinblesk.customserialization.columnar;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.corpus.MessageType;
+
+public class PaymentAnalyticsTest {
+	
+	private static final long START = 1420070400000L;
+	private static final long HOUR = 3600000L;
+	
+	private static PaymentColumns columns;
+	private static List<PaymentRequest> requests;
+	private static List<PaymentResponse> responses;
+	
+	@BeforeClass
+	public static void fill() throws Exception {
+		columns = new PaymentColumns(8);
+		requests = new ArrayList<PaymentRequest>();
+		responses = new ArrayList<PaymentResponse>();
+		Random random = new Random(1);
+		ServerResponseStatus[] statuses = ServerResponseStatus.values();
+		for (int i=0; i<5000; i++) {
+			Currency currency = random.nextBoolean() ? Currency.BTC : Currency.CHF;
+			long amount = 1 + random.nextInt(1000);
+			long timestamp = START + random.nextInt(48) * HOUR + random.nextInt(1000);
+			String payee = "merchant"+random.nextInt(20);
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, payee, currency, amount, timestamp);
+			ServerResponseStatus status = statuses[random.nextInt(statuses.length)];
+			String reason = status == ServerResponseStatus.FAILURE ? "Insufficient funds." : null;
+			PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, status, reason, pr.getUsernamePayer(), payee, currency, amount, timestamp);
+			columns.append(pr);
+			columns.append(response);
+			requests.add(pr);
+			responses.add(response);
+		}
+	}
+	
+	@Test
+	public void testAggregateByCurrencyAndTime() throws Exception {
+		Map<Currency, Aggregates> result = new PaymentAnalytics(columns).aggregateByCurrencyAndTime(MessageType.PAYMENT_REQUEST, START + HOUR, HOUR, 24);
+		
+		for (Currency currency : Currency.values()) {
+			long[] counts = new long[24];
+			long[] sums = new long[24];
+			long[] mins = new long[24];
+			Arrays.fill(mins, Long.MAX_VALUE);
+			for (PaymentRequest pr : requests) {
+				long bucket = pr.getTimestamp() < START + HOUR ? -1 : (pr.getTimestamp() - START - HOUR) / HOUR;
+				if (pr.getCurrency() != currency || bucket < 0 || bucket >= 24)
+					continue;
+				counts[(int) bucket]++;
+				sums[(int) bucket] += pr.getAmount();
+				mins[(int) bucket] = Math.min(mins[(int) bucket], pr.getAmount());
+			}
+			
+			Aggregates aggregates = result.get(currency);
+			assertEquals(24, aggregates.getNofGroups());
+			for (int b=0; b<24; b++) {
+				assertEquals(counts[b], aggregates.getCount(b));
+				assertEquals(sums[b], aggregates.getSum(b));
+				assertEquals(mins[b], aggregates.getMin(b));
+			}
+		}
+	}
+	
+	@Test
+	public void testAggregateByStatus() throws Exception {
+		Aggregates aggregates = new PaymentAnalytics(columns).aggregateByStatus(START, START + 24 * HOUR);
+		
+		long[] counts = new long[ServerResponseStatus.values().length];
+		long[] maxs = new long[counts.length];
+		Arrays.fill(maxs, Long.MIN_VALUE);
+		for (PaymentResponse response : responses) {
+			if (response.getTimestamp() >= START + 24 * HOUR)
+				continue;
+			counts[response.getStatus().ordinal()]++;
+			maxs[response.getStatus().ordinal()] = Math.max(maxs[response.getStatus().ordinal()], response.getAmount());
+		}
+		for (ServerResponseStatus status : ServerResponseStatus.values()) {
+			assertEquals(counts[status.ordinal()], aggregates.getCount(status.ordinal()));
+			assertEquals(maxs[status.ordinal()], aggregates.getMax(status.ordinal()));
+		}
+	}
+	
+	@Test
+	public void testGetTopPayees() throws Exception {
+		Map<String, Long> top = new PaymentAnalytics(columns).getTopPayees(Currency.CHF, START, START + 48 * HOUR, 5);
+		
+		Map<String, Long> volumes = new HashMap<String, Long>();
+		for (PaymentResponse response : responses) {
+			if (response.getCurrency() != Currency.CHF || response.getStatus() != ServerResponseStatus.SUCCESS)
+				continue;
+			Long volume = volumes.get(response.getUsernamePayee());
+			volumes.put(response.getUsernamePayee(), (volume == null ? 0 : volume) + response.getAmount());
+		}
+		List<Long> sorted = new ArrayList<Long>(volumes.values());
+		Collections.sort(sorted, Collections.reverseOrder());
+		
+		assertEquals(5, top.size());
+		Iterator<Map.Entry<String, Long>> it = top.entrySet().iterator();
+		for (int i=0; i<5; i++) {
+			Map.Entry<String, Long> entry = it.next();
+			assertEquals(sorted.get(i), entry.getValue());
+			assertEquals(volumes.get(entry.getKey()), entry.getValue());
+		}
+	}
+	
+	@Test
+	public void testAggregate_sparseGroups() throws Exception {
+		// more usernames than local groups, so that the tasks aggregate into hash maps
+		PaymentColumns many = new PaymentColumns(10);
+		for (int i=0; i<70000; i++) {
+			many.append(new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "buyer", "merchant"+i, Currency.BTC, 1 + i % 3, START));
+			// a popular merchant in every chunk
+			if (i % 700 == 0)
+				many.append(new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "buyer", "merchant7", Currency.BTC, 10, START));
+		}
+		
+		Map<String, Long> top = new PaymentAnalytics(many).getTopPayees(Currency.BTC, START, START + 1, 2);
+		assertEquals(2, top.size());
+		Iterator<Map.Entry<String, Long>> it = top.entrySet().iterator();
+		Map.Entry<String, Long> first = it.next();
+		assertEquals("merchant7", first.getKey());
+		assertEquals(Long.valueOf(1002), first.getValue());
+		assertEquals(Long.valueOf(3), it.next().getValue());
+	}
+
+}
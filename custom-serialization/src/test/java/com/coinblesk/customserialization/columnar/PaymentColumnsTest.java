@@ -0,0 +1,146 @@
+package com.coinblesk.customserialization.columnar;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.corpus.CorpusReader;
+import com.coinblesk.customserialization.corpus.CorpusRecord;
+import com.coinblesk.customserialization.corpus.CorpusWriter;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.corpus.TrafficGenerator;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class PaymentColumnsTest {
+	
+	@Test
+	public void testAppend() throws Exception {
+		PaymentColumns columns = new PaymentColumns(4);
+		for (int i=0; i<100; i++) {
+			if (i % 2 == 0)
+				columns.append(new PaymentRequest(PKIAlgorithm.DEFAULT, 1 + i, "buyer"+(i % 3), "seller", Currency.BTC, i+1, Currency.CHF, 2*i+1, 1000 + i));
+			else
+				columns.append(new PaymentResponse(PKIAlgorithm.DEFAULT, 255, ServerResponseStatus.FAILURE, "reason", "buyer"+(i % 3), "seller", Currency.CHF, i+1, 1000 + i));
+		}
+		
+		assertEquals(100, columns.size());
+		assertEquals(4, columns.getUsernames().size());
+		assertEquals(7L * ColumnChunk.ROW_LENGTH * 16, columns.getMemoryUsage());
+		
+		for (int i=0; i<100; i++) {
+			assertEquals(i+1, columns.getAmount(i));
+			assertEquals(1000 + i, columns.getTimestamp(i));
+			assertEquals("buyer"+(i % 3), columns.getUsernames().getUsername(columns.getPayerId(i)));
+			assertEquals(columns.getUsernames().getId("seller"), columns.getPayeeId(i));
+			if (i % 2 == 0) {
+				assertEquals(MessageType.PAYMENT_REQUEST, columns.getMessageType(i));
+				assertEquals(1 + i, columns.getKeyNumber(i));
+				assertEquals(Currency.BTC.getCode(), columns.getCurrencyCode(i));
+				assertEquals(Currency.CHF.getCode(), columns.getInputCurrencyCode(i));
+				assertEquals(2*i+1, columns.getInputAmount(i));
+				assertEquals(0, columns.getStatusCode(i));
+			} else {
+				assertEquals(MessageType.PAYMENT_RESPONSE, columns.getMessageType(i));
+				assertEquals(255, columns.getKeyNumber(i));
+				assertEquals(Currency.CHF.getCode(), columns.getCurrencyCode(i));
+				assertEquals(0, columns.getInputCurrencyCode(i));
+				assertEquals(ServerResponseStatus.FAILURE.getCode(), columns.getStatusCode(i));
+			}
+		}
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testGet_outOfBounds() throws Exception {
+		PaymentColumns columns = new PaymentColumns();
+		columns.append(new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 1, 1000));
+		columns.getAmount(1);
+	}
+	
+	@Test
+	public void testLoad() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusWriter writer = new CorpusWriter(out);
+		TrafficGenerator generator = new TrafficGenerator(3);
+		generator.setNofKeys(2);
+		generator.generate(100, writer);
+		writer.close();
+		
+		List<SerializableObject> expected = new ArrayList<SerializableObject>();
+		CorpusReader reader = new CorpusReader(new ByteArrayInputStream(out.toByteArray()));
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			if (record.getMessageType() == MessageType.PAYMENT_REQUEST || record.getMessageType() == MessageType.PAYMENT_RESPONSE)
+				expected.add(record.decode());
+		}
+		
+		PaymentColumns columns = new PaymentColumns(6);
+		assertEquals(expected.size(), columns.load(new CorpusReader(new ByteArrayInputStream(out.toByteArray()))));
+		for (int i=0; i<expected.size(); i++) {
+			if (expected.get(i) instanceof PaymentRequest) {
+				PaymentRequest pr = (PaymentRequest) expected.get(i);
+				assertEquals(pr.getAmount(), columns.getAmount(i));
+				assertEquals(pr.getTimestamp(), columns.getTimestamp(i));
+				assertEquals(pr.getUsernamePayer(), columns.getUsernames().getUsername(columns.getPayerId(i)));
+				assertEquals(pr.getInputCurrency() == null ? 0 : pr.getInputCurrency().getCode(), columns.getInputCurrencyCode(i));
+			} else {
+				PaymentResponse response = (PaymentResponse) expected.get(i);
+				assertEquals(response.getStatus().getCode(), columns.getStatusCode(i));
+				assertEquals(response.getUsernamePayee(), columns.getUsernames().getUsername(columns.getPayeeId(i)));
+			}
+		}
+	}
+	
+	@Test
+	public void testLoad_byReference() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusWriter writer = new CorpusWriter(out);
+		for (int i=0; i<20; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, "seller", Currency.BTC, i+1, 1000 + i);
+			pr.sign(keyPair.getPrivate());
+			writer.write(pr);
+			PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 2, ServerResponseStatus.SUCCESS, null, pr);
+			response.sign(keyPair.getPrivate());
+			writer.write(response);
+		}
+		writer.close();
+		
+		PaymentColumns columns = new PaymentColumns(4);
+		assertEquals(40, columns.load(new CorpusReader(new ByteArrayInputStream(out.toByteArray()))));
+		assertEquals(40, columns.size());
+		assertEquals(21, columns.getUsernames().size());
+		for (int i=0; i<20; i++) {
+			// the rows stay aligned
+			assertEquals(MessageType.PAYMENT_REQUEST, columns.getMessageType(2*i));
+			assertEquals(i+1, columns.getAmount(2*i));
+			assertEquals("buyer"+i, columns.getUsernames().getUsername(columns.getPayerId(2*i)));
+			
+			assertEquals(MessageType.PAYMENT_RESPONSE, columns.getMessageType(2*i+1));
+			assertEquals(2, columns.getKeyNumber(2*i+1));
+			assertEquals(ServerResponseStatus.SUCCESS.getCode(), columns.getStatusCode(2*i+1));
+			assertEquals(0, columns.getCurrencyCode(2*i+1));
+			assertEquals(0, columns.getAmount(2*i+1));
+			assertEquals(0, columns.getTimestamp(2*i+1));
+			assertEquals(PaymentColumns.NO_USERNAME, columns.getPayerId(2*i+1));
+			assertEquals(PaymentColumns.NO_USERNAME, columns.getPayeeId(2*i+1));
+		}
+		
+		// responses by reference are counted per status, but not per payee
+		PaymentAnalytics analytics = new PaymentAnalytics(columns);
+		assertEquals(20, analytics.aggregateByStatus(0, Long.MAX_VALUE).getCount(ServerResponseStatus.SUCCESS.ordinal()));
+		assertEquals(0, analytics.getTopPayees(Currency.BTC, 0, Long.MAX_VALUE, 5).size());
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.coinblesk.customserialization.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class CallbackFutureTest {
+	
+	@Test
+	public void testSignVerifyAsync() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		
+		pr.signAsync(keyPair.getPrivate()).get(5, TimeUnit.SECONDS);
+		assertTrue(pr.verify(keyPair.getPublic()));
+		assertTrue(pr.verifyAsync(keyPair.getPublic()).get(5, TimeUnit.SECONDS));
+		assertFalse(pr.verifyAsync(TestUtils.generateKeyPair().getPublic()).get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testCallback() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		ThreadPoolExecutor executor = CryptoExecutor.newExecutor(2);
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		AsyncCallback<Boolean> callback = new AsyncCallback<Boolean>() {
+			@Override
+			public void onSuccess(Boolean verified) {
+				result.set(verified);
+				latch.countDown();
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				result.set(t);
+				latch.countDown();
+			}
+		};
+		
+		// not signed yet
+		pr.verifyAsync(keyPair.getPublic(), executor, callback);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(result.get() instanceof NotSignedException);
+		
+		boolean exceptionThrown = false;
+		try {
+			pr.verifyAsync(keyPair.getPublic(), executor, null).get();
+		} catch (ExecutionException e) {
+			exceptionThrown = e.getCause() instanceof NotSignedException;
+		}
+		assertTrue(exceptionThrown);
+		
+		pr.signAsync(keyPair.getPrivate(), executor, null).get();
+		final CountDownLatch latch2 = new CountDownLatch(1);
+		pr.verifyAsync(keyPair.getPublic(), executor, new AsyncCallback<Boolean>() {
+			@Override
+			public void onSuccess(Boolean verified) {
+				result.set(verified);
+				latch2.countDown();
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				result.set(t);
+				latch2.countDown();
+			}
+		});
+		assertTrue(latch2.await(5, TimeUnit.SECONDS));
+		assertEquals(Boolean.TRUE, result.get());
+		
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testDefaultExecutor() {
+		Executor executor = CryptoExecutor.getDefault();
+		assertTrue(executor == CryptoExecutor.getDefault());
+		assertEquals(Runtime.getRuntime().availableProcessors(), ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+	}
+
+}
@@ -0,0 +1,280 @@
+package com.coinblesk.customserialization.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.BatchSignedPaymentResponse;
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class MicroBatchSchedulerTest {
+	
+	/**
+	 * Doubles every item and records the batch sizes.
+	 */
+	private static class DoublingHandler implements BatchHandler<Integer, Integer> {
+		private final List<Integer> batchSizes = new ArrayList<Integer>();
+		
+		@Override
+		public List<Integer> process(List<Integer> batch) throws Exception {
+			synchronized (batchSizes) {
+				batchSizes.add(batch.size());
+			}
+			Thread.sleep(2);
+			List<Integer> results = new ArrayList<Integer>();
+			for (Integer i : batch) {
+				results.add(2*i);
+			}
+			return results;
+		}
+	}
+	
+	@Test
+	public void testSubmit() throws Exception {
+		DoublingHandler handler = new DoublingHandler();
+		MicroBatchScheduler<Integer, Integer> scheduler = new MicroBatchScheduler<Integer, Integer>(handler, 32, 5, TimeUnit.MILLISECONDS);
+		
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i=0; i<1000; i++) {
+			futures.add(scheduler.submit(i));
+		}
+		for (int i=0; i<futures.size(); i++) {
+			assertEquals(2*i, futures.get(i).get().intValue());
+		}
+		
+		// the items piled up while the handler was busy
+		assertTrue(scheduler.getNofBatches() < 1000);
+		int max = 0;
+		for (int size : handler.batchSizes) {
+			max = Math.max(max, size);
+		}
+		assertTrue(max > 1);
+		assertTrue(max <= 32);
+		
+		scheduler.shutdown();
+		assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testSubmit_quiet() throws Exception {
+		DoublingHandler handler = new DoublingHandler();
+		MicroBatchScheduler<Integer, Integer> scheduler = new MicroBatchScheduler<Integer, Integer>(handler, 32, 10, TimeUnit.SECONDS);
+		
+		// a single item is dispatched without waiting for the deadline
+		long start = System.nanoTime();
+		assertEquals(42, scheduler.submit(21).get(5, TimeUnit.SECONDS).intValue());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		
+		scheduler.shutdown();
+		assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testGetTargetBatchSize() throws Exception {
+		DoublingHandler handler = new DoublingHandler();
+		MicroBatchScheduler<Integer, Integer> scheduler = new MicroBatchScheduler<Integer, Integer>(handler, 64, 2, TimeUnit.MILLISECONDS);
+		assertEquals(1, scheduler.getTargetBatchSize());
+		
+		// about 20 items per millisecond, i.e., about 40 within the maximum delay
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		int max = 1;
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+		while (System.nanoTime() < end) {
+			for (int i=0; i<20; i++) {
+				futures.add(scheduler.submit(i));
+			}
+			max = Math.max(max, scheduler.getTargetBatchSize());
+			Thread.sleep(1);
+		}
+		for (Future<Integer> future : futures) {
+			future.get();
+		}
+		assertTrue(max > 1);
+		assertTrue(max <= 64);
+		
+		// one item at a time lets the target shrink again
+		for (int i=0; i<50; i++) {
+			scheduler.submit(i).get();
+			Thread.sleep(5);
+		}
+		assertEquals(1, scheduler.getTargetBatchSize());
+		
+		scheduler.shutdown();
+		assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testSubmit_cancel() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		MicroBatchScheduler<Integer, Integer> scheduler = new MicroBatchScheduler<Integer, Integer>(new BatchHandler<Integer, Integer>() {
+			@Override
+			public List<Integer> process(List<Integer> batch) throws Exception {
+				started.countDown();
+				release.await();
+				return batch;
+			}
+		}, 1, 1, TimeUnit.MILLISECONDS);
+		
+		Future<Integer> first = scheduler.submit(1);
+		started.await();
+		Future<Integer> second = scheduler.submit(2);
+		assertTrue(second.cancel(false));
+		assertTrue(second.isCancelled());
+		assertTrue(second.isDone());
+		assertFalse(first.isDone());
+		
+		boolean exceptionThrown = false;
+		try {
+			first.get(10, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		
+		release.countDown();
+		assertEquals(1, first.get().intValue());
+		assertFalse(first.cancel(false));
+		exceptionThrown = false;
+		try {
+			second.get();
+		} catch (CancellationException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		
+		scheduler.shutdown();
+		assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testSubmit_handlerFails() throws Exception {
+		MicroBatchScheduler<Integer, Integer> scheduler = new MicroBatchScheduler<Integer, Integer>(new BatchHandler<Integer, Integer>() {
+			@Override
+			public List<Integer> process(List<Integer> batch) throws Exception {
+				throw new Exception("failed");
+			}
+		}, 8, 1, TimeUnit.MILLISECONDS);
+		
+		boolean exceptionThrown = false;
+		try {
+			scheduler.submit(1).get();
+		} catch (ExecutionException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		
+		scheduler.shutdown();
+		exceptionThrown = false;
+		try {
+			scheduler.submit(1);
+		} catch (RejectedExecutionException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+	
+	@Test
+	public void testVerificationBatchHandler() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		KeyPair otherKeyPair = TestUtils.generateKeyPair();
+		MicroBatchScheduler<VerificationTask, Boolean> scheduler = new MicroBatchScheduler<VerificationTask, Boolean>(new VerificationBatchHandler(), 16, 2, TimeUnit.MILLISECONDS);
+		
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (int i=0; i<20; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			futures.add(scheduler.submit(new VerificationTask(pr, i % 5 == 0 ? otherKeyPair.getPublic() : keyPair.getPublic())));
+		}
+		for (int i=0; i<futures.size(); i++) {
+			assertEquals(i % 5 != 0, futures.get(i).get());
+		}
+		
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testVerificationBatchHandler_malformed() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		MicroBatchScheduler<VerificationTask, Boolean> scheduler = new MicroBatchScheduler<VerificationTask, Boolean>(new VerificationBatchHandler(), 16, 50, TimeUnit.MILLISECONDS);
+		
+		// a malformed signature of one client must not fail the others in the same batch
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (int i=0; i<8; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			byte[] encoded = pr.encode();
+			if (i == 3) {
+				// the DER sequence tag of the signature
+				encoded[encoded.length - pr.getSignature().length] ^= 0x01;
+			}
+			PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, encoded);
+			futures.add(scheduler.submit(new VerificationTask(decoded, keyPair.getPublic())));
+		}
+		for (int i=0; i<futures.size(); i++) {
+			assertEquals(i != 3, futures.get(i).get());
+		}
+		
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testVerificationBatchHandler_unsigned() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		
+		// an unsigned message of one client must not fail the others in the same batch
+		List<VerificationTask> batch = new ArrayList<VerificationTask>();
+		for (int i=0; i<8; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			if (i != 2 && i != 5)
+				pr.sign(keyPair.getPrivate());
+			batch.add(new VerificationTask(pr, keyPair.getPublic()));
+		}
+		
+		List<Boolean> results = new VerificationBatchHandler().process(batch);
+		assertEquals(8, results.size());
+		for (int i=0; i<results.size(); i++) {
+			assertEquals(i != 2 && i != 5, results.get(i));
+		}
+	}
+	
+	@Test
+	public void testMerkleSigningBatchHandler() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		MicroBatchScheduler<PaymentResponse, BatchSignedPaymentResponse> scheduler = new MicroBatchScheduler<PaymentResponse, BatchSignedPaymentResponse>(new MerkleSigningBatchHandler(keyPair.getPrivate()), 64, 2, TimeUnit.MILLISECONDS);
+		
+		List<Future<BatchSignedPaymentResponse>> futures = new ArrayList<Future<BatchSignedPaymentResponse>>();
+		for (int i=0; i<50; i++) {
+			PaymentResponse pr = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "buyer"+i, "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			futures.add(scheduler.submit(pr));
+		}
+		for (int i=0; i<futures.size(); i++) {
+			BatchSignedPaymentResponse bspr = futures.get(i).get();
+			assertEquals(i+1, bspr.getPaymentResponse().getAmount());
+			assertTrue(bspr.verify(keyPair.getPublic()));
+			assertFalse(bspr.verify(TestUtils.generateKeyPair().getPublic()));
+		}
+		
+		scheduler.shutdown();
+	}
+
+}
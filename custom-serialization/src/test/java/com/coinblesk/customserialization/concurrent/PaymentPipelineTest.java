@@ -0,0 +1,196 @@
+package com.coinblesk.customserialization.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class PaymentPipelineTest {
+	
+	private static class CollectingSink implements PipelineSink<ServerPaymentResponse> {
+		private final Map<Object, Object> results = new ConcurrentHashMap<Object, Object>();
+		
+		@Override
+		public void onResult(Object attachment, ServerPaymentResponse result) {
+			results.put(attachment, result);
+		}
+		
+		@Override
+		public void onError(Object attachment, Throwable t) {
+			results.put(attachment, t);
+		}
+	}
+	
+	@Test
+	public void testPipeline() throws Exception {
+		final KeyPair keyPairPayer = TestUtils.generateKeyPair();
+		final KeyPair keyPairPayee = TestUtils.generateKeyPair();
+		final KeyPair keyPairServer = TestUtils.generateKeyPair();
+		
+		PaymentRequestKeyResolver keyResolver = new PaymentRequestKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PaymentRequest paymentRequest, int index) {
+				return index == 0 ? keyPairPayer.getPublic() : keyPairPayee.getPublic();
+			}
+		};
+		StageFunction<ServerPaymentRequest, ServerPaymentResponse> responder = new StageFunction<ServerPaymentRequest, ServerPaymentResponse>() {
+			@Override
+			public ServerPaymentResponse apply(ServerPaymentRequest spr) throws Exception {
+				PaymentRequest pr = spr.getPaymentRequestPayer();
+				PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp());
+				response.sign(keyPairServer.getPrivate());
+				return new ServerPaymentResponse(response);
+			}
+		};
+		CollectingSink sink = new CollectingSink();
+		PaymentPipeline pipeline = new PaymentPipeline(keyResolver, responder, sink, 4, 1, 2, 1);
+		
+		int n = 20;
+		for (int i=0; i<n; i++) {
+			long timestamp = System.currentTimeMillis();
+			PaymentRequest prPayer = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i+1, timestamp);
+			prPayer.sign(keyPairPayer.getPrivate());
+			PaymentRequest prPayee = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i+1, timestamp);
+			// every third request is signed by the wrong key
+			prPayee.sign(i % 3 == 0 ? keyPairPayer.getPrivate() : keyPairPayee.getPrivate());
+			pipeline.submit(new ServerPaymentRequest(prPayer, prPayee).encode(), i);
+		}
+		pipeline.submit(new byte[] { 1, 2, 3 }, n);
+		
+		pipeline.shutdown();
+		assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+		
+		assertEquals(n+1, sink.results.size());
+		for (int i=0; i<n; i++) {
+			Object result = sink.results.get(i);
+			if (i % 3 == 0) {
+				assertTrue(result instanceof SignatureException);
+			} else {
+				ServerPaymentResponse spr = (ServerPaymentResponse) result;
+				assertEquals(i+1, spr.getPaymentResponsePayer().getAmount());
+				assertTrue(spr.getPaymentResponsePayer().verify(keyPairServer.getPublic()));
+			}
+		}
+		assertTrue(sink.results.get(n) instanceof IllegalArgumentException);
+		
+		boolean exceptionThrown = false;
+		try {
+			pipeline.submit(new byte[1], null);
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+	
+	@Test
+	public void testSinkFails() throws Exception {
+		final KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequestKeyResolver keyResolver = new PaymentRequestKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PaymentRequest paymentRequest, int index) {
+				return keyPair.getPublic();
+			}
+		};
+		StageFunction<ServerPaymentRequest, ServerPaymentResponse> responder = new StageFunction<ServerPaymentRequest, ServerPaymentResponse>() {
+			@Override
+			public ServerPaymentResponse apply(ServerPaymentRequest spr) throws Exception {
+				PaymentRequest pr = spr.getPaymentRequestPayer();
+				PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp());
+				response.sign(keyPair.getPrivate());
+				return new ServerPaymentResponse(response);
+			}
+		};
+		// fails for every result, and for the errors of odd attachments
+		final Map<Object, Throwable> errors = new ConcurrentHashMap<Object, Throwable>();
+		PipelineSink<ServerPaymentResponse> sink = new PipelineSink<ServerPaymentResponse>() {
+			@Override
+			public void onResult(Object attachment, ServerPaymentResponse result) {
+				throw new IllegalStateException("result "+attachment);
+			}
+			
+			@Override
+			public void onError(Object attachment, Throwable t) {
+				errors.put(attachment, t);
+				if ((Integer) attachment % 2 == 1)
+					throw new IllegalStateException("error "+attachment);
+			}
+		};
+		PaymentPipeline pipeline = new PaymentPipeline(keyResolver, responder, sink, 4, 1, 2, 2);
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 1, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		byte[] frame = new ServerPaymentRequest(pr).encode();
+		for (int i=0; i<10; i++) {
+			pipeline.submit(frame, i);
+		}
+		
+		// the workers survive the failing sink and the pipeline terminates
+		pipeline.shutdown();
+		assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(10, errors.size());
+		for (Throwable t : errors.values()) {
+			assertTrue(t instanceof IllegalStateException);
+		}
+	}
+	
+	@Test
+	public void testBackpressure() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		StageFunction<ServerPaymentRequest, ServerPaymentResponse> responder = new StageFunction<ServerPaymentRequest, ServerPaymentResponse>() {
+			@Override
+			public ServerPaymentResponse apply(ServerPaymentRequest spr) throws Exception {
+				release.await();
+				throw new Exception("not implemented");
+			}
+		};
+		final KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequestKeyResolver keyResolver = new PaymentRequestKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PaymentRequest paymentRequest, int index) {
+				return keyPair.getPublic();
+			}
+		};
+		CollectingSink sink = new CollectingSink();
+		PaymentPipeline pipeline = new PaymentPipeline(keyResolver, responder, sink, 1, 1, 1, 1);
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 1, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		byte[] frame = new ServerPaymentRequest(pr).encode();
+		
+		// one frame per thread and queue fits into the pipeline, then it is full
+		boolean accepted = true;
+		int nofAccepted = 0;
+		while (accepted && nofAccepted < 100) {
+			accepted = pipeline.offer(frame, nofAccepted, 200, TimeUnit.MILLISECONDS);
+			if (accepted)
+				nofAccepted++;
+		}
+		assertFalse(accepted);
+		assertTrue(nofAccepted < 10);
+		
+		release.countDown();
+		pipeline.shutdown();
+		assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(nofAccepted, sink.results.size());
+	}
+
+}
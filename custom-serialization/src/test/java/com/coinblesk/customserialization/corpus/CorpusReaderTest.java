@@ -0,0 +1,75 @@
+package com.coinblesk.customserialization.corpus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class CorpusReaderTest {
+	
+	@Test
+	public void testWriteRead() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusWriter writer = new CorpusWriter(out);
+		writer.write(pr);
+		writer.write(MessageType.PAYMENT_RESPONSE, new byte[] { 1, 2, 3 });
+		writer.close();
+		assertEquals(2, writer.getNofRecords());
+		
+		CorpusReader reader = new CorpusReader(new ByteArrayInputStream(out.toByteArray()));
+		CorpusRecord record = reader.next();
+		assertEquals(MessageType.PAYMENT_REQUEST, record.getMessageType());
+		assertEquals(pr, record.<PaymentRequest>decode());
+		record = reader.next();
+		assertEquals(MessageType.PAYMENT_RESPONSE, record.getMessageType());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, record.getBytes());
+		assertNull(reader.next());
+		reader.close();
+	}
+	
+	@Test
+	public void testRead_corrupt() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusWriter writer = new CorpusWriter(out);
+		writer.write(MessageType.PAYMENT_REQUEST, new byte[] { 1, 2, 3, 4 });
+		writer.close();
+		byte[] corpus = out.toByteArray();
+		
+		byte[] flipped = corpus.clone();
+		flipped[flipped.length-1] ^= 0x10;
+		assertCorrupt(flipped);
+		assertCorrupt(Arrays.copyOf(corpus, corpus.length-1));
+		
+		byte[] unknownType = corpus.clone();
+		unknownType[4] = 0x7F;
+		assertCorrupt(unknownType);
+	}
+	
+	private static void assertCorrupt(byte[] corpus) {
+		boolean exceptionThrown = false;
+		try {
+			new CorpusReader(new ByteArrayInputStream(corpus)).next();
+		} catch (IOException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+
+}
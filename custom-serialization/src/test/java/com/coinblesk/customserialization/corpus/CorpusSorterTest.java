@@ -0,0 +1,239 @@
+package com.coinblesk.customserialization.corpus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.SerializableObject;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.corpus.CorpusSorter.SortKey;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class CorpusSorterTest {
+	
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+	
+	private static List<File> inputs;
+	private static List<String> records;
+	
+	@BeforeClass
+	public static void createInputs() throws Exception {
+		inputs = new ArrayList<File>();
+		records = new ArrayList<String>();
+		for (int seed=1; seed<=2; seed++) {
+			File input = folder.newFile();
+			CorpusWriter writer = new CorpusWriter(new FileOutputStream(input));
+			TrafficGenerator generator = new TrafficGenerator(seed);
+			generator.setNofKeys(2);
+			generator.setNofPayers(20);
+			generator.generate(150, writer);
+			writer.close();
+			inputs.add(input);
+			records.addAll(read(input));
+		}
+		Collections.sort(records);
+	}
+	
+	@Test
+	public void testSort_timestamp() throws Exception {
+		CorpusSorter sorter = new CorpusSorter(SortKey.TIMESTAMP);
+		sorter.setMemoryLimit(1 << 12);
+		sorter.setMergeFactor(3);
+		sorter.setTempDirectory(folder.getRoot());
+		File output = folder.newFile();
+		
+		assertEquals(records.size(), sorter.sort(inputs, output));
+		assertTrue(sorter.getNofRuns() > 9);
+		
+		long last = Long.MIN_VALUE;
+		CorpusReader reader = new CorpusReader(new FileInputStream(output));
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			long timestamp = getTimestamp(record.decode());
+			assertTrue(timestamp >= last);
+			last = timestamp;
+		}
+		reader.close();
+		
+		List<String> sorted = read(output);
+		Collections.sort(sorted);
+		assertEquals(records, sorted);
+	}
+	
+	@Test
+	public void testSort_payer() throws Exception {
+		CorpusSorter sorter = new CorpusSorter(SortKey.PAYER);
+		sorter.setTempDirectory(folder.getRoot());
+		File output = folder.newFile();
+		
+		assertEquals(records.size(), sorter.sort(inputs, output));
+		assertEquals(1, sorter.getNofRuns());
+		
+		String lastPayer = "";
+		long lastTimestamp = Long.MIN_VALUE;
+		CorpusReader reader = new CorpusReader(new FileInputStream(output));
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			SerializableObject object = record.decode();
+			int c = getPayer(object).compareTo(lastPayer);
+			assertTrue(c > 0 || (c == 0 && getTimestamp(object) >= lastTimestamp));
+			lastPayer = getPayer(object);
+			lastTimestamp = getTimestamp(object);
+		}
+		reader.close();
+	}
+	
+	@Test
+	public void testSort_payerSeveralPasses() throws Exception {
+		CorpusSorter sorter = new CorpusSorter(SortKey.PAYER);
+		sorter.setMemoryLimit(1 << 12);
+		sorter.setMergeFactor(3);
+		sorter.setTempDirectory(folder.getRoot());
+		File output = folder.newFile();
+		
+		// the intermediate runs carry the keys, the output does not
+		assertEquals(records.size(), sorter.sort(inputs, output));
+		assertTrue(sorter.getNofRuns() > 9);
+		
+		String lastPayer = "";
+		long lastTimestamp = Long.MIN_VALUE;
+		CorpusReader reader = new CorpusReader(new FileInputStream(output));
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			SerializableObject object = record.decode();
+			int c = getPayer(object).compareTo(lastPayer);
+			assertTrue(c > 0 || (c == 0 && getTimestamp(object) >= lastTimestamp));
+			lastPayer = getPayer(object);
+			lastTimestamp = getTimestamp(object);
+		}
+		reader.close();
+		
+		List<String> sorted = read(output);
+		Collections.sort(sorted);
+		assertEquals(records, sorted);
+	}
+	
+	@Test
+	public void testSort_stable() throws Exception {
+		File input = folder.newFile();
+		CorpusWriter writer = new CorpusWriter(new FileOutputStream(input));
+		CorpusReader reader = new CorpusReader(new FileInputStream(inputs.get(0)));
+		CorpusRecord first = reader.next();
+		reader.close();
+		for (int i=0; i<100; i++) {
+			writer.write(first.getMessageType(), first.getBytes());
+		}
+		writer.close();
+		
+		CorpusSorter sorter = new CorpusSorter(SortKey.TIMESTAMP);
+		sorter.setMemoryLimit(1 << 12);
+		sorter.setTempDirectory(folder.getRoot());
+		File output = folder.newFile();
+		sorter.sort(Arrays.asList(input, input), output);
+		
+		assertEquals(200, read(output).size());
+		reader = new CorpusReader(new FileInputStream(output));
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			assertArrayEquals(first.getBytes(), record.getBytes());
+		}
+		reader.close();
+	}
+	
+	@Test
+	public void testSort_byReference() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		File input = folder.newFile();
+		CorpusWriter writer = new CorpusWriter(new FileOutputStream(input));
+		for (int i=0; i<1000; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+(i % 17), "seller"+(i % 5), Currency.BTC, i+1, 1420070400000L + i);
+			pr.sign(keyPair.getPrivate());
+			writer.write(pr);
+			if (i % 4 == 0) {
+				PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, pr);
+				response.sign(keyPair.getPrivate());
+				writer.write(response);
+			}
+		}
+		writer.close();
+		
+		// the runs are larger than the read buffer of the merge
+		CorpusSorter sorter = new CorpusSorter(SortKey.PAYEE);
+		sorter.setMemoryLimit(1 << 18);
+		sorter.setTempDirectory(folder.getRoot());
+		File output = folder.newFile();
+		assertEquals(1250, sorter.sort(Arrays.asList(input), output));
+		assertTrue(sorter.getNofRuns() > 1);
+		
+		CorpusReader reader = new CorpusReader(new FileInputStream(output));
+		for (int i=0; i<250; i++) {
+			assertNull(((PaymentResponse) reader.next().decode()).getUsernamePayee());
+		}
+		String lastPayee = "";
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			String payee = ((PaymentRequest) record.decode()).getUsernamePayee();
+			assertTrue(payee.compareTo(lastPayee) >= 0);
+			lastPayee = payee;
+		}
+		reader.close();
+		
+		List<String> sorted = read(output);
+		Collections.sort(sorted);
+		List<String> expected = read(input);
+		Collections.sort(expected);
+		assertEquals(expected, sorted);
+	}
+	
+	private static long getTimestamp(SerializableObject object) {
+		object = unwrap(object);
+		return object instanceof PaymentRequest ? ((PaymentRequest) object).getTimestamp() : ((PaymentResponse) object).getTimestamp();
+	}
+	
+	private static String getPayer(SerializableObject object) {
+		object = unwrap(object);
+		return object instanceof PaymentRequest ? ((PaymentRequest) object).getUsernamePayer() : ((PaymentResponse) object).getUsernamePayer();
+	}
+	
+	private static SerializableObject unwrap(SerializableObject object) {
+		if (object instanceof ServerPaymentRequest)
+			return ((ServerPaymentRequest) object).getPaymentRequests().get(0);
+		if (object instanceof ServerPaymentResponse)
+			return ((ServerPaymentResponse) object).getPaymentResponses().get(0);
+		return object;
+	}
+	
+	private static List<String> read(File file) throws Exception {
+		List<String> result = new ArrayList<String>();
+		CorpusReader reader = new CorpusReader(new FileInputStream(file));
+		CorpusRecord record;
+		while ((record = reader.next()) != null) {
+			result.add(record.getMessageType()+Arrays.toString(record.getBytes()));
+		}
+		reader.close();
+		return result;
+	}
+
+}
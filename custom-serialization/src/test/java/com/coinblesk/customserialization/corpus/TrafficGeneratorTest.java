@@ -0,0 +1,105 @@
+package com.coinblesk.customserialization.corpus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+
+public class TrafficGeneratorTest {
+	
+	@Test
+	public void testGenerate() throws Exception {
+		TrafficGenerator generator = new TrafficGenerator(42);
+		generator.setNofKeys(4);
+		generator.setFailureRate(0.2);
+		generator.setDuplicateRate(0.1);
+		generator.setInputCurrencyRate(0.5);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusWriter writer = new CorpusWriter(out);
+		long nofRecords = generator.generate(200, writer);
+		writer.close();
+		
+		Map<MessageType, Integer> counts = new HashMap<MessageType, Integer>();
+		Map<ServerResponseStatus, Integer> statuses = new HashMap<ServerResponseStatus, Integer>();
+		int withInputCurrency = 0;
+		CorpusReader reader = new CorpusReader(new ByteArrayInputStream(out.toByteArray()));
+		CorpusRecord record;
+		long n = 0;
+		while ((record = reader.next()) != null) {
+			n++;
+			increment(counts, record.getMessageType());
+			if (record.getMessageType() == MessageType.SERVER_PAYMENT_REQUEST) {
+				ServerPaymentRequest spr = record.decode();
+				PaymentRequest payer = spr.getPaymentRequestPayer();
+				assertTrue(payer.verify(generator.getPublicKey(payer.getUsernamePayer())));
+				assertTrue(spr.getPaymentRequestPayee().verify(generator.getPublicKey(payer.getUsernamePayee())));
+				if (payer.getInputCurrency() != null)
+					withInputCurrency++;
+			} else if (record.getMessageType() == MessageType.SERVER_PAYMENT_RESPONSE) {
+				ServerPaymentResponse spr = record.decode();
+				assertTrue(spr.getPaymentResponsePayer().verify(generator.getServerPublicKey()));
+				increment(statuses, spr.getPaymentResponsePayer().getStatus());
+			}
+		}
+		reader.close();
+		
+		assertEquals(nofRecords, n);
+		int duplicates = statuses.get(ServerResponseStatus.DUPLICATE_REQUEST);
+		assertEquals(200, counts.get(MessageType.SERVER_PAYMENT_REQUEST).intValue());
+		assertEquals(200 - duplicates, counts.get(MessageType.PAYMENT_REQUEST).intValue());
+		assertEquals(200 - duplicates, counts.get(MessageType.PAYMENT_RESPONSE).intValue());
+		assertTrue(duplicates > 5 && duplicates < 40);
+		assertTrue(statuses.get(ServerResponseStatus.FAILURE) > 10);
+		assertTrue(withInputCurrency > 40);
+	}
+	
+	@Test
+	public void testGenerate_reproducible() throws Exception {
+		byte[][] corpora = new byte[2][];
+		for (int i=0; i<corpora.length; i++) {
+			TrafficGenerator generator = new TrafficGenerator(7);
+			generator.setNofKeys(2);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			CorpusWriter writer = new CorpusWriter(out);
+			generator.generate(20, writer);
+			writer.close();
+			corpora[i] = out.toByteArray();
+		}
+		assertArrayEquals(corpora[0], corpora[1]);
+	}
+	
+	@Test
+	public void testZipfDistribution() {
+		ZipfDistribution zipf = new ZipfDistribution(100, 1.0);
+		Random random = new Random(1);
+		int[] counts = new int[100];
+		for (int i=0; i<100000; i++) {
+			counts[zipf.sample(random)]++;
+		}
+		
+		// the probability of rank k is proportional to 1/(k+1)
+		assertTrue(counts[0] > counts[1]);
+		assertTrue(counts[1] > counts[9]);
+		assertEquals(2.0, (double) counts[0] / counts[1], 0.2);
+		assertEquals(10.0, (double) counts[0] / counts[9], 2.0);
+	}
+	
+	private static <K> void increment(Map<K, Integer> map, K key) {
+		Integer count = map.get(key);
+		map.put(key, count == null ? 1 : count+1);
+	}
+
+}
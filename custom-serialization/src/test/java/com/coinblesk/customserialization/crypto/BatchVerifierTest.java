@@ -0,0 +1,113 @@
+package com.coinblesk.customserialization.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class BatchVerifierTest {
+	
+	@Test
+	public void testInvert() {
+		BigInteger order = ECCurve.BRAINPOOL_P256R1.getOrder();
+		Random random = new Random(42);
+		BigInteger[][] signatures = new BigInteger[10][];
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i=0; i<signatures.length; i++) {
+			signatures[i] = new BigInteger[] { BigInteger.ONE, new BigInteger(255, random).add(BigInteger.ONE) };
+			indexes.add(i);
+		}
+		
+		BigInteger[] inverses = BatchVerifier.invert(order, signatures, indexes);
+		for (int i=0; i<signatures.length; i++) {
+			assertEquals(signatures[i][1].modInverse(order), inverses[i]);
+		}
+	}
+	
+	@Test
+	public void testVerify() throws Exception {
+		KeyPair[] keyPairs = { TestUtils.generateKeyPair(), TestUtils.generateKeyPair() };
+		KeyPair otherKeyPair = TestUtils.generateKeyPair();
+		BatchVerifier batchVerifier = new BatchVerifier();
+		boolean[] expected = new boolean[12];
+		
+		for (int i=0; i<expected.length; i++) {
+			PKIAlgorithm pkiAlgorithm = i % 3 == 0 ? PKIAlgorithm.ECDSA_P1363 : PKIAlgorithm.DEFAULT;
+			KeyPair keyPair = keyPairs[i % keyPairs.length];
+			PaymentRequest pr = new PaymentRequest(pkiAlgorithm, 1, "buyer", "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			
+			expected[i] = i % 4 != 1;
+			if (expected[i]) {
+				PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, pr.encode());
+				batchVerifier.add(decoded, keyPair.getPublic());
+			} else {
+				batchVerifier.add(pr, otherKeyPair.getPublic());
+			}
+		}
+		
+		assertEquals(expected.length, batchVerifier.size());
+		assertArrayEquals(expected, batchVerifier.verify());
+		
+		batchVerifier.clear();
+		assertEquals(0, batchVerifier.verify().length);
+	}
+	
+	@Test
+	public void testVerify_malformed() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		BatchVerifier batchVerifier = new BatchVerifier();
+		for (int i=0; i<3; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			byte[] encoded = pr.encode();
+			if (i == 1) {
+				// the DER sequence tag of the signature
+				encoded[encoded.length - pr.getSignature().length] ^= 0x01;
+			}
+			batchVerifier.add(DecoderFactory.<PaymentRequest>decode(PaymentRequest.class, encoded), keyPair.getPublic());
+		}
+		
+		assertArrayEquals(new boolean[] { true, false, true }, batchVerifier.verify());
+	}
+	
+	@Test
+	public void testVerify_cache() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PrecomputationCache cache = new PrecomputationCache(2);
+		BatchVerifier batchVerifier = new BatchVerifier(cache);
+		
+		for (int i=0; i<5; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			batchVerifier.add(pr, keyPair.getPublic());
+		}
+		
+		for (boolean result : batchVerifier.verify()) {
+			assertTrue(result);
+		}
+		assertEquals(1, cache.getMisses());
+		assertEquals(4, cache.getHits());
+	}
+	
+	@Test(expected=NotSignedException.class)
+	public void testAdd_notSigned() throws Exception {
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 1, System.currentTimeMillis());
+		new BatchVerifier().add(pr, TestUtils.generateKeyPair().getPublic());
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.coinblesk.customserialization.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class BrainpoolProviderTest {
+	
+	private static boolean installed;
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		installed = BrainpoolProvider.install();
+	}
+	
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		if (installed)
+			Security.removeProvider(BrainpoolProvider.NAME);
+	}
+	
+	static KeyPair generateBrainpoolKeyPair() throws Exception {
+		KeyPairGenerator keyGen = KeyPairGenerator.getInstance(PKIAlgorithm.DEFAULT.getKeyPairAlgorithm());
+		keyGen.initialize(new ECGenParameterSpec(PKIAlgorithm.DEFAULT.getKeyPairSpecification()));
+		return keyGen.generateKeyPair();
+	}
+	
+	@Test
+	public void testSignVerify() throws Exception {
+		KeyPair keyPair = generateBrainpoolKeyPair();
+		assertTrue(ECCurve.BRAINPOOL_P256R1.matches(((ECPublicKey) keyPair.getPublic()).getParams()));
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		
+		PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, pr.encode());
+		assertTrue(decoded.verify(keyPair.getPublic()));
+		assertFalse(decoded.verify(generateBrainpoolKeyPair().getPublic()));
+	}
+	
+	@Test
+	public void testSignVerify_p1363() throws Exception {
+		KeyPair keyPair = generateBrainpoolKeyPair();
+		
+		PaymentResponse pr = new PaymentResponse(PKIAlgorithm.ECDSA_P1363, 1, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		assertEquals(64, pr.getSignature().length);
+		assertTrue(pr.verify(keyPair.getPublic()));
+	}
+	
+	@Test
+	public void testKeysOfOtherProviders() throws Exception {
+		KeyPair keyPair = generateBrainpoolKeyPair();
+		
+		// keys parsed by the JDK carry the same curve parameters
+		KeyFactory keyFactory = KeyFactory.getInstance("EC");
+		ECPublicKey publicKey = (ECPublicKey) keyFactory.generatePublic(new X509EncodedKeySpec(keyPair.getPublic().getEncoded()));
+		assertEquals(((ECPublicKey) keyPair.getPublic()).getW(), publicKey.getW());
+		assertArrayEquals(keyPair.getPublic().getEncoded(), publicKey.getEncoded());
+		
+		BigInteger s = ((ECPrivateKey) keyPair.getPrivate()).getS();
+		PrivateKey privateKey = keyFactory.generatePrivate(new ECPrivateKeySpec(s, publicKey.getParams()));
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(privateKey);
+		assertTrue(pr.verify(publicKey));
+	}
+	
+	@Test
+	public void testOtherCurvesFallBack() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		assertTrue(pr.verify(keyPair.getPublic()));
+	}
+
+}
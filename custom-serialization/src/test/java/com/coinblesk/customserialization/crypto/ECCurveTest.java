@@ -0,0 +1,178 @@
+package com.coinblesk.customserialization.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.ECDSASignatureConverter;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class ECCurveTest {
+	
+	@Test
+	public void testFieldArithmetic() {
+		MontgomeryField field = ECCurve.BRAINPOOL_P256R1.getField();
+		BigInteger p = field.getModulus();
+		Random random = new Random(42);
+		
+		for (int i=0; i<200; i++) {
+			BigInteger a = new BigInteger(256, random).mod(p);
+			BigInteger b = new BigInteger(256, random).mod(p);
+			long[] am = field.toMontgomery(a);
+			long[] bm = field.toMontgomery(b);
+			long[] r = new long[MontgomeryField.LIMBS];
+			
+			field.multiply(am, bm, r);
+			assertEquals(a.multiply(b).mod(p), field.fromMontgomery(r));
+			field.add(am, bm, r);
+			assertEquals(a.add(b).mod(p), field.fromMontgomery(r));
+			field.subtract(am, bm, r);
+			assertEquals(a.subtract(b).mod(p), field.fromMontgomery(r));
+			if (a.signum() != 0) {
+				field.invert(am, r);
+				assertEquals(a.modInverse(p), field.fromMontgomery(r));
+			}
+		}
+	}
+	
+	@Test
+	public void testParametersMatchJDK() throws Exception {
+		assertTrue(ECCurve.BRAINPOOL_P256R1.matches(getJDKParameters("brainpoolP256r1")));
+		assertTrue(ECCurve.SECP256R1.matches(getJDKParameters("secp256r1")));
+		assertFalse(ECCurve.SECP256R1.matches(getJDKParameters("brainpoolP256r1")));
+	}
+	
+	private static ECParameterSpec getJDKParameters(String name) throws Exception {
+		AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+		parameters.init(new ECGenParameterSpec(name));
+		return parameters.getParameterSpec(ECParameterSpec.class);
+	}
+	
+	@Test
+	public void testGeneratorOrder() {
+		for (ECCurve curve : new ECCurve[] { ECCurve.BRAINPOOL_P256R1, ECCurve.SECP256R1 }) {
+			ECCurve.AffinePoint g = curve.toAffine(curve.getParameterSpec().getGenerator());
+			assertTrue(curve.multiply(g, curve.getOrder()).isInfinity());
+			assertTrue(curve.multiplyGenerator(curve.getOrder()).isInfinity());
+			
+			BigInteger k = curve.getOrder().subtract(BigInteger.ONE);
+			assertEquals(curve.toECPoint(curve.toAffine(curve.multiply(g, k))), curve.toECPoint(curve.toAffine(curve.multiplyGenerator(k))));
+		}
+	}
+	
+	@Test
+	public void testAddComplete() {
+		for (ECCurve curve : new ECCurve[] { ECCurve.BRAINPOOL_P256R1, ECCurve.SECP256R1 }) {
+			MontgomeryField field = curve.getField();
+			ECCurve.AffinePoint g = curve.toAffine(curve.getParameterSpec().getGenerator());
+			ECCurve.AffinePoint g2 = curve.toAffine(curve.multiply(g, BigInteger.valueOf(2)));
+			ECCurve.AffinePoint g3 = curve.toAffine(curve.multiply(g, BigInteger.valueOf(3)));
+			ECCurve.ProjectivePoint infinity = new ECCurve.ProjectivePoint();
+			System.arraycopy(field.one(), 0, infinity.y, 0, MontgomeryField.LIMBS);
+			
+			// p + q, p + p and p + 0
+			ECCurve.ProjectivePoint r = new ECCurve.ProjectivePoint();
+			curve.addComplete(new ECCurve.ProjectivePoint(g, field.one()), new ECCurve.ProjectivePoint(g2, field.one()), r);
+			assertEquals(curve.toECPoint(g3), toECPoint(curve, r));
+			curve.addComplete(new ECCurve.ProjectivePoint(g, field.one()), new ECCurve.ProjectivePoint(g, field.one()), r);
+			assertEquals(curve.toECPoint(g2), toECPoint(curve, r));
+			curve.addComplete(infinity, new ECCurve.ProjectivePoint(g, field.one()), r);
+			assertEquals(curve.getParameterSpec().getGenerator(), toECPoint(curve, r));
+			
+			// p + (-p) = 0
+			long[] minusY = new long[MontgomeryField.LIMBS];
+			field.subtract(new long[MontgomeryField.LIMBS], g.y, minusY);
+			curve.addComplete(new ECCurve.ProjectivePoint(g, field.one()), new ECCurve.ProjectivePoint(new ECCurve.AffinePoint(g.x, minusY), field.one()), r);
+			assertTrue(field.isZero(r.z));
+		}
+	}
+	
+	private static ECPoint toECPoint(ECCurve curve, ECCurve.ProjectivePoint point) {
+		MontgomeryField field = curve.getField();
+		long[] zInverse = new long[MontgomeryField.LIMBS];
+		field.invert(point.z, zInverse);
+		long[] x = new long[MontgomeryField.LIMBS];
+		long[] y = new long[MontgomeryField.LIMBS];
+		field.multiply(point.x, zInverse, x);
+		field.multiply(point.y, zInverse, y);
+		return curve.toECPoint(new ECCurve.AffinePoint(x, y));
+	}
+	
+	@Test
+	public void testMultiplyGeneratorSecret() {
+		Random random = new Random(7);
+		for (ECCurve curve : new ECCurve[] { ECCurve.BRAINPOOL_P256R1, ECCurve.SECP256R1 }) {
+			BigInteger n = curve.getOrder();
+			BigInteger[] scalars = { BigInteger.ONE, BigInteger.valueOf(2), n.subtract(BigInteger.ONE), new BigInteger(255, random), new BigInteger(256, random).mod(n) };
+			for (BigInteger k : scalars) {
+				assertEquals(curve.toECPoint(curve.toAffine(curve.multiplyGenerator(k))), curve.toECPoint(curve.multiplyGeneratorSecret(k)));
+			}
+		}
+	}
+	
+	@Test
+	public void testInteroperabilityWithJDK() throws Exception {
+		// secp256r1 is still supported by the JDK and uses the same code paths
+		ECCurve curve = ECCurve.SECP256R1;
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+		BigInteger privateKey = ((ECPrivateKey) keyPair.getPrivate()).getS();
+		
+		ECCurve.AffinePoint w = curve.toAffine(curve.multiplyGenerator(privateKey));
+		assertEquals(publicKey.getW(), curve.toECPoint(w));
+		
+		byte[] data = "payload".getBytes("UTF-8");
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+		
+		for (int i=0; i<10; i++) {
+			Signature sig = Signature.getInstance("SHA256withECDSA");
+			sig.initSign(keyPair.getPrivate());
+			sig.update(data);
+			byte[] p1363 = ECDSASignatureConverter.toP1363(sig.sign(), 64);
+			BigInteger r = new BigInteger(1, Arrays.copyOfRange(p1363, 0, 32));
+			BigInteger s = new BigInteger(1, Arrays.copyOfRange(p1363, 32, 64));
+			assertTrue(curve.verify(curve.toAffine(publicKey.getW()), null, digest, r, s));
+			assertFalse(curve.verify(curve.toAffine(publicKey.getW()), null, digest, r, s.add(BigInteger.ONE)));
+			
+			BigInteger[] rs = curve.sign(privateKey, digest, new SecureRandom());
+			System.arraycopy(toBytes(rs[0]), 0, p1363, 0, 32);
+			System.arraycopy(toBytes(rs[1]), 0, p1363, 32, 32);
+			verifyWithJDK(publicKey, data, ECDSASignatureConverter.toDER(p1363));
+		}
+	}
+	
+	private static byte[] toBytes(BigInteger value) {
+		byte[] bytes = value.toByteArray();
+		byte[] result = new byte[32];
+		int length = Math.min(bytes.length, 32);
+		System.arraycopy(bytes, bytes.length - length, result, 32 - length, length);
+		return result;
+	}
+	
+	private static void verifyWithJDK(ECPublicKey publicKey, byte[] data, byte[] signature) throws Exception {
+		KeyFactory keyFactory = KeyFactory.getInstance("EC");
+		Signature sig = Signature.getInstance("SHA256withECDSA");
+		sig.initVerify(keyFactory.generatePublic(new ECPublicKeySpec(publicKey.getW(), publicKey.getParams())));
+		sig.update(data);
+		assertTrue(sig.verify(signature));
+	}
+
+}
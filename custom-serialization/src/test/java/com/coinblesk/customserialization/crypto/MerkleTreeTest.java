@@ -0,0 +1,89 @@
+package com.coinblesk.customserialization.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+public class MerkleTreeTest {
+	
+	@Test
+	public void testProofs() throws IllegalArgumentException {
+		for (int nofLeaves=1; nofLeaves<=17; nofLeaves++) {
+			List<byte[]> leaves = createLeaves(nofLeaves);
+			MerkleTree tree = new MerkleTree(leaves);
+			assertEquals(nofLeaves, tree.getNofLeaves());
+			
+			for (int i=0; i<nofLeaves; i++) {
+				byte[][] proof = tree.getProof(i);
+				assertEquals(MerkleTree.getProofLength(i, nofLeaves), proof.length);
+				assertArrayEquals(tree.getRoot(), MerkleTree.computeRoot(leaves.get(i), i, nofLeaves, proof));
+			}
+		}
+	}
+	
+	@Test
+	public void testProofs_wrongLeaf() throws IllegalArgumentException {
+		List<byte[]> leaves = createLeaves(5);
+		MerkleTree tree = new MerkleTree(leaves);
+		
+		byte[][] proof = tree.getProof(2);
+		assertFalse(Arrays.equals(tree.getRoot(), MerkleTree.computeRoot(leaves.get(3), 2, 5, proof)));
+		assertFalse(Arrays.equals(tree.getRoot(), MerkleTree.computeRoot(leaves.get(2), 3, 5, proof)));
+	}
+	
+	@Test
+	public void testComputeRoot_IllegalArgumentException() throws IllegalArgumentException {
+		List<byte[]> leaves = createLeaves(4);
+		MerkleTree tree = new MerkleTree(leaves);
+		byte[][] proof = tree.getProof(0);
+		
+		boolean exceptionThrown = false;
+		try {
+			MerkleTree.computeRoot(leaves.get(0), 0, 4, Arrays.copyOf(proof, proof.length-1));
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+		exceptionThrown = false;
+		
+		try {
+			MerkleTree.computeRoot(leaves.get(0), 4, 4, proof);
+		} catch (IllegalArgumentException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+	
+	@Test
+	public void testLeafIsNotNode() throws IllegalArgumentException {
+		List<byte[]> leaves = createLeaves(2);
+		MerkleTree tree = new MerkleTree(leaves);
+		
+		// the concatenation of the two leaf hashes is not accepted as a leaf
+		byte[][] proof0 = tree.getProof(1);
+		byte[][] proof1 = tree.getProof(0);
+		byte[] concatenated = new byte[2*MerkleTree.HASH_LENGTH];
+		System.arraycopy(proof0[0], 0, concatenated, 0, MerkleTree.HASH_LENGTH);
+		System.arraycopy(proof1[0], 0, concatenated, MerkleTree.HASH_LENGTH, MerkleTree.HASH_LENGTH);
+		MerkleTree single = new MerkleTree(Arrays.asList(concatenated));
+		assertFalse(Arrays.equals(tree.getRoot(), single.getRoot()));
+	}
+	
+	private static List<byte[]> createLeaves(int nofLeaves) {
+		List<byte[]> leaves = new ArrayList<byte[]>();
+		for (int i=0; i<nofLeaves; i++) {
+			leaves.add(new byte[] { (byte) i, (byte) (i*7) });
+		}
+		return leaves;
+	}
+
+}
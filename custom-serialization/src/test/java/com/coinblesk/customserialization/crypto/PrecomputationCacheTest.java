@@ -0,0 +1,109 @@
+package com.coinblesk.customserialization.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.exceptions.NotSignedException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class PrecomputationCacheTest {
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testConstructor() throws Exception {
+		new PrecomputationCache(0);
+	}
+	
+	@Test
+	public void testVerify() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PrecomputationCache cache = new PrecomputationCache(4);
+		
+		for (int i=1; i<=5; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			PaymentRequest decoded = DecoderFactory.decode(PaymentRequest.class, pr.encode());
+			assertTrue(decoded.verify(keyPair.getPublic(), cache));
+		}
+		
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getMisses());
+		assertEquals(4, cache.getHits());
+	}
+	
+	@Test
+	public void testVerify_p1363() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PrecomputationCache cache = new PrecomputationCache(4);
+		
+		PaymentResponse pr = new PaymentResponse(PKIAlgorithm.ECDSA_P1363, 1, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		assertTrue(pr.verify(keyPair.getPublic(), cache));
+		assertTrue(pr.verify(keyPair.getPublic(), cache));
+		
+		// the same key with another PKIAlgorithm gets its own entry
+		PaymentResponse pr2 = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr2.sign(keyPair.getPrivate());
+		assertTrue(pr2.verify(keyPair.getPublic(), cache));
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testVerify_invalidSignature() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		KeyPair otherKeyPair = TestUtils.generateKeyPair();
+		PrecomputationCache cache = new PrecomputationCache(4);
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.ECDSA_P1363, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		assertFalse(pr.verify(otherKeyPair.getPublic(), cache));
+		
+		byte[] encoded = pr.encode();
+		encoded[5] ^= 0x01;
+		PaymentRequest tampered = DecoderFactory.decode(PaymentRequest.class, encoded);
+		assertFalse(tampered.verify(keyPair.getPublic(), cache));
+		assertTrue(pr.verify(keyPair.getPublic(), cache));
+	}
+	
+	@Test
+	public void testEviction() throws Exception {
+		PrecomputationCache cache = new PrecomputationCache(2);
+		KeyPair[] keyPairs = { TestUtils.generateKeyPair(), TestUtils.generateKeyPair(), TestUtils.generateKeyPair() };
+		PaymentRequest[] requests = new PaymentRequest[keyPairs.length];
+		for (int i=0; i<keyPairs.length; i++) {
+			requests[i] = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+			requests[i].sign(keyPairs[i].getPrivate());
+		}
+		
+		assertTrue(requests[0].verify(keyPairs[0].getPublic(), cache));
+		assertTrue(requests[1].verify(keyPairs[1].getPublic(), cache));
+		// key 0 becomes the most recently used one, so key 1 is evicted
+		assertTrue(requests[0].verify(keyPairs[0].getPublic(), cache));
+		assertTrue(requests[2].verify(keyPairs[2].getPublic(), cache));
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getMisses());
+		
+		assertTrue(requests[0].verify(keyPairs[0].getPublic(), cache));
+		assertEquals(3, cache.getMisses());
+		assertTrue(requests[1].verify(keyPairs[1].getPublic(), cache));
+		assertEquals(4, cache.getMisses());
+	}
+	
+	@Test(expected=NotSignedException.class)
+	public void testVerify_notSigned() throws Exception {
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.verify(TestUtils.generateKeyPair().getPublic(), new PrecomputationCache(1));
+	}
+
+}
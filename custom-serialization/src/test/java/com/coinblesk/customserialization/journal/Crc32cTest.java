@@ -0,0 +1,40 @@
+package com.coinblesk.customserialization.journal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Crc32cTest {
+	
+	@Test
+	public void testCheckValue() {
+		byte[] bytes = "123456789".getBytes(Charset.forName("US-ASCII"));
+		assertEquals(0xE3069283L, Crc32c.compute(bytes, 0, bytes.length) & 0xFFFFFFFFL);
+		assertEquals(0, Crc32c.compute(bytes, 0, 0));
+	}
+	
+	@Test
+	public void testUpdate() {
+		byte[] bytes = new byte[1000];
+		new Random(42).nextBytes(bytes);
+		
+		for (int offset=0; offset<16; offset++) {
+			Crc32c bytewise = new Crc32c();
+			for (int i=offset; i<bytes.length; i++) {
+				bytewise.update(bytes[i]);
+			}
+			assertEquals(bytewise.getValue(), Crc32c.compute(bytes, offset, bytes.length - offset) & 0xFFFFFFFFL);
+		}
+		
+		Crc32c crc = new Crc32c();
+		crc.update(bytes);
+		crc.reset();
+		crc.update(bytes, 0, 500);
+		crc.update(bytes, 500, 500);
+		assertEquals(Crc32c.compute(bytes, 0, bytes.length) & 0xFFFFFFFFL, crc.getValue());
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.coinblesk.customserialization.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class JournalIndexTest {
+	
+	private static final long START = 1420070400000L;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testFind() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 1 << 16);
+		JournalIndex index = new JournalIndex(directory, 8);
+		
+		for (int i=0; i<1200; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+(i % 700), "seller"+(i % 7), Currency.BTC, i+1, START + i*1000);
+			pr.sign(keyPair.getPrivate());
+			if (i % 3 == 0)
+				journal.append(new ServerPaymentRequest(pr));
+			else
+				journal.append(pr);
+			journal.append(MessageType.PAYMENT_RESPONSE, new byte[] { 1 });
+			
+			if (i == 500) {
+				// incremental update, reopening the index
+				index.update(journal.getDurablePosition());
+				index.close();
+				index = new JournalIndex(directory, 8);
+			}
+		}
+		journal.close();
+		index.update();
+		assertEquals(journal.getPosition(), index.getIndexedPosition());
+		
+		assertFind(directory, index, "seller3", START + 100000, START + 400000);
+		assertFind(directory, index, "buyer5", 0, Long.MAX_VALUE);
+		assertFind(directory, index, "buyer699", START, START + 699000);
+		assertFind(directory, index, "nobody", 0, Long.MAX_VALUE);
+		assertEquals(2, index.find("buyer5", 0, Long.MAX_VALUE).size());
+		
+		List<JournalRecord> range = index.find(START + 10000, START + 19000);
+		assertEquals(10, range.size());
+		for (JournalRecord record : range) {
+			assertTrue(record.getMessageType() != MessageType.PAYMENT_RESPONSE);
+		}
+		index.close();
+	}
+	
+	@Test
+	public void testFind_hotUser() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 1 << 16);
+		JournalIndex index = new JournalIndex(directory, 8);
+		
+		for (int i=0; i<3000; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+(i % 3), "merchant", Currency.BTC, i+1, START + i*1000);
+			pr.sign(keyPair.getPrivate());
+			journal.append(pr);
+		}
+		journal.close();
+		index.update();
+		
+		// one slot per distinct username, so the table has not been grown
+		assertEquals(16 + 1024 * 16, new File(directory, JournalIndex.USERNAME_FILE_NAME).length());
+		assertEquals(3000, index.find("merchant", 0, Long.MAX_VALUE).size());
+		assertFind(directory, index, "merchant", START + 500000, START + 600000);
+		assertFind(directory, index, "buyer1", START, START + 2000000);
+		index.close();
+		
+		index = new JournalIndex(directory, 8);
+		assertEquals(1000, index.find("buyer2", 0, Long.MAX_VALUE).size());
+		index.close();
+	}
+	
+	private static void assertFind(File directory, JournalIndex index, String username, long from, long to) throws Exception {
+		List<Long> expected = new ArrayList<Long>();
+		JournalReader reader = new JournalReader(directory);
+		JournalRecord record;
+		while ((record = reader.next()) != null) {
+			PaymentRequest pr;
+			if (record.getMessageType() == MessageType.PAYMENT_REQUEST)
+				pr = record.decode();
+			else if (record.getMessageType() == MessageType.SERVER_PAYMENT_REQUEST)
+				pr = record.<ServerPaymentRequest>decode().getPaymentRequestPayer();
+			else
+				continue;
+			
+			if (pr.getTimestamp() >= from && pr.getTimestamp() <= to && (pr.getUsernamePayer().equals(username) || pr.getUsernamePayee().equals(username)))
+				expected.add(record.getPosition());
+		}
+		
+		List<Long> actual = new ArrayList<Long>();
+		for (JournalRecord r : index.find(username, from, to)) {
+			actual.add(r.getPosition());
+		}
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void testHash() {
+		assertEquals(0xCBF29CE484222325L, JournalIndex.hash(""));
+		assertEquals(0xAF63DC4C8601EC8CL, JournalIndex.hash("a"));
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.coinblesk.customserialization.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class JournalScannerTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static final RecordCollector<List<Long>> POSITIONS = new RecordCollector<List<Long>>() {
+		@Override
+		public List<Long> supply() {
+			return new ArrayList<Long>();
+		}
+		
+		@Override
+		public void accumulate(List<Long> container, JournalRecord record) {
+			container.add(record.getPosition());
+		}
+		
+		@Override
+		public List<Long> combine(List<Long> left, List<Long> right) {
+			left.addAll(right);
+			return left;
+		}
+	};
+	
+	@Test
+	public void testScan() throws Exception {
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 1024);
+		for (int i=0; i<5000; i++) {
+			journal.append(MessageType.PAYMENT_RESPONSE, new byte[1 + i%20]);
+		}
+		journal.close();
+		
+		List<Long> expected = new ArrayList<Long>();
+		JournalReader reader = new JournalReader(directory);
+		JournalRecord record;
+		while ((record = reader.next()) != null) {
+			expected.add(record.getPosition());
+		}
+		assertEquals(5000, expected.size());
+		
+		JournalScanner scanner = new JournalScanner(directory);
+		scanner.setSplitSize(7);
+		assertEquals(expected, scanner.scan(POSITIONS));
+	}
+	
+	@Test
+	public void testScan_decode() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 4096);
+		long total = 0;
+		for (int i=0; i<100; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(keyPair.getPrivate());
+			journal.append(pr);
+			journal.append(MessageType.PAYMENT_RESPONSE, new byte[] { 1 });
+			total += i+1;
+		}
+		journal.close();
+		
+		JournalScanner scanner = new JournalScanner(directory);
+		scanner.setSplitSize(3);
+		long[] sum = scanner.scan(new RecordCollector<long[]>() {
+			@Override
+			public long[] supply() {
+				return new long[1];
+			}
+			
+			@Override
+			public void accumulate(long[] container, JournalRecord record) throws Exception {
+				if (record.getMessageType() == MessageType.PAYMENT_REQUEST)
+					container[0] += record.<PaymentRequest>decode().getAmount();
+			}
+			
+			@Override
+			public long[] combine(long[] left, long[] right) {
+				left[0] += right[0];
+				return left;
+			}
+		});
+		assertEquals(total, sum[0]);
+	}
+	
+	@Test
+	public void testScan_corrupt() throws Exception {
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 1024);
+		for (int i=0; i<10; i++) {
+			journal.append(MessageType.PAYMENT_RESPONSE, new byte[] { 1, 2, 3 });
+		}
+		journal.close();
+		
+		RandomAccessFile file = new RandomAccessFile(new File(directory, directory.list()[0]), "rw");
+		file.seek(JournalSegment.RECORD_HEADER_LENGTH);
+		file.write(4);
+		file.close();
+		
+		boolean exceptionThrown = false;
+		try {
+			new JournalScanner(directory).scan(POSITIONS);
+		} catch (IOException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+	
+	@Test
+	public void testScan_collectorFails() throws Exception {
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 1024);
+		journal.append(MessageType.PAYMENT_RESPONSE, new byte[] { 1, 2, 3 });
+		journal.close();
+		
+		boolean exceptionThrown = false;
+		try {
+			new JournalScanner(directory).scan(new RecordCollector<Object>() {
+				@Override
+				public Object supply() {
+					return null;
+				}
+				
+				@Override
+				public void accumulate(Object container, JournalRecord record) throws Exception {
+					record.decode();
+				}
+				
+				@Override
+				public Object combine(Object left, Object right) {
+					return null;
+				}
+			});
+		} catch (ExecutionException e) {
+			exceptionThrown = true;
+		}
+		assertTrue(exceptionThrown);
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.coinblesk.customserialization.journal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.corpus.MessageType;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class JournalTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testAppendRead() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 4096);
+		long position = journal.appendAndSync(pr);
+		assertEquals(position, journal.getDurablePosition());
+		journal.append(MessageType.PAYMENT_RESPONSE, new byte[] { 1, 2, 3 });
+		journal.close();
+		
+		JournalReader reader = new JournalReader(directory);
+		JournalRecord record = reader.next();
+		assertEquals(0, record.getPosition());
+		assertEquals(MessageType.PAYMENT_REQUEST, record.getMessageType());
+		assertEquals(pr, record.<PaymentRequest>decode());
+		record = reader.next();
+		assertEquals(position, record.getPosition());
+		assertEquals(MessageType.PAYMENT_RESPONSE, record.getMessageType());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, record.getBytes());
+		assertNull(reader.next());
+	}
+	
+	@Test
+	public void testConcurrentAppend() throws Exception {
+		File directory = folder.newFolder();
+		final Journal journal = new Journal(directory, 4096);
+		final int nofThreads = 8;
+		final int nofRecords = 500;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t=0; t<nofThreads; t++) {
+			final int thread = t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i=0; i<nofRecords; i++) {
+							long position = journal.append(MessageType.PAYMENT_REQUEST, newMessage(thread, i));
+							journal.sync(position);
+							assertTrue(journal.getDurablePosition() >= position);
+						}
+					} catch (Throwable e) {
+						failure.set(e);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		assertTrue(journal.getNofForces() <= nofThreads * nofRecords);
+		assertTrue(directory.list().length > 1);
+		journal.close();
+		
+		Set<String> messages = new HashSet<String>();
+		JournalReader reader = new JournalReader(directory);
+		JournalRecord record;
+		long lastPosition = -1;
+		while ((record = reader.next()) != null) {
+			assertTrue(record.getPosition() > lastPosition);
+			lastPosition = record.getPosition();
+			messages.add(new String(record.getBytes(), "UTF-8"));
+		}
+		assertEquals(nofThreads * nofRecords, messages.size());
+		for (int t=0; t<nofThreads; t++) {
+			for (int i=0; i<nofRecords; i++) {
+				assertTrue(messages.contains(new String(newMessage(t, i), "UTF-8")));
+			}
+		}
+	}
+	
+	private static byte[] newMessage(int thread, int i) throws Exception {
+		StringBuilder sb = new StringBuilder(thread+"-"+i+"-");
+		for (int j=0; j<i%50; j++) {
+			sb.append('x');
+		}
+		return sb.toString().getBytes("UTF-8");
+	}
+	
+	@Test
+	public void testRecovery() throws Exception {
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 4096);
+		journal.append(MessageType.PAYMENT_REQUEST, new byte[] { 1 });
+		long position = journal.append(MessageType.PAYMENT_REQUEST, new byte[] { 2 });
+		journal.append(MessageType.PAYMENT_REQUEST, new byte[] { 3 });
+		journal.close();
+		
+		// corrupt the last record as if it had been torn by a crash
+		RandomAccessFile file = new RandomAccessFile(new File(directory, directory.list()[0]), "rw");
+		file.seek(position + JournalSegment.RECORD_HEADER_LENGTH);
+		file.write(4);
+		file.close();
+		
+		journal = new Journal(directory, 4096);
+		assertEquals(position, journal.getPosition());
+		journal.append(MessageType.PAYMENT_RESPONSE, new byte[] { 5 });
+		journal.close();
+		
+		JournalReader reader = new JournalReader(directory);
+		assertArrayEquals(new byte[] { 1 }, reader.next().getBytes());
+		assertArrayEquals(new byte[] { 2 }, reader.next().getBytes());
+		JournalRecord record = reader.next();
+		assertEquals(MessageType.PAYMENT_RESPONSE, record.getMessageType());
+		assertArrayEquals(new byte[] { 5 }, record.getBytes());
+		assertNull(reader.next());
+	}
+	
+	@Test
+	public void testRecovery_sealedSegment() throws Exception {
+		File directory = folder.newFolder();
+		Journal journal = new Journal(directory, 64);
+		for (int i=0; i<5; i++) {
+			journal.append(MessageType.PAYMENT_REQUEST, new byte[40]);
+		}
+		long position = journal.getPosition();
+		journal.close();
+		assertEquals(5, directory.list().length);
+		
+		journal = new Journal(directory, 64);
+		assertEquals(position, journal.getPosition());
+		journal.close();
+		
+		JournalReader reader = new JournalReader(directory);
+		for (int i=0; i<5; i++) {
+			assertEquals(i * 64, reader.next().getPosition());
+		}
+		assertNull(reader.next());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testAppend_tooLarge() throws Exception {
+		Journal journal = new Journal(folder.newFolder(), 64);
+		try {
+			journal.append(MessageType.PAYMENT_REQUEST, new byte[64]);
+		} finally {
+			journal.close();
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.coinblesk.customserialization.reconciliation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DigestTableTest {
+	
+	@Test
+	public void testAddRemove() {
+		DigestTable<String> table = new DigestTable<String>();
+		for (int i=0; i<1000; i++) {
+			// digests which share the slot bits
+			table.add((long) (i % 100) << 40, "v"+i);
+		}
+		assertEquals(1000, table.size());
+		
+		long digest = 7L << 40;
+		int e = table.first(digest);
+		for (int i=7; i<1000; i+=100) {
+			assertEquals("v"+i, table.get(e));
+			e = table.next(e);
+		}
+		assertEquals(-1, e);
+		
+		// remove the second and the first entry, the order of the others is kept
+		table.remove(digest, table.next(table.first(digest)));
+		table.remove(digest, table.first(digest));
+		assertEquals("v207", table.get(table.first(digest)));
+		assertEquals(998, table.size());
+		
+		for (e=table.first(digest); e>=0; e=table.first(digest)) {
+			table.remove(digest, e);
+		}
+		assertEquals(-1, table.first(digest));
+		assertEquals(990, table.size());
+		
+		// the freed entries are reused, the new value is appended
+		table.add(digest, "new");
+		table.add(digest, "newer");
+		assertEquals("new", table.get(table.first(digest)));
+		assertEquals("newer", table.get(table.next(table.first(digest))));
+		assertEquals(-1, table.first(12345));
+		
+		table.clear();
+		assertEquals(0, table.size());
+		assertEquals(-1, table.first(digest));
+	}
+
+}
@@ -0,0 +1,204 @@
+package com.coinblesk.customserialization.reconciliation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.SignedSerializableObject;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class ReconcilerTest {
+	
+	private static final long START = 1420070400000L;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static List<SignedSerializableObject> messages;
+	
+	/**
+	 * 400 answered requests, 30 orphaned requests (every second one with an
+	 * answered twin) and 20 orphaned responses, shuffled.
+	 */
+	@BeforeClass
+	public static void createMessages() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		messages = new ArrayList<SignedSerializableObject>();
+		for (int i=0; i<450; i++) {
+			long timestamp = START + (i < 430 && i >= 400 && i % 2 == 0 ? i - 400 : i) * 1000;
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+(i % 400 % 17), "seller"+(i % 400 % 5), Currency.BTC, 100 + i % 400, timestamp);
+			if (i < 430) {
+				pr.sign(keyPair.getPrivate());
+				messages.add(pr);
+			}
+			if (i < 400 || i >= 430) {
+				PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp());
+				response.sign(keyPair.getPrivate());
+				messages.add(response);
+			}
+		}
+		Collections.shuffle(messages, new Random(1));
+	}
+	
+	@Test
+	public void testReconcile() throws Exception {
+		Reconciler reconciler = new Reconciler(new CheckingListener());
+		reconcile(reconciler);
+	}
+	
+	@Test
+	public void testReconcile_spill() throws Exception {
+		Reconciler reconciler = new Reconciler(new CheckingListener());
+		reconciler.setMemoryLimit(3000);
+		reconciler.setNofPartitions(4);
+		reconciler.setTempDirectory(folder.getRoot());
+		reconcile(reconciler);
+		assertEquals(0, folder.getRoot().list().length);
+	}
+	
+	private static void reconcile(Reconciler reconciler) throws Exception {
+		for (SignedSerializableObject message : messages) {
+			if (message instanceof PaymentRequest)
+				reconciler.add((PaymentRequest) message);
+			else
+				reconciler.add((PaymentResponse) message);
+		}
+		reconciler.finish();
+		
+		// the twins of the orphaned requests may be matched instead of them
+		assertEquals(400, reconciler.getNofMatches());
+		assertEquals(30, reconciler.getNofOrphanedRequests());
+		assertEquals(20, reconciler.getNofOrphanedResponses());
+	}
+	
+	@Test
+	public void testReconcile_duplicates() throws Exception {
+		final List<String> matched = new ArrayList<String>();
+		Reconciler reconciler = new Reconciler(new CheckingListener() {
+			@Override
+			public void onMatch(PaymentRequest paymentRequest, PaymentResponse paymentResponse) {
+				super.onMatch(paymentRequest, paymentResponse);
+				matched.add(paymentRequest.getUsernamePayer());
+			}
+		});
+		
+		PaymentRequest first = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 1, START);
+		PaymentRequest second = new PaymentRequest(PKIAlgorithm.DEFAULT, 2, "buyer", "seller", Currency.BTC, 1, START);
+		PaymentResponse response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 1, START);
+		reconciler.add(first);
+		reconciler.add(second);
+		reconciler.add(response);
+		reconciler.finish();
+		
+		assertEquals(1, reconciler.getNofMatches());
+		assertEquals(1, reconciler.getNofOrphanedRequests());
+		assertEquals(0, reconciler.getNofOrphanedResponses());
+		assertEquals(1, matched.size());
+	}
+	
+	@Test
+	public void testReconcile_byReference() throws Exception {
+		reconcileByReference(new Reconciler(new CheckingListener()));
+	}
+	
+	@Test
+	public void testReconcile_byReferenceSpill() throws Exception {
+		Reconciler reconciler = new Reconciler(new CheckingListener());
+		reconciler.setMemoryLimit(3000);
+		reconciler.setNofPartitions(4);
+		reconciler.setTempDirectory(folder.getRoot());
+		reconcileByReference(reconciler);
+		assertEquals(0, folder.getRoot().list().length);
+	}
+	
+	/**
+	 * 100 requests answered by their fields, 80 answered by reference, 20
+	 * orphaned requests and 10 orphaned responses by reference, shuffled.
+	 */
+	private static void reconcileByReference(Reconciler reconciler) throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		List<SignedSerializableObject> messages = new ArrayList<SignedSerializableObject>();
+		for (int i=0; i<210; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+(i % 13), "seller"+(i % 3), Currency.BTC, 100 + i, START + i * 1000);
+			pr.sign(keyPair.getPrivate());
+			if (i < 200)
+				messages.add(pr);
+			
+			PaymentResponse response;
+			if (i < 100)
+				response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, pr.getUsernamePayer(), pr.getUsernamePayee(), pr.getCurrency(), pr.getAmount(), pr.getTimestamp());
+			else if (i < 180 || i >= 200)
+				response = new PaymentResponse(PKIAlgorithm.DEFAULT, 1, ServerResponseStatus.SUCCESS, null, pr);
+			else
+				continue;
+			response.sign(keyPair.getPrivate());
+			messages.add(response);
+		}
+		Collections.shuffle(messages, new Random(2));
+		
+		for (SignedSerializableObject message : messages) {
+			if (message instanceof PaymentRequest)
+				reconciler.add((PaymentRequest) message);
+			else
+				reconciler.add((PaymentResponse) message);
+		}
+		reconciler.finish();
+		
+		assertEquals(180, reconciler.getNofMatches());
+		assertEquals(20, reconciler.getNofOrphanedRequests());
+		assertEquals(10, reconciler.getNofOrphanedResponses());
+	}
+	
+	@Test
+	public void testDigest() {
+		long digest = Reconciler.digest("a", "bc", Currency.BTC, 1, 2);
+		assertEquals(digest, Reconciler.digest("a", "bc", Currency.BTC, 1, 2));
+		assertTrue(digest != Reconciler.digest("ab", "c", Currency.BTC, 1, 2));
+		assertTrue(digest != Reconciler.digest("a", "bc", Currency.BTC, 2, 1));
+	}
+	
+	private static class CheckingListener implements ReconciliationListener {
+		@Override
+		public void onMatch(PaymentRequest pr, PaymentResponse response) {
+			if (response.isByReference()) {
+				try {
+					assertTrue(response.matchesRequest(pr));
+				} catch (IllegalArgumentException e) {
+					fail(e.getMessage());
+				}
+				return;
+			}
+			assertEquals(pr.getUsernamePayer(), response.getUsernamePayer());
+			assertEquals(pr.getUsernamePayee(), response.getUsernamePayee());
+			assertEquals(pr.getCurrency(), response.getCurrency());
+			assertEquals(pr.getAmount(), response.getAmount());
+			assertEquals(pr.getTimestamp(), response.getTimestamp());
+		}
+		
+		@Override
+		public void onOrphanedRequest(PaymentRequest paymentRequest) {
+		}
+		
+		@Override
+		public void onOrphanedResponse(PaymentResponse paymentResponse) {
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.coinblesk.customserialization.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.DecoderFactory;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentRequest;
+import com.coinblesk.customserialization.ServerPaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.concurrent.PaymentRequestKeyResolver;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class PaymentServerTest {
+	
+	@Test
+	public void testLoad() throws Exception {
+		final KeyPair client = TestUtils.generateKeyPair();
+		KeyPair server = TestUtils.generateKeyPair();
+		PaymentServer paymentServer = new PaymentServer(new PaymentRequestKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PaymentRequest paymentRequest, int index) {
+				return client.getPublic();
+			}
+		}, server.getPrivate(), PKIAlgorithm.DEFAULT, 1);
+		int port = paymentServer.start(0);
+		
+		List<byte[]> frames = new ArrayList<byte[]>();
+		for (int i=0; i<4; i++) {
+			PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer"+i, "seller", Currency.BTC, i+1, System.currentTimeMillis());
+			pr.sign(client.getPrivate());
+			frames.add(new ServerPaymentRequest(pr).encode());
+		}
+		
+		LoadGenerator.Result result = new LoadGenerator(port, frames).run(20, 5);
+		assertEquals(100, result.getNofSuccesses());
+		assertEquals(0, result.getNofFailures());
+		assertEquals(100, paymentServer.getNofRequests());
+		assertTrue(result.getLatencyPercentile(0.5) <= result.getLatencyPercentile(0.99));
+		assertTrue(result.getThroughput() > 0);
+		
+		paymentServer.close();
+	}
+	
+	@Test
+	public void testHandle_invalidSignature() throws Exception {
+		final KeyPair client = TestUtils.generateKeyPair();
+		KeyPair server = TestUtils.generateKeyPair();
+		PaymentServer paymentServer = new PaymentServer(new PaymentRequestKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PaymentRequest paymentRequest, int index) {
+				return client.getPublic();
+			}
+		}, server.getPrivate(), PKIAlgorithm.DEFAULT, 1);
+		
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(TestUtils.generateKeyPair().getPrivate());
+		
+		byte[] frame = paymentServer.handle(new ServerPaymentRequest(pr).encode());
+		ServerPaymentResponse response = DecoderFactory.decode(ServerPaymentResponse.class, frame);
+		assertEquals(ServerResponseStatus.FAILURE, response.getPaymentResponsePayer().getStatus());
+		assertEquals("The signature of payment request 0 is invalid.", response.getPaymentResponsePayer().getReason());
+		assertTrue(response.getPaymentResponsePayer().verify(server.getPublic()));
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.coinblesk.customserialization.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+public class LiveStatisticsTest {
+	
+	private static final long NOW = 1420070400000L;
+	
+	private static PaymentRequest createRequest(Currency currency, long amount) throws IllegalArgumentException {
+		return new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", currency, amount, NOW);
+	}
+	
+	private static PaymentResponse createResponse(ServerResponseStatus status) throws IllegalArgumentException {
+		String reason = status == ServerResponseStatus.FAILURE ? "Insufficient funds." : null;
+		return new PaymentResponse(PKIAlgorithm.DEFAULT, 1, status, reason, "buyer", "seller", Currency.BTC, 1, NOW);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testRecord_null() throws Exception {
+		new LiveStatistics().record((PaymentRequest) null);
+	}
+	
+	@Test
+	public void testGetSnapshot() throws Exception {
+		LiveStatistics statistics = new LiveStatistics();
+		for (int i=1; i<=100; i++) {
+			statistics.record(createRequest(Currency.BTC, i * 1000), NOW);
+		}
+		statistics.record(createRequest(Currency.CHF, 50), NOW);
+		statistics.record(createResponse(ServerResponseStatus.SUCCESS), NOW);
+		statistics.record(createResponse(ServerResponseStatus.SUCCESS), NOW);
+		statistics.record(createResponse(ServerResponseStatus.SUCCESS), NOW);
+		statistics.record(createResponse(ServerResponseStatus.FAILURE), NOW);
+		
+		for (Window window : Window.values()) {
+			StatisticsSnapshot snapshot = statistics.getSnapshot(window, NOW);
+			assertEquals(100, snapshot.getNofRequests(Currency.BTC));
+			assertEquals(101, snapshot.getNofRequests());
+			assertEquals(5050000, snapshot.getVolume(Currency.BTC));
+			assertEquals(50, snapshot.getVolume(Currency.CHF));
+			assertEquals(3, snapshot.getNofResponses(ServerResponseStatus.SUCCESS));
+			assertEquals(4, snapshot.getNofResponses());
+			assertEquals(0.25, snapshot.getFailureRate(), 0);
+			assertEquals(101 * 1000.0 / window.getLengthMillis(), snapshot.getRequestsPerSecond(), 1e-9);
+			
+			assertEquals(50000, snapshot.getAmountPercentile(Currency.BTC, 0.5), 50000 / 16);
+			assertEquals(99000, snapshot.getAmountPercentile(Currency.BTC, 0.99), 99000 / 16);
+			assertEquals(1000, snapshot.getAmountPercentile(Currency.BTC, 0), 1000 / 16);
+			assertEquals(50, snapshot.getAmountPercentile(Currency.CHF, 1), 50 / 16);
+		}
+	}
+	
+	@Test
+	public void testGetSnapshot_empty() throws Exception {
+		StatisticsSnapshot snapshot = new LiveStatistics().getSnapshot(Window.MINUTE, NOW);
+		assertEquals(0, snapshot.getNofRequests());
+		assertEquals(0, snapshot.getFailureRate(), 0);
+		assertEquals(-1, snapshot.getAmountPercentile(Currency.BTC, 0.5));
+	}
+	
+	@Test
+	public void testGetSnapshot_sliding() throws Exception {
+		LiveStatistics statistics = new LiveStatistics();
+		// one request per second for two minutes
+		for (int i=0; i<120; i++) {
+			statistics.record(createRequest(Currency.BTC, 1), NOW + i * 1000);
+		}
+		long end = NOW + 119 * 1000;
+		
+		assertEquals(1, statistics.getSnapshot(Window.SECOND, end).getNofRequests());
+		assertEquals(60, statistics.getSnapshot(Window.MINUTE, end).getNofRequests());
+		assertEquals(120, statistics.getSnapshot(Window.HOUR, end).getNofRequests());
+		
+		// the window has moved on
+		assertEquals(0, statistics.getSnapshot(Window.SECOND, end + 1000).getNofRequests());
+		assertEquals(59, statistics.getSnapshot(Window.MINUTE, end + 1000).getNofRequests());
+		assertEquals(0, statistics.getSnapshot(Window.MINUTE, end + 60000).getNofRequests());
+		
+		// requests older than the window are not counted
+		statistics.record(createRequest(Currency.BTC, 1), NOW);
+		assertEquals(60, statistics.getSnapshot(Window.MINUTE, end).getNofRequests());
+		assertEquals(121, statistics.getSnapshot(Window.HOUR, end).getNofRequests());
+	}
+	
+	@Test
+	public void testRecord_concurrent() throws Exception {
+		final LiveStatistics statistics = new LiveStatistics();
+		final PaymentRequest request = createRequest(Currency.BTC, 10);
+		final PaymentResponse response = createResponse(ServerResponseStatus.SUCCESS);
+		final int nofRecords = 20000;
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t=0; t<8; t++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// crosses many bucket boundaries of the second window
+						for (int i=0; i<nofRecords; i++) {
+							long now = NOW + i / 10;
+							statistics.record(request, now);
+							statistics.record(response, now);
+						}
+					} catch (IllegalArgumentException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		long end = NOW + (nofRecords - 1) / 10;
+		StatisticsSnapshot snapshot = statistics.getSnapshot(Window.MINUTE, end);
+		assertEquals(8 * nofRecords, snapshot.getNofRequests());
+		assertEquals(8 * nofRecords * 10, snapshot.getVolume(Currency.BTC));
+		assertEquals(8 * nofRecords, snapshot.getNofResponses(ServerResponseStatus.SUCCESS));
+		assertTrue(statistics.getSnapshot(Window.SECOND, end).getNofRequests() <= 8 * 10 * 1000);
+	}
+	
+	@Test
+	public void testGetAmountPercentile_concurrent() throws Exception {
+		final LiveStatistics statistics = new LiveStatistics();
+		
+		// every thread records its own amount, so the threads update different stripes of the histograms
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t=0; t<8; t++) {
+			final PaymentRequest request = createRequest(Currency.BTC, (t + 1) * 1000);
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i=0; i<1000; i++) {
+							statistics.record(request, NOW);
+						}
+					} catch (IllegalArgumentException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		StatisticsSnapshot snapshot = statistics.getSnapshot(Window.MINUTE, NOW);
+		assertEquals(8000, snapshot.getNofRequests());
+		for (int t=0; t<8; t++) {
+			long amount = (t + 1) * 1000;
+			assertEquals(amount, snapshot.getAmountPercentile(Currency.BTC, (t + 0.5) / 8), amount / 16);
+		}
+	}
+
+}
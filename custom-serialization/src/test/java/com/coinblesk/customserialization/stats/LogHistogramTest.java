@@ -0,0 +1,47 @@
+package com.coinblesk.customserialization.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LogHistogramTest {
+	
+	@Test
+	public void testGetBin_small() {
+		for (int i=0; i<16; i++) {
+			assertEquals(i, LogHistogram.getBin(i));
+			assertEquals(i, LogHistogram.getLowerBound(i));
+			assertEquals(i, LogHistogram.getUpperBound(i));
+		}
+	}
+	
+	@Test
+	public void testGetBin_bounds() {
+		assertEquals(0, LogHistogram.getBin(-5));
+		assertEquals(LogHistogram.NOF_BINS - 1, LogHistogram.getBin(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, LogHistogram.getUpperBound(LogHistogram.NOF_BINS - 1));
+		
+		for (int bin=1; bin<LogHistogram.NOF_BINS; bin++) {
+			assertEquals(LogHistogram.getUpperBound(bin - 1) + 1, LogHistogram.getLowerBound(bin));
+			assertEquals(bin, LogHistogram.getBin(LogHistogram.getLowerBound(bin)));
+			assertEquals(bin, LogHistogram.getBin(LogHistogram.getUpperBound(bin)));
+		}
+	}
+	
+	@Test
+	public void testGetBin_width() {
+		Random random = new Random(1);
+		for (int i=0; i<10000; i++) {
+			long amount = Math.max(1, random.nextLong() >>> (1 + random.nextInt(63)));
+			int bin = LogHistogram.getBin(amount);
+			long lower = LogHistogram.getLowerBound(bin);
+			long upper = LogHistogram.getUpperBound(bin);
+			assertTrue(lower <= amount && amount <= upper);
+			assertTrue(upper - lower <= lower / 8);
+		}
+	}
+
+}
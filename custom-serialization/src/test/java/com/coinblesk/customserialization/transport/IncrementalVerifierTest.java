@@ -0,0 +1,111 @@
+package com.coinblesk.customserialization.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.PaymentResponse;
+import com.coinblesk.customserialization.ServerResponseStatus;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class IncrementalVerifierTest {
+	
+	private static PublicKeyResolver createResolver(final int keyNumber, final PublicKey publicKey) {
+		return new PublicKeyResolver() {
+			@Override
+			public PublicKey getPublicKey(PKIAlgorithm pkiAlgorithm, int number) {
+				return number == keyNumber ? publicKey : null;
+			}
+		};
+	}
+	
+	@Test
+	public void testGetMaxSignatureLength() {
+		assertEquals(72, PKIAlgorithm.DEFAULT.getMaxSignatureLength());
+		assertEquals(64, PKIAlgorithm.ECDSA_P1363.getMaxSignatureLength());
+		assertEquals(64, PKIAlgorithm.ED25519.getMaxSignatureLength());
+	}
+	
+	@Test
+	public void testVerify_byteByByte() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 3, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		byte[] encoded = pr.encode();
+		
+		IncrementalVerifier<PaymentRequest> verifier = new IncrementalVerifier<PaymentRequest>(PaymentRequest.class, createResolver(3, keyPair.getPublic()));
+		for (int i=0; i<encoded.length; i++) {
+			verifier.update(encoded, i, 1);
+			if (i < 2)
+				assertNull(verifier.getPKIAlgorithm());
+		}
+		assertEquals(PKIAlgorithm.DEFAULT, verifier.getPKIAlgorithm());
+		assertEquals(encoded.length - 72, verifier.getBytesProcessed());
+		
+		assertTrue(verifier.verify());
+		assertEquals(pr, verifier.getObject());
+	}
+	
+	@Test
+	public void testVerify_reassembler() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentResponse pr = new PaymentResponse(PKIAlgorithm.ECDSA_P1363, 1, ServerResponseStatus.SUCCESS, null, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		
+		MessageReassembler reassembler = new MessageReassembler();
+		IncrementalVerifier<PaymentResponse> verifier = new IncrementalVerifier<PaymentResponse>(PaymentResponse.class, createResolver(1, keyPair.getPublic()));
+		for (byte[] fragment : new MessageFragmenter(16).fragment(pr)) {
+			reassembler.append(fragment);
+			verifier.update(reassembler);
+		}
+		
+		assertTrue(verifier.verify());
+		assertEquals(pr, verifier.getObject());
+	}
+	
+	@Test
+	public void testVerify_invalid() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		byte[] encoded = pr.encode();
+		
+		IncrementalVerifier<PaymentRequest> verifier = new IncrementalVerifier<PaymentRequest>(PaymentRequest.class, createResolver(1, TestUtils.generateKeyPair().getPublic()));
+		verifier.update(encoded, 0, encoded.length);
+		assertFalse(verifier.verify());
+		
+		verifier.reset();
+		assertNull(verifier.getObject());
+	}
+	
+	@Test(expected=InvalidKeyException.class)
+	public void testUpdate_unknownKey() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 2, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(keyPair.getPrivate());
+		byte[] encoded = pr.encode();
+		
+		IncrementalVerifier<PaymentRequest> verifier = new IncrementalVerifier<PaymentRequest>(PaymentRequest.class, createResolver(1, keyPair.getPublic()));
+		verifier.update(encoded, 0, encoded.length);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testVerify_incomplete() throws Exception {
+		KeyPair keyPair = TestUtils.generateKeyPair();
+		IncrementalVerifier<PaymentRequest> verifier = new IncrementalVerifier<PaymentRequest>(PaymentRequest.class, createResolver(1, keyPair.getPublic()));
+		verifier.update(new byte[] { 1 }, 0, 1);
+		verifier.verify();
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.coinblesk.customserialization.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.Currency;
+import com.coinblesk.customserialization.PKIAlgorithm;
+import com.coinblesk.customserialization.PaymentRequest;
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+import com.coinblesk.customserialization.testutils.TestUtils;
+
+public class MessageFragmenterTest {
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testConstructor() throws Exception {
+		new MessageFragmenter(MessageFragmenter.FIRST_HEADER_LENGTH);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFragment_empty() throws Exception {
+		new MessageFragmenter().fragment(new byte[0]);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFragment_tooLong() throws Exception {
+		new MessageFragmenter(10).fragment(new byte[10*MessageFragmenter.MAX_FRAGMENTS]);
+	}
+	
+	@Test
+	public void testFragment_single() throws Exception {
+		byte[] message = new byte[] { 1, 2, 3 };
+		List<byte[]> fragments = new MessageFragmenter().fragment(message);
+		assertEquals(1, fragments.size());
+		assertArrayEquals(new byte[] { 0, 0, 3, 1, 2, 3 }, fragments.get(0));
+	}
+	
+	@Test
+	public void testFragment() throws Exception {
+		MessageFragmenter fragmenter = new MessageFragmenter(10);
+		byte[] message = new byte[30];
+		for (int i=0; i<message.length; i++) {
+			message[i] = (byte) i;
+		}
+		
+		List<byte[]> fragments = fragmenter.fragment(message);
+		// 7 bytes in the first fragment, 9 bytes in each of the others
+		assertEquals(4, fragments.size());
+		assertEquals(fragmenter.getNofFragments(message.length), fragments.size());
+		for (int i=0; i<fragments.size(); i++) {
+			assertEquals(i, fragments.get(i)[0]);
+			assertTrue(fragments.get(i).length <= 10);
+		}
+		assertEquals(1+5, fragments.get(3).length);
+		
+		MessageReassembler reassembler = new MessageReassembler();
+		for (byte[] fragment : fragments) {
+			reassembler.append(fragment);
+		}
+		assertArrayEquals(message, reassembler.getMessage());
+	}
+	
+	@Test
+	public void testFragment_signedObject() throws Exception {
+		PaymentRequest pr = new PaymentRequest(PKIAlgorithm.DEFAULT, 1, "buyer", "seller", Currency.BTC, 12, System.currentTimeMillis());
+		pr.sign(TestUtils.generateKeyPair().getPrivate());
+		
+		List<byte[]> fragments = new MessageFragmenter(32).fragment(pr);
+		assertTrue(fragments.size() > 1);
+		
+		MessageReassembler reassembler = new MessageReassembler();
+		for (byte[] fragment : fragments) {
+			reassembler.append(fragment);
+		}
+		assertEquals(pr, reassembler.decode(PaymentRequest.class));
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.coinblesk.customserialization.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.coinblesk.customserialization.exceptions.IllegalArgumentException;
+
+public class MessageReassemblerTest {
+	
+	private static List<byte[]> createFragments() throws Exception {
+		return new MessageFragmenter(8).fragment(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+	}
+	
+	@Test
+	public void testAppend() throws Exception {
+		List<byte[]> fragments = createFragments();
+		assertEquals(3, fragments.size());
+		
+		MessageReassembler reassembler = new MessageReassembler();
+		assertEquals(-1, reassembler.getMessageLength());
+		assertFalse(reassembler.append(fragments.get(0)));
+		assertEquals(16, reassembler.getMessageLength());
+		assertEquals(5, reassembler.getBytesReceived());
+		assertFalse(reassembler.append(fragments.get(1)));
+		assertTrue(reassembler.append(fragments.get(2)));
+		assertTrue(reassembler.isComplete());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 }, reassembler.getMessage());
+		
+		reassembler.reset();
+		assertFalse(reassembler.isComplete());
+		assertFalse(reassembler.append(fragments.get(0)));
+	}
+	
+	@Test
+	public void testAppend_offset() throws Exception {
+		List<byte[]> fragments = createFragments();
+		MessageReassembler reassembler = new MessageReassembler();
+		for (byte[] fragment : fragments) {
+			// e.g., the data field of a command APDU
+			byte[] apdu = new byte[fragment.length+5];
+			System.arraycopy(fragment, 0, apdu, 5, fragment.length);
+			reassembler.append(apdu, 5, fragment.length);
+		}
+		assertEquals(16, reassembler.getMessage().length);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testAppend_outOfOrder() throws Exception {
+		List<byte[]> fragments = createFragments();
+		MessageReassembler reassembler = new MessageReassembler();
+		reassembler.append(fragments.get(0));
+		reassembler.append(fragments.get(2));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testAppend_complete() throws Exception {
+		List<byte[]> fragments = createFragments();
+		MessageReassembler reassembler = new MessageReassembler();
+		for (byte[] fragment : fragments) {
+			reassembler.append(fragment);
+		}
+		reassembler.append(fragments.get(0));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testAppend_tooLong() throws Exception {
+		MessageReassembler reassembler = new MessageReassembler();
+		reassembler.append(new byte[] { 0, 0, 2, 1 });
+		reassembler.append(new byte[] { 1, 2, 3 });
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testGetMessage_incomplete() throws Exception {
+		MessageReassembler reassembler = new MessageReassembler();
+		reassembler.append(createFragments().get(0));
+		reassembler.getMessage();
+	}
+
+}